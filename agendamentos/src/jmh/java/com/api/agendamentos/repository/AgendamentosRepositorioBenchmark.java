@@ -0,0 +1,77 @@
+package com.api.agendamentos.repository;
+
+import com.api.agendamentos.config.PersistenciaConfig;
+import com.api.agendamentos.models.Agendamentos;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// carga (arquivo -> memória e índices) e gravação completa (memória -> arquivo) dos agendamentos, nos dois formatos
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+public class AgendamentosRepositorioBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    private int linhas;
+
+    @Param({"JSON", "BINARIO"})
+    private PersistenciaConfig.Formato formato;
+
+    private Path diretorio;
+    private Path arquivo;
+    private PersistenciaConfig config;
+    private AgendamentosRepositoryArquivo repositorio;
+    private List<Agendamentos> agendamentos;
+
+    @Setup(Level.Trial)
+    public void preparar() throws IOException {
+        diretorio = Files.createTempDirectory("benchmark-agendamentos");
+        arquivo = diretorio.resolve("agendamentos.json");
+        config = DadosSinteticos.config(formato);
+        DadosSinteticos.gravar(arquivo, diretorio.resolve("usuarios.json"), linhas, formato);
+        repositorio = new AgendamentosRepositoryArquivo(arquivo.toString(), config);
+        repositorio.carregar();
+        agendamentos = repositorio.getAgendamentos();
+    }
+
+    @TearDown(Level.Trial)
+    public void encerrar() {
+        repositorio.encerrar();
+        DadosSinteticos.apagar(diretorio);
+    }
+
+    @Benchmark
+    public int carregar() {
+        AgendamentosRepositoryArquivo carregado = new AgendamentosRepositoryArquivo(arquivo.toString(), config);
+        carregado.carregar();
+        int quantidade = carregado.getAgendamentos().size();
+        carregado.encerrar();
+        return quantidade;
+    }
+
+    @Benchmark
+    public void salvar() {
+        repositorio.salvarAgendamentos(agendamentos);
+        repositorio.gravarPendentes();
+    }
+}
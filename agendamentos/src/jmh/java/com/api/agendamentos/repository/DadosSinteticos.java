@@ -0,0 +1,100 @@
+package com.api.agendamentos.repository;
+
+import com.api.agendamentos.config.PersistenciaConfig;
+import com.api.agendamentos.models.Agendamentos;
+import com.api.agendamentos.models.Usuarios;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// massa de dados dos benchmarks: cada usuario tem 10 agendamentos e cada agendamento ocupa um horário
+// (das 9h às 17h) a partir de amanhã, então todos continuam válidos para consulta e cancelamento.
+// Os ids são UUIDs determinísticos, aceitos também pelo formato binário.
+public final class DadosSinteticos {
+
+    public static final int AGENDAMENTOS_POR_USUARIO = 10;
+    public static final int HORARIOS_POR_DIA = 9;
+    public static final int PRIMEIRA_HORA = 9;
+
+    private static final Agendamentos.TipoServico[] SERVICOS = {
+            Agendamentos.TipoServico.SERVICO1, Agendamentos.TipoServico.SERVICO2,
+            Agendamentos.TipoServico.SERVICO3, Agendamentos.TipoServico.SERVICO4
+    };
+
+    private DadosSinteticos() {}
+
+    // a gravação em segundo plano só acontece quando pedida (gravarPendentes), para não interferir nas medições
+    public static PersistenciaConfig config(PersistenciaConfig.Formato formato) {
+        return new PersistenciaConfig(PersistenciaConfig.Modo.SNAPSHOT, TimeUnit.HOURS.toMillis(1),
+                Integer.MAX_VALUE, Integer.MAX_VALUE, formato);
+    }
+
+    public static LocalDate primeiroDia() {
+        return LocalDate.now().plusDays(1);
+    }
+
+    // o n-ésimo horário de atendimento a partir de amanhã
+    public static LocalDateTime horario(long indice) {
+        return primeiroDia().plusDays(indice / HORARIOS_POR_DIA).atTime(PRIMEIRA_HORA + (int) (indice % HORARIOS_POR_DIA), 0);
+    }
+
+    public static int quantidadeUsuarios(int agendamentos) {
+        return Math.max(1, agendamentos / AGENDAMENTOS_POR_USUARIO);
+    }
+
+    public static String idUsuario(int indice) {
+        return new UUID(0, indice).toString();
+    }
+
+    public static List<Usuarios> usuarios(int quantidade) {
+        LocalDateTime criacao = LocalDateTime.now().withNano(0);
+        List<Usuarios> usuarios = new ArrayList<>(quantidade);
+        for (int i = 0; i < quantidade; i++) {
+            usuarios.add(new Usuarios(idUsuario(i), "Usuario Sintetico", "usuario" + i + "@exemplo.com", "1990-01-01", criacao, 1));
+        }
+        return usuarios;
+    }
+
+    public static List<Agendamentos> agendamentos(int quantidade) {
+        int usuarios = quantidadeUsuarios(quantidade);
+        List<Agendamentos> agendamentos = new ArrayList<>(quantidade);
+        for (int i = 0; i < quantidade; i++) {
+            agendamentos.add(new Agendamentos(new UUID(1, i).toString(), idUsuario(i % usuarios), SERVICOS[i % SERVICOS.length],
+                    horario(i), Agendamentos.statusAgendamento.AGENDADO));
+        }
+        return agendamentos;
+    }
+
+    // grava a massa nos arquivos que os repositórios carregam: json ou, para agendamentos no formato BINARIO, o .bin
+    public static void gravar(Path arquivoAgendamentos, Path arquivoUsuarios, int linhas, PersistenciaConfig.Formato formato)
+            throws IOException {
+        List<Agendamentos> agendamentos = agendamentos(linhas);
+        if (formato == PersistenciaConfig.Formato.BINARIO) {
+            ArmazenamentoBinarioAgendamentos.gravar(
+                    ArmazenamentoBinarioAgendamentos.caminhoBinario(arquivoAgendamentos.toString()), agendamentos);
+        } else {
+            ArmazenamentoArquivo.gravarArquivo(arquivoAgendamentos, agendamentos);
+        }
+        ArmazenamentoArquivo.gravarArquivo(arquivoUsuarios, usuarios(quantidadeUsuarios(linhas)));
+    }
+
+    public static void apagar(Path diretorio) {
+        try (Stream<Path> caminhos = Files.walk(diretorio)) {
+            for (Path caminho : caminhos.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(caminho);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.api.agendamentos.repository;
+
+import com.api.agendamentos.config.PersistenciaConfig;
+import com.api.agendamentos.models.Usuarios;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// carga e gravação completa dos usuarios. linhas é o tamanho da massa de agendamentos, como nos demais
+// benchmarks; os usuarios são um décimo disso (ver DadosSinteticos)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+public class UsuariosRepositorioBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    private int linhas;
+
+    private Path diretorio;
+    private Path arquivo;
+    private PersistenciaConfig config;
+    private UsuariosRepositoryArquivo repositorio;
+    private List<Usuarios> usuarios;
+
+    @Setup(Level.Trial)
+    public void preparar() throws IOException {
+        diretorio = Files.createTempDirectory("benchmark-usuarios");
+        arquivo = diretorio.resolve("usuarios.json");
+        config = DadosSinteticos.config(PersistenciaConfig.Formato.JSON);
+        ArmazenamentoArquivo.gravarArquivo(arquivo, DadosSinteticos.usuarios(DadosSinteticos.quantidadeUsuarios(linhas)));
+        repositorio = new UsuariosRepositoryArquivo(arquivo.toString(), config);
+        repositorio.carregar();
+        usuarios = repositorio.getUsuarios();
+    }
+
+    @TearDown(Level.Trial)
+    public void encerrar() {
+        repositorio.encerrar();
+        DadosSinteticos.apagar(diretorio);
+    }
+
+    @Benchmark
+    public int carregar() {
+        UsuariosRepositoryArquivo carregado = new UsuariosRepositoryArquivo(arquivo.toString(), config);
+        carregado.carregar();
+        int quantidade = carregado.getUsuarios().size();
+        carregado.encerrar();
+        return quantidade;
+    }
+
+    @Benchmark
+    public void salvar() {
+        repositorio.salvarUsuarios(usuarios);
+        repositorio.gravarPendentes();
+    }
+}
@@ -0,0 +1,137 @@
+package com.api.agendamentos.services;
+
+import com.api.agendamentos.config.PersistenciaConfig;
+import com.api.agendamentos.models.Agendamentos;
+import com.api.agendamentos.models.HorarioDisponivel;
+import com.api.agendamentos.models.Usuarios;
+import com.api.agendamentos.repository.AgendamentosRepositoryArquivo;
+import com.api.agendamentos.repository.DadosSinteticos;
+import com.api.agendamentos.repository.UsuariosRepositoryArquivo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// operações dos serviços sobre os repositórios em memória (implementação padrão), com a massa de DadosSinteticos.
+// Throughput dá a vazão e SampleTime a distribuição da latência (p50, p99...); com -prof gc sai também a alocação por operação.
+// A gravação em arquivo fica desligada durante a medição, então o resultado é o custo do serviço e dos índices.
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ServicosBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    private int linhas;
+
+    private Path diretorio;
+    private AgendamentosRepositoryArquivo agendamentosRepository;
+    private UsuariosRepositoryArquivo usuariosRepository;
+    private AgendamentosService agendamentosService;
+    private UsuariosService usuariosService;
+
+    private List<Agendamentos> agendamentos;
+    private List<Usuarios> usuarios;
+    private LocalDate primeiroDia;
+    private int dias;
+
+    // posições percorridas por cada benchmark; as inclusões são desfeitas a cada iteração
+    private int consulta;
+    private int cancelamento;
+    private int novosAgendamentos;
+    private int novosUsuarios;
+
+    @Setup(Level.Trial)
+    public void preparar() throws IOException {
+        diretorio = Files.createTempDirectory("benchmark-servicos");
+        Path arquivoAgendamentos = diretorio.resolve("agendamentos.json");
+        Path arquivoUsuarios = diretorio.resolve("usuarios.json");
+        DadosSinteticos.gravar(arquivoAgendamentos, arquivoUsuarios, linhas, PersistenciaConfig.Formato.JSON);
+
+        PersistenciaConfig config = DadosSinteticos.config(PersistenciaConfig.Formato.JSON);
+        agendamentosRepository = new AgendamentosRepositoryArquivo(arquivoAgendamentos.toString(), config);
+        agendamentosRepository.carregar();
+        usuariosRepository = new UsuariosRepositoryArquivo(arquivoUsuarios.toString(), config);
+        usuariosRepository.carregar();
+        usuariosService = new UsuariosService(usuariosRepository, agendamentosRepository);
+        agendamentosService = new AgendamentosService(agendamentosRepository, usuariosService);
+
+        agendamentos = agendamentosRepository.getAgendamentos();
+        usuarios = usuariosRepository.getUsuarios();
+        primeiroDia = DadosSinteticos.primeiroDia();
+        dias = (linhas + DadosSinteticos.HORARIOS_POR_DIA - 1) / DadosSinteticos.HORARIOS_POR_DIA;
+    }
+
+    // volta à massa original para que a quantidade de registros não cresça ao longo da medição
+    @Setup(Level.Iteration)
+    public void restaurar() {
+        if (novosAgendamentos > 0) {
+            agendamentosRepository.salvarAgendamentos(agendamentos);
+            novosAgendamentos = 0;
+        }
+        if (novosUsuarios > 0) {
+            usuariosRepository.salvarUsuarios(usuarios);
+            novosUsuarios = 0;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void encerrar() {
+        DadosSinteticos.apagar(diretorio);
+    }
+
+    @Benchmark
+    public List<HorarioDisponivel> getHorariosDisponiveis() {
+        return agendamentosService.getHorariosDisponiveis(primeiroDia.plusDays(proximaConsulta() % dias));
+    }
+
+    @Benchmark
+    public List<Agendamentos> getAgendamentosPorUsuario() {
+        return agendamentosService.getAgendamentosPorUsuario(usuarios.get(proximaConsulta() % usuarios.size()).getId(), 0, 20);
+    }
+
+    // horários livres depois do último horário da massa
+    @Benchmark
+    public Agendamentos createAgendamento() {
+        int novo = novosAgendamentos++;
+        return agendamentosService.createAgendamento(usuarios.get(novo % usuarios.size()).getId(),
+                Agendamentos.TipoServico.SERVICO1, DadosSinteticos.horario((long) linhas + novo));
+    }
+
+    // inclui a reativação do agendamento (uma atualização no repositório), para que a massa possa ser reutilizada
+    @Benchmark
+    public Agendamentos cancelarAgendamento() {
+        Agendamentos agendamento = agendamentos.get(cancelamento++ % agendamentos.size());
+        agendamentosService.cancelarAgendamento(agendamento.getIdAgendamento());
+        agendamento.setStatus(Agendamentos.statusAgendamento.AGENDADO);
+        agendamentosRepository.atualizarAgendamento(agendamento);
+        return agendamento;
+    }
+
+    @Benchmark
+    public Usuarios createUsuarios() {
+        return usuariosService.createUsuarios("Usuario Novo", "novo" + novosUsuarios++ + "@exemplo.com", "1990-01-01");
+    }
+
+    private int proximaConsulta() {
+        return consulta++ & Integer.MAX_VALUE;
+    }
+}
@@ -0,0 +1,67 @@
+package com.api.agendamentos.services;
+
+import com.api.agendamentos.models.Agendamentos;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+// custo e alocação (com -prof gc, em gc.alloc.rate.norm) das validações de entrada.
+// Os métodos "anterior" reproduzem a implementação antiga (String.matches e values()) como referência.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ValidacaoBenchmark {
+
+    private String nome = "Maria da Silva";
+    private String email = "maria.silva@exemplo.com";
+    private String dataNascimento = "1990-05-17";
+    private String servico = "servico2";
+
+    @Benchmark
+    public void validarUsuario(Blackhole blackhole) {
+        ValidacoesUsuario.validarNome(nome);
+        ValidacoesUsuario.validarEmail(email);
+        blackhole.consume(ValidacoesUsuario.validarDataNascimento(dataNascimento));
+    }
+
+    @Benchmark
+    public void validarNomeEEmail() {
+        ValidacoesUsuario.validarNome(nome);
+        ValidacoesUsuario.validarEmail(email);
+    }
+
+    @Benchmark
+    public Agendamentos.TipoServico buscarServico() {
+        return Agendamentos.TipoServico.buscarIgnorandoCaixa(servico);
+    }
+
+    @Benchmark
+    public void validarNomeEEmailAnterior(Blackhole blackhole) {
+        blackhole.consume(nome.matches(".*\\s{2,}.*"));
+        blackhole.consume(nome.matches("^[ A-Za-z]+$"));
+        blackhole.consume(email.matches("^\\s*[a-zA-Z0-9._%+-]+@[a-zA-Z0-9.-]+\\.[a-zA-Z]{2,}\\s*$"));
+    }
+
+    @Benchmark
+    public Agendamentos.TipoServico buscarServicoAnterior() {
+        String valor = servico.toUpperCase();
+        for (Agendamentos.TipoServico tipoServico : Agendamentos.TipoServico.values()) {
+            if (tipoServico.name().equals(valor)) {
+                return tipoServico;
+            }
+        }
+        return null;
+    }
+}
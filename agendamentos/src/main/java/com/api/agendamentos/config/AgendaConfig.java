@@ -0,0 +1,252 @@
+package com.api.agendamentos.config;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.MonthDay;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// calendário de atendimento: expediente de cada dia da semana, intervalos sem atendimento, feriados e duração
+// de cada atendimento. Os horários de início são calculados uma vez por dia da semana, na inicialização, e os
+// LocalDateTime de cada data consultada ficam em cache, então a consulta de disponibilidade não gera os
+// horários do dia a cada requisição.
+@Component
+public class AgendaConfig {
+
+    private static final int MINUTOS_DIA = 24 * 60;
+    // datas distintas mantidas no cache de horários; ao passar do limite o cache é esvaziado
+    private static final int MAXIMO_DATAS_EM_CACHE = 4096;
+    private static final String[] DIAS = {"SEG", "TER", "QUA", "QUI", "SEX", "SAB", "DOM"};
+
+    // horários de início de um padrão de dia (um dia da semana)
+    private static final class Expediente {
+        private final int[] inicios;
+        // inicio.get(minuto do dia): o minuto é o início de um atendimento
+        private final BitSet inicio = new BitSet(MINUTOS_DIA);
+        private final String descricao;
+
+        private Expediente(int[] inicios) {
+            this.inicios = inicios;
+            for (int minuto : inicios) {
+                inicio.set(minuto);
+            }
+            this.descricao = inicios.length == 0 ? null
+                    : "das " + formatar(inicios[0]) + " às " + formatar(inicios[inicios.length - 1]);
+        }
+    }
+
+    private final int duracaoMinutos;
+    // por DayOfWeek.ordinal()
+    private final Expediente[] expedientes = new Expediente[DIAS.length];
+    private final BitSet intervalos = new BitSet(MINUTOS_DIA);
+    private final Set<LocalDate> feriados = new HashSet<>();
+    private final Set<MonthDay> feriadosAnuais = new HashSet<>();
+    private final Map<LocalDate, List<LocalDateTime>> horariosPorData = new ConcurrentHashMap<>();
+    private final int assinatura;
+
+    // expediente "09:00-18:00" vale para todos os dias; expedientePorDia sobrescreve dias da semana
+    // ("SAB=09:00-13:00,DOM=", vazio é dia sem atendimento); intervalos "12:00-13:00" valem para todos os dias;
+    // feriados com ano (2030-04-19) ou anuais (12-25)
+    @Autowired
+    public AgendaConfig(@Value("${agendamentos.agenda.duracao-minutos:60}") int duracaoMinutos,
+                        @Value("${agendamentos.agenda.expediente:09:00-18:00}") String expediente,
+                        @Value("${agendamentos.agenda.expediente-por-dia:}") String expedientePorDia,
+                        @Value("${agendamentos.agenda.intervalos:}") String intervalos,
+                        @Value("${agendamentos.agenda.feriados:}") String feriados) {
+        if (duracaoMinutos < 1 || duracaoMinutos > MINUTOS_DIA) {
+            throw new IllegalArgumentException("agendamentos.agenda.duracao-minutos deve estar entre 1 e " + MINUTOS_DIA + ": " + duracaoMinutos);
+        }
+        this.duracaoMinutos = duracaoMinutos;
+        this.assinatura = Objects.hash(duracaoMinutos, expediente, expedientePorDia, intervalos, feriados);
+        for (String intervalo : itens(intervalos)) {
+            int[] faixa = lerFaixa("agendamentos.agenda.intervalos", intervalo);
+            this.intervalos.set(faixa[0], faixa[1]);
+        }
+        lerFeriados(feriados);
+
+        Map<DayOfWeek, String> porDia = lerExpedientePorDia(expedientePorDia);
+        for (DayOfWeek dia : DayOfWeek.values()) {
+            String faixa = porDia.getOrDefault(dia, expediente);
+            expedientes[dia.ordinal()] = faixa.isBlank() ? new Expediente(new int[0])
+                    : new Expediente(gerarInicios(lerFaixa("agendamentos.agenda.expediente", faixa)));
+        }
+    }
+
+    // atendimentos de uma hora, das 9h às 17h, todos os dias
+    public static AgendaConfig padrao() {
+        return new AgendaConfig(60, "09:00-18:00", "", "", "");
+    }
+
+    public int getDuracaoMinutos() {
+        return duracaoMinutos;
+    }
+
+    // muda quando a configuração muda; entra nas versões (ETag) da disponibilidade, que dependem dos horários
+    public int getAssinatura() {
+        return assinatura;
+    }
+
+    // horários de início de atendimento da data, em ordem; vazio em feriados e dias sem expediente.
+    // A lista é compartilhada entre as consultas e não pode ser alterada
+    public List<LocalDateTime> getHorarios(LocalDate data) {
+        List<LocalDateTime> horarios = horariosPorData.get(data);
+        if (horarios == null) {
+            if (horariosPorData.size() >= MAXIMO_DATAS_EM_CACHE) {
+                horariosPorData.clear();
+            }
+            horarios = horariosPorData.computeIfAbsent(data, this::gerarHorarios);
+        }
+        return horarios;
+    }
+
+    public boolean atendeNaData(LocalDate data) {
+        return !ehFeriado(data) && expediente(data).inicios.length > 0;
+    }
+
+    // entre o primeiro e o último início de atendimento da data (os dois inclusive)
+    public boolean dentroDoExpediente(LocalDateTime dataHora) {
+        int[] inicios = expediente(dataHora.toLocalDate()).inicios;
+        if (inicios.length == 0) {
+            return false;
+        }
+        LocalTime hora = dataHora.toLocalTime();
+        return !hora.isBefore(LocalTime.ofSecondOfDay(inicios[0] * 60L))
+                && !hora.isAfter(LocalTime.ofSecondOfDay(inicios[inicios.length - 1] * 60L));
+    }
+
+    public boolean emIntervalo(LocalDateTime dataHora) {
+        return intervalos.get(dataHora.getHour() * 60 + dataHora.getMinute());
+    }
+
+    // a dataHora é exatamente o início de um atendimento da data
+    public boolean inicioDeAtendimento(LocalDateTime dataHora) {
+        return dataHora.getSecond() == 0 && dataHora.getNano() == 0 && !ehFeriado(dataHora.toLocalDate())
+                && expediente(dataHora.toLocalDate()).inicio.get(dataHora.getHour() * 60 + dataHora.getMinute());
+    }
+
+    // ex.: "das 9h às 17h", do primeiro ao último início de atendimento; nulo quando não há atendimento no dia
+    public String descricaoExpediente(LocalDate data) {
+        return expediente(data).descricao;
+    }
+
+    private Expediente expediente(LocalDate data) {
+        return expedientes[data.getDayOfWeek().ordinal()];
+    }
+
+    private boolean ehFeriado(LocalDate data) {
+        return feriados.contains(data) || feriadosAnuais.contains(MonthDay.from(data));
+    }
+
+    private List<LocalDateTime> gerarHorarios(LocalDate data) {
+        if (ehFeriado(data)) {
+            return List.of();
+        }
+        int[] inicios = expediente(data).inicios;
+        LocalDateTime inicioDia = data.atStartOfDay();
+        List<LocalDateTime> horarios = new ArrayList<>(inicios.length);
+        for (int minuto : inicios) {
+            horarios.add(inicioDia.plusMinutes(minuto));
+        }
+        return Collections.unmodifiableList(horarios);
+    }
+
+    // o expediente é dividido pelos intervalos; cada trecho começa um atendimento logo no seu início e só
+    // aceita atendimentos que terminam antes do fim do trecho
+    private int[] gerarInicios(int[] faixa) {
+        List<Integer> inicios = new ArrayList<>();
+        int minuto = faixa[0];
+        while (minuto < faixa[1]) {
+            if (intervalos.get(minuto)) {
+                minuto = intervalos.nextClearBit(minuto);
+                continue;
+            }
+            int fimTrecho = Math.min(faixa[1], intervalos.nextSetBit(minuto) < 0 ? MINUTOS_DIA : intervalos.nextSetBit(minuto));
+            for (; minuto + duracaoMinutos <= fimTrecho; minuto += duracaoMinutos) {
+                inicios.add(minuto);
+            }
+            minuto = fimTrecho;
+        }
+        return inicios.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private void lerFeriados(String feriados) {
+        for (String feriado : itens(feriados)) {
+            try {
+                if (feriado.length() == 5) {
+                    feriadosAnuais.add(MonthDay.parse("--" + feriado));
+                } else {
+                    this.feriados.add(LocalDate.parse(feriado));
+                }
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("agendamentos.agenda.feriados inválido: " + feriado);
+            }
+        }
+    }
+
+    private static Map<DayOfWeek, String> lerExpedientePorDia(String expedientePorDia) {
+        Map<DayOfWeek, String> porDia = new EnumMap<>(DayOfWeek.class);
+        for (String item : itens(expedientePorDia)) {
+            int separador = item.indexOf('=');
+            int dia = separador < 0 ? -1 : List.of(DIAS).indexOf(item.substring(0, separador).trim().toUpperCase(Locale.ROOT));
+            if (dia < 0) {
+                throw new IllegalArgumentException("agendamentos.agenda.expediente-por-dia inválido: " + item);
+            }
+            porDia.put(DayOfWeek.values()[dia], item.substring(separador + 1).trim());
+        }
+        return porDia;
+    }
+
+    // "HH:mm-HH:mm" em minutos do dia, [início, fim); fim 24:00 é o fim do dia
+    private static int[] lerFaixa(String propriedade, String faixa) {
+        String[] partes = faixa.split("-");
+        try {
+            if (partes.length == 2) {
+                int inicio = lerMinuto(partes[0].trim());
+                int fim = lerMinuto(partes[1].trim());
+                if (inicio < fim) {
+                    return new int[]{inicio, fim};
+                }
+            }
+        } catch (DateTimeParseException e) {
+            // mesma mensagem de uma faixa invertida
+        }
+        throw new IllegalArgumentException(propriedade + " inválido: " + faixa);
+    }
+
+    private static int lerMinuto(String hora) {
+        return hora.equals("24:00") ? MINUTOS_DIA : LocalTime.parse(hora).toSecondOfDay() / 60;
+    }
+
+    private static List<String> itens(String valor) {
+        List<String> itens = new ArrayList<>();
+        if (valor != null) {
+            for (String item : valor.split(",")) {
+                if (!item.isBlank()) {
+                    itens.add(item.trim());
+                }
+            }
+        }
+        return itens;
+    }
+
+    // 9h, 9h30
+    private static String formatar(int minuto) {
+        return minuto / 60 + "h" + (minuto % 60 == 0 ? "" : String.format("%02d", minuto % 60));
+    }
+}
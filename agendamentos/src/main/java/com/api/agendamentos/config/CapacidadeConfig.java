@@ -0,0 +1,77 @@
+package com.api.agendamentos.config;
+
+import com.api.agendamentos.models.Agendamentos;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+// quantos agendamentos ativos cada serviço aceita ao mesmo tempo no mesmo horário (ex.: quantos farmacêuticos
+// ou balcões fazem o serviço). Serviços diferentes não disputam o horário entre si.
+@Component
+public class CapacidadeConfig {
+
+    private static final Agendamentos.TipoServico[] SERVICOS = Agendamentos.TipoServico.values();
+
+    // por ordinal; as constantes em minúsculas repetem a capacidade da equivalente em maiúsculas
+    private final int[] capacidades = new int[SERVICOS.length];
+    private final int capacidadeTotal;
+
+    // porServico no formato "SERVICO1=3,SERVICO2=2"; os serviços não listados ficam com a capacidade padrão
+    @Autowired
+    public CapacidadeConfig(@Value("${agendamentos.capacidade.padrao:1}") int padrao,
+                            @Value("${agendamentos.capacidade.servicos:}") String porServico) {
+        this(padrao, lerPorServico(porServico));
+    }
+
+    public CapacidadeConfig(int padrao, Map<Agendamentos.TipoServico, Integer> porServico) {
+        validar("agendamentos.capacidade.padrao", padrao);
+        int total = 0;
+        for (Agendamentos.TipoServico servico : SERVICOS) {
+            Integer capacidade = porServico.get(servico.canonico());
+            capacidades[servico.ordinal()] = capacidade == null ? padrao : capacidade;
+            validar("agendamentos.capacidade.servicos", capacidades[servico.ordinal()]);
+            if (servico.canonico() == servico) {
+                total += capacidades[servico.ordinal()];
+            }
+        }
+        this.capacidadeTotal = total;
+    }
+
+    // um agendamento por horário em cada serviço
+    public static CapacidadeConfig unitaria() {
+        return new CapacidadeConfig(1, Map.of());
+    }
+
+    // com servico nulo, a soma das capacidades de todos os serviços
+    public int getCapacidade(Agendamentos.TipoServico servico) {
+        return servico == null ? capacidadeTotal : capacidades[servico.ordinal()];
+    }
+
+    private static Map<Agendamentos.TipoServico, Integer> lerPorServico(String porServico) {
+        Map<Agendamentos.TipoServico, Integer> capacidades = new EnumMap<>(Agendamentos.TipoServico.class);
+        if (porServico == null || porServico.isBlank()) {
+            return capacidades;
+        }
+        for (String item : porServico.split(",")) {
+            String[] partes = item.split("=");
+            Agendamentos.TipoServico servico = partes.length == 2 ? Agendamentos.TipoServico.buscarIgnorandoCaixa(partes[0].trim()) : null;
+            if (servico == null) {
+                throw new IllegalArgumentException("agendamentos.capacidade.servicos inválido: " + item);
+            }
+            int capacidade = Integer.parseInt(partes[1].trim());
+            validar("agendamentos.capacidade.servicos", capacidade);
+            capacidades.put(servico, capacidade);
+        }
+        return capacidades;
+    }
+
+    // capacidade zero deixa o serviço sem horários
+    private static void validar(String propriedade, int capacidade) {
+        if (capacidade < 0) {
+            throw new IllegalArgumentException(propriedade + " não pode ser negativa: " + capacidade);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.api.agendamentos.config;
+
+import com.api.agendamentos.exceptions.BadRequestException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+// converte a dataHora recebida no json ("yyyy-MM-dd'T'HH:mm") uma única vez, na entrada;
+// um valor fora do formato vira 400 com a mesma mensagem da validação do serviço
+public class DataHoraDeserializer extends JsonDeserializer<LocalDateTime> {
+
+    public static final DateTimeFormatter FORMATO = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm");
+
+    @Override
+    public LocalDateTime deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+        String valor = p.getValueAsString();
+        if (valor == null || valor.isBlank()) {
+            throw formatoInvalido();
+        }
+        try {
+            return LocalDateTime.parse(valor, FORMATO);
+        } catch (DateTimeParseException e) {
+            throw formatoInvalido();
+        }
+    }
+
+    private static BadRequestException formatoInvalido() {
+        return new BadRequestException("Formato inválido para a dataHora. Use o formato 'yyyy-MM-dd'T'HH:mm'.");
+    }
+}
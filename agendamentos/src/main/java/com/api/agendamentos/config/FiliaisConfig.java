@@ -0,0 +1,58 @@
+package com.api.agendamentos.config;
+
+import com.api.agendamentos.models.Agendamentos;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+// filiais atendidas. A filial padrão sempre é; as demais são as listadas em agendamentos.filiais mais as que o
+// repositório já encontra com dados ao iniciar. No armazenamento em arquivo cada filial tem partição, arquivo e
+// gravação em segundo plano próprios, então uma filial desconhecida é recusada em vez de criada na hora.
+@Component
+public class FiliaisConfig {
+
+    private final Set<String> filiais;
+
+    // filiais no formato "centro,sul"
+    @Autowired
+    public FiliaisConfig(@Value("${agendamentos.filiais:}") String filiais) {
+        this(lerFiliais(filiais));
+    }
+
+    public FiliaisConfig(Set<String> filiais) {
+        Set<String> atendidas = new LinkedHashSet<>();
+        atendidas.add(Agendamentos.FILIAL_PADRAO);
+        for (String filial : filiais) {
+            if (!Agendamentos.filialValida(filial)) {
+                throw new IllegalArgumentException("agendamentos.filiais inválido: " + filial);
+            }
+            atendidas.add(filial);
+        }
+        this.filiais = Collections.unmodifiableSet(atendidas);
+    }
+
+    // só a filial padrão
+    public static FiliaisConfig somentePadrao() {
+        return new FiliaisConfig(Set.of());
+    }
+
+    // a filial padrão primeiro
+    public Set<String> getFiliais() {
+        return filiais;
+    }
+
+    private static Set<String> lerFiliais(String filiais) {
+        Set<String> lidas = new LinkedHashSet<>();
+        if (filiais == null || filiais.isBlank()) {
+            return lidas;
+        }
+        for (String filial : filiais.split(",")) {
+            lidas.add(filial.trim());
+        }
+        return lidas;
+    }
+}
@@ -0,0 +1,16 @@
+package com.api.agendamentos.config;
+
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+// habilita o @Timed dos serviços: cada método público vira um timer "servicos.operacoes" com as tags class e method.
+// As faixas de SLO dos histogramas ficam em management.metrics.distribution.slo.* (application.properties)
+@Configuration
+public class MetricasConfig {
+    @Bean
+    public TimedAspect timedAspect(MeterRegistry registry) {
+        return new TimedAspect(registry);
+    }
+}
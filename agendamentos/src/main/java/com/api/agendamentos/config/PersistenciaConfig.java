@@ -0,0 +1,82 @@
+package com.api.agendamentos.config;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+@Component
+public class PersistenciaConfig {
+
+    public enum Modo {
+        // reescreve o arquivo json inteiro a cada gravação
+        SNAPSHOT,
+        // anexa cada alteração ao journal e compacta periodicamente no arquivo json (padrão)
+        JOURNAL
+    }
+
+    public enum Formato {
+        // arquivo json (gravado conforme o Modo)
+        JSON,
+        // registros binários de tamanho fixo acessados por memória mapeada (só para agendamentos)
+        BINARIO
+    }
+
+    private final Modo modo;
+    private final long intervaloGravacaoMs;
+    private final int limiteAlteracoes;
+    private final int limiteCompactacao;
+    private final Formato formatoAgendamentos;
+    private final boolean threadsVirtuais;
+
+    @Autowired
+    public PersistenciaConfig(@Value("${persistencia.modo:JOURNAL}") Modo modo,
+                              @Value("${persistencia.intervalo-gravacao-ms:1000}") long intervaloGravacaoMs,
+                              @Value("${persistencia.limite-alteracoes:100}") int limiteAlteracoes,
+                              @Value("${persistencia.limite-compactacao:10000}") int limiteCompactacao,
+                              @Value("${persistencia.formato-agendamentos:JSON}") Formato formatoAgendamentos,
+                              @Value("${spring.threads.virtual.enabled:false}") boolean threadsVirtuais) {
+        this.modo = modo;
+        this.intervaloGravacaoMs = intervaloGravacaoMs;
+        this.limiteAlteracoes = limiteAlteracoes;
+        this.limiteCompactacao = limiteCompactacao;
+        this.formatoAgendamentos = formatoAgendamentos;
+        this.threadsVirtuais = threadsVirtuais;
+    }
+
+    public PersistenciaConfig(Modo modo, long intervaloGravacaoMs, int limiteAlteracoes, int limiteCompactacao,
+                              Formato formatoAgendamentos) {
+        this(modo, intervaloGravacaoMs, limiteAlteracoes, limiteCompactacao, formatoAgendamentos, false);
+    }
+
+    public PersistenciaConfig(Modo modo, long intervaloGravacaoMs, int limiteAlteracoes, int limiteCompactacao) {
+        this(modo, intervaloGravacaoMs, limiteAlteracoes, limiteCompactacao, Formato.JSON);
+    }
+
+    public Modo getModo() {
+        return modo;
+    }
+
+    // intervalo máximo entre uma alteração e a sua gravação (snapshot) ou fsync (journal)
+    public long getIntervaloGravacaoMs() {
+        return intervaloGravacaoMs;
+    }
+
+    // quantidade de alterações pendentes que antecipa a gravação (snapshot) ou o fsync (journal)
+    public int getLimiteAlteracoes() {
+        return limiteAlteracoes;
+    }
+
+    // quantidade de registros no journal que dispara a compactação no arquivo json
+    public int getLimiteCompactacao() {
+        return limiteCompactacao;
+    }
+
+    public Formato getFormatoAgendamentos() {
+        return formatoAgendamentos;
+    }
+
+    // acompanha spring.threads.virtual.enabled: a gravação em segundo plano também roda numa thread virtual
+    public boolean isThreadsVirtuais() {
+        return threadsVirtuais;
+    }
+}
@@ -3,7 +3,13 @@ package com.api.agendamentos.controllers;
 import com.api.agendamentos.exceptions.BadRequestException;
 import com.api.agendamentos.exceptions.InvalidFormatException;
 import com.api.agendamentos.models.Agendamentos;
+import com.api.agendamentos.models.FiltroAgendamentos;
+import com.api.agendamentos.models.HorarioDisponivel;
+import com.api.agendamentos.models.HorariosDisponiveisDia;
+import com.api.agendamentos.models.Pagina;
+import com.api.agendamentos.models.ResultadoLote;
 import com.api.agendamentos.services.AgendamentosService;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.ArraySchema;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -15,60 +21,149 @@ import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDate;
-import java.time.LocalDateTime;
 import java.time.format.DateTimeParseException;
+import java.util.Iterator;
 import java.util.List;
+import java.util.stream.Stream;
 
 @RestController
 @RequestMapping("/agendamentos")
 public class AgendamentosController {
 
+    private static final String HEADER_TOTAL = "X-Total-Count";
+    private static final String HEADER_PROXIMO_CURSOR = "X-Proximo-Cursor";
+    private static final int TAMANHO_PAGINA_PADRAO = 20;
+
     private final AgendamentosService agendamentosService;
+    private final ObjectMapper objectMapper;
 
     @Autowired
-    public AgendamentosController(AgendamentosService agendamentosService) {
+    public AgendamentosController(AgendamentosService agendamentosService, ObjectMapper objectMapper) {
         this.agendamentosService = agendamentosService;
+        this.objectMapper = objectMapper;
     }
 
-    @Operation(summary = "Buscar agendamentos", description = "Retorna uma lista com todos os agendamentos feitos.")
+    @Operation(summary = "Buscar agendamentos", description = "Retorna uma lista com todos os agendamentos feitos, enviada à medida que é lida. Informando algum filtro (filial, idUsuario, status, servico, inicio, fim), cursor ou limite, retorna uma página dos agendamentos filtrados, ordenados por dataHora; o cursor da próxima página vem no header X-Proximo-Cursor, ausente na última página.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Agendamentos encontrados", content = { @Content(mediaType = "application/json", array = @ArraySchema(schema = @Schema(implementation = Agendamentos.class))) }),
+            @ApiResponse(responseCode = "400", description = "Filtro, cursor ou limite inválido")
+    })
     @GetMapping
-    public ResponseEntity<List<Agendamentos>> getAgendamentos() {
-        List<Agendamentos> agendamentos = agendamentosService.getAgendamentos();
-        return ResponseEntity.ok(agendamentos);
+    public ResponseEntity<StreamingResponseBody> getAgendamentos(@RequestParam(required = false) String filial,
+                                                                 @RequestParam(required = false) String idUsuario,
+                                                                 @RequestParam(required = false) Agendamentos.statusAgendamento status,
+                                                                 @RequestParam(required = false) Agendamentos.TipoServico servico,
+                                                                 @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate inicio,
+                                                                 @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fim,
+                                                                 @RequestParam(required = false) String cursor,
+                                                                 @RequestParam(required = false) Integer limite) {
+        if (filial == null && idUsuario == null && status == null && servico == null && inicio == null && fim == null
+                && cursor == null && limite == null) {
+            return RespostaStreaming.json(objectMapper, agendamentosService.iterarAgendamentos());
+        }
+        FiltroAgendamentos filtro = new FiltroAgendamentos(filial, idUsuario, status, servico, inicio, fim);
+        Pagina<Agendamentos> pagina = agendamentosService.buscarAgendamentos(filtro, cursor,
+                limite == null ? TAMANHO_PAGINA_PADRAO : limite);
+        ResponseEntity.BodyBuilder resposta = ResponseEntity.ok();
+        if (pagina.getProximoCursor() != null) {
+            resposta.header(HEADER_PROXIMO_CURSOR, pagina.getProximoCursor());
+        }
+        return RespostaStreaming.json(resposta, objectMapper, pagina.getItens().iterator());
     }
 
-    @Operation(summary = "Buscar agendamentos do usuário", description = "Retorna uma lista com todos os agendamentos feitos por um usuário recebendo como parâmetro seu ID.")
+    @Operation(summary = "Exportar agendamentos", description = "Exporta todos os agendamentos que atendem aos filtros (filial, idUsuario, status, servico, inicio, fim), ordenados por dataHora. A resposta é enviada à medida que os agendamentos são lidos, como array JSON (formato=json) ou um agendamento por linha (formato=ndjson, padrão).")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Agendamentos exportados", content = {
+                    @Content(mediaType = "application/x-ndjson", schema = @Schema(implementation = Agendamentos.class)),
+                    @Content(mediaType = "application/json", array = @ArraySchema(schema = @Schema(implementation = Agendamentos.class))) }),
+            @ApiResponse(responseCode = "400", description = "Filtro ou formato inválido")
+    })
+    @GetMapping("/exportar")
+    public ResponseEntity<StreamingResponseBody> exportarAgendamentos(@RequestParam(required = false) String filial,
+                                                                      @RequestParam(required = false) String idUsuario,
+                                                                      @RequestParam(required = false) Agendamentos.statusAgendamento status,
+                                                                      @RequestParam(required = false) Agendamentos.TipoServico servico,
+                                                                      @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate inicio,
+                                                                      @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fim,
+                                                                      @RequestParam(defaultValue = RespostaStreaming.FORMATO_NDJSON) String formato) {
+        FiltroAgendamentos filtro = new FiltroAgendamentos(filial, idUsuario, status, servico, inicio, fim);
+        Iterator<Agendamentos> agendamentos = agendamentosService.exportarAgendamentos(filtro);
+        return RespostaStreaming.criar(objectMapper, agendamentos, formato);
+    }
+
+    @Operation(summary = "Buscar agendamentos do usuário", description = "Retorna uma lista com os agendamentos feitos por um usuário, ordenados por dataHora, recebendo como parâmetro seu ID. Informando pagina e/ou tamanho, retorna apenas a página solicitada e o total de agendamentos do usuário no header X-Total-Count. A resposta traz um ETag; com If-None-Match igual ao ETag atual a resposta é 304, sem corpo.")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Agendamentos encontrados", content = { @Content(mediaType = "application/json", array = @ArraySchema(schema = @Schema(implementation = Agendamentos.class))) }),
+            @ApiResponse(responseCode = "304", description = "Os agendamentos do usuário não mudaram desde o ETag informado em If-None-Match"),
             @ApiResponse(responseCode = "400", description = "ID de usuário inválido"),
             @ApiResponse(responseCode = "404", description = "Nenhum agendamento encontrado para o usuário")
     })
     @GetMapping("/{idUsuario}")
-    public ResponseEntity<?> getAgendamentosPorUsuario(@PathVariable String idUsuario) {
-            List<Agendamentos> agendamentosUsuario = agendamentosService.getAgendamentosPorUsuario(idUsuario);
-            return ResponseEntity.ok(agendamentosUsuario);
+    public ResponseEntity<?> getAgendamentosPorUsuario(@PathVariable String idUsuario,
+                                                       @RequestParam(required = false) Integer pagina,
+                                                       @RequestParam(required = false) Integer tamanho,
+                                                       WebRequest requisicao) {
+            String versao = agendamentosService.getVersaoAgendamentosPorUsuario(idUsuario);
+            if (RespostaCondicional.naoModificado(requisicao, versao)) {
+                return null;
+            }
+            if (pagina == null && tamanho == null) {
+                List<Agendamentos> agendamentosUsuario = agendamentosService.getAgendamentosPorUsuario(idUsuario);
+                return RespostaCondicional.ok(versao).body(agendamentosUsuario);
+            }
+            List<Agendamentos> agendamentosUsuario = agendamentosService.getAgendamentosPorUsuario(idUsuario,
+                    pagina == null ? 0 : pagina, tamanho == null ? TAMANHO_PAGINA_PADRAO : tamanho);
+            return RespostaCondicional.ok(versao)
+                    .header(HEADER_TOTAL, String.valueOf(agendamentosService.contarAgendamentosPorUsuario(idUsuario)))
+                    .body(agendamentosUsuario);
     }
-    @Operation(summary = "Buscar horários disponíveis", description = "Lista os horários disponíveis para agendamento em uma data especificada")
+    @Operation(summary = "Buscar horários disponíveis", description = "Lista os horários disponíveis para agendamento em uma data especificada, na filial informada (sem filial, na filial padrão), com as vagas restantes em cada um: do serviço informado ou, sem serviço, de todos os serviços somadas. A resposta traz um ETag; com If-None-Match igual ao ETag atual a resposta é 304, sem corpo.")
     @ApiResponses(value = {
-            @ApiResponse(responseCode = "200", description = "Horários disponíveis encontrados", content = { @Content(mediaType = "application/json", array = @ArraySchema(schema = @Schema(implementation = LocalDateTime.class))) }),
+            @ApiResponse(responseCode = "200", description = "Horários disponíveis encontrados", content = { @Content(mediaType = "application/json", array = @ArraySchema(schema = @Schema(implementation = HorarioDisponivel.class))) }),
+            @ApiResponse(responseCode = "304", description = "A disponibilidade não mudou desde o ETag informado em If-None-Match"),
             @ApiResponse(responseCode = "400", description = "Formato de data inválido"),
             @ApiResponse(responseCode = "404", description = "Nenhum horário disponível para a data especificada")
     })
     @GetMapping("/disponiveis")
-    public ResponseEntity<?> getHorariosDisponiveis(@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate data) {
-            List<LocalDateTime> horariosDisponiveis = agendamentosService.getHorariosDisponiveis(data);
+    public ResponseEntity<?> getHorariosDisponiveis(@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate data,
+                                                    @RequestParam(required = false) Agendamentos.TipoServico servico,
+                                                    @RequestParam(required = false) String filial,
+                                                    WebRequest requisicao) {
+            String versao = agendamentosService.getVersaoHorariosDisponiveis(filial, data);
+            if (RespostaCondicional.naoModificado(requisicao, versao)) {
+                return null;
+            }
+            List<HorarioDisponivel> horariosDisponiveis = agendamentosService.getHorariosDisponiveis(filial, data, servico);
 
             if (horariosDisponiveis.isEmpty()) {
                 return ResponseEntity.status(HttpStatus.NOT_FOUND)
                         .body("Não há horários disponíveis para a data especificada.");
             }
-            return ResponseEntity.ok(horariosDisponiveis);
+            return RespostaCondicional.ok(versao).body(horariosDisponiveis);
+    }
+
+    @Operation(summary = "Buscar horários disponíveis por período", description = "Lista os horários disponíveis para agendamento em cada dia do período informado (inclusive), na filial informada (sem filial, na filial padrão), com as vagas restantes em cada um, opcionalmente para um serviço. A resposta é enviada à medida que cada dia é calculado.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Horários disponíveis de cada dia do período", content = { @Content(mediaType = "application/json", array = @ArraySchema(schema = @Schema(implementation = HorariosDisponiveisDia.class))) }),
+            @ApiResponse(responseCode = "400", description = "Período inválido")
+    })
+    @GetMapping("/disponiveis/periodo")
+    public ResponseEntity<StreamingResponseBody> getHorariosDisponiveisPeriodo(@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate inicio,
+                                                                               @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fim,
+                                                                               @RequestParam(required = false) Agendamentos.TipoServico servico,
+                                                                               @RequestParam(required = false) String filial) {
+        // a validação acontece aqui, antes de a resposta começar a ser enviada
+        Stream<HorariosDisponiveisDia> dias = agendamentosService.getHorariosDisponiveisPeriodo(filial, inicio, fim, servico);
+
+        return RespostaStreaming.json(objectMapper, dias.iterator());
     }
 
-    @Operation(summary = "Criar agendamento", description = "Cria um novo agendamento.")
+    @Operation(summary = "Criar agendamento", description = "Cria um novo agendamento na filial informada em idFilial (sem filial, na filial padrão).")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "201", description = "Agendamento criado com sucesso", content = { @Content(mediaType = "application/json", schema = @Schema(implementation = Agendamentos.class)) }),
             @ApiResponse(responseCode = "400", description = "Requisição inválida"),
@@ -76,12 +171,40 @@ public class AgendamentosController {
     @PostMapping
     public ResponseEntity<?> createAgendamento(@RequestBody Agendamentos novoAgendamento) {
             Agendamentos createdAgendamento = agendamentosService.createAgendamento(
+                    novoAgendamento.getIdFilial(),
                     novoAgendamento.getIdUsuario(),
                     novoAgendamento.getServico(),
                     novoAgendamento.getDataHora()
             );
             return ResponseEntity.status(HttpStatus.CREATED).body("Agendamento criado com sucesso.");
         }
+    @Operation(summary = "Criar agendamentos em lote", description = "Cria até 1000 agendamentos de uma vez, validados juntos e gravados numa única gravação. No modo TUDO_OU_NADA (padrão) nenhum é criado se algum item falhar; no modo MELHOR_ESFORCO os itens válidos são criados mesmo assim. A resposta traz o resultado de cada item, na ordem enviada.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "201", description = "Todos os agendamentos criados", content = { @Content(mediaType = "application/json", schema = @Schema(implementation = ResultadoLote.class)) }),
+            @ApiResponse(responseCode = "207", description = "Modo MELHOR_ESFORCO com algum item recusado; os demais foram criados"),
+            @ApiResponse(responseCode = "400", description = "Lote inválido ou, no modo TUDO_OU_NADA, algum item recusado; nada foi criado"),
+            @ApiResponse(responseCode = "409", description = "Modo TUDO_OU_NADA disputando os mesmos horários com outras reservas até desistir; nada foi criado")
+    })
+    @PostMapping("/lote")
+    public ResponseEntity<ResultadoLote> createAgendamentosEmLote(@RequestBody List<Agendamentos> novosAgendamentos,
+                                                                  @RequestParam(defaultValue = "TUDO_OU_NADA") ResultadoLote.Modo modo) {
+        ResultadoLote resultado = agendamentosService.criarAgendamentosEmLote(novosAgendamentos, modo);
+        return ResponseEntity.status(statusLote(resultado, HttpStatus.CREATED)).body(resultado);
+    }
+
+    @Operation(summary = "Cancelar agendamentos em lote", description = "Cancela até 1000 agendamentos de uma vez, recebendo a lista de ids. No modo TUDO_OU_NADA (padrão) nenhum é cancelado se algum item falhar; no modo MELHOR_ESFORCO os demais são cancelados mesmo assim. A resposta traz o resultado de cada item, na ordem enviada.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Todos os agendamentos cancelados", content = { @Content(mediaType = "application/json", schema = @Schema(implementation = ResultadoLote.class)) }),
+            @ApiResponse(responseCode = "207", description = "Modo MELHOR_ESFORCO com algum item recusado; os demais foram cancelados"),
+            @ApiResponse(responseCode = "400", description = "Lote inválido ou, no modo TUDO_OU_NADA, algum item recusado; nada foi cancelado")
+    })
+    @PostMapping("/lote/cancelamentos")
+    public ResponseEntity<ResultadoLote> cancelarAgendamentosEmLote(@RequestBody List<String> idsAgendamentos,
+                                                                    @RequestParam(defaultValue = "TUDO_OU_NADA") ResultadoLote.Modo modo) {
+        ResultadoLote resultado = agendamentosService.cancelarAgendamentosEmLote(idsAgendamentos, modo);
+        return ResponseEntity.status(statusLote(resultado, HttpStatus.OK)).body(resultado);
+    }
+
     @Operation(summary = "Cancelar agendamento", description = "Realiza o cancelamento do agendamento de id especificado.")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Agendamento cancelado com sucesso"),
@@ -94,5 +217,12 @@ public class AgendamentosController {
         agendamentosService.cancelarAgendamento(idAgendamento);
         return ResponseEntity.ok("Agendamento cancelado com sucesso.");
     }
-}
 
+    // com algum item recusado: 207 no modo MELHOR_ESFORCO (os demais foram aplicados), 400 no TUDO_OU_NADA
+    private static HttpStatus statusLote(ResultadoLote resultado, HttpStatus sucesso) {
+        if (resultado.getFalhas() == 0) {
+            return sucesso;
+        }
+        return resultado.getModo() == ResultadoLote.Modo.TUDO_OU_NADA ? HttpStatus.BAD_REQUEST : HttpStatus.MULTI_STATUS;
+    }
+}
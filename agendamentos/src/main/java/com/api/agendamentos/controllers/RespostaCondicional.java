@@ -0,0 +1,29 @@
+package com.api.agendamentos.controllers;
+
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.WebRequest;
+
+// consultas com ETag forte. A versão do recurso é lida antes da consulta e, se o If-None-Match da requisição já
+// traz essa versão, a resposta é um 304 sem corpo e a consulta nem é feita. As respostas podem ser guardadas pelo
+// cliente, mas são revalidadas a cada uso (no-cache), já que a versão muda sem aviso.
+final class RespostaCondicional {
+
+    private RespostaCondicional() {
+    }
+
+    static String etag(String versao) {
+        return "\"" + versao + "\"";
+    }
+
+    // true quando a versão do cliente é a atual: o 304 já foi preparado e o controller devolve null
+    static boolean naoModificado(WebRequest requisicao, String versao) {
+        return requisicao.checkNotModified(etag(versao));
+    }
+
+    static ResponseEntity.BodyBuilder ok(String versao) {
+        return ResponseEntity.ok()
+                .eTag(etag(versao))
+                .cacheControl(CacheControl.noCache());
+    }
+}
@@ -0,0 +1,86 @@
+package com.api.agendamentos.controllers;
+
+import com.api.agendamentos.exceptions.BadRequestException;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.util.Iterator;
+
+// respostas que escrevem os registros à medida que são lidos do iterador, sem montar a lista inteira em memória.
+// O gerador só acumula o próprio buffer e é esvaziado para o cliente a cada REGISTROS_POR_FLUSH registros.
+final class RespostaStreaming {
+    static final String FORMATO_JSON = "json";
+    static final String FORMATO_NDJSON = "ndjson";
+
+    private static final int REGISTROS_POR_FLUSH = 500;
+
+    private RespostaStreaming() {}
+
+    static ResponseEntity<StreamingResponseBody> criar(ObjectMapper objectMapper, Iterator<?> registros, String formato) {
+        if (FORMATO_JSON.equalsIgnoreCase(formato)) {
+            return json(objectMapper, registros);
+        }
+        if (FORMATO_NDJSON.equalsIgnoreCase(formato)) {
+            return ndjson(objectMapper, registros);
+        }
+        throw new BadRequestException("Formato inválido. Use json ou ndjson.");
+    }
+
+    static ResponseEntity<StreamingResponseBody> json(ObjectMapper objectMapper, Iterator<?> registros) {
+        return json(ResponseEntity.ok(), objectMapper, registros);
+    }
+
+    // um array JSON
+    static ResponseEntity<StreamingResponseBody> json(ResponseEntity.BodyBuilder resposta, ObjectMapper objectMapper,
+                                                      Iterator<?> registros) {
+        ObjectWriter writer = writer(objectMapper);
+        StreamingResponseBody corpo = saida -> {
+            try (JsonGenerator gerador = objectMapper.getFactory().createGenerator(saida)) {
+                gerador.writeStartArray();
+                escrever(writer, gerador, registros, false);
+                gerador.writeEndArray();
+            }
+        };
+        return resposta.contentType(MediaType.APPLICATION_JSON).body(corpo);
+    }
+
+    // um objeto JSON por linha (application/x-ndjson)
+    static ResponseEntity<StreamingResponseBody> ndjson(ObjectMapper objectMapper, Iterator<?> registros) {
+        ObjectWriter writer = writer(objectMapper);
+        StreamingResponseBody corpo = saida -> {
+            try (JsonGenerator gerador = objectMapper.getFactory().createGenerator(saida)) {
+                gerador.setRootValueSeparator(null);
+                escrever(writer, gerador, registros, true);
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(corpo);
+    }
+
+    // sem flush a cada registro e sem indentação, que quebraria o formato de uma linha por registro
+    private static ObjectWriter writer(ObjectMapper objectMapper) {
+        return objectMapper.writer()
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+                .without(SerializationFeature.INDENT_OUTPUT);
+    }
+
+    private static void escrever(ObjectWriter writer, JsonGenerator gerador, Iterator<?> registros,
+                                 boolean umPorLinha) throws IOException {
+        int pendentes = 0;
+        while (registros.hasNext()) {
+            writer.writeValue(gerador, registros.next());
+            if (umPorLinha) {
+                gerador.writeRaw('\n');
+            }
+            if (++pendentes == REGISTROS_POR_FLUSH) {
+                gerador.flush();
+                pendentes = 0;
+            }
+        }
+    }
+}
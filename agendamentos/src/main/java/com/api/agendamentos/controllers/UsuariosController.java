@@ -1,45 +1,86 @@
 package com.api.agendamentos.controllers;
 
+import com.api.agendamentos.models.Pagina;
+import com.api.agendamentos.models.ResultadoImportacao;
 import com.api.agendamentos.models.Usuarios;
 import com.api.agendamentos.services.UsuariosService;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.exc.InvalidFormatException;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.converter.HttpMessageNotReadableException;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.InputStream;
 import java.util.List;
 
 @RestController
 @RequestMapping("/usuarios")
 public class UsuariosController {
 
+    private static final String HEADER_PROXIMO_CURSOR = "X-Proximo-Cursor";
+    private static final int TAMANHO_PAGINA_PADRAO = 20;
+    private static final String TEXT_CSV = "text/csv";
+    private static final String APPLICATION_NDJSON = "application/x-ndjson";
+
     private final UsuariosService usuariosService;
+    private final ObjectMapper objectMapper;
 
     @Autowired
-    public UsuariosController(UsuariosService usuariosService) {
+    public UsuariosController(UsuariosService usuariosService, ObjectMapper objectMapper) {
         this.usuariosService = usuariosService;
+        this.objectMapper = objectMapper;
     }
 
-    @Operation(summary = "Listar usuários", description = "Retorna a lista de todos os usuários.")
+    @Operation(summary = "Listar usuários", description = "Retorna a lista de todos os usuários, enviada à medida que é lida. Informando cursor ou limite, retorna uma página dos usuários em ordem de ID; o cursor da próxima página vem no header X-Proximo-Cursor, ausente na última página.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Usuários encontrados"),
+            @ApiResponse(responseCode = "400", description = "Cursor ou limite inválido")})
     @GetMapping
-    public List<Usuarios> getUsuarios() {
-        return usuariosService.getUsuarios();
+    public ResponseEntity<StreamingResponseBody> getUsuarios(@RequestParam(required = false) String cursor,
+                                                             @RequestParam(required = false) Integer limite) {
+        if (cursor == null && limite == null) {
+            return RespostaStreaming.json(objectMapper, usuariosService.iterarUsuarios());
+        }
+        Pagina<Usuarios> pagina = usuariosService.buscarUsuarios(cursor, limite == null ? TAMANHO_PAGINA_PADRAO : limite);
+        ResponseEntity.BodyBuilder resposta = ResponseEntity.ok();
+        if (pagina.getProximoCursor() != null) {
+            resposta.header(HEADER_PROXIMO_CURSOR, pagina.getProximoCursor());
+        }
+        return RespostaStreaming.json(resposta, objectMapper, pagina.getItens().iterator());
+    }
+
+    @Operation(summary = "Exportar usuários", description = "Exporta todos os usuários em ordem de cadastro. A resposta é enviada à medida que os usuários são lidos, como array JSON (formato=json) ou um usuário por linha (formato=ndjson, padrão).")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Usuários exportados"),
+            @ApiResponse(responseCode = "400", description = "Formato inválido")})
+    @GetMapping("/exportar")
+    public ResponseEntity<StreamingResponseBody> exportarUsuarios(@RequestParam(defaultValue = RespostaStreaming.FORMATO_NDJSON) String formato) {
+        return RespostaStreaming.criar(objectMapper, usuariosService.iterarUsuarios(), formato);
     }
 
-    @Operation(summary = "Buscar usuário por ID", description = "Retorna um usuário específico com base no ID.")
+    @Operation(summary = "Buscar usuário por ID", description = "Retorna um usuário específico com base no ID. O header ETag traz a versão do usuário, a ser enviada em If-Match na atualização; com If-None-Match igual ao ETag atual a resposta é 304, sem corpo.")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Usuário encontrado com sucesso"),
+            @ApiResponse(responseCode = "304", description = "O usuário não mudou desde o ETag informado em If-None-Match"),
             @ApiResponse(responseCode = "404", description = "Usuário não encontrado")})
     @GetMapping("/{id}")
-    public ResponseEntity<?> getUsuarioPorId(@PathVariable String id) {
+    public ResponseEntity<?> getUsuarioPorId(@PathVariable String id, WebRequest requisicao) {
         Usuarios usuario = usuariosService.getUsuarioPorId(id);
-        return ResponseEntity.ok(usuario);
+        String versao = String.valueOf(usuario.getVersao());
+        if (RespostaCondicional.naoModificado(requisicao, versao)) {
+            return null;
+        }
+        return RespostaCondicional.ok(versao).body(usuario);
     }
 
     @Operation(summary = "Criar novo usuário", description = "Cria um novo usuário com base nos dados fornecidos.")
@@ -57,20 +98,54 @@ public class UsuariosController {
         return ResponseEntity.status(HttpStatus.CREATED).body("Usuário cadastrado com sucesso.");
     }
 
-    @Operation(summary = "Atualizar usuário", description = "Atualiza um usuário existente com base no ID.")
+    @Operation(summary = "Importar usuários", description = "Cadastra os usuários de um arquivo CSV (text/csv, com cabeçalho nome,email,dataNascimento) ou NDJSON (application/x-ndjson, um usuário por linha), lido à medida que é enviado. Os registros são validados como no cadastro individual e os inválidos ou com email já cadastrado são recusados sem interromper a importação; o relatório lista as linhas recusadas.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Importação concluída; o relatório traz os importados e os recusados"),
+            @ApiResponse(responseCode = "400", description = "Arquivo ilegível ou cabeçalho CSV inválido"),
+            @ApiResponse(responseCode = "415", description = "Formato de arquivo não suportado")
+    })
+    @PostMapping(value = "/importar", consumes = {TEXT_CSV, APPLICATION_NDJSON})
+    public ResponseEntity<ResultadoImportacao> importarUsuarios(@RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType tipo,
+                                                                InputStream corpo) {
+        String formato = MediaType.valueOf(TEXT_CSV).isCompatibleWith(tipo) ? "csv" : "ndjson";
+        return ResponseEntity.ok(usuariosService.importarUsuarios(corpo, formato));
+    }
+
+    @Operation(summary = "Atualizar usuário", description = "Atualiza um usuário existente com base no ID. Com o header If-Match (o ETag lido na busca), a atualização só é feita se o usuário ainda estiver nessa versão; o ETag da nova versão vem na resposta.")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Usuário atualizado com sucesso"),
             @ApiResponse(responseCode = "400", description = "Requisição inválida"),
-            @ApiResponse(responseCode = "404", description = "Usuário não encontrado")
+            @ApiResponse(responseCode = "404", description = "Usuário não encontrado"),
+            @ApiResponse(responseCode = "412", description = "O usuário foi alterado depois da versão informada em If-Match")
     })
     @PutMapping("/{id}")
-    public ResponseEntity<?> updateUsuario(@PathVariable String id, @RequestBody Usuarios usuarioAtualizado) {
+    public ResponseEntity<?> updateUsuario(@PathVariable String id, @RequestBody Usuarios usuarioAtualizado,
+                                           @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         Usuarios updatedUsuario = usuariosService.atualizarUsuarios(
                 id,
                 usuarioAtualizado.getNome(),
                 usuarioAtualizado.getEmail(),
-                usuarioAtualizado.getDataNascimento()
+                usuarioAtualizado.getDataNascimento(),
+                versaoEsperada(ifMatch)
         );
-        return ResponseEntity.ok("Usuário atualizado com sucesso.");
+        return ResponseEntity.ok().eTag(RespostaCondicional.etag(String.valueOf(updatedUsuario.getVersao())))
+                .body("Usuário atualizado com sucesso.");
+    }
+
+    // If-Match ausente ou "*" não exige versão; um ETag que não é de usuário (fraco, vários, malformado)
+    // nunca confere com a versão atual, então vira uma versão inexistente e a atualização é recusada com 412
+    private static Long versaoEsperada(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String etag = ifMatch.trim();
+        if (etag.length() > 2 && etag.startsWith("\"") && etag.endsWith("\"")) {
+            try {
+                return Long.parseLong(etag.substring(1, etag.length() - 1));
+            } catch (NumberFormatException e) {
+                // tratado como versão inexistente
+            }
+        }
+        return -1L;
     }
 }
@@ -2,6 +2,7 @@ package com.api.agendamentos.exceptions;
 
 import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.exc.InvalidFormatException;
+import org.springframework.dao.ConcurrencyFailureException;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -28,6 +29,21 @@ public class GlobalExceptionHandler {
                 .body(ex.getMessage());
     }
 
+    @ExceptionHandler(PreconditionFailedException.class)
+    @ResponseStatus(HttpStatus.PRECONDITION_FAILED)
+    public ResponseEntity<String> handlePreconditionFailedException(PreconditionFailedException ex) {
+        return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED)
+                .body(ex.getMessage());
+    }
+
+    // a operação disputou os mesmos registros com outras requisições até desistir (ex.: lote tudo ou nada)
+    @ExceptionHandler(ConcurrencyFailureException.class)
+    @ResponseStatus(HttpStatus.CONFLICT)
+    public ResponseEntity<String> handleConcurrencyFailureException(ConcurrencyFailureException ex) {
+        return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body("Outras requisições alteraram os mesmos horários ao mesmo tempo. Tente novamente.");
+    }
+
     @ExceptionHandler(InvalidFormatException.class)
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     public ResponseEntity<String> handleInvalidFormatException(InvalidFormatException ex) {
@@ -47,6 +63,11 @@ public class GlobalExceptionHandler {
     public ResponseEntity<String> handleHttpMessageNotReadable(HttpMessageNotReadableException ex) {
         Throwable rootCause = ex.getRootCause();
 
+        // lançada por um deserializer (ex.: config.DataHoraDeserializer) e embrulhada pelo Jackson
+        if (rootCause instanceof BadRequestException) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(rootCause.getMessage());
+        }
         if (rootCause instanceof JsonMappingException) {
             JsonMappingException jsonMappingException = (JsonMappingException) rootCause;
 
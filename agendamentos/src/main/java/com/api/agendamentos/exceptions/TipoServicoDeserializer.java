@@ -11,9 +11,9 @@ import java.io.IOException;
 public class TipoServicoDeserializer extends JsonDeserializer<Agendamentos.TipoServico> {
     @Override
     public Agendamentos.TipoServico deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
-        String value = p.getValueAsString().toUpperCase();
-        if (Agendamentos.TipoServico.contains(value)) {
-            return Agendamentos.TipoServico.valueOf(value);
+        Agendamentos.TipoServico servico = Agendamentos.TipoServico.buscarIgnorandoCaixa(p.getValueAsString());
+        if (servico != null) {
+            return servico;
         } else {
             throw new IllegalArgumentException("Serviço inválido. Escolha um serviço válido.");
         }
@@ -0,0 +1,60 @@
+package com.api.agendamentos.ferramentas;
+
+import com.api.agendamentos.models.Agendamentos;
+import com.api.agendamentos.repository.ArmazenamentoArquivo;
+import com.api.agendamentos.repository.ArmazenamentoBinarioAgendamentos;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+// converte os agendamentos entre o arquivo json e o formato binário (persistencia.formato-agendamentos=BINARIO).
+// Deve ser usado com a aplicação parada. A partir do jar da aplicação:
+//   java -cp agendamentos.jar -Dloader.main=com.api.agendamentos.ferramentas.ConversorAgendamentos \
+//        org.springframework.boot.loader.launch.PropertiesLauncher importar agendamentos.json agendamentos.bin
+public final class ConversorAgendamentos {
+
+    private ConversorAgendamentos() {}
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3) {
+            usoIncorreto();
+            return;
+        }
+        Path origem = Path.of(args[1]);
+        Path destino = Path.of(args[2]);
+        switch (args[0]) {
+            case "importar" -> importar(origem, destino);
+            case "exportar" -> exportar(origem, destino);
+            default -> usoIncorreto();
+        }
+    }
+
+    // json (incluindo o journal ao lado dele, se houver) -> binário
+    public static int importar(Path json, Path binario) throws IOException {
+        List<Agendamentos> agendamentos = ArmazenamentoArquivo.lerArquivo(json, Agendamentos.class, Agendamentos::getIdAgendamento);
+        ArmazenamentoBinarioAgendamentos.gravar(binario, agendamentos);
+        System.out.println(agendamentos.size() + " agendamentos importados para " + binario);
+        return agendamentos.size();
+    }
+
+    // binário -> json
+    public static int exportar(Path binario, Path json) throws IOException {
+        // um journal antigo ao lado do json seria reaplicado por cima dos agendamentos exportados
+        Path journal = ArmazenamentoArquivo.caminhoJournal(json.toAbsolutePath());
+        if (Files.exists(journal)) {
+            throw new IOException("Já existe um journal em " + journal + ". Remova-o antes de exportar.");
+        }
+        List<Agendamentos> agendamentos = ArmazenamentoBinarioAgendamentos.ler(binario);
+        ArmazenamentoArquivo.gravarArquivo(json, agendamentos);
+        System.out.println(agendamentos.size() + " agendamentos exportados para " + json);
+        return agendamentos.size();
+    }
+
+    private static void usoIncorreto() {
+        System.err.println("Uso: ConversorAgendamentos importar <arquivo.json> <arquivo.bin>");
+        System.err.println("     ConversorAgendamentos exportar <arquivo.bin> <arquivo.json>");
+        System.exit(1);
+    }
+}
@@ -1,50 +1,109 @@
 package com.api.agendamentos.models;
 
+import com.api.agendamentos.config.DataHoraDeserializer;
 import com.api.agendamentos.exceptions.TipoServicoDeserializer;
 import com.fasterxml.jackson.annotation.JsonFormat;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import org.springframework.format.annotation.DateTimeFormat;
 
+import java.time.LocalDateTime;
 import java.util.UUID;
+import java.util.regex.Pattern;
 
 public class Agendamentos {
 
+    // filial dos agendamentos feitos sem informar a filial (e de todos os gravados antes das filiais)
+    public static final String FILIAL_PADRAO = "matriz";
+    // o id da filial também compõe o nome do arquivo dos seus agendamentos
+    private static final Pattern FILIAL = Pattern.compile("[a-z0-9_-]{1,40}");
+
     public enum statusAgendamento{
         AGENDADO, CANCELADO
     }
     public enum TipoServico {
         SERVICO1, SERVICO2, SERVICO3, SERVICO4, servico1, servico2, servico3, servico4;
 
+        // values() devolve uma cópia nova do array a cada chamada; as buscas usam esta, criada uma vez
+        private static final TipoServico[] VALORES = values();
+
         public static boolean contains(String value) {
-            for (TipoServico tipoServico : values()) {
+            for (TipoServico tipoServico : VALORES) {
                 if (tipoServico.name().equals(value)) {
                     return true;
                 }
             }
             return false;
         }
+
+        // busca sem diferenciar maiúsculas de minúsculas e sem alocar; as constantes em maiúsculas vêm primeiro,
+        // então "servico1" resolve para SERVICO1. Retorna null se não houver serviço com o nome
+        public static TipoServico buscarIgnorandoCaixa(String value) {
+            if (value == null) {
+                return null;
+            }
+            for (TipoServico tipoServico : VALORES) {
+                if (tipoServico.name().equalsIgnoreCase(value)) {
+                    return tipoServico;
+                }
+            }
+            return null;
+        }
+
+        // a constante em maiúsculas equivalente (servico1 -> SERVICO1); a capacidade dos horários é contada por ela
+        public TipoServico canonico() {
+            return buscarIgnorandoCaixa(name());
+        }
     }
     private String idAgendamento;
+    // vem no corpo do POST e sai nas respostas e nos arquivos json; na carga vale a filial do arquivo
+    private String idFilial;
     private String idUsuario;
     @JsonDeserialize(using = TipoServicoDeserializer.class)
     private TipoServico servico;
     @DateTimeFormat(pattern = "yyyy-MM-dd'T'HH:mm")
     @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm")
-    private String dataHora;
+    @JsonDeserialize(using = DataHoraDeserializer.class)
+    private LocalDateTime dataHora;
     private statusAgendamento status;
+    // incrementada pelo repositório a cada alteração do agendamento; na carga dos arquivos vale o registro de maior
+    // versão. Agendamentos gravados antes da versão existir são carregados com 0
+    private long versao;
 
     public Agendamentos() {}
-    public Agendamentos(String idUsuario, TipoServico servico, String dataHora) {
+    public Agendamentos(String idUsuario, TipoServico servico, LocalDateTime dataHora) {
         this.idAgendamento = UUID.randomUUID().toString();
+        this.idFilial = FILIAL_PADRAO;
         this.idUsuario = idUsuario;
         this.servico = servico;
         this.dataHora = dataHora;
         this.status = statusAgendamento.AGENDADO;
+        this.versao = 1;
+    }
+    // reconstrói um agendamento já gravado, mantendo o id e o status
+    public Agendamentos(String idAgendamento, String idUsuario, TipoServico servico, LocalDateTime dataHora, statusAgendamento status) {
+        this.idAgendamento = idAgendamento;
+        this.idFilial = FILIAL_PADRAO;
+        this.idUsuario = idUsuario;
+        this.servico = servico;
+        this.dataHora = dataHora;
+        this.status = status;
     }
     public String getIdAgendamento() {
         return idAgendamento;
     }
 
+    public static boolean filialValida(String idFilial) {
+        return idFilial != null && FILIAL.matcher(idFilial).matches();
+    }
+
+    public String getIdFilial() {
+        return idFilial;
+    }
+
+    public void setIdFilial(String idFilial) {
+        this.idFilial = idFilial;
+    }
+
     public String getIdUsuario() {
         return idUsuario;
     }
@@ -57,9 +116,9 @@ public class Agendamentos {
         this.servico = servico;
     }
 
-    public String getDataHora() {return dataHora;}
+    public LocalDateTime getDataHora() {return dataHora;}
 
-    public void setDataHora(String dataHora) {this.dataHora = dataHora;
+    public void setDataHora(LocalDateTime dataHora) {this.dataHora = dataHora;
     }
 
     public statusAgendamento getStatus() {
@@ -69,4 +128,12 @@ public class Agendamentos {
     public void setStatus(statusAgendamento status) {
         this.status = status;
     }
+
+    public long getVersao() {
+        return versao;
+    }
+
+    public void setVersao(long versao) {
+        this.versao = versao;
+    }
 }
@@ -0,0 +1,60 @@
+package com.api.agendamentos.models;
+
+import java.time.LocalDate;
+
+// filtros opcionais da listagem de agendamentos; campos nulos não filtram
+public class FiltroAgendamentos {
+    private String idFilial;
+    private String idUsuario;
+    private Agendamentos.statusAgendamento status;
+    private Agendamentos.TipoServico servico;
+    private LocalDate inicio;
+    private LocalDate fim;
+
+    public FiltroAgendamentos() {}
+
+    public FiltroAgendamentos(String idFilial, String idUsuario, Agendamentos.statusAgendamento status,
+                              Agendamentos.TipoServico servico, LocalDate inicio, LocalDate fim) {
+        this.idFilial = idFilial;
+        this.idUsuario = idUsuario;
+        this.status = status;
+        this.servico = servico;
+        this.inicio = inicio;
+        this.fim = fim;
+    }
+
+    public FiltroAgendamentos(String idUsuario, Agendamentos.statusAgendamento status, Agendamentos.TipoServico servico,
+                              LocalDate inicio, LocalDate fim) {
+        this(null, idUsuario, status, servico, inicio, fim);
+    }
+
+    public String getIdFilial() {
+        return idFilial;
+    }
+
+    public String getIdUsuario() {
+        return idUsuario;
+    }
+
+    public Agendamentos.statusAgendamento getStatus() {
+        return status;
+    }
+
+    public Agendamentos.TipoServico getServico() {
+        return servico;
+    }
+
+    public LocalDate getInicio() {
+        return inicio;
+    }
+
+    public LocalDate getFim() {
+        return fim;
+    }
+
+    public boolean aceita(Agendamentos agendamento) {
+        return (idFilial == null || idFilial.equals(agendamento.getIdFilial()))
+                && (status == null || status == agendamento.getStatus())
+                && (servico == null || servico == agendamento.getServico());
+    }
+}
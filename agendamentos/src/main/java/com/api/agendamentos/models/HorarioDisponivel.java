@@ -0,0 +1,22 @@
+package com.api.agendamentos.models;
+
+import java.time.LocalDateTime;
+
+// um horário com vaga e quantos agendamentos ainda cabem nele
+public class HorarioDisponivel {
+    private final LocalDateTime dataHora;
+    private final int vagas;
+
+    public HorarioDisponivel(LocalDateTime dataHora, int vagas) {
+        this.dataHora = dataHora;
+        this.vagas = vagas;
+    }
+
+    public LocalDateTime getDataHora() {
+        return dataHora;
+    }
+
+    public int getVagas() {
+        return vagas;
+    }
+}
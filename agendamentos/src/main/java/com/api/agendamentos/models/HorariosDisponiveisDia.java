@@ -0,0 +1,22 @@
+package com.api.agendamentos.models;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public class HorariosDisponiveisDia {
+    private final LocalDate data;
+    private final List<HorarioDisponivel> horarios;
+
+    public HorariosDisponiveisDia(LocalDate data, List<HorarioDisponivel> horarios) {
+        this.data = data;
+        this.horarios = horarios;
+    }
+
+    public LocalDate getData() {
+        return data;
+    }
+
+    public List<HorarioDisponivel> getHorarios() {
+        return horarios;
+    }
+}
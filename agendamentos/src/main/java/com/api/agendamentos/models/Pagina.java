@@ -0,0 +1,22 @@
+package com.api.agendamentos.models;
+
+import java.util.List;
+
+// uma página de resultados e o cursor para buscar a próxima (nulo quando não há mais resultados)
+public class Pagina<T> {
+    private final List<T> itens;
+    private final String proximoCursor;
+
+    public Pagina(List<T> itens, String proximoCursor) {
+        this.itens = itens;
+        this.proximoCursor = proximoCursor;
+    }
+
+    public List<T> getItens() {
+        return itens;
+    }
+
+    public String getProximoCursor() {
+        return proximoCursor;
+    }
+}
@@ -0,0 +1,73 @@
+package com.api.agendamentos.models;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// resumo de uma importação de usuarios. Só os primeiros erros são listados, para o relatório não crescer
+// junto com o arquivo; os demais entram apenas na contagem de errosNaoListados
+public class ResultadoImportacao {
+
+    public static class Erro {
+        private final long linha;
+        private final String mensagem;
+
+        public Erro(long linha, String mensagem) {
+            this.linha = linha;
+            this.mensagem = mensagem;
+        }
+
+        public long getLinha() {
+            return linha;
+        }
+
+        public String getMensagem() {
+            return mensagem;
+        }
+    }
+
+    private final int maximoErrosListados;
+    private long registros;
+    private long importados;
+    private long recusados;
+    private final List<Erro> erros = new ArrayList<>();
+    private long errosNaoListados;
+
+    public ResultadoImportacao(int maximoErrosListados) {
+        this.maximoErrosListados = maximoErrosListados;
+    }
+
+    public void registrarImportados(long quantidade) {
+        registros += quantidade;
+        importados += quantidade;
+    }
+
+    public void registrarRecusado(long linha, String mensagem) {
+        registros++;
+        recusados++;
+        if (erros.size() < maximoErrosListados) {
+            erros.add(new Erro(linha, mensagem));
+        } else {
+            errosNaoListados++;
+        }
+    }
+
+    public long getRegistros() {
+        return registros;
+    }
+
+    public long getImportados() {
+        return importados;
+    }
+
+    public long getRecusados() {
+        return recusados;
+    }
+
+    public List<Erro> getErros() {
+        return erros;
+    }
+
+    public long getErrosNaoListados() {
+        return errosNaoListados;
+    }
+}
@@ -0,0 +1,70 @@
+package com.api.agendamentos.models;
+
+import java.util.List;
+
+// resultado de uma operação em lote: o desfecho de cada item, na ordem em que foram enviados
+public class ResultadoLote {
+
+    // TUDO_OU_NADA: se algum item falhar, nenhum é aplicado; MELHOR_ESFORCO: os itens válidos são aplicados mesmo assim
+    public enum Modo {
+        TUDO_OU_NADA, MELHOR_ESFORCO
+    }
+
+    public static class Item {
+        private final int indice;
+        private final String idAgendamento;
+        private final boolean sucesso;
+        private final String erro;
+
+        public Item(int indice, String idAgendamento, boolean sucesso, String erro) {
+            this.indice = indice;
+            this.idAgendamento = idAgendamento;
+            this.sucesso = sucesso;
+            this.erro = erro;
+        }
+
+        public int getIndice() {
+            return indice;
+        }
+
+        public String getIdAgendamento() {
+            return idAgendamento;
+        }
+
+        public boolean isSucesso() {
+            return sucesso;
+        }
+
+        public String getErro() {
+            return erro;
+        }
+    }
+
+    private final Modo modo;
+    private final int sucessos;
+    private final int falhas;
+    private final List<Item> itens;
+
+    public ResultadoLote(Modo modo, List<Item> itens) {
+        this.modo = modo;
+        this.itens = itens;
+        this.sucessos = (int) itens.stream().filter(Item::isSucesso).count();
+        this.falhas = itens.size() - sucessos;
+    }
+
+    public Modo getModo() {
+        return modo;
+    }
+
+    public int getSucessos() {
+        return sucessos;
+    }
+
+    public int getFalhas() {
+        return falhas;
+    }
+
+    public List<Item> getItens() {
+        return itens;
+    }
+}
@@ -16,6 +16,9 @@ public class Usuarios {
    @DateTimeFormat(pattern = "yyyy-MM-dd")
     private String dataNascimento;
     private LocalDateTime dataCriacao;
+    // incrementada a cada atualização aceita pelo repositório; é o ETag do usuário. Usuarios gravados antes
+    // da versão existir são carregados com 0
+    private long versao;
     public Usuarios() {
     }
 
@@ -25,6 +28,27 @@ public class Usuarios {
         this.email = email;
         this.dataNascimento = dataNascimento;
         this.dataCriacao = LocalDateTime.now();
+        this.versao = 1;
+    }
+
+    // reconstrói um usuário já gravado, mantendo o id, a data de criação e a versão
+    public Usuarios(String id, String nome, String email, String dataNascimento, LocalDateTime dataCriacao, long versao) {
+        this.id = id;
+        this.nome = nome;
+        this.email = email;
+        this.dataNascimento = dataNascimento;
+        this.dataCriacao = dataCriacao;
+        this.versao = versao;
+    }
+
+    // cópia usada nas atualizações, para que o registro em memória só mude quando a atualização for aceita
+    public Usuarios(Usuarios outro) {
+        this.id = outro.id;
+        this.nome = outro.nome;
+        this.email = outro.email;
+        this.dataNascimento = outro.dataNascimento;
+        this.dataCriacao = outro.dataCriacao;
+        this.versao = outro.versao;
     }
 
     public String getId() {
@@ -54,4 +78,10 @@ public class Usuarios {
     public void setDataCriacao(LocalDateTime dataCriacao) {
         this.dataCriacao = dataCriacao;
     }
+    public long getVersao() {
+        return versao;
+    }
+    public void setVersao(long versao) {
+        this.versao = versao;
+    }
 }
@@ -1,46 +1,113 @@
 package com.api.agendamentos.repository;
 
 import com.api.agendamentos.models.Agendamentos;
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
-import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
-import org.springframework.stereotype.Repository;
-
-import java.io.File;
-import java.io.IOException;
+import com.api.agendamentos.models.FiltroAgendamentos;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
-@Repository
-public class AgendamentosRepository {
+// armazenamento dos agendamentos. A implementação padrão mantém tudo em memória e persiste em arquivo json
+// (AgendamentosRepositoryArquivo); com o profile "jdbc" os agendamentos ficam num banco relacional (AgendamentosRepositoryJdbc).
+// Cada agendamento pertence a uma filial (idFilial) e as vagas dos horários são contadas separadamente em cada filial.
+public interface AgendamentosRepository {
 
-    private static final String FILE_PATH = "C:\\Users\\VICTO\\Documents\\crafters\\Victoria-Stalino\\api-agendamentos-victoria\\data\\agendamentos_farmacia.json";
-    private ObjectMapper objectMapper = new ObjectMapper();
+    // todos os agendamentos, em ordem de criação
+    List<Agendamentos> getAgendamentos();
 
-    public AgendamentosRepository() {
-        this.objectMapper = new ObjectMapper();
-        this.objectMapper.registerModule(new JavaTimeModule());
-        objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
-        objectMapper.enable(SerializationFeature.INDENT_OUTPUT);
-    }
+    // os mesmos agendamentos de getAgendamentos(), lidos à medida que são consumidos
+    Iterator<Agendamentos> iterarAgendamentos();
+
+    Optional<Agendamentos> getAgendamentoPorId(String idAgendamento);
+
+    // agendamentos do usuário ordenados por dataHora, a partir da posição inicio
+    List<Agendamentos> getAgendamentosPorUsuario(String idUsuario, long inicio, int quantidade);
+
+    int contarAgendamentosPorUsuario(String idUsuario);
+
+    // agendamentos que atendem ao filtro em ordem de (dataHora, idAgendamento), posteriores ao cursor (se houver), até o limite
+    List<Agendamentos> buscarAgendamentos(FiltroAgendamentos filtro, IndiceAgendamentosOrdenados.Chave depoisDe, int limite);
 
-    //carregar os agendamentos do arquivo json
-    public List<Agendamentos> getAgendamentos() {
-        try {
-            return objectMapper.readValue(new File(FILE_PATH), new TypeReference<List<Agendamentos>>() {
-            });
-        } catch (IOException e) {
-            e.printStackTrace();
-            return null;
+    // todos os agendamentos que atendem ao filtro em ordem de (dataHora, idAgendamento), lidos à medida que são consumidos
+    Iterator<Agendamentos> iterarAgendamentos(FiltroAgendamentos filtro);
+
+    // a filial recebe agendamentos: é a filial padrão, está em FiliaisConfig ou já tinha agendamentos ao iniciar
+    boolean atendeFilial(String idFilial);
+
+    // agendamentos ativos (AGENDADO) da filial no horário informado, de qualquer serviço, em ordem de idAgendamento
+    List<Agendamentos> getAgendamentosNoHorario(String idFilial, LocalDateTime dataHora);
+
+    // quantos agendamentos ativos o serviço aceita ao mesmo tempo num horário (CapacidadeConfig);
+    // com servico nulo, a soma de todos os serviços
+    int getCapacidade(Agendamentos.TipoServico servico);
+
+    // vagas restantes do serviço na filial (com servico nulo, de todos os serviços somados) em cada horário do dia
+    // que tem algum agendamento ativo; os horários ausentes do mapa têm getCapacidade(servico) vagas
+    Map<LocalDateTime, Integer> getVagasRestantes(String idFilial, LocalDate data, Agendamentos.TipoServico servico);
+
+    // vagas restantes do serviço na filial em cada um dos horários (todos do mesmo dia), na mesma ordem. É a
+    // consulta da disponibilidade: o armazenamento em arquivo lê direto os contadores do índice, sem montar o mapa
+    default int[] getVagasRestantes(String idFilial, List<LocalDateTime> horarios, Agendamentos.TipoServico servico) {
+        int[] restantes = new int[horarios.size()];
+        if (horarios.isEmpty()) {
+            return restantes;
+        }
+        Map<LocalDateTime, Integer> vagas = getVagasRestantes(idFilial, horarios.get(0).toLocalDate(), servico);
+        int capacidade = getCapacidade(servico);
+        for (int i = 0; i < restantes.length; i++) {
+            restantes[i] = vagas.getOrDefault(horarios.get(i), capacidade);
         }
+        return restantes;
     }
 
-    //escrever/salvar no arquivo json
-    public void salvarAgendamentos(List<Agendamentos> agendamentos) {
-        try {
-            objectMapper.writeValue(new File(FILE_PATH), agendamentos);
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+    // versão dos agendamentos da filial no dia: muda sempre que um agendamento do dia é incluído, alterado ou
+    // removido. É opaca (só serve para comparar com uma versão lida antes, ex.: como ETag) e lida sem percorrer os
+    // agendamentos. Quem lê a versão antes de consultar os dados nunca recebe uma versão nova com dados antigos
+    String getVersaoDia(String idFilial, LocalDate data);
+
+    // o mesmo de getVersaoDia para os agendamentos do usuário, em todas as filiais
+    String getVersaoUsuario(String idUsuario);
+
+    // lança IllegalArgumentException se o agendamento não pode ser gravado no armazenamento configurado (ex.: o
+    // formato binário só guarda ids UUID). Inclusões e alterações fazem a mesma verificação antes de alterar qualquer coisa
+    default void validarAgendamento(Agendamentos agendamento) {
     }
-}
\ No newline at end of file
+
+    // ocupa uma vaga do serviço no horário, na filial do agendamento, e inclui o agendamento numa única operação
+    // atômica; retorna false, sem incluir nada, se o horário já tem tantos agendamentos ativos do serviço quanto a
+    // capacidade (inclusive incluídos em paralelo por outras requisições). Serviços e filiais diferentes não
+    // disputam o horário entre si.
+    boolean reservarHorario(Agendamentos agendamento, LocalDateTime dataHora);
+
+    // reserva uma vaga no horário (dataHora) de cada agendamento do lote, na sua filial, e grava todos de uma vez. Retorna as
+    // posições, na lista, dos agendamentos que não couberam na capacidade do horário (contando os anteriores do
+    // lote). Com tudoOuNada nenhum é incluído se houver alguma posição na resposta; sem, os demais são incluídos.
+    List<Integer> reservarHorarios(List<Agendamentos> agendamentos, boolean tudoOuNada);
+
+    void adicionarAgendamento(Agendamentos agendamento);
+
+    // muda o status do agendamento de AGENDADO para CANCELADO numa única operação atômica, liberando a vaga; retorna
+    // false, sem alterar nada, se o agendamento não existe ou já não está ativo (inclusive se outra requisição o
+    // cancelou em paralelo). O agendamento lido antes por getAgendamentoPorId não é alterado
+    boolean cancelarAgendamento(String idAgendamento);
+
+    // cancela cada agendamento do lote como em cancelarAgendamento e grava todos de uma vez. Retorna as posições, na
+    // lista, dos que não foram cancelados (inexistentes ou já não ativos). Com tudoOuNada nenhum é cancelado se houver
+    // alguma posição na resposta, e nenhum outro cancelamento se intercala entre a verificação e o cancelamento do lote
+    List<Integer> cancelarAgendamentos(List<String> idsAgendamentos, boolean tudoOuNada);
+
+    // registra a alteração de um agendamento já existente (ex.: cancelamento)
+    void atualizarAgendamento(Agendamentos agendamento);
+
+    // registra de uma vez a alteração de vários agendamentos já existentes (ex.: cancelamento em lote)
+    void atualizarAgendamentos(List<Agendamentos> agendamentos);
+
+    // substitui todos os agendamentos
+    void salvarAgendamentos(List<Agendamentos> novosAgendamentos);
+
+    // força a gravação imediata das alterações pendentes
+    void gravarPendentes();
+}
@@ -0,0 +1,517 @@
+package com.api.agendamentos.repository;
+
+import com.api.agendamentos.config.CapacidadeConfig;
+import com.api.agendamentos.config.FiliaisConfig;
+import com.api.agendamentos.config.PersistenciaConfig;
+import com.api.agendamentos.models.Agendamentos;
+import com.api.agendamentos.models.FiltroAgendamentos;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.Lock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+// agendamentos em memória, persistidos em arquivo json (snapshot ou journal); é a implementação usada sem o profile "jdbc".
+// Cada filial é uma partição (ParticaoAgendamentos) com os seus próprios índices, lock e arquivo: a filial padrão
+// usa o arquivo configurado e as demais um arquivo ao lado dele com o id da filial no nome
+// (agendamentos_farmacia.json -> agendamentos_farmacia.centro.json). As operações de uma filial só travam a sua
+// partição; as consultas sem filial intercalam as partições. As partições são todas criadas e carregadas na
+// inicialização, uma para cada filial configurada (FiliaisConfig) ou com arquivo no diretório; nenhuma é criada
+// depois, então a quantidade de arquivos e threads de gravação fica limitada às filiais conhecidas.
+@Repository
+@Profile("!jdbc")
+public class AgendamentosRepositoryArquivo implements AgendamentosRepository {
+
+    private static final Comparator<Agendamentos> ORDEM_DATA_HORA = Comparator.comparing(IndiceAgendamentosOrdenados.Chave::de);
+
+    private final Path arquivoPadrao;
+    private final String prefixoArquivos;
+    private final PersistenciaConfig config;
+    private final CapacidadeConfig capacidade;
+    private final FiliaisConfig filiaisConfiguradas;
+    private final Map<String, ParticaoAgendamentos> particoes = new ConcurrentHashMap<>();
+    private final VersoesAlteracoes versoes = new VersoesAlteracoes();
+
+    @Autowired
+    public AgendamentosRepositoryArquivo(@Value("${agendamentos.arquivo}") String caminhoArquivo, PersistenciaConfig config,
+                                         CapacidadeConfig capacidade, FiliaisConfig filiaisConfiguradas) {
+        this.arquivoPadrao = Paths.get(caminhoArquivo).toAbsolutePath();
+        String nome = arquivoPadrao.getFileName().toString();
+        this.prefixoArquivos = nome.endsWith(".json") ? nome.substring(0, nome.length() - ".json".length()) : nome;
+        this.config = config;
+        this.capacidade = capacidade;
+        this.filiaisConfiguradas = filiaisConfiguradas;
+    }
+
+    public AgendamentosRepositoryArquivo(String caminhoArquivo, PersistenciaConfig config, FiliaisConfig filiaisConfiguradas) {
+        this(caminhoArquivo, config, CapacidadeConfig.unitaria(), filiaisConfiguradas);
+    }
+
+    public AgendamentosRepositoryArquivo(String caminhoArquivo, PersistenciaConfig config, CapacidadeConfig capacidade) {
+        this(caminhoArquivo, config, capacidade, FiliaisConfig.somentePadrao());
+    }
+
+    public AgendamentosRepositoryArquivo(String caminhoArquivo, PersistenciaConfig config) {
+        this(caminhoArquivo, config, FiliaisConfig.somentePadrao());
+    }
+
+    // carrega na inicialização as filiais configuradas e todas as filiais com arquivo no diretório, em paralelo.
+    // Cada partição é carregada antes de ser publicada no mapa
+    @PostConstruct
+    public void carregar() {
+        Set<String> filiais = descobrirFiliais();
+        filiais.addAll(filiaisConfiguradas.getFiliais());
+        List<ParticaoAgendamentos> carregar = new ArrayList<>(filiais.size());
+        for (String filial : filiais) {
+            carregar.add(novaParticao(filial));
+        }
+        // a carga é quase toda leitura de disco, então cada partição usa uma thread virtual
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<?>> cargas = new ArrayList<>(carregar.size());
+            for (ParticaoAgendamentos particao : carregar) {
+                cargas.add(executor.submit(particao::carregar));
+            }
+            for (Future<?> carga : cargas) {
+                aguardar(carga);
+            }
+        }
+        for (ParticaoAgendamentos particao : carregar) {
+            particoes.put(particao.getIdFilial(), particao);
+        }
+    }
+
+    @Override
+    public boolean atendeFilial(String idFilial) {
+        return particoes.containsKey(idFilial);
+    }
+
+    // na ordem de criação dentro de cada filial: primeiro a filial padrão, depois as demais em ordem alfabética
+    @Override
+    public List<Agendamentos> getAgendamentos() {
+        List<Agendamentos> lista = new ArrayList<>();
+        for (ParticaoAgendamentos particao : particoesOrdenadas()) {
+            lista.addAll(particao.getAgendamentos());
+        }
+        return lista;
+    }
+
+    // percorre uma partição de cada vez, sem copiar nenhuma delas
+    @Override
+    public Iterator<Agendamentos> iterarAgendamentos() {
+        Iterator<ParticaoAgendamentos> restantes = particoesOrdenadas().iterator();
+        return new Iterator<>() {
+            private Iterator<Agendamentos> atual = Collections.emptyIterator();
+
+            @Override
+            public boolean hasNext() {
+                while (!atual.hasNext() && restantes.hasNext()) {
+                    atual = restantes.next().iterarAgendamentos();
+                }
+                return atual.hasNext();
+            }
+
+            @Override
+            public Agendamentos next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return atual.next();
+            }
+        };
+    }
+
+    // o id não diz a filial; cada partição é uma consulta O(1) ao seu mapa
+    @Override
+    public Optional<Agendamentos> getAgendamentoPorId(String idAgendamento) {
+        for (ParticaoAgendamentos particao : particoes.values()) {
+            Optional<Agendamentos> agendamento = particao.getAgendamentoPorId(idAgendamento);
+            if (agendamento.isPresent()) {
+                return agendamento;
+            }
+        }
+        return Optional.empty();
+    }
+
+    // um usuário costuma ter agendamentos numa filial só, que então responde sozinha
+    @Override
+    public List<Agendamentos> getAgendamentosPorUsuario(String idUsuario, long inicio, int quantidade) {
+        List<ParticaoAgendamentos> doUsuario = particoes.values().stream()
+                .filter(particao -> particao.contarAgendamentosPorUsuario(idUsuario) > 0)
+                .toList();
+        if (doUsuario.size() <= 1) {
+            return doUsuario.isEmpty() ? List.of() : doUsuario.get(0).getAgendamentosPorUsuario(idUsuario, inicio, quantidade);
+        }
+        FiltroAgendamentos filtro = new FiltroAgendamentos(idUsuario, null, null, null, null);
+        Iterator<Agendamentos> agendamentos = intercalar(doUsuario, filtro, null);
+        List<Agendamentos> pagina = new ArrayList<>(Math.min(quantidade, 100));
+        for (long posicao = 0; agendamentos.hasNext() && pagina.size() < quantidade; posicao++) {
+            Agendamentos agendamento = agendamentos.next();
+            if (posicao >= inicio) {
+                pagina.add(agendamento);
+            }
+        }
+        return pagina;
+    }
+
+    @Override
+    public int contarAgendamentosPorUsuario(String idUsuario) {
+        int total = 0;
+        for (ParticaoAgendamentos particao : particoes.values()) {
+            total += particao.contarAgendamentosPorUsuario(idUsuario);
+        }
+        return total;
+    }
+
+    @Override
+    public List<Agendamentos> buscarAgendamentos(FiltroAgendamentos filtro, IndiceAgendamentosOrdenados.Chave depoisDe, int limite) {
+        Iterator<Agendamentos> agendamentos = filtrar(filtro, depoisDe);
+        List<Agendamentos> pagina = new ArrayList<>(Math.min(limite, 100));
+        while (agendamentos.hasNext() && pagina.size() < limite) {
+            pagina.add(agendamentos.next());
+        }
+        return pagina;
+    }
+
+    @Override
+    public Iterator<Agendamentos> iterarAgendamentos(FiltroAgendamentos filtro) {
+        return filtrar(filtro, null);
+    }
+
+    @Override
+    public List<Agendamentos> getAgendamentosNoHorario(String idFilial, LocalDateTime dataHora) {
+        ParticaoAgendamentos particao = particoes.get(idFilial);
+        return particao == null ? List.of() : particao.getAgendamentosNoHorario(dataHora);
+    }
+
+    @Override
+    public int getCapacidade(Agendamentos.TipoServico servico) {
+        return capacidade.getCapacidade(servico);
+    }
+
+    @Override
+    public Map<LocalDateTime, Integer> getVagasRestantes(String idFilial, LocalDate data, Agendamentos.TipoServico servico) {
+        ParticaoAgendamentos particao = particoes.get(idFilial);
+        return particao == null ? Map.of() : particao.getVagasRestantes(data, servico);
+    }
+
+    @Override
+    public int[] getVagasRestantes(String idFilial, List<LocalDateTime> horarios, Agendamentos.TipoServico servico) {
+        ParticaoAgendamentos particao = particoes.get(idFilial);
+        return particao == null ? AgendamentosRepository.super.getVagasRestantes(idFilial, horarios, servico)
+                : particao.getVagasRestantes(horarios, servico);
+    }
+
+    // filiais sem partição também têm versão, para que a primeira reserva numa filial nova mude a versão do dia
+    @Override
+    public String getVersaoDia(String idFilial, LocalDate data) {
+        return versoes.getVersaoDia(idFilial, data);
+    }
+
+    @Override
+    public String getVersaoUsuario(String idUsuario) {
+        return versoes.getVersaoUsuario(idUsuario);
+    }
+
+    @Override
+    public void validarAgendamento(Agendamentos agendamento) {
+        particao(filial(agendamento)).validar(agendamento);
+    }
+
+    @Override
+    public boolean reservarHorario(Agendamentos agendamento, LocalDateTime dataHora) {
+        return particao(filial(agendamento)).reservarHorario(agendamento, dataHora);
+    }
+
+    // um lote de uma filial só é reservado pela partição. Com várias filiais, no modo tudo ou nada os locks de
+    // escrita de todas elas são tomados (sempre em ordem alfabética, para dois lotes nunca esperarem um pelo
+    // outro) antes de verificar o lote inteiro
+    @Override
+    public List<Integer> reservarHorarios(List<Agendamentos> novosAgendamentos, boolean tudoOuNada) {
+        Map<String, List<Integer>> posicoesPorFilial = new TreeMap<>();
+        for (int i = 0; i < novosAgendamentos.size(); i++) {
+            posicoesPorFilial.computeIfAbsent(filial(novosAgendamentos.get(i)), filial -> new ArrayList<>()).add(i);
+        }
+        if (posicoesPorFilial.size() <= 1) {
+            return novosAgendamentos.isEmpty() ? List.of()
+                    : particao(posicoesPorFilial.keySet().iterator().next()).reservarHorarios(novosAgendamentos, tudoOuNada);
+        }
+
+        Map<ParticaoAgendamentos, List<Integer>> posicoesPorParticao = new LinkedHashMap<>();
+        posicoesPorFilial.forEach((filial, posicoes) -> posicoesPorParticao.put(particao(filial), posicoes));
+        // todas as partições validam os seus itens antes de qualquer uma reservar
+        posicoesPorParticao.forEach((particao, posicoes) -> itens(novosAgendamentos, posicoes).forEach(particao::validar));
+        List<Lock> travas = new ArrayList<>();
+        if (tudoOuNada) {
+            for (ParticaoAgendamentos particao : posicoesPorParticao.keySet()) {
+                travas.add(particao.getLockEscrita());
+            }
+        }
+        List<Integer> ocupados = new ArrayList<>();
+        travas.forEach(Lock::lock);
+        try {
+            if (tudoOuNada) {
+                posicoesPorParticao.forEach((particao, posicoes) -> {
+                    for (int posicao : particao.semVaga(itens(novosAgendamentos, posicoes))) {
+                        ocupados.add(posicoes.get(posicao));
+                    }
+                });
+                if (!ocupados.isEmpty()) {
+                    ocupados.sort(null);
+                    return ocupados;
+                }
+            }
+            posicoesPorParticao.forEach((particao, posicoes) -> {
+                for (int posicao : particao.reservarHorarios(itens(novosAgendamentos, posicoes), false)) {
+                    ocupados.add(posicoes.get(posicao));
+                }
+            });
+        } finally {
+            for (int i = travas.size() - 1; i >= 0; i--) {
+                travas.get(i).unlock();
+            }
+        }
+        ocupados.sort(null);
+        return ocupados;
+    }
+
+    @Override
+    public void adicionarAgendamento(Agendamentos agendamento) {
+        particao(filial(agendamento)).atualizarAgendamento(agendamento);
+    }
+
+    @Override
+    public boolean cancelarAgendamento(String idAgendamento) {
+        ParticaoAgendamentos particao = particaoDoAgendamento(idAgendamento);
+        return particao != null && particao.cancelarAgendamento(idAgendamento);
+    }
+
+    // como em reservarHorarios: um lote de uma filial só é cancelado pela partição; com várias, no modo tudo ou nada
+    // os locks de escrita de todas elas são tomados em ordem alfabética antes de verificar o lote inteiro
+    @Override
+    public List<Integer> cancelarAgendamentos(List<String> idsAgendamentos, boolean tudoOuNada) {
+        List<Integer> recusados = new ArrayList<>();
+        Map<ParticaoAgendamentos, List<Integer>> posicoesPorParticao = new TreeMap<>(Comparator.comparing(ParticaoAgendamentos::getIdFilial));
+        for (int i = 0; i < idsAgendamentos.size(); i++) {
+            ParticaoAgendamentos particao = particaoDoAgendamento(idsAgendamentos.get(i));
+            if (particao == null) {
+                recusados.add(i);
+            } else {
+                posicoesPorParticao.computeIfAbsent(particao, p -> new ArrayList<>()).add(i);
+            }
+        }
+        if (tudoOuNada && !recusados.isEmpty()) {
+            return recusados;
+        }
+
+        List<Lock> travas = new ArrayList<>();
+        if (tudoOuNada && posicoesPorParticao.size() > 1) {
+            for (ParticaoAgendamentos particao : posicoesPorParticao.keySet()) {
+                travas.add(particao.getLockEscrita());
+            }
+        }
+        travas.forEach(Lock::lock);
+        try {
+            if (!travas.isEmpty()) {
+                posicoesPorParticao.forEach((particao, posicoes) -> {
+                    for (int posicao : particao.inativos(itens(idsAgendamentos, posicoes))) {
+                        recusados.add(posicoes.get(posicao));
+                    }
+                });
+                if (!recusados.isEmpty()) {
+                    recusados.sort(null);
+                    return recusados;
+                }
+            }
+            posicoesPorParticao.forEach((particao, posicoes) -> {
+                for (int posicao : particao.cancelarAgendamentos(itens(idsAgendamentos, posicoes), tudoOuNada && travas.isEmpty())) {
+                    recusados.add(posicoes.get(posicao));
+                }
+            });
+        } finally {
+            for (int i = travas.size() - 1; i >= 0; i--) {
+                travas.get(i).unlock();
+            }
+        }
+        recusados.sort(null);
+        return recusados;
+    }
+
+    @Override
+    public void atualizarAgendamento(Agendamentos agendamento) {
+        adicionarAgendamento(agendamento);
+    }
+
+    @Override
+    public void atualizarAgendamentos(List<Agendamentos> alterados) {
+        porFilial(alterados).forEach((filial, agendamentos) -> particao(filial).atualizarAgendamentos(agendamentos));
+    }
+
+    // as filiais que não aparecem na lista ficam vazias
+    @Override
+    public void salvarAgendamentos(List<Agendamentos> novosAgendamentos) {
+        Map<String, List<Agendamentos>> porFilial = porFilial(novosAgendamentos);
+        for (ParticaoAgendamentos particao : particoes.values()) {
+            if (!porFilial.containsKey(particao.getIdFilial()) && !particao.vazia()) {
+                particao.salvarAgendamentos(List.of());
+            }
+        }
+        porFilial.forEach((filial, agendamentos) -> particao(filial).salvarAgendamentos(agendamentos));
+    }
+
+    @Override
+    public void gravarPendentes() {
+        for (ParticaoAgendamentos particao : particoes.values()) {
+            particao.gravarPendentes();
+        }
+    }
+
+    @PreDestroy
+    public void encerrar() {
+        for (ParticaoAgendamentos particao : particoes.values()) {
+            particao.encerrar();
+        }
+    }
+
+    // com filial no filtro só a partição dela é percorrida; sem, as partições são intercaladas por (dataHora, idAgendamento)
+    private Iterator<Agendamentos> filtrar(FiltroAgendamentos filtro, IndiceAgendamentosOrdenados.Chave depoisDe) {
+        if (filtro.getIdFilial() != null) {
+            ParticaoAgendamentos particao = particoes.get(filtro.getIdFilial());
+            return particao == null ? Collections.emptyIterator() : particao.filtrar(filtro, depoisDe).iterator();
+        }
+        return intercalar(new ArrayList<>(particoes.values()), filtro, depoisDe);
+    }
+
+    private static Iterator<Agendamentos> intercalar(List<ParticaoAgendamentos> particoes, FiltroAgendamentos filtro,
+                                                     IndiceAgendamentosOrdenados.Chave depoisDe) {
+        if (particoes.size() == 1) {
+            return particoes.get(0).filtrar(filtro, depoisDe).iterator();
+        }
+        List<Iterator<Agendamentos>> iteradores = new ArrayList<>(particoes.size());
+        for (ParticaoAgendamentos particao : particoes) {
+            iteradores.add(particao.filtrar(filtro, depoisDe).iterator());
+        }
+        return new IteradorIntercalado<>(iteradores, ORDEM_DATA_HORA);
+    }
+
+    // o serviço recusa as filiais não atendidas antes de chegar aqui
+    private ParticaoAgendamentos particao(String idFilial) {
+        ParticaoAgendamentos particao = particoes.get(idFilial);
+        if (particao == null) {
+            throw new IllegalArgumentException("Filial não atendida: " + idFilial);
+        }
+        return particao;
+    }
+
+    // o id não diz a filial; null se nenhuma partição tem o agendamento
+    private ParticaoAgendamentos particaoDoAgendamento(String idAgendamento) {
+        for (ParticaoAgendamentos particao : particoes.values()) {
+            if (particao.getAgendamentoPorId(idAgendamento).isPresent()) {
+                return particao;
+            }
+        }
+        return null;
+    }
+
+    private ParticaoAgendamentos novaParticao(String idFilial) {
+        if (!Agendamentos.filialValida(idFilial)) {
+            throw new IllegalArgumentException("Filial inválida: " + idFilial);
+        }
+        if (idFilial.equals(Agendamentos.FILIAL_PADRAO)) {
+            return new ParticaoAgendamentos(idFilial, "agendamentos", arquivoPadrao.toString(), config, capacidade, versoes);
+        }
+        Path arquivo = arquivoPadrao.resolveSibling(prefixoArquivos + "." + idFilial + ".json");
+        return new ParticaoAgendamentos(idFilial, "agendamentos-" + idFilial, arquivo.toString(), config, capacidade, versoes);
+    }
+
+    // filiais com algum arquivo (json, journal ou binário) ao lado do arquivo da filial padrão
+    private Set<String> descobrirFiliais() {
+        Set<String> filiais = new TreeSet<>();
+        Path diretorio = arquivoPadrao.getParent();
+        if (diretorio == null || !Files.isDirectory(diretorio)) {
+            return filiais;
+        }
+        Pattern arquivoFilial = Pattern.compile(Pattern.quote(prefixoArquivos) + "\\.([a-z0-9_-]{1,40})\\.(json|json\\.journal|bin)");
+        try (Stream<Path> arquivos = Files.list(diretorio)) {
+            arquivos.forEach(arquivo -> {
+                Matcher nome = arquivoFilial.matcher(arquivo.getFileName().toString());
+                if (nome.matches()) {
+                    filiais.add(nome.group(1));
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return filiais;
+    }
+
+    private List<ParticaoAgendamentos> particoesOrdenadas() {
+        List<ParticaoAgendamentos> ordenadas = new ArrayList<>(particoes.values());
+        ordenadas.sort(Comparator.comparing((ParticaoAgendamentos particao) -> !particao.getIdFilial().equals(Agendamentos.FILIAL_PADRAO))
+                .thenComparing(ParticaoAgendamentos::getIdFilial));
+        return ordenadas;
+    }
+
+    private static String filial(Agendamentos agendamento) {
+        return agendamento.getIdFilial() == null ? Agendamentos.FILIAL_PADRAO : agendamento.getIdFilial();
+    }
+
+    private static Map<String, List<Agendamentos>> porFilial(List<Agendamentos> agendamentos) {
+        Map<String, List<Agendamentos>> porFilial = new LinkedHashMap<>();
+        for (Agendamentos agendamento : agendamentos) {
+            porFilial.computeIfAbsent(filial(agendamento), filial -> new ArrayList<>()).add(agendamento);
+        }
+        return porFilial;
+    }
+
+    private static <T> List<T> itens(List<T> lote, List<Integer> posicoes) {
+        List<T> itens = new ArrayList<>(posicoes.size());
+        for (int posicao : posicoes) {
+            itens.add(lote.get(posicao));
+        }
+        return itens;
+    }
+
+    private static void aguardar(Future<?> carga) {
+        try {
+            carga.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException causa) {
+                throw causa;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,496 @@
+package com.api.agendamentos.repository;
+
+import com.api.agendamentos.config.CapacidadeConfig;
+import com.api.agendamentos.config.FiliaisConfig;
+import com.api.agendamentos.models.Agendamentos;
+import com.api.agendamentos.models.FiltroAgendamentos;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+// agendamentos num banco relacional (PostgreSQL em produção), usado com o profile "jdbc".
+// Cada alteração é gravada na própria operação. Cada agendamento ativo ocupa uma vaga numerada (0 até a capacidade
+// do serviço - 1) do seu horário na sua filial, e o índice único de (filial, data_hora, UPPER(servico), vaga) dos
+// agendamentos ativos (ver schema-postgresql.sql) garante que duas reservas simultâneas nunca fiquem com a mesma vaga.
+// As filiais dividem a tabela, mas cada reserva só disputa as linhas do próprio horário e filial.
+@Repository
+@Profile("jdbc")
+public class AgendamentosRepositoryJdbc implements AgendamentosRepository {
+
+    private static final int TAMANHO_PAGINA_ITERACAO = 500;
+    // envios de um lote tudo ou nada que pode perder vagas para reservas simultâneas antes de desistir
+    private static final int TENTATIVAS_LOTE = 3;
+    private static final String AGENDADO = Agendamentos.statusAgendamento.AGENDADO.name();
+
+    private static final String SELECT = "SELECT id_agendamento, filial, id_usuario, servico, data_hora, status, versao FROM agendamentos";
+    private static final String INSERT = "INSERT INTO agendamentos (id_agendamento, filial, id_usuario, servico, data_hora, status, vaga) "
+            + "VALUES (:idAgendamento, :filial, :idUsuario, :servico, :dataHora, :status, :vaga)";
+    // versao fica de fora do INSERT e volta ao DEFAULT no UPDATE: cada gravação da linha tira um valor novo da sequência
+    private static final String UPDATE = "UPDATE agendamentos SET filial = :filial, id_usuario = :idUsuario, servico = :servico, "
+            + "data_hora = :dataHora, status = :status, versao = DEFAULT WHERE id_agendamento = :idAgendamento";
+    // só altera a linha ainda ativa: de dois cancelamentos simultâneos, o segundo espera o primeiro e não altera nada
+    private static final String CANCELAR = "UPDATE agendamentos SET status = :cancelado, versao = DEFAULT "
+            + "WHERE id_agendamento = :idAgendamento AND status = :agendado";
+    private static final String VERSAO = "SELECT COUNT(*) AS linhas, COALESCE(MAX(versao), 0) AS ultima, "
+            + "COALESCE(SUM(versao), 0) AS soma FROM agendamentos";
+
+    private static final RowMapper<Agendamentos> MAPEADOR = (rs, linha) -> {
+        Agendamentos agendamento = new Agendamentos(
+                rs.getString("id_agendamento"),
+                rs.getString("id_usuario"),
+                Agendamentos.TipoServico.valueOf(rs.getString("servico")),
+                rs.getObject("data_hora", LocalDateTime.class),
+                Agendamentos.statusAgendamento.valueOf(rs.getString("status")));
+        agendamento.setIdFilial(rs.getString("filial"));
+        agendamento.setVersao(rs.getLong("versao"));
+        return agendamento;
+    };
+
+    // servico: o nome do serviço canônico (UPPER(servico) nas consultas), que divide as vagas como no IndiceHorarios
+    private record Horario(String filial, LocalDateTime dataHora, String servico) {
+    }
+
+    private final NamedParameterJdbcTemplate jdbc;
+    private final TransactionTemplate transacao;
+    private final int tamanhoLote;
+    private final CapacidadeConfig capacidade;
+    // as configuradas mais as que já têm agendamentos no banco (ver carregarFiliais)
+    private volatile Set<String> filiais;
+
+    @Autowired
+    public AgendamentosRepositoryJdbc(NamedParameterJdbcTemplate jdbc, TransactionTemplate transacao,
+                                      @Value("${jdbc.tamanho-lote:500}") int tamanhoLote, CapacidadeConfig capacidade,
+                                      FiliaisConfig filiaisConfiguradas) {
+        this.jdbc = jdbc;
+        this.transacao = transacao;
+        this.tamanhoLote = tamanhoLote;
+        this.capacidade = capacidade;
+        this.filiais = filiaisConfiguradas.getFiliais();
+    }
+
+    public AgendamentosRepositoryJdbc(NamedParameterJdbcTemplate jdbc, TransactionTemplate transacao, int tamanhoLote,
+                                      CapacidadeConfig capacidade) {
+        this(jdbc, transacao, tamanhoLote, capacidade, FiliaisConfig.somentePadrao());
+    }
+
+    public AgendamentosRepositoryJdbc(NamedParameterJdbcTemplate jdbc, TransactionTemplate transacao, int tamanhoLote) {
+        this(jdbc, transacao, tamanhoLote, CapacidadeConfig.unitaria());
+    }
+
+    // as filiais que já têm agendamentos continuam atendidas mesmo fora de agendamentos.filiais
+    @PostConstruct
+    public void carregarFiliais() {
+        Set<String> encontradas = new HashSet<>(filiais);
+        encontradas.addAll(jdbc.queryForList("SELECT DISTINCT filial FROM agendamentos", Map.of(), String.class));
+        filiais = Set.copyOf(encontradas);
+    }
+
+    @Override
+    public List<Agendamentos> getAgendamentos() {
+        return jdbc.query(SELECT + " ORDER BY ordem", MAPEADOR);
+    }
+
+    // percorre em páginas pela ordem de inclusão, sem manter uma conexão aberta entre elas
+    @Override
+    public Iterator<Agendamentos> iterarAgendamentos() {
+        return new IteradorPaginado<>(ultimo -> {
+            MapSqlParameterSource parametros = new MapSqlParameterSource("limite", TAMANHO_PAGINA_ITERACAO);
+            if (ultimo == null) {
+                return jdbc.query(SELECT + " ORDER BY ordem LIMIT :limite", parametros, MAPEADOR);
+            }
+            parametros.addValue("idAgendamento", ultimo.getIdAgendamento());
+            return jdbc.query(SELECT + " WHERE ordem > (SELECT ordem FROM agendamentos WHERE id_agendamento = :idAgendamento)"
+                    + " ORDER BY ordem LIMIT :limite", parametros, MAPEADOR);
+        }, TAMANHO_PAGINA_ITERACAO);
+    }
+
+    @Override
+    public Optional<Agendamentos> getAgendamentoPorId(String idAgendamento) {
+        return jdbc.query(SELECT + " WHERE id_agendamento = :idAgendamento",
+                new MapSqlParameterSource("idAgendamento", idAgendamento), MAPEADOR).stream().findFirst();
+    }
+
+    @Override
+    public List<Agendamentos> getAgendamentosPorUsuario(String idUsuario, long inicio, int quantidade) {
+        MapSqlParameterSource parametros = new MapSqlParameterSource("idUsuario", idUsuario)
+                .addValue("inicio", inicio)
+                .addValue("quantidade", quantidade);
+        return jdbc.query(SELECT + " WHERE id_usuario = :idUsuario ORDER BY data_hora, id_agendamento"
+                + " LIMIT :quantidade OFFSET :inicio", parametros, MAPEADOR);
+    }
+
+    @Override
+    public int contarAgendamentosPorUsuario(String idUsuario) {
+        Integer total = jdbc.queryForObject("SELECT COUNT(*) FROM agendamentos WHERE id_usuario = :idUsuario",
+                new MapSqlParameterSource("idUsuario", idUsuario), Integer.class);
+        return total == null ? 0 : total;
+    }
+
+    // todos os filtros viram condições da consulta, atendidas pelos índices de (data_hora) e (id_usuario, data_hora)
+    @Override
+    public List<Agendamentos> buscarAgendamentos(FiltroAgendamentos filtro, IndiceAgendamentosOrdenados.Chave depoisDe, int limite) {
+        StringBuilder sql = new StringBuilder(SELECT).append(" WHERE 1 = 1");
+        MapSqlParameterSource parametros = new MapSqlParameterSource("limite", limite);
+        if (filtro.getIdFilial() != null) {
+            sql.append(" AND filial = :filial");
+            parametros.addValue("filial", filtro.getIdFilial());
+        }
+        if (filtro.getIdUsuario() != null) {
+            sql.append(" AND id_usuario = :idUsuario");
+            parametros.addValue("idUsuario", filtro.getIdUsuario());
+        }
+        if (filtro.getStatus() != null) {
+            sql.append(" AND status = :status");
+            parametros.addValue("status", filtro.getStatus().name());
+        }
+        if (filtro.getServico() != null) {
+            sql.append(" AND servico = :servico");
+            parametros.addValue("servico", filtro.getServico().name());
+        }
+        if (filtro.getInicio() != null) {
+            sql.append(" AND data_hora >= :de");
+            parametros.addValue("de", filtro.getInicio().atStartOfDay());
+        }
+        if (filtro.getFim() != null) {
+            sql.append(" AND data_hora < :ate");
+            parametros.addValue("ate", filtro.getFim().plusDays(1).atStartOfDay());
+        }
+        if (depoisDe != null && depoisDe.getDataHora() != null) {
+            sql.append(" AND (data_hora > :cursorDataHora OR (data_hora = :cursorDataHora AND id_agendamento > :cursorId))");
+            parametros.addValue("cursorDataHora", depoisDe.getDataHora());
+            parametros.addValue("cursorId", depoisDe.getIdAgendamento());
+        }
+        sql.append(" ORDER BY data_hora, id_agendamento LIMIT :limite");
+        return jdbc.query(sql.toString(), parametros, MAPEADOR);
+    }
+
+    @Override
+    public Iterator<Agendamentos> iterarAgendamentos(FiltroAgendamentos filtro) {
+        return new IteradorPaginado<>(ultimo -> buscarAgendamentos(filtro,
+                ultimo == null ? null : IndiceAgendamentosOrdenados.Chave.de(ultimo), TAMANHO_PAGINA_ITERACAO),
+                TAMANHO_PAGINA_ITERACAO);
+    }
+
+    @Override
+    public List<Agendamentos> getAgendamentosNoHorario(String idFilial, LocalDateTime dataHora) {
+        MapSqlParameterSource parametros = new MapSqlParameterSource("dataHora", dataHora)
+                .addValue("status", AGENDADO)
+                .addValue("filial", idFilial);
+        return jdbc.query(SELECT + " WHERE filial = :filial AND data_hora = :dataHora AND status = :status ORDER BY id_agendamento",
+                parametros, MAPEADOR);
+    }
+
+    @Override
+    public int getCapacidade(Agendamentos.TipoServico servico) {
+        return capacidade.getCapacidade(servico);
+    }
+
+    // uma consulta agrupada por horário e serviço para o dia inteiro
+    @Override
+    public Map<LocalDateTime, Integer> getVagasRestantes(String idFilial, LocalDate data, Agendamentos.TipoServico servico) {
+        MapSqlParameterSource parametros = new MapSqlParameterSource("status", AGENDADO)
+                .addValue("filial", idFilial)
+                .addValue("de", data.atStartOfDay())
+                .addValue("ate", data.plusDays(1).atStartOfDay());
+        String sql = "SELECT data_hora, UPPER(servico) AS servico, COUNT(*) AS ocupadas FROM agendamentos"
+                + " WHERE filial = :filial AND status = :status AND data_hora >= :de AND data_hora < :ate";
+        if (servico != null) {
+            sql += " AND UPPER(servico) = :servico";
+            parametros.addValue("servico", servico.canonico().name());
+        }
+        Map<LocalDateTime, Integer> ocupadas = new HashMap<>();
+        jdbc.query(sql + " GROUP BY data_hora, UPPER(servico)", parametros, rs -> {
+            // acima da capacidade (capacidade reduzida com agendamentos já feitos) não tira vaga de outro serviço
+            int doServico = Math.min(rs.getInt("ocupadas"),
+                    capacidade.getCapacidade(Agendamentos.TipoServico.valueOf(rs.getString("servico"))));
+            ocupadas.merge(rs.getObject("data_hora", LocalDateTime.class), doServico, Integer::sum);
+        });
+        int capacidadeHorario = capacidade.getCapacidade(servico);
+        Map<LocalDateTime, Integer> restantes = new HashMap<>();
+        ocupadas.forEach((horario, quantidade) -> restantes.put(horario, capacidadeHorario - quantidade));
+        return restantes;
+    }
+
+    // a vaga livre é escolhida por consulta e o INSERT a disputa no índice único; se outra reserva levar a mesma
+    // vaga antes, consulta de novo. Cada tentativa perdida é uma vaga ocupada por outra reserva, então o número
+    // de tentativas é limitado pela capacidade
+    @Override
+    public boolean reservarHorario(Agendamentos agendamento, LocalDateTime dataHora) {
+        int capacidadeServico = capacidade.getCapacidade(agendamento.getServico());
+        for (int tentativa = 0; tentativa <= capacidadeServico; tentativa++) {
+            int vaga = primeiraVagaLivre(vagasOcupadas(filial(agendamento), dataHora, agendamento.getServico()), capacidadeServico);
+            if (vaga < 0) {
+                return false;
+            }
+            try {
+                jdbc.update(INSERT, parametros(agendamento, vaga).addValue("dataHora", dataHora));
+                return true;
+            } catch (DuplicateKeyException e) {
+                // a vaga foi ocupada em paralelo
+            }
+        }
+        return false;
+    }
+
+    // as vagas já ocupadas são consultadas antes, para que os INSERTs do lote sejam enviados juntos numa
+    // transação; se outra reserva ocupar uma das vagas nesse meio tempo, o índice único recusa o lote. No modo
+    // tudo ou nada as vagas são então consultadas de novo e o lote reenviado; se continuar perdendo vagas que
+    // voltam a ficar livres, desiste com ConcurrencyFailureException em vez de apontar um item que não está ocupado
+    @Override
+    public List<Integer> reservarHorarios(List<Agendamentos> novosAgendamentos, boolean tudoOuNada) {
+        for (int tentativa = 1; ; tentativa++) {
+            int[] vagas = atribuirVagas(novosAgendamentos);
+            List<Integer> ocupados = semVaga(vagas);
+            if (tudoOuNada && !ocupados.isEmpty()) {
+                return ocupados;
+            }
+            List<MapSqlParameterSource> livres = new ArrayList<>(novosAgendamentos.size());
+            for (int i = 0; i < novosAgendamentos.size(); i++) {
+                if (vagas[i] >= 0) {
+                    livres.add(parametros(novosAgendamentos.get(i), vagas[i]));
+                }
+            }
+            try {
+                transacao.executeWithoutResult(status -> inserirEmLotes(livres));
+                return ocupados;
+            } catch (DuplicateKeyException e) {
+                if (!tudoOuNada) {
+                    return reservarIsoladamente(novosAgendamentos, vagas, ocupados);
+                }
+                if (tentativa == TENTATIVAS_LOTE) {
+                    throw new ConcurrencyFailureException("O lote perdeu vagas para reservas simultâneas em "
+                            + TENTATIVAS_LOTE + " tentativas.", e);
+                }
+            }
+        }
+    }
+
+    // a disputa só acontece com reservas simultâneas; aí cada agendamento é reservado isoladamente
+    private List<Integer> reservarIsoladamente(List<Agendamentos> novosAgendamentos, int[] vagas, List<Integer> ocupados) {
+        List<Integer> recusados = new ArrayList<>(ocupados);
+        for (int i = 0; i < novosAgendamentos.size(); i++) {
+            Agendamentos agendamento = novosAgendamentos.get(i);
+            if (vagas[i] >= 0 && !reservarHorario(agendamento, agendamento.getDataHora())) {
+                recusados.add(i);
+            }
+        }
+        recusados.sort(null);
+        return recusados;
+    }
+
+    @Override
+    public boolean atendeFilial(String idFilial) {
+        return filiais.contains(idFilial);
+    }
+
+    // cada INSERT ou UPDATE dá à linha um valor novo da sequência, mas a ordem dos commits não é a da sequência: um
+    // UPDATE que tirou um valor menor pode aparecer depois de um leitor já ter visto um valor maior, sem mudar a
+    // contagem nem o máximo. A soma das versões muda com qualquer troca de valor de uma linha; contagem, máximo e
+    // soma juntos só se repetiriam com alterações que se cancelassem exatamente na soma
+    @Override
+    public String getVersaoDia(String idFilial, LocalDate data) {
+        MapSqlParameterSource parametros = new MapSqlParameterSource("filial", idFilial)
+                .addValue("de", data.atStartOfDay())
+                .addValue("ate", data.plusDays(1).atStartOfDay());
+        return jdbc.queryForObject(VERSAO + " WHERE filial = :filial AND data_hora >= :de AND data_hora < :ate",
+                parametros, AgendamentosRepositoryJdbc::versao);
+    }
+
+    @Override
+    public String getVersaoUsuario(String idUsuario) {
+        return jdbc.queryForObject(VERSAO + " WHERE id_usuario = :idUsuario",
+                new MapSqlParameterSource("idUsuario", idUsuario), AgendamentosRepositoryJdbc::versao);
+    }
+
+    private static String versao(ResultSet rs, int linha) throws SQLException {
+        return rs.getLong("linhas") + "." + rs.getLong("ultima") + "." + rs.getBigDecimal("soma").toBigInteger();
+    }
+
+    // um agendamento ativo novo fica com a primeira vaga livre do horário, sem limite de capacidade
+    @Override
+    public void adicionarAgendamento(Agendamentos agendamento) {
+        MapSqlParameterSource parametros = parametros(agendamento, 0);
+        if (jdbc.update(UPDATE, parametros) == 0) {
+            if (agendamento.getStatus() == Agendamentos.statusAgendamento.AGENDADO) {
+                parametros.addValue("vaga", primeiraVagaLivre(
+                        vagasOcupadas(filial(agendamento), agendamento.getDataHora(), agendamento.getServico()), Integer.MAX_VALUE));
+            }
+            jdbc.update(INSERT, parametros);
+        }
+    }
+
+    @Override
+    public boolean cancelarAgendamento(String idAgendamento) {
+        return jdbc.update(CANCELAR, parametrosCancelamento(idAgendamento)) == 1;
+    }
+
+    // os UPDATEs do lote vão numa única transação; no modo tudo ou nada ela é desfeita se algum não alterou nada.
+    // As linhas já alteradas ficam travadas até o fim da transação, então outro cancelamento não se intercala
+    @Override
+    public List<Integer> cancelarAgendamentos(List<String> idsAgendamentos, boolean tudoOuNada) {
+        List<Integer> recusados = new ArrayList<>();
+        transacao.executeWithoutResult(status -> {
+            for (int inicio = 0; inicio < idsAgendamentos.size(); inicio += tamanhoLote) {
+                List<String> lote = idsAgendamentos.subList(inicio, Math.min(inicio + tamanhoLote, idsAgendamentos.size()));
+                int[] alteradas = jdbc.batchUpdate(CANCELAR, lote.stream().map(AgendamentosRepositoryJdbc::parametrosCancelamento)
+                        .toArray(MapSqlParameterSource[]::new));
+                for (int i = 0; i < alteradas.length; i++) {
+                    if (alteradas[i] == 0) {
+                        recusados.add(inicio + i);
+                    }
+                }
+            }
+            if (tudoOuNada && !recusados.isEmpty()) {
+                status.setRollbackOnly();
+            }
+        });
+        return recusados;
+    }
+
+    @Override
+    public void atualizarAgendamento(Agendamentos agendamento) {
+        adicionarAgendamento(agendamento);
+    }
+
+    // UPDATEs enviados em lotes numa única transação
+    @Override
+    public void atualizarAgendamentos(List<Agendamentos> alterados) {
+        transacao.executeWithoutResult(status -> {
+            for (int inicio = 0; inicio < alterados.size(); inicio += tamanhoLote) {
+                List<Agendamentos> lote = alterados.subList(inicio, Math.min(inicio + tamanhoLote, alterados.size()));
+                jdbc.batchUpdate(UPDATE, lote.stream().map(agendamento -> parametros(agendamento, 0))
+                        .toArray(MapSqlParameterSource[]::new));
+            }
+        });
+    }
+
+    // apaga e reinclui tudo numa transação, com os INSERTs enviados em lotes. Os agendamentos ativos de cada
+    // horário e serviço são numerados em sequência, sem limite de capacidade
+    @Override
+    public void salvarAgendamentos(List<Agendamentos> novosAgendamentos) {
+        List<MapSqlParameterSource> linhas = new ArrayList<>(novosAgendamentos.size());
+        Map<Horario, Integer> proximaVaga = new HashMap<>();
+        for (Agendamentos agendamento : novosAgendamentos) {
+            int vaga = agendamento.getStatus() != Agendamentos.statusAgendamento.AGENDADO ? 0
+                    : proximaVaga.merge(horario(agendamento), 1, Integer::sum) - 1;
+            linhas.add(parametros(agendamento, vaga));
+        }
+        transacao.executeWithoutResult(status -> {
+            jdbc.getJdbcOperations().update("DELETE FROM agendamentos");
+            inserirEmLotes(linhas);
+        });
+    }
+
+    // cada alteração já é gravada no banco na própria operação
+    @Override
+    public void gravarPendentes() {
+    }
+
+    private void inserirEmLotes(List<MapSqlParameterSource> linhas) {
+        for (int inicio = 0; inicio < linhas.size(); inicio += tamanhoLote) {
+            jdbc.batchUpdate(INSERT, linhas.subList(inicio, Math.min(inicio + tamanhoLote, linhas.size()))
+                    .toArray(MapSqlParameterSource[]::new));
+        }
+    }
+
+    private Set<Integer> vagasOcupadas(String idFilial, LocalDateTime dataHora, Agendamentos.TipoServico servico) {
+        MapSqlParameterSource parametros = new MapSqlParameterSource("status", AGENDADO)
+                .addValue("filial", idFilial)
+                .addValue("dataHora", dataHora)
+                .addValue("servico", servico.canonico().name());
+        return new HashSet<>(jdbc.queryForList("SELECT vaga FROM agendamentos WHERE filial = :filial"
+                + " AND status = :status AND data_hora = :dataHora AND UPPER(servico) = :servico", parametros, Integer.class));
+    }
+
+    // a vaga de cada agendamento do lote, com uma consulta para todos os horários; -1 quando o horário já não
+    // tem vaga do serviço (contando as tomadas pelos itens anteriores do lote)
+    private int[] atribuirVagas(List<Agendamentos> novosAgendamentos) {
+        Map<Horario, Set<Integer>> ocupadas = new HashMap<>();
+        if (!novosAgendamentos.isEmpty()) {
+            List<LocalDateTime> horarios = novosAgendamentos.stream().map(Agendamentos::getDataHora).distinct().toList();
+            List<String> filiais = novosAgendamentos.stream().map(AgendamentosRepositoryJdbc::filial).distinct().toList();
+            jdbc.query("SELECT filial, data_hora, UPPER(servico) AS servico, vaga FROM agendamentos"
+                            + " WHERE status = :status AND filial IN (:filiais) AND data_hora IN (:horarios)",
+                    new MapSqlParameterSource("status", AGENDADO).addValue("filiais", filiais).addValue("horarios", horarios),
+                    rs -> {
+                        ocupadas.computeIfAbsent(new Horario(rs.getString("filial"), rs.getObject("data_hora", LocalDateTime.class),
+                                rs.getString("servico")), horario -> new HashSet<>()).add(rs.getInt("vaga"));
+                    });
+        }
+        int[] vagas = new int[novosAgendamentos.size()];
+        for (int i = 0; i < vagas.length; i++) {
+            Agendamentos agendamento = novosAgendamentos.get(i);
+            Set<Integer> doHorario = ocupadas.computeIfAbsent(horario(agendamento), horario -> new HashSet<>());
+            vagas[i] = primeiraVagaLivre(doHorario, capacidade.getCapacidade(agendamento.getServico()));
+            if (vagas[i] >= 0) {
+                doHorario.add(vagas[i]);
+            }
+        }
+        return vagas;
+    }
+
+    private static List<Integer> semVaga(int[] vagas) {
+        List<Integer> posicoes = new ArrayList<>();
+        for (int i = 0; i < vagas.length; i++) {
+            if (vagas[i] < 0) {
+                posicoes.add(i);
+            }
+        }
+        return posicoes;
+    }
+
+    // menor vaga (abaixo da capacidade) que não está ocupada, ou -1 se todas estiverem
+    private static int primeiraVagaLivre(Set<Integer> ocupadas, int capacidade) {
+        for (int vaga = 0; vaga < capacidade; vaga++) {
+            if (!ocupadas.contains(vaga)) {
+                return vaga;
+            }
+        }
+        return -1;
+    }
+
+    private static String filial(Agendamentos agendamento) {
+        return agendamento.getIdFilial() == null ? Agendamentos.FILIAL_PADRAO : agendamento.getIdFilial();
+    }
+
+    private static Horario horario(Agendamentos agendamento) {
+        return new Horario(filial(agendamento), agendamento.getDataHora(), agendamento.getServico().canonico().name());
+    }
+
+    private static MapSqlParameterSource parametros(Agendamentos agendamento, int vaga) {
+        return new MapSqlParameterSource("idAgendamento", agendamento.getIdAgendamento())
+                .addValue("filial", filial(agendamento))
+                .addValue("idUsuario", agendamento.getIdUsuario())
+                .addValue("servico", agendamento.getServico().name())
+                .addValue("dataHora", agendamento.getDataHora())
+                .addValue("status", agendamento.getStatus().name())
+                .addValue("vaga", vaga);
+    }
+
+    private static MapSqlParameterSource parametrosCancelamento(String idAgendamento) {
+        return new MapSqlParameterSource("idAgendamento", idAgendamento)
+                .addValue("cancelado", Agendamentos.statusAgendamento.CANCELADO.name())
+                .addValue("agendado", AGENDADO);
+    }
+}
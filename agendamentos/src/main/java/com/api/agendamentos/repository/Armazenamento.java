@@ -0,0 +1,34 @@
+package com.api.agendamentos.repository;
+
+import java.util.List;
+
+// persistência usada pelos repositórios em memória: carrega o estado na inicialização e grava as alterações
+// que o repositório já aplicou em memória. A durabilidade é de melhor esforço: uma falha de escrita não desfaz a
+// alteração em memória nem chega a quem chamou (a requisição já foi atendida). Ela é registrada no log com os ids
+// afetados e na métrica persistencia.falhas, e o estado em memória é regravado por inteiro na próxima gravação em
+// segundo plano; só um reinício antes que essa gravação funcione perde as alterações.
+public interface Armazenamento<T> extends AutoCloseable {
+
+    List<T> carregar();
+
+    // lança IllegalArgumentException se o registro não pode ser gravado neste formato. O repositório verifica antes
+    // de aplicar o registro em memória, para a memória e o arquivo nunca divergirem
+    default void validar(T registro) {
+    }
+
+    // registra a inclusão ou alteração de um registro que já foi aplicada em memória
+    void registrar(T registro);
+
+    // registra de uma vez vários registros alterados juntos em memória (ex.: um lote de reservas),
+    // que chegam ao disco na mesma gravação
+    void registrarLote(List<T> registros);
+
+    // registra a substituição de todos os registros
+    void registrarTudo();
+
+    // força a gravação imediata das alterações pendentes
+    void gravarPendentes();
+
+    @Override
+    void close();
+}
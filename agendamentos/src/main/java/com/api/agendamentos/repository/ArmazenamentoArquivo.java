@@ -0,0 +1,246 @@
+package com.api.agendamentos.repository;
+
+import com.api.agendamentos.config.PersistenciaConfig;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+// persistência em arquivo usada pelos repositórios: o estado fica em memória no repositório e aqui
+// ele é carregado na inicialização e gravado em segundo plano, no modo snapshot ou journal
+public class ArmazenamentoArquivo<T> implements Armazenamento<T> {
+
+    private static final Logger log = LoggerFactory.getLogger(ArmazenamentoArquivo.class);
+
+    private final Path arquivo;
+    private final Class<T> tipo;
+    private final Function<T, String> chave;
+    // na carga, escolhe entre o registro já lido e um registro posterior da mesma chave
+    private final BinaryOperator<T> mesclar;
+    private final Supplier<List<T>> estadoAtual;
+    private final PersistenciaConfig config;
+    private final ObjectMapper objectMapper;
+    private final ObjectWriter escritorJournal;
+    private final JavaType tipoLista;
+    private final Journal journal;
+    private final GravacaoAssincrona gravacao;
+    private volatile boolean compactacaoPendente;
+
+    private final Timer tempoCarga;
+    private final Timer tempoSnapshot;
+    private final Timer tempoJournal;
+    private final Counter bytesSnapshot;
+    private final Counter bytesJournal;
+    private final Counter falhasJournal;
+
+    public ArmazenamentoArquivo(String nome, String caminhoArquivo, Class<T> tipo, Function<T, String> chave,
+                                Supplier<List<T>> estadoAtual, PersistenciaConfig config) {
+        this(nome, caminhoArquivo, tipo, chave, ArmazenamentoArquivo::posterior, estadoAtual, config);
+    }
+
+    // mesclar: para registros cuja ordem no journal pode não ser a ordem das alterações (ex.: o registro com a maior
+    // versão vence, mesmo que tenha sido anexado antes)
+    public ArmazenamentoArquivo(String nome, String caminhoArquivo, Class<T> tipo, Function<T, String> chave,
+                                BinaryOperator<T> mesclar, Supplier<List<T>> estadoAtual, PersistenciaConfig config) {
+        this.arquivo = Paths.get(caminhoArquivo).toAbsolutePath();
+        this.tipo = tipo;
+        this.chave = chave;
+        this.mesclar = mesclar;
+        this.estadoAtual = estadoAtual;
+        this.config = config;
+        this.objectMapper = novoObjectMapper();
+        this.escritorJournal = objectMapper.writer().without(SerializationFeature.INDENT_OUTPUT);
+        this.tipoLista = objectMapper.getTypeFactory().constructCollectionType(List.class, tipo);
+        this.journal = config.getModo() == PersistenciaConfig.Modo.JOURNAL
+                ? new Journal(caminhoJournal(arquivo))
+                : null;
+        this.gravacao = new GravacaoAssincrona("gravacao-" + nome, this::gravar,
+                config.getIntervaloGravacaoMs(), config.getLimiteAlteracoes(), config.isThreadsVirtuais());
+        this.tempoCarga = MetricasPersistencia.tempoCarga(nome);
+        this.tempoSnapshot = MetricasPersistencia.tempoGravacao(nome, MetricasPersistencia.SNAPSHOT);
+        this.tempoJournal = MetricasPersistencia.tempoGravacao(nome, MetricasPersistencia.JOURNAL);
+        this.bytesSnapshot = MetricasPersistencia.bytesGravados(nome, MetricasPersistencia.SNAPSHOT);
+        this.bytesJournal = MetricasPersistencia.bytesGravados(nome, MetricasPersistencia.JOURNAL);
+        this.falhasJournal = MetricasPersistencia.falhasGravacao(nome, MetricasPersistencia.JOURNAL);
+    }
+
+    // lê o arquivo json e reaplica por cima dele o journal ao lado, se existir. Serve para ler os arquivos
+    // fora da aplicação (ex.: conversão para o formato binário), com a aplicação parada.
+    public static <T> List<T> lerArquivo(Path arquivo, Class<T> tipo, Function<T, String> chave) throws IOException {
+        ObjectMapper objectMapper = novoObjectMapper();
+        return ler(objectMapper, arquivo, objectMapper.getTypeFactory().constructCollectionType(List.class, tipo),
+                tipo, chave, ArmazenamentoArquivo::posterior, new Journal(caminhoJournal(arquivo.toAbsolutePath())));
+    }
+
+    // grava o arquivo json no mesmo formato usado pela aplicação
+    public static <T> void gravarArquivo(Path arquivo, List<T> registros) throws IOException {
+        gravarSnapshot(novoObjectMapper(), arquivo.toAbsolutePath(), registros);
+    }
+
+    public static Path caminhoJournal(Path arquivo) {
+        return arquivo.resolveSibling(arquivo.getFileName() + ".journal");
+    }
+
+    // lê o snapshot e, no modo journal, reaplica por cima dele os registros do journal
+    @Override
+    public List<T> carregar() {
+        Timer.Sample amostra = Timer.start();
+        try {
+            return ler(objectMapper, arquivo, tipoLista, tipo, chave, mesclar, journal);
+        } catch (IOException e) {
+            // não inicia com a memória vazia, senão a próxima gravação apagaria o arquivo
+            throw new UncheckedIOException("Erro ao carregar " + arquivo, e);
+        } finally {
+            amostra.stop(tempoCarga);
+        }
+    }
+
+    @Override
+    public void registrar(T registro) {
+        registrarLote(List.of(registro));
+    }
+
+    // no modo journal todos os registros do lote são anexados numa única escrita
+    @Override
+    public void registrarLote(List<T> registros) {
+        if (registros.isEmpty()) {
+            return;
+        }
+        if (journal != null) {
+            try {
+                List<byte[]> linhas = new ArrayList<>(registros.size());
+                for (T registro : registros) {
+                    linhas.add(escritorJournal.writeValueAsBytes(registro));
+                }
+                bytesJournal.increment(journal.anexar(linhas));
+            } catch (IOException e) {
+                // os registros continuam em memória e vão para o arquivo na próxima compactação
+                compactacaoPendente = true;
+                falhasJournal.increment();
+                log.error("Falha ao anexar {} registro(s) ao journal de {}; ficam só em memória até a próxima compactação: {}",
+                        registros.size(), arquivo, registros.stream().map(chave).toList(), e);
+            }
+        }
+        gravacao.registrarAlteracoes(registros.size());
+    }
+
+    @Override
+    public void registrarTudo() {
+        compactacaoPendente = true;
+        gravacao.registrarAlteracao();
+    }
+
+    @Override
+    public void gravarPendentes() {
+        gravacao.gravarPendentes();
+    }
+
+    // incorpora o journal ao arquivo json e o esvazia
+    public void compactar() throws IOException {
+        if (journal == null) {
+            gravarSnapshot(estadoAtual.get());
+            return;
+        }
+        compactacaoPendente = false;
+        try {
+            List<T> estado = journal.rotacionar(estadoAtual);
+            gravarSnapshot(estado);
+            journal.descartarAnterior();
+        } catch (IOException | RuntimeException e) {
+            compactacaoPendente = true;
+            throw e;
+        }
+    }
+
+    private void gravar() throws IOException {
+        if (journal == null) {
+            gravarSnapshot(estadoAtual.get());
+            return;
+        }
+        Timer.Sample amostra = Timer.start();
+        journal.sincronizar();
+        amostra.stop(tempoJournal);
+        if (compactacaoPendente || journal.getRegistros() >= config.getLimiteCompactacao()) {
+            compactar();
+        }
+    }
+
+    private void gravarSnapshot(List<T> estado) throws IOException {
+        Timer.Sample amostra = Timer.start();
+        gravarSnapshot(objectMapper, arquivo, estado);
+        amostra.stop(tempoSnapshot);
+        bytesSnapshot.increment(Files.size(arquivo));
+    }
+
+    private static ObjectMapper novoObjectMapper() {
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.registerModule(new JavaTimeModule());
+        objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        objectMapper.enable(SerializationFeature.INDENT_OUTPUT);
+        return objectMapper;
+    }
+
+    private static <T> List<T> ler(ObjectMapper objectMapper, Path arquivo, JavaType tipoLista, Class<T> tipo,
+                                   Function<T, String> chave, BinaryOperator<T> mesclar, Journal journal) throws IOException {
+        Map<String, T> registros = new LinkedHashMap<>();
+        File snapshot = arquivo.toFile();
+        if (snapshot.exists()) {
+            List<T> lidos = objectMapper.readValue(snapshot, tipoLista);
+            for (T registro : lidos) {
+                registros.put(chave.apply(registro), registro);
+            }
+        }
+        if (journal != null) {
+            for (String linha : journal.lerRegistros()) {
+                T registro = objectMapper.readValue(linha, tipo);
+                registros.merge(chave.apply(registro), registro, mesclar);
+            }
+        }
+        return new ArrayList<>(registros.values());
+    }
+
+    // sem outro critério, o último registro anexado vence
+    private static <T> T posterior(T anterior, T lido) {
+        return lido;
+    }
+
+    //escrever/salvar no arquivo json: grava em um arquivo temporário e substitui o original
+    private static <T> void gravarSnapshot(ObjectMapper objectMapper, Path arquivo, List<T> estado) throws IOException {
+        Files.createDirectories(arquivo.getParent());
+        Path temporario = arquivo.resolveSibling(arquivo.getFileName() + ".tmp");
+        objectMapper.writeValue(temporario.toFile(), estado);
+        Files.move(temporario, arquivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public void close() {
+        gravacao.close();
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                log.error("Falha ao fechar o journal de {}", arquivo, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,398 @@
+package com.api.agendamentos.repository;
+
+import com.api.agendamentos.config.PersistenciaConfig;
+import com.api.agendamentos.models.Agendamentos;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+// agendamentos num arquivo binário de registros de tamanho fixo, acessado por memória mapeada.
+// Cabeçalho (16 bytes): mágico, versão, tamanho do registro e quantidade de registros.
+// Registro (48 bytes): idAgendamento e idUsuario como UUID (dois longs cada), dataHora em minutos desde a época
+// (precisão de minuto), servico e status como o ordinal do enum em um byte, versão do agendamento num int; os
+// últimos 2 bytes são reservados (a versão ocupa bytes antes reservados e sempre zerados, lidos como versão 0).
+// Um agendamento novo é escrito no fim e uma alteração (ex.: cancelamento) sobrescreve só os campos no próprio
+// registro, a não ser que o registro já tenha uma versão maior (alterações que chegam fora de ordem); o sistema operacional grava as páginas alteradas e o force() periódico garante a durabilidade.
+// O arquivo mapeado só é lido na carga: as consultas continuam sendo respondidas pelos objetos e índices em memória
+// do repositório, e o mapa serve ao caminho de escrita. Só agendamentos com ids UUID cabem no registro (validar).
+// Se uma escrita no mapa falha, o arquivo inteiro é regravado a partir da memória na próxima gravação em segundo plano.
+public class ArmazenamentoBinarioAgendamentos implements Armazenamento<Agendamentos> {
+
+    private static final Logger log = LoggerFactory.getLogger(ArmazenamentoBinarioAgendamentos.class);
+
+    private static final int MAGICO = 0x41474E44;
+    private static final short VERSAO = 1;
+    private static final int TAMANHO_CABECALHO = 16;
+    private static final int TAMANHO_REGISTRO = 48;
+    private static final int POSICAO_QUANTIDADE = 8;
+
+    private static final int ID_AGENDAMENTO = 0;
+    private static final int ID_USUARIO = 16;
+    private static final int DATA_HORA = 32;
+    private static final int SERVICO = 40;
+    private static final int STATUS = 41;
+    private static final int VERSAO_REGISTRO = 42;
+    // dataHora, servico, status e versão, sobrescritos numa alteração
+    private static final int TAMANHO_CAMPOS_ALTERAVEIS = VERSAO_REGISTRO + Integer.BYTES - DATA_HORA;
+
+    private static final long SEM_DATA_HORA = Long.MIN_VALUE;
+    private static final byte NULO = -1;
+    private static final int CAPACIDADE_INICIAL = 1024;
+
+    private static final Agendamentos.TipoServico[] SERVICOS = Agendamentos.TipoServico.values();
+    private static final Agendamentos.statusAgendamento[] STATUS_AGENDAMENTO = Agendamentos.statusAgendamento.values();
+
+    private final Path arquivo;
+    private final Supplier<List<Agendamentos>> estadoAtual;
+    private final GravacaoAssincrona gravacao;
+    private final Timer tempoCarga;
+    private final Timer tempoGravacao;
+    private final Counter bytesGravados;
+    private final Counter falhasGravacao;
+    // uma escrita falhou: o arquivo não tem todas as alterações da memória e precisa ser regravado
+    private volatile boolean regravacaoPendente;
+
+    // tudo abaixo só é acessado com o lock
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<String, Integer> posicoes = new HashMap<>();
+    private FileChannel canal;
+    private MappedByteBuffer mapa;
+    private int quantidade;
+
+    public ArmazenamentoBinarioAgendamentos(String nome, Path arquivo, Supplier<List<Agendamentos>> estadoAtual,
+                                            PersistenciaConfig config) {
+        this.arquivo = arquivo.toAbsolutePath();
+        this.estadoAtual = estadoAtual;
+        this.gravacao = new GravacaoAssincrona("gravacao-" + nome, this::sincronizar,
+                config.getIntervaloGravacaoMs(), config.getLimiteAlteracoes(), config.isThreadsVirtuais());
+        this.tempoCarga = MetricasPersistencia.tempoCarga(nome);
+        this.tempoGravacao = MetricasPersistencia.tempoGravacao(nome, MetricasPersistencia.BINARIO);
+        this.bytesGravados = MetricasPersistencia.bytesGravados(nome, MetricasPersistencia.BINARIO);
+        this.falhasGravacao = MetricasPersistencia.falhasGravacao(nome, MetricasPersistencia.BINARIO);
+    }
+
+    // o arquivo binário fica ao lado do json, com a extensão .bin
+    public static Path caminhoBinario(String caminhoArquivoJson) {
+        Path json = Path.of(caminhoArquivoJson);
+        String nome = json.getFileName().toString();
+        String semExtensao = nome.endsWith(".json") ? nome.substring(0, nome.length() - ".json".length()) : nome;
+        return json.resolveSibling(semExtensao + ".bin");
+    }
+
+    // lê todos os agendamentos de um arquivo binário, sem abri-lo para escrita
+    public static List<Agendamentos> ler(Path arquivo) throws IOException {
+        try (FileChannel leitura = FileChannel.open(arquivo, StandardOpenOption.READ)) {
+            MappedByteBuffer mapa = leitura.map(FileChannel.MapMode.READ_ONLY, 0, leitura.size());
+            int quantidade = validarCabecalho(mapa, arquivo);
+            List<Agendamentos> agendamentos = new ArrayList<>(quantidade);
+            for (int posicao = 0; posicao < quantidade; posicao++) {
+                agendamentos.add(lerRegistro(mapa, posicao));
+            }
+            return agendamentos;
+        }
+    }
+
+    // grava um arquivo binário novo com os agendamentos informados, substituindo o existente
+    public static void gravar(Path arquivo, Collection<Agendamentos> agendamentos) throws IOException {
+        Path destino = arquivo.toAbsolutePath();
+        Files.createDirectories(destino.getParent());
+        Path temporario = destino.resolveSibling(destino.getFileName() + ".tmp");
+        Files.deleteIfExists(temporario);
+        try (FileChannel escrita = FileChannel.open(temporario, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer mapa = escrita.map(FileChannel.MapMode.READ_WRITE, 0, tamanhoArquivo(agendamentos.size()));
+            escreverCabecalho(mapa);
+            int posicao = 0;
+            for (Agendamentos agendamento : agendamentos) {
+                escreverRegistro(mapa, posicao++, agendamento);
+            }
+            mapa.putLong(POSICAO_QUANTIDADE, posicao);
+            mapa.force();
+        }
+        Files.move(temporario, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public List<Agendamentos> carregar() {
+        Timer.Sample amostra = Timer.start();
+        lock.lock();
+        try {
+            fechar();
+            posicoes.clear();
+            quantidade = 0;
+            if (!Files.exists(arquivo)) {
+                return new ArrayList<>();
+            }
+            abrir();
+            List<Agendamentos> agendamentos = new ArrayList<>(quantidade);
+            for (int posicao = 0; posicao < quantidade; posicao++) {
+                Agendamentos agendamento = lerRegistro(mapa, posicao);
+                posicoes.put(agendamento.getIdAgendamento(), posicao);
+                agendamentos.add(agendamento);
+            }
+            return agendamentos;
+        } catch (IOException e) {
+            // não inicia com a memória vazia, senão a próxima gravação apagaria o arquivo
+            throw new UncheckedIOException("Erro ao carregar " + arquivo, e);
+        } finally {
+            lock.unlock();
+            amostra.stop(tempoCarga);
+        }
+    }
+
+    // os ids só cabem no registro como UUID na forma canônica, a que volta igual ao ser lida
+    @Override
+    public void validar(Agendamentos agendamento) {
+        uuid("idAgendamento", agendamento.getIdAgendamento());
+        uuid("idUsuario", agendamento.getIdUsuario());
+    }
+
+    @Override
+    public void registrar(Agendamentos agendamento) {
+        registrarLote(List.of(agendamento));
+    }
+
+    // os registros do lote são escritos no mapa sob um único lock, com uma única gravação pendente. Uma falha não
+    // chega a quem chamou: a alteração já está em memória e o arquivo é regravado na próxima gravação
+    @Override
+    public void registrarLote(List<Agendamentos> agendamentos) {
+        if (agendamentos.isEmpty()) {
+            return;
+        }
+        lock.lock();
+        try {
+            if (mapa == null) {
+                criarOuAbrir();
+            }
+            for (Agendamentos agendamento : agendamentos) {
+                escrever(agendamento);
+            }
+        } catch (IOException | UncheckedIOException e) {
+            regravacaoPendente = true;
+            falhasGravacao.increment();
+            log.error("Falha ao gravar {} agendamento(s) em {}; ficam só em memória até a próxima gravação: {}",
+                    agendamentos.size(), arquivo, agendamentos.stream().map(Agendamentos::getIdAgendamento).toList(), e);
+        } finally {
+            lock.unlock();
+        }
+        gravacao.registrarAlteracoes(agendamentos.size());
+    }
+
+    private void escrever(Agendamentos agendamento) throws IOException {
+        Integer posicao = posicoes.get(agendamento.getIdAgendamento());
+        if (posicao != null) {
+            if (mapa.getInt(TAMANHO_CABECALHO + posicao * TAMANHO_REGISTRO + VERSAO_REGISTRO) > agendamento.getVersao()) {
+                // uma alteração posterior do agendamento já foi gravada
+                return;
+            }
+            escreverCamposAlteraveis(mapa, posicao, agendamento);
+            bytesGravados.increment(TAMANHO_CAMPOS_ALTERAVEIS);
+        } else {
+            if (TAMANHO_CABECALHO + (long) (quantidade + 1) * TAMANHO_REGISTRO > mapa.capacity()) {
+                mapear(Math.max(CAPACIDADE_INICIAL, quantidade * 2));
+            }
+            escreverRegistro(mapa, quantidade, agendamento);
+            posicoes.put(agendamento.getIdAgendamento(), quantidade);
+            quantidade++;
+            // a quantidade só inclui o registro depois que ele foi escrito por inteiro
+            mapa.putLong(POSICAO_QUANTIDADE, quantidade);
+            bytesGravados.increment(TAMANHO_REGISTRO + Long.BYTES);
+        }
+    }
+
+    // reescreve o arquivo inteiro com o estado atual e passa a usar o novo arquivo
+    @Override
+    public void registrarTudo() {
+        lock.lock();
+        try {
+            regravar();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Erro ao gravar " + arquivo, e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // só com o lock; se falhar, a regravação fica pendente para a próxima gravação
+    private void regravar() throws IOException {
+        regravacaoPendente = false;
+        try {
+            fechar();
+            Timer.Sample amostra = Timer.start();
+            gravar(arquivo, estadoAtual.get());
+            amostra.stop(tempoGravacao);
+            bytesGravados.increment(Files.size(arquivo));
+            carregar();
+        } catch (IOException | RuntimeException e) {
+            regravacaoPendente = true;
+            throw e;
+        }
+    }
+
+    @Override
+    public void gravarPendentes() {
+        gravacao.gravarPendentes();
+    }
+
+    @Override
+    public void close() {
+        gravacao.close();
+        lock.lock();
+        try {
+            fechar();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void sincronizar() throws IOException {
+        lock.lock();
+        try {
+            if (regravacaoPendente) {
+                regravar();
+            } else if (mapa != null) {
+                Timer.Sample amostra = Timer.start();
+                mapa.force();
+                amostra.stop(tempoGravacao);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void criarOuAbrir() throws IOException {
+        if (Files.exists(arquivo)) {
+            abrir();
+            return;
+        }
+        Files.createDirectories(arquivo.getParent());
+        canal = FileChannel.open(arquivo, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        mapear(CAPACIDADE_INICIAL);
+        escreverCabecalho(mapa);
+        quantidade = 0;
+    }
+
+    private void abrir() throws IOException {
+        canal = FileChannel.open(arquivo, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        mapa = canal.map(FileChannel.MapMode.READ_WRITE, 0, canal.size());
+        quantidade = validarCabecalho(mapa, arquivo);
+    }
+
+    // mapear além do fim do arquivo aumenta o arquivo; a área nova fica zerada até receber registros
+    private void mapear(int capacidade) throws IOException {
+        mapa = canal.map(FileChannel.MapMode.READ_WRITE, 0, tamanhoArquivo(capacidade));
+    }
+
+    private void fechar() {
+        if (mapa != null) {
+            mapa.force();
+            mapa = null;
+        }
+        if (canal != null) {
+            try {
+                canal.close();
+            } catch (IOException e) {
+                log.error("Falha ao fechar {}", arquivo, e);
+            }
+            canal = null;
+        }
+    }
+
+    private static long tamanhoArquivo(int capacidade) {
+        return TAMANHO_CABECALHO + (long) Math.max(capacidade, 1) * TAMANHO_REGISTRO;
+    }
+
+    private static void escreverCabecalho(MappedByteBuffer mapa) {
+        mapa.putInt(0, MAGICO);
+        mapa.putShort(4, VERSAO);
+        mapa.putShort(6, (short) TAMANHO_REGISTRO);
+        mapa.putLong(POSICAO_QUANTIDADE, 0);
+    }
+
+    private static int validarCabecalho(MappedByteBuffer mapa, Path arquivo) throws IOException {
+        if (mapa.capacity() < TAMANHO_CABECALHO || mapa.getInt(0) != MAGICO) {
+            throw new IOException(arquivo + " não é um arquivo binário de agendamentos.");
+        }
+        if (mapa.getShort(4) != VERSAO || mapa.getShort(6) != TAMANHO_REGISTRO) {
+            throw new IOException(arquivo + " tem uma versão do formato binário não suportada.");
+        }
+        long quantidade = mapa.getLong(POSICAO_QUANTIDADE);
+        if (quantidade < 0 || TAMANHO_CABECALHO + quantidade * TAMANHO_REGISTRO > mapa.capacity()) {
+            throw new IOException(arquivo + " está truncado ou corrompido.");
+        }
+        return (int) quantidade;
+    }
+
+    private static Agendamentos lerRegistro(MappedByteBuffer mapa, int posicao) {
+        int inicio = TAMANHO_CABECALHO + posicao * TAMANHO_REGISTRO;
+        long dataHora = mapa.getLong(inicio + DATA_HORA);
+        byte servico = mapa.get(inicio + SERVICO);
+        byte status = mapa.get(inicio + STATUS);
+        Agendamentos agendamento = new Agendamentos(
+                new UUID(mapa.getLong(inicio + ID_AGENDAMENTO), mapa.getLong(inicio + ID_AGENDAMENTO + 8)).toString(),
+                new UUID(mapa.getLong(inicio + ID_USUARIO), mapa.getLong(inicio + ID_USUARIO + 8)).toString(),
+                servico == NULO ? null : SERVICOS[servico],
+                dataHora == SEM_DATA_HORA ? null : LocalDateTime.ofEpochSecond(dataHora * 60, 0, ZoneOffset.UTC),
+                status == NULO ? null : STATUS_AGENDAMENTO[status]);
+        agendamento.setVersao(mapa.getInt(inicio + VERSAO_REGISTRO));
+        return agendamento;
+    }
+
+    private static void escreverRegistro(MappedByteBuffer mapa, int posicao, Agendamentos agendamento) {
+        int inicio = TAMANHO_CABECALHO + posicao * TAMANHO_REGISTRO;
+        UUID idAgendamento = uuid("idAgendamento", agendamento.getIdAgendamento());
+        UUID idUsuario = uuid("idUsuario", agendamento.getIdUsuario());
+        mapa.putLong(inicio + ID_AGENDAMENTO, idAgendamento.getMostSignificantBits());
+        mapa.putLong(inicio + ID_AGENDAMENTO + 8, idAgendamento.getLeastSignificantBits());
+        mapa.putLong(inicio + ID_USUARIO, idUsuario.getMostSignificantBits());
+        mapa.putLong(inicio + ID_USUARIO + 8, idUsuario.getLeastSignificantBits());
+        escreverCamposAlteraveis(mapa, posicao, agendamento);
+    }
+
+    // os ids não mudam; uma alteração só reescreve estes campos no próprio registro
+    private static void escreverCamposAlteraveis(MappedByteBuffer mapa, int posicao, Agendamentos agendamento) {
+        int inicio = TAMANHO_CABECALHO + posicao * TAMANHO_REGISTRO;
+        mapa.putLong(inicio + DATA_HORA, minutos(agendamento.getDataHora()));
+        mapa.put(inicio + SERVICO, agendamento.getServico() == null ? NULO : (byte) agendamento.getServico().ordinal());
+        mapa.put(inicio + STATUS, agendamento.getStatus() == null ? NULO : (byte) agendamento.getStatus().ordinal());
+        mapa.putInt(inicio + VERSAO_REGISTRO, (int) agendamento.getVersao());
+    }
+
+    private static UUID uuid(String campo, String valor) {
+        if (valor != null) {
+            try {
+                UUID uuid = UUID.fromString(valor);
+                if (uuid.toString().equals(valor)) {
+                    return uuid;
+                }
+            } catch (IllegalArgumentException e) {
+                // mesmo erro de um UUID fora da forma canônica
+            }
+        }
+        throw new IllegalArgumentException(campo + " não é um UUID válido: " + valor);
+    }
+
+    private static long minutos(LocalDateTime dataHora) {
+        return dataHora == null ? SEM_DATA_HORA : IndiceHorarios.chave(dataHora);
+    }
+}
@@ -0,0 +1,91 @@
+package com.api.agendamentos.repository;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+// grava as alterações em disco em segundo plano (write-behind), agrupando várias alterações
+// em uma única escrita: a cada intervalo ou quando o limite de alterações pendentes é atingido.
+// A exclusão mútua usa ReentrantLock, e não synchronized, para não prender a thread portadora de uma thread virtual.
+public class GravacaoAssincrona implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(GravacaoAssincrona.class);
+
+    @FunctionalInterface
+    public interface Gravacao {
+        void gravar() throws IOException;
+    }
+
+    private final String nome;
+    private final Gravacao gravacao;
+    private final int limiteAlteracoes;
+    private final AtomicInteger alteracoesPendentes = new AtomicInteger();
+    private final ReentrantLock lockGravacao = new ReentrantLock();
+    private final ScheduledExecutorService executor;
+
+    // com threadVirtual a gravação roda numa thread virtual; a espera pelo disco (fsync) não ocupa uma thread de plataforma
+    public GravacaoAssincrona(String nome, Gravacao gravacao, long intervaloMs, int limiteAlteracoes, boolean threadVirtual) {
+        this.nome = nome;
+        this.gravacao = gravacao;
+        this.limiteAlteracoes = limiteAlteracoes;
+        ThreadFactory threads = threadVirtual
+                ? Thread.ofVirtual().name(nome).factory()
+                : Thread.ofPlatform().name(nome).daemon(true).factory();
+        this.executor = Executors.newSingleThreadScheduledExecutor(threads);
+        executor.scheduleWithFixedDelay(this::gravarPendentes, intervaloMs, intervaloMs, TimeUnit.MILLISECONDS);
+    }
+
+    public void registrarAlteracao() {
+        registrarAlteracoes(1);
+    }
+
+    // um lote conta todas as suas alterações de uma vez e dispara no máximo uma gravação
+    public void registrarAlteracoes(int quantidade) {
+        int pendentes = alteracoesPendentes.addAndGet(quantidade);
+        if (pendentes >= limiteAlteracoes && pendentes - quantidade < limiteAlteracoes) {
+            executor.execute(this::gravarPendentes);
+        }
+    }
+
+    public int getAlteracoesPendentes() {
+        return alteracoesPendentes.get();
+    }
+
+    public void gravarPendentes() {
+        lockGravacao.lock();
+        try {
+            int pendentes = alteracoesPendentes.getAndSet(0);
+            if (pendentes == 0) {
+                return;
+            }
+            try {
+                gravacao.gravar();
+            } catch (IOException | RuntimeException e) {
+                // mantém as alterações como pendentes para a próxima tentativa
+                alteracoesPendentes.addAndGet(pendentes);
+                log.error("Falha na gravação {}; {} alteração(ões) continuam pendentes para a próxima tentativa",
+                        nome, pendentes, e);
+            }
+        } finally {
+            lockGravacao.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        gravarPendentes();
+    }
+}
@@ -0,0 +1,131 @@
+package com.api.agendamentos.repository;
+
+import com.api.agendamentos.models.Agendamentos;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+// índices ordenados por (dataHora, idAgendamento): um com todos os agendamentos e um por usuário.
+// Permitem percorrer um intervalo de datas ou os agendamentos de um usuário sem varrer os demais.
+public class IndiceAgendamentosOrdenados {
+
+    // posição de um agendamento nos índices; também serve como cursor de paginação
+    public static final class Chave implements Comparable<Chave> {
+        private static final Comparator<Chave> ORDEM = Comparator
+                .comparing((Chave chave) -> chave.dataHora, Comparator.nullsFirst(Comparator.naturalOrder()))
+                .thenComparing(chave -> chave.idAgendamento, Comparator.nullsFirst(Comparator.naturalOrder()));
+
+        private final LocalDateTime dataHora;
+        private final String idAgendamento;
+
+        public Chave(LocalDateTime dataHora, String idAgendamento) {
+            this.dataHora = dataHora;
+            this.idAgendamento = idAgendamento;
+        }
+
+        public static Chave de(Agendamentos agendamento) {
+            return new Chave(agendamento.getDataHora(), agendamento.getIdAgendamento());
+        }
+
+        public LocalDateTime getDataHora() {
+            return dataHora;
+        }
+
+        public String getIdAgendamento() {
+            return idAgendamento;
+        }
+
+        @Override
+        public int compareTo(Chave outra) {
+            return ORDEM.compare(this, outra);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Chave chave)) return false;
+            return Objects.equals(dataHora, chave.dataHora) && Objects.equals(idAgendamento, chave.idAgendamento);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(dataHora, idAgendamento);
+        }
+    }
+
+    private final ConcurrentSkipListMap<Chave, Agendamentos> todos = new ConcurrentSkipListMap<>();
+    private final Map<String, ConcurrentSkipListMap<Chave, Agendamentos>> porUsuario = new ConcurrentHashMap<>();
+
+    public void indexar(Agendamentos agendamento) {
+        Chave chave = Chave.de(agendamento);
+        todos.put(chave, agendamento);
+        porUsuario.computeIfAbsent(agendamento.getIdUsuario(), id -> new ConcurrentSkipListMap<>())
+                .put(chave, agendamento);
+    }
+
+    public void remover(Agendamentos agendamento) {
+        Chave chave = Chave.de(agendamento);
+        todos.remove(chave, agendamento);
+        NavigableMap<Chave, Agendamentos> agendamentos = porUsuario.get(agendamento.getIdUsuario());
+        if (agendamentos != null) {
+            agendamentos.remove(chave, agendamento);
+        }
+    }
+
+    public int contar(String idUsuario) {
+        NavigableMap<Chave, Agendamentos> agendamentos = porUsuario.get(idUsuario);
+        return agendamentos == null ? 0 : agendamentos.size();
+    }
+
+    // percorre apenas os agendamentos do usuário, a partir da posição inicio
+    public List<Agendamentos> getAgendamentos(String idUsuario, long inicio, int quantidade) {
+        NavigableMap<Chave, Agendamentos> agendamentos = porUsuario.get(idUsuario);
+        if (agendamentos == null) {
+            return Collections.emptyList();
+        }
+        return agendamentos.values().stream()
+                .skip(inicio)
+                .limit(quantidade)
+                .toList();
+    }
+
+    // visão ordenada dos agendamentos (de um usuário, se informado) com dataHora em [de, ate) e posteriores ao cursor.
+    public NavigableMap<Chave, Agendamentos> intervalo(String idUsuario, LocalDateTime de, LocalDateTime ate, Chave depoisDe) {
+        NavigableMap<Chave, Agendamentos> agendamentos = idUsuario == null ? todos : porUsuario.get(idUsuario);
+        if (agendamentos == null) {
+            return Collections.emptyNavigableMap();
+        }
+        Chave inferior = de == null ? null : new Chave(de, null);
+        boolean incluiInferior = true;
+        if (depoisDe != null && (inferior == null || depoisDe.compareTo(inferior) >= 0)) {
+            inferior = depoisDe;
+            incluiInferior = false;
+        }
+        Chave superior = ate == null ? null : new Chave(ate, null);
+        if (inferior != null && superior != null) {
+            if (superior.compareTo(inferior) <= 0) {
+                return Collections.emptyNavigableMap();
+            }
+            return agendamentos.subMap(inferior, incluiInferior, superior, false);
+        }
+        if (inferior != null) {
+            return agendamentos.tailMap(inferior, incluiInferior);
+        }
+        if (superior != null) {
+            return agendamentos.headMap(superior, false);
+        }
+        return agendamentos;
+    }
+
+    public void limpar() {
+        todos.clear();
+        porUsuario.clear();
+    }
+}
@@ -0,0 +1,192 @@
+package com.api.agendamentos.repository;
+
+import com.api.agendamentos.config.CapacidadeConfig;
+import com.api.agendamentos.models.Agendamentos;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// índice da ocupação dos horários: para cada dia, um contador atômico por (horário, serviço) com a quantidade de
+// agendamentos ativos. Os contadores do dia ficam num array de inteiros por hora, criado na primeira reserva da hora,
+// então reservar é incrementar uma posição do array com compare-and-set enquanto ela estiver abaixo da capacidade do
+// serviço (verificação e reserva numa única operação O(1) sem lock), e a consulta de disponibilidade lê só as
+// posições dos horários pedidos, sem criar mapas nem objetos por horário.
+public class IndiceHorarios {
+
+    private static final int MINUTOS_DIA = 24 * 60;
+    private static final int HORAS_DIA = 24;
+    private static final Agendamentos.TipoServico[] TIPOS = Agendamentos.TipoServico.values();
+    // só os serviços canônicos (as constantes em maiúsculas, as primeiras do enum) têm contador
+    private static final int SERVICOS = (int) Arrays.stream(TIPOS).filter(tipo -> tipo.canonico() == tipo).count();
+    private static final int POSICOES_HORA = 60 * SERVICOS;
+
+    private final CapacidadeConfig capacidade;
+    // dia (desde a época) -> hora do dia -> vaga da hora (minuto da hora * SERVICOS + serviço) -> agendamentos ativos
+    private final Map<Long, AtomicReferenceArray<AtomicIntegerArray>> ocupacaoPorDia = new ConcurrentHashMap<>();
+    // id -> vaga (minuto desde a época * SERVICOS + serviço) de cada agendamento contado, para que indexar
+    // o mesmo agendamento de novo não conte duas vezes
+    private final Map<String, Long> vagas = new ConcurrentHashMap<>();
+
+    public IndiceHorarios(CapacidadeConfig capacidade) {
+        this.capacidade = capacidade;
+    }
+
+    public IndiceHorarios() {
+        this(CapacidadeConfig.unitaria());
+    }
+
+    public static long chave(LocalDateTime dataHora) {
+        return dataHora.toEpochSecond(ZoneOffset.UTC) / 60;
+    }
+
+    // agendamentos gravados sem dataHora ou sem serviço não ocupam horário
+    private static Long vaga(Agendamentos agendamento) {
+        if (agendamento.getDataHora() == null || agendamento.getServico() == null) {
+            return null;
+        }
+        return vaga(chave(agendamento.getDataHora()), agendamento.getServico());
+    }
+
+    private static long vaga(long minuto, Agendamentos.TipoServico servico) {
+        return minuto * SERVICOS + servico.canonico().ordinal();
+    }
+
+    // posição da vaga no array da sua hora
+    private static int posicao(long vaga) {
+        return (int) Math.floorMod(vaga, (long) POSICOES_HORA);
+    }
+
+    // quantos agendamentos do serviço ainda cabem no horário
+    public int getVagasRestantes(LocalDateTime dataHora, Agendamentos.TipoServico servico) {
+        long vaga = vaga(chave(dataHora), servico);
+        AtomicIntegerArray contadores = contadores(vaga, false);
+        return Math.max(0, capacidade.getCapacidade(servico) - (contadores == null ? 0 : contadores.get(posicao(vaga))));
+    }
+
+    // vagas restantes em cada horário (todos do mesmo dia), na mesma ordem; com servico nulo, de qualquer serviço,
+    // somando as vagas de todos. Só lê os contadores: a única alocação é o array devolvido
+    public int[] getVagasRestantes(List<LocalDateTime> horarios, Agendamentos.TipoServico servico) {
+        int capacidadeHorario = capacidade.getCapacidade(servico);
+        int[] restantes = new int[horarios.size()];
+        Arrays.fill(restantes, capacidadeHorario);
+        if (horarios.isEmpty()) {
+            return restantes;
+        }
+        AtomicReferenceArray<AtomicIntegerArray> dia = ocupacaoPorDia.get(horarios.get(0).toLocalDate().toEpochDay());
+        if (dia == null) {
+            return restantes;
+        }
+        for (int i = 0; i < restantes.length; i++) {
+            LocalDateTime horario = horarios.get(i);
+            AtomicIntegerArray contadores = dia.get(horario.getHour());
+            if (contadores != null) {
+                restantes[i] = capacidadeHorario - ocupadas(contadores, horario.getMinute() * SERVICOS, servico);
+            }
+        }
+        return restantes;
+    }
+
+    // vagas restantes de cada horário do dia com algum agendamento do serviço (com servico nulo, de qualquer
+    // serviço, somando as vagas de todos); os horários ausentes têm a capacidade inteira livre
+    public Map<LocalDateTime, Integer> getVagasRestantes(LocalDate data, Agendamentos.TipoServico servico) {
+        AtomicReferenceArray<AtomicIntegerArray> dia = ocupacaoPorDia.get(data.toEpochDay());
+        if (dia == null) {
+            return Map.of();
+        }
+        int capacidadeHorario = capacidade.getCapacidade(servico);
+        Map<LocalDateTime, Integer> restantes = new HashMap<>();
+        for (int hora = 0; hora < HORAS_DIA; hora++) {
+            AtomicIntegerArray contadores = dia.get(hora);
+            for (int minuto = 0; contadores != null && minuto < 60; minuto++) {
+                int ocupadas = ocupadas(contadores, minuto * SERVICOS, servico);
+                if (ocupadas > 0) {
+                    restantes.put(data.atTime(hora, minuto), capacidadeHorario - ocupadas);
+                }
+            }
+        }
+        return restantes;
+    }
+
+    // vagas ocupadas no minuto que começa em inicio no array da hora. Acima da capacidade (capacidade reduzida com
+    // agendamentos já feitos) um serviço não tira vaga de outro
+    private int ocupadas(AtomicIntegerArray contadores, int inicio, Agendamentos.TipoServico servico) {
+        if (servico != null) {
+            Agendamentos.TipoServico canonico = servico.canonico();
+            return Math.min(contadores.get(inicio + canonico.ordinal()), capacidade.getCapacidade(canonico));
+        }
+        int ocupadas = 0;
+        for (int i = 0; i < SERVICOS; i++) {
+            ocupadas += Math.min(contadores.get(inicio + i), capacidade.getCapacidade(TIPOS[i]));
+        }
+        return ocupadas;
+    }
+
+    // ocupa uma vaga do horário de forma atômica (compare-and-set): nunca passa da capacidade do serviço,
+    // mesmo com várias reservas simultâneas
+    public boolean reservar(LocalDateTime dataHora, Agendamentos agendamento) {
+        long vaga = vaga(chave(dataHora), agendamento.getServico());
+        int limite = capacidade.getCapacidade(agendamento.getServico());
+        AtomicIntegerArray contadores = contadores(vaga, true);
+        int posicao = posicao(vaga);
+        int atual;
+        do {
+            atual = contadores.get(posicao);
+            if (atual >= limite) {
+                return false;
+            }
+        } while (!contadores.compareAndSet(posicao, atual, atual + 1));
+        vagas.put(agendamento.getIdAgendamento(), vaga);
+        return true;
+    }
+
+    // atualiza o índice de acordo com o status atual do agendamento. Agendamentos carregados dos arquivos
+    // são contados mesmo acima da capacidade (ex.: capacidade reduzida depois das reservas)
+    public void indexar(Agendamentos agendamento) {
+        Long vaga = agendamento.getStatus() == Agendamentos.statusAgendamento.AGENDADO ? vaga(agendamento) : null;
+        Long anterior = vaga == null ? vagas.remove(agendamento.getIdAgendamento())
+                : vagas.put(agendamento.getIdAgendamento(), vaga);
+        if (vaga != null && !vaga.equals(anterior)) {
+            contadores(vaga, true).incrementAndGet(posicao(vaga));
+        }
+        if (anterior != null && !anterior.equals(vaga)) {
+            contadores(anterior, true).decrementAndGet(posicao(anterior));
+        }
+    }
+
+    public void reconstruir(Collection<Agendamentos> agendamentos) {
+        ocupacaoPorDia.clear();
+        vagas.clear();
+        for (Agendamentos agendamento : agendamentos) {
+            indexar(agendamento);
+        }
+    }
+
+    // contadores da hora da vaga; o caminho comum (hora já existente) é só leitura, sem lock
+    private AtomicIntegerArray contadores(long vaga, boolean criar) {
+        long minuto = Math.floorDiv(vaga, SERVICOS);
+        long dia = Math.floorDiv(minuto, MINUTOS_DIA);
+        int hora = (int) (Math.floorMod(minuto, MINUTOS_DIA) / 60);
+        AtomicReferenceArray<AtomicIntegerArray> ocupacao = ocupacaoPorDia.get(dia);
+        if (ocupacao == null) {
+            if (!criar) {
+                return null;
+            }
+            ocupacao = ocupacaoPorDia.computeIfAbsent(dia, d -> new AtomicReferenceArray<>(HORAS_DIA));
+        }
+        AtomicIntegerArray contadores = ocupacao.get(hora);
+        if (contadores == null && criar) {
+            ocupacao.compareAndSet(hora, null, new AtomicIntegerArray(POSICOES_HORA));
+            contadores = ocupacao.get(hora);
+        }
+        return contadores;
+    }
+}
@@ -0,0 +1,46 @@
+package com.api.agendamentos.repository;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+// intercala iteradores já ordenados num único iterador ordenado, lendo um elemento de cada vez: mantém só o
+// próximo elemento de cada iterador numa fila de prioridade, então cada next() custa O(log k) para k iteradores
+final class IteradorIntercalado<T> implements Iterator<T> {
+
+    private record Proximo<T>(T elemento, Iterator<T> origem) {
+    }
+
+    private final PriorityQueue<Proximo<T>> proximos;
+
+    IteradorIntercalado(List<Iterator<T>> iteradores, Comparator<? super T> ordem) {
+        this.proximos = new PriorityQueue<>(Math.max(1, iteradores.size()),
+                (a, b) -> ordem.compare(a.elemento(), b.elemento()));
+        for (Iterator<T> iterador : iteradores) {
+            avancar(iterador);
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        return !proximos.isEmpty();
+    }
+
+    @Override
+    public T next() {
+        Proximo<T> proximo = proximos.poll();
+        if (proximo == null) {
+            throw new NoSuchElementException();
+        }
+        avancar(proximo.origem());
+        return proximo.elemento();
+    }
+
+    private void avancar(Iterator<T> iterador) {
+        if (iterador.hasNext()) {
+            proximos.add(new Proximo<>(iterador.next(), iterador));
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.api.agendamentos.repository;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+
+// percorre uma consulta página a página, buscando a próxima só quando a anterior termina, então só uma página
+// fica em memória. proximaPagina recebe o último item lido (null na primeira) e devolve até tamanhoPagina itens.
+class IteradorPaginado<T> implements Iterator<T> {
+    private final Function<T, List<T>> proximaPagina;
+    private final int tamanhoPagina;
+    private Iterator<T> pagina = Collections.emptyIterator();
+    private T ultimo;
+    private boolean terminou;
+
+    IteradorPaginado(Function<T, List<T>> proximaPagina, int tamanhoPagina) {
+        this.proximaPagina = proximaPagina;
+        this.tamanhoPagina = tamanhoPagina;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (!pagina.hasNext()) {
+            if (terminou) {
+                return false;
+            }
+            List<T> itens = proximaPagina.apply(ultimo);
+            terminou = itens.size() < tamanhoPagina;
+            pagina = itens.iterator();
+        }
+        return true;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        ultimo = pagina.next();
+        return ultimo;
+    }
+}
@@ -0,0 +1,198 @@
+package com.api.agendamentos.repository;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+// arquivo de journal: cada alteração é anexada ao final como uma linha, sem reescrever o arquivo inteiro.
+// Na compactação o journal atual vira o segmento anterior e um novo journal vazio passa a receber os registros;
+// o segmento anterior só é apagado depois que o snapshot que o incorpora foi gravado.
+public class Journal implements AutoCloseable {
+
+    private static final byte QUEBRA_LINHA = '\n';
+
+    private final Path caminho;
+    private final Path caminhoAnterior;
+    private final ReentrantLock lock = new ReentrantLock();
+    private FileChannel canal;
+    private long registros;
+    private boolean pendenteSincronizar;
+
+    public Journal(Path caminho) {
+        this.caminho = caminho.toAbsolutePath();
+        this.caminhoAnterior = this.caminho.resolveSibling(this.caminho.getFileName() + ".anterior");
+    }
+
+    // o arquivo só é criado no primeiro registro anexado
+    private FileChannel canal() throws IOException {
+        if (canal == null) {
+            Files.createDirectories(caminho.getParent());
+            canal = FileChannel.open(caminho, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+        return canal;
+    }
+
+    // lê os registros existentes, primeiro do segmento anterior (compactação interrompida) e depois do atual
+    public List<String> lerRegistros() throws IOException {
+        List<String> linhas = new ArrayList<>();
+        if (Files.exists(caminhoAnterior)) {
+            lerSegmento(caminhoAnterior, linhas);
+        }
+        int anteriores = linhas.size();
+        lerSegmento(caminho, linhas);
+        lock.lock();
+        try {
+            registros = linhas.size() - anteriores;
+        } finally {
+            lock.unlock();
+        }
+        return linhas;
+    }
+
+    // uma última linha incompleta (gravação interrompida) é descartada e cortada do arquivo, para que o próximo
+    // registro anexado não seja emendado nela
+    private void lerSegmento(Path segmento, List<String> linhas) throws IOException {
+        if (!Files.exists(segmento) || Files.size(segmento) == 0) {
+            return;
+        }
+        try (FileChannel arquivo = FileChannel.open(segmento, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long tamanhoCompleto = fimDaUltimaLinha(arquivo);
+            if (tamanhoCompleto < arquivo.size()) {
+                arquivo.truncate(tamanhoCompleto);
+                arquivo.force(false);
+            }
+        }
+        try (BufferedReader reader = Files.newBufferedReader(segmento, StandardCharsets.UTF_8)) {
+            String linha;
+            while ((linha = reader.readLine()) != null) {
+                if (!linha.isBlank()) {
+                    linhas.add(linha);
+                }
+            }
+        }
+    }
+
+    // posição logo depois da última quebra de linha (0 se não houver nenhuma), lendo o arquivo de trás para frente
+    private static long fimDaUltimaLinha(FileChannel arquivo) throws IOException {
+        ByteBuffer bloco = ByteBuffer.allocate(8192);
+        long fim = arquivo.size();
+        while (fim > 0) {
+            long inicio = Math.max(0, fim - bloco.capacity());
+            bloco.clear().limit((int) (fim - inicio));
+            while (bloco.hasRemaining()) {
+                if (arquivo.read(bloco, inicio + bloco.position()) < 0) {
+                    break;
+                }
+            }
+            for (int i = bloco.position() - 1; i >= 0; i--) {
+                if (bloco.get(i) == QUEBRA_LINHA) {
+                    return inicio + i + 1;
+                }
+            }
+            fim = inicio;
+        }
+        return 0;
+    }
+
+    public void anexar(byte[] registro) throws IOException {
+        anexar(List.of(registro));
+    }
+
+    // anexa vários registros numa única escrita; retorna a quantidade de bytes anexados
+    public int anexar(List<byte[]> novosRegistros) throws IOException {
+        int tamanho = 0;
+        for (byte[] registro : novosRegistros) {
+            tamanho += registro.length + 1;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(tamanho);
+        for (byte[] registro : novosRegistros) {
+            buffer.put(registro).put(QUEBRA_LINHA);
+        }
+        buffer.flip();
+        lock.lock();
+        try {
+            FileChannel canal = canal();
+            while (buffer.hasRemaining()) {
+                canal.write(buffer);
+            }
+            registros += novosRegistros.size();
+            pendenteSincronizar = true;
+        } finally {
+            lock.unlock();
+        }
+        return tamanho;
+    }
+
+    // fsync dos registros anexados desde a última sincronização
+    public void sincronizar() throws IOException {
+        lock.lock();
+        try {
+            if (pendenteSincronizar) {
+                canal.force(false);
+                pendenteSincronizar = false;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // inicia uma compactação: o journal atual passa a ser o segmento anterior e o estado é capturado
+    // sem que nenhum registro novo seja anexado no meio. Se uma compactação anterior não terminou, o
+    // segmento anterior é mantido e o journal atual continua recebendo os registros.
+    public <T> T rotacionar(Supplier<T> capturarEstado) throws IOException {
+        lock.lock();
+        try {
+            if (!Files.exists(caminhoAnterior) && Files.exists(caminho)) {
+                if (canal != null) {
+                    canal.force(false);
+                    canal.close();
+                    canal = null;
+                }
+                Files.move(caminho, caminhoAnterior, StandardCopyOption.ATOMIC_MOVE);
+                registros = 0;
+                pendenteSincronizar = false;
+            }
+            return capturarEstado.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // conclui a compactação, depois que o snapshot com o estado capturado foi gravado
+    public void descartarAnterior() throws IOException {
+        Files.deleteIfExists(caminhoAnterior);
+    }
+
+    public long getRegistros() {
+        lock.lock();
+        try {
+            return registros;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (canal != null) {
+                canal.force(false);
+                canal.close();
+                canal = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+}
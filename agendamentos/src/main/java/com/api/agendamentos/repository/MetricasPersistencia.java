@@ -0,0 +1,49 @@
+package com.api.agendamentos.repository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.BaseUnits;
+
+// métricas da persistência em arquivo. Os armazenamentos não são beans, então registram no registro global
+// do Micrometer, ao qual o Spring Boot acrescenta o registro da aplicação (management.metrics.use-global-registry);
+// sem nenhum registro acrescentado, como nos testes de unidade, as medições são simplesmente descartadas.
+final class MetricasPersistencia {
+    static final String SNAPSHOT = "snapshot";
+    static final String JOURNAL = "journal";
+    static final String BINARIO = "binario";
+
+    private MetricasPersistencia() {}
+
+    // tempo para ler o arquivo (e o journal) e reconstruir o estado em memória
+    static Timer tempoCarga(String repositorio) {
+        return Timer.builder("persistencia.carga")
+                .description("Tempo de carga dos dados do arquivo para a memória")
+                .tag("repositorio", repositorio)
+                .register(Metrics.globalRegistry);
+    }
+
+    // tempo de cada gravação em disco: snapshot completo, fsync do journal ou force() do arquivo binário
+    static Timer tempoGravacao(String repositorio, String tipo) {
+        return Timer.builder("persistencia.gravacao")
+                .description("Tempo de gravação dos dados em disco")
+                .tags("repositorio", repositorio, "tipo", tipo)
+                .register(Metrics.globalRegistry);
+    }
+
+    // escritas que falharam; os registros afetados ficam só em memória até a próxima gravação completa
+    static Counter falhasGravacao(String repositorio, String tipo) {
+        return Counter.builder("persistencia.falhas")
+                .description("Falhas ao gravar os dados em disco")
+                .tags("repositorio", repositorio, "tipo", tipo)
+                .register(Metrics.globalRegistry);
+    }
+
+    static Counter bytesGravados(String repositorio, String tipo) {
+        return Counter.builder("persistencia.bytes.gravados")
+                .description("Bytes gravados nos arquivos de dados")
+                .baseUnit(BaseUnits.BYTES)
+                .tags("repositorio", repositorio, "tipo", tipo)
+                .register(Metrics.globalRegistry);
+    }
+}
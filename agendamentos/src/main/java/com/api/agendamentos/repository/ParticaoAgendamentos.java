@@ -0,0 +1,372 @@
+package com.api.agendamentos.repository;
+
+import com.api.agendamentos.config.CapacidadeConfig;
+import com.api.agendamentos.config.PersistenciaConfig;
+import com.api.agendamentos.models.Agendamentos;
+import com.api.agendamentos.models.FiltroAgendamentos;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+// os agendamentos de uma filial em memória, com os seus próprios índices, lock e arquivo (snapshot, journal ou
+// binário). Reservas, cancelamentos, a gravação em segundo plano e a compactação de uma filial não disputam nada
+// com as das outras.
+final class ParticaoAgendamentos {
+
+    private record Horario(LocalDateTime dataHora, Agendamentos.TipoServico servico) {
+    }
+
+    private final String idFilial;
+    private final Armazenamento<Agendamentos> armazenamento;
+
+    // os agendamentos ficam em memória (fonte da verdade); a fila guarda a ordem em que foram criados
+    private final Map<String, Agendamentos> agendamentos = new ConcurrentHashMap<>();
+    private final Queue<String> ordem = new ConcurrentLinkedQueue<>();
+    private final IndiceHorarios indiceHorarios;
+    private final IndiceAgendamentosOrdenados indiceOrdenado = new IndiceAgendamentosOrdenados();
+    // compartilhadas por todas as partições
+    private final VersoesAlteracoes versoes;
+
+    // alterações individuais usam o lock de leitura e rodam em paralelo; só a substituição de todos os
+    // agendamentos e o lote de reservas tudo ou nada precisam do lock de escrita. A gravação no arquivo é feita
+    // depois, fora do lock, então duas alterações seguidas do mesmo agendamento (ex.: reserva e cancelamento) podem
+    // chegar ao armazenamento em ordem invertida: cada alteração incrementa a versão do agendamento dentro do compute
+    // do próprio id, e o armazenamento fica com a maior versão (maisRecente no journal, versão do registro no binário)
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // nome: usado nas métricas e no nome da thread de gravação
+    ParticaoAgendamentos(String idFilial, String nome, String caminhoArquivo, PersistenciaConfig config,
+                         CapacidadeConfig capacidade, VersoesAlteracoes versoes) {
+        this.idFilial = idFilial;
+        this.versoes = versoes;
+        this.indiceHorarios = new IndiceHorarios(capacidade);
+        this.armazenamento = config.getFormatoAgendamentos() == PersistenciaConfig.Formato.BINARIO
+                ? new ArmazenamentoBinarioAgendamentos(nome,
+                        ArmazenamentoBinarioAgendamentos.caminhoBinario(caminhoArquivo), this::getAgendamentos, config)
+                : new ArmazenamentoArquivo<>(nome, caminhoArquivo, Agendamentos.class,
+                        Agendamentos::getIdAgendamento, ParticaoAgendamentos::maisRecente, this::getAgendamentos, config);
+    }
+
+    String getIdFilial() {
+        return idFilial;
+    }
+
+    // o json grava a filial de cada agendamento, mas o binário não tem o campo e os arquivos de antes das filiais
+    // também não: vale sempre a filial do arquivo em que o agendamento está, mesmo que o registro traga outra
+    void carregar() {
+        List<Agendamentos> carregados = armazenamento.carregar();
+        for (Agendamentos agendamento : carregados) {
+            agendamento.setIdFilial(idFilial);
+        }
+        substituir(carregados);
+    }
+
+    boolean vazia() {
+        return agendamentos.isEmpty();
+    }
+
+    List<Agendamentos> getAgendamentos() {
+        List<Agendamentos> lista = new ArrayList<>(agendamentos.size());
+        for (String idAgendamento : ordem) {
+            Agendamentos agendamento = agendamentos.get(idAgendamento);
+            if (agendamento != null) {
+                lista.add(agendamento);
+            }
+        }
+        return lista;
+    }
+
+    // não copia a coleção; alterações feitas durante o percurso podem ou não aparecer,
+    // mas nenhum agendamento existente do início ao fim é perdido
+    Iterator<Agendamentos> iterarAgendamentos() {
+        return ordem.stream()
+                .map(agendamentos::get)
+                .filter(Objects::nonNull)
+                .iterator();
+    }
+
+    Optional<Agendamentos> getAgendamentoPorId(String idAgendamento) {
+        return Optional.ofNullable(agendamentos.get(idAgendamento));
+    }
+
+    List<Agendamentos> getAgendamentosPorUsuario(String idUsuario, long inicio, int quantidade) {
+        return indiceOrdenado.getAgendamentos(idUsuario, inicio, quantidade);
+    }
+
+    int contarAgendamentosPorUsuario(String idUsuario) {
+        return indiceOrdenado.contar(idUsuario);
+    }
+
+    // o usuário e o período delimitam o trecho do índice ordenado que é percorrido; status e serviço são
+    // conferidos durante o percurso, em ordem de (dataHora, idAgendamento)
+    Stream<Agendamentos> filtrar(FiltroAgendamentos filtro, IndiceAgendamentosOrdenados.Chave depoisDe) {
+        LocalDateTime de = filtro.getInicio() == null ? null : filtro.getInicio().atStartOfDay();
+        LocalDateTime ate = filtro.getFim() == null ? null : filtro.getFim().plusDays(1).atStartOfDay();
+        return indiceOrdenado.intervalo(filtro.getIdUsuario(), de, ate, depoisDe).values().stream()
+                .filter(filtro::aceita);
+    }
+
+    List<Agendamentos> getAgendamentosNoHorario(LocalDateTime dataHora) {
+        return indiceOrdenado.intervalo(null, dataHora, dataHora.plusMinutes(1), null).values().stream()
+                .filter(agendamento -> agendamento.getStatus() == Agendamentos.statusAgendamento.AGENDADO)
+                .toList();
+    }
+
+    Map<LocalDateTime, Integer> getVagasRestantes(LocalDate data, Agendamentos.TipoServico servico) {
+        return indiceHorarios.getVagasRestantes(data, servico);
+    }
+
+    int[] getVagasRestantes(List<LocalDateTime> horarios, Agendamentos.TipoServico servico) {
+        return indiceHorarios.getVagasRestantes(horarios, servico);
+    }
+
+    // lança IllegalArgumentException se o armazenamento da partição não consegue gravar o agendamento
+    void validar(Agendamentos agendamento) {
+        armazenamento.validar(agendamento);
+    }
+
+    boolean reservarHorario(Agendamentos agendamento, LocalDateTime dataHora) {
+        validar(agendamento);
+        lock.readLock().lock();
+        try {
+            if (!indiceHorarios.reservar(dataHora, agendamento)) {
+                return false;
+            }
+            versoes.alterado(idFilial, agendamento, incluir(agendamento));
+        } finally {
+            lock.readLock().unlock();
+        }
+        armazenamento.registrar(agendamento);
+        return true;
+    }
+
+    // no modo tudo ou nada o lock de escrita impede que outra reserva ocupe um dos horários entre a
+    // verificação de todo o lote e a inclusão; no outro modo cada horário é reservado como numa reserva avulsa
+    List<Integer> reservarHorarios(List<Agendamentos> novosAgendamentos, boolean tudoOuNada) {
+        novosAgendamentos.forEach(this::validar);
+        List<Integer> ocupados = new ArrayList<>();
+        List<Agendamentos> reservados = new ArrayList<>(novosAgendamentos.size());
+        Lock trava = tudoOuNada ? lock.writeLock() : lock.readLock();
+        trava.lock();
+        try {
+            if (tudoOuNada) {
+                ocupados = semVaga(novosAgendamentos);
+                if (!ocupados.isEmpty()) {
+                    return ocupados;
+                }
+            }
+            for (int i = 0; i < novosAgendamentos.size(); i++) {
+                Agendamentos agendamento = novosAgendamentos.get(i);
+                if (indiceHorarios.reservar(agendamento.getDataHora(), agendamento)) {
+                    versoes.alterado(idFilial, agendamento, incluir(agendamento));
+                    reservados.add(agendamento);
+                } else {
+                    ocupados.add(i);
+                }
+            }
+        } finally {
+            trava.unlock();
+        }
+        armazenamento.registrarLote(reservados);
+        return ocupados;
+    }
+
+    // posições dos agendamentos do lote que não cabem na capacidade do horário, contando as vagas tomadas
+    // pelos itens anteriores do lote. Só é confiável com o lock de escrita (ver getLockEscrita)
+    List<Integer> semVaga(List<Agendamentos> novosAgendamentos) {
+        List<Integer> ocupados = new ArrayList<>();
+        Map<Horario, Integer> pedidas = new HashMap<>();
+        for (int i = 0; i < novosAgendamentos.size(); i++) {
+            Agendamentos agendamento = novosAgendamentos.get(i);
+            int pedidasAntes = pedidas.merge(new Horario(agendamento.getDataHora(), agendamento.getServico().canonico()), 1, Integer::sum) - 1;
+            if (pedidasAntes >= indiceHorarios.getVagasRestantes(agendamento.getDataHora(), agendamento.getServico())) {
+                ocupados.add(i);
+            }
+        }
+        return ocupados;
+    }
+
+    // para um lote tudo ou nada com agendamentos de várias filiais, que trava todas elas antes de verificar o lote
+    Lock getLockEscrita() {
+        return lock.writeLock();
+    }
+
+    boolean cancelarAgendamento(String idAgendamento) {
+        Agendamentos cancelado;
+        lock.readLock().lock();
+        try {
+            cancelado = cancelar(idAgendamento);
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (cancelado == null) {
+            return false;
+        }
+        armazenamento.registrar(cancelado);
+        return true;
+    }
+
+    // no modo tudo ou nada o lock de escrita impede que outro cancelamento mude um dos agendamentos entre a
+    // verificação de todo o lote e o cancelamento; no outro modo cada um é cancelado como num cancelamento avulso
+    List<Integer> cancelarAgendamentos(List<String> idsAgendamentos, boolean tudoOuNada) {
+        List<Integer> recusados = new ArrayList<>();
+        List<Agendamentos> cancelados = new ArrayList<>(idsAgendamentos.size());
+        Lock trava = tudoOuNada ? lock.writeLock() : lock.readLock();
+        trava.lock();
+        try {
+            if (tudoOuNada) {
+                recusados = inativos(idsAgendamentos);
+                if (!recusados.isEmpty()) {
+                    return recusados;
+                }
+            }
+            for (int i = 0; i < idsAgendamentos.size(); i++) {
+                Agendamentos cancelado = cancelar(idsAgendamentos.get(i));
+                if (cancelado == null) {
+                    recusados.add(i);
+                } else {
+                    cancelados.add(cancelado);
+                }
+            }
+        } finally {
+            trava.unlock();
+        }
+        armazenamento.registrarLote(cancelados);
+        return recusados;
+    }
+
+    // posições dos agendamentos do lote que não existem ou não estão ativos. Só é confiável com o lock de escrita
+    List<Integer> inativos(List<String> idsAgendamentos) {
+        List<Integer> inativos = new ArrayList<>();
+        for (int i = 0; i < idsAgendamentos.size(); i++) {
+            Agendamentos agendamento = agendamentos.get(idsAgendamentos.get(i));
+            if (agendamento == null || agendamento.getStatus() != Agendamentos.statusAgendamento.AGENDADO) {
+                inativos.add(i);
+            }
+        }
+        return inativos;
+    }
+
+    void atualizarAgendamento(Agendamentos agendamento) {
+        validar(agendamento);
+        lock.readLock().lock();
+        try {
+            Agendamentos anterior = incluir(agendamento);
+            indiceHorarios.indexar(agendamento);
+            versoes.alterado(idFilial, agendamento, anterior);
+        } finally {
+            lock.readLock().unlock();
+        }
+        armazenamento.registrar(agendamento);
+    }
+
+    void atualizarAgendamentos(List<Agendamentos> alterados) {
+        alterados.forEach(this::validar);
+        lock.readLock().lock();
+        try {
+            for (Agendamentos agendamento : alterados) {
+                Agendamentos anterior = incluir(agendamento);
+                indiceHorarios.indexar(agendamento);
+                versoes.alterado(idFilial, agendamento, anterior);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        armazenamento.registrarLote(alterados);
+    }
+
+    void salvarAgendamentos(List<Agendamentos> novosAgendamentos) {
+        substituir(novosAgendamentos);
+        armazenamento.registrarTudo();
+    }
+
+    void gravarPendentes() {
+        armazenamento.gravarPendentes();
+    }
+
+    void encerrar() {
+        armazenamento.close();
+    }
+
+    // o agendamento ativo é trocado por uma cópia cancelada dentro do compute do próprio id, então de dois
+    // cancelamentos simultâneos só um encontra o agendamento ativo. O objeto anterior não muda: quem já o leu não vê
+    // o status mudar antes dos índices. Retorna a cópia, ou null se o agendamento não existe ou não está ativo
+    private Agendamentos cancelar(String idAgendamento) {
+        Agendamentos[] anterior = new Agendamentos[1];
+        Agendamentos atual = agendamentos.computeIfPresent(idAgendamento, (id, agendamento) -> {
+            if (agendamento.getStatus() != Agendamentos.statusAgendamento.AGENDADO) {
+                return agendamento;
+            }
+            anterior[0] = agendamento;
+            Agendamentos cancelado = new Agendamentos(id, agendamento.getIdUsuario(), agendamento.getServico(),
+                    agendamento.getDataHora(), Agendamentos.statusAgendamento.CANCELADO);
+            cancelado.setIdFilial(agendamento.getIdFilial());
+            cancelado.setVersao(agendamento.getVersao() + 1);
+            return cancelado;
+        });
+        if (anterior[0] == null) {
+            return null;
+        }
+        // a cópia entra no índice ordenado antes de o anterior sair, para o agendamento não sumir das consultas
+        indiceOrdenado.indexar(atual);
+        indiceOrdenado.remover(anterior[0]);
+        indiceHorarios.indexar(atual);
+        versoes.alterado(idFilial, atual, anterior[0]);
+        return atual;
+    }
+
+    // retorna o agendamento que estava com o mesmo id, se havia. Substituir um agendamento (ou gravar de novo o
+    // mesmo objeto alterado) incrementa a versão a partir da que estava em memória
+    private Agendamentos incluir(Agendamentos agendamento) {
+        Agendamentos[] substituido = new Agendamentos[1];
+        agendamentos.compute(agendamento.getIdAgendamento(), (id, anterior) -> {
+            if (anterior != null) {
+                agendamento.setVersao(Math.max(agendamento.getVersao(), anterior.getVersao() + 1));
+            }
+            substituido[0] = anterior;
+            return agendamento;
+        });
+        Agendamentos anterior = substituido[0];
+        if (anterior == null) {
+            ordem.add(agendamento.getIdAgendamento());
+        } else if (anterior != agendamento) {
+            indiceOrdenado.remover(anterior);
+        }
+        indiceOrdenado.indexar(agendamento);
+        return anterior;
+    }
+
+    // entre duas gravações do mesmo agendamento, a de maior versão; com a mesma versão (registros sem versão), a posterior
+    private static Agendamentos maisRecente(Agendamentos anterior, Agendamentos lido) {
+        return lido.getVersao() >= anterior.getVersao() ? lido : anterior;
+    }
+
+    private void substituir(List<Agendamentos> novosAgendamentos) {
+        lock.writeLock().lock();
+        try {
+            agendamentos.clear();
+            ordem.clear();
+            indiceOrdenado.limpar();
+            for (Agendamentos agendamento : novosAgendamentos) {
+                incluir(agendamento);
+            }
+            indiceHorarios.reconstruir(getAgendamentos());
+            versoes.tudoAlterado();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
@@ -1,54 +1,59 @@
 package com.api.agendamentos.repository;
 
 import com.api.agendamentos.models.Usuarios;
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
-import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
-import org.springframework.stereotype.Repository;
-
-import java.io.File;
-import java.io.IOException;
-import java.util.List;
-import java.util.Optional;
 
-@Repository
-public class UsuariosRepository {
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
 
-    private static final String FILE_PATH = "C:\\Users\\VICTO\\Documents\\crafters\\Victoria-Stalino\\api-agendamentos-victoria\\data\\usuarios_farmacia.json";
-    private ObjectMapper objectMapper = new ObjectMapper();
+// armazenamento dos usuarios. A implementação padrão mantém tudo em memória e persiste em arquivo json
+// (UsuariosRepositoryArquivo); com o profile "jdbc" os usuarios ficam num banco relacional (UsuariosRepositoryJdbc).
+public interface UsuariosRepository {
 
-    public UsuariosRepository() {
-        this.objectMapper = new ObjectMapper();
-        this.objectMapper.registerModule(new JavaTimeModule());
-        objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
-        objectMapper.enable(SerializationFeature.INDENT_OUTPUT);
+    enum ResultadoAtualizacao {
+        ATUALIZADO,
+        // o novo email já pertence a outro usuário
+        EMAIL_EM_USO,
+        // o usuário não existe ou já está em outra versão
+        VERSAO_DIFERENTE
     }
 
-    // carregar os usuarios do arquivo json
-    public List<Usuarios> getUsuarios() {
-        try {
-            return objectMapper.readValue(new File(FILE_PATH), new TypeReference<List<Usuarios>>() {
-            });
-        } catch (IOException e) {
-            e.printStackTrace();
-            return null;
-        }
-    }
-    public Usuarios getUsuarioPorId(String id) {
-        List<Usuarios> usuarios = getUsuarios();
-        return usuarios.stream()
-                .filter(usuario -> usuario.getId().equals(id))
-                .findFirst()
-                .orElse(null);
+    // forma do email usada no índice único: sem espaços nas pontas e em minúsculas
+    static String normalizarEmail(String email) {
+        return email.trim().toLowerCase(Locale.ROOT);
     }
 
-    // salva os usuarios no arquivo json
-    public void salvarUsuarios(List<Usuarios> usuarios) {
-        try {
-            objectMapper.writeValue(new File(FILE_PATH), usuarios);
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-    }
+    // todos os usuarios, em ordem de cadastro
+    List<Usuarios> getUsuarios();
+
+    // os mesmos usuarios de getUsuarios(), lidos à medida que são consumidos
+    Iterator<Usuarios> iterarUsuarios();
+
+    // usuarios em ordem de id, posteriores ao cursor (se houver), até o limite
+    List<Usuarios> buscarUsuarios(String depoisDe, int limite);
+
+    // null quando o id é nulo ou não existe
+    Usuarios getUsuarioPorId(String id);
+
+    boolean existeEmail(String email);
+
+    // inclui o usuário reservando o email no índice único; retorna false, sem incluir nada,
+    // se o email já pertence a outro usuário (inclusive um cadastrado em paralelo)
+    boolean adicionarUsuario(Usuarios usuario);
+
+    // inclui vários usuarios de uma vez, com uma única gravação; retorna as posições (em ordem crescente) dos que
+    // ficaram de fora porque o email já pertence a outro usuário ou se repete num item anterior do lote
+    List<Integer> adicionarUsuarios(List<Usuarios> novos);
+
+    // substitui o usuário de mesmo id se ele ainda estiver na versão esperada (compare-and-set) e passa o
+    // atualizado para a versão seguinte. Sem alterar nada, recusa com VERSAO_DIFERENTE se outra atualização chegou
+    // antes e com EMAIL_EM_USO se o novo email já pertence a outro usuário. Atualizações de usuarios diferentes
+    // não esperam umas pelas outras
+    ResultadoAtualizacao atualizarUsuario(Usuarios atualizado, long versaoEsperada);
+
+    // substitui todos os usuarios
+    void salvarUsuarios(List<Usuarios> novosUsuarios);
+
+    // força a gravação imediata das alterações pendentes
+    void gravarPendentes();
 }
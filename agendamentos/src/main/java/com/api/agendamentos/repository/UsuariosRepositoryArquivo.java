@@ -0,0 +1,221 @@
+package com.api.agendamentos.repository;
+
+import com.api.agendamentos.config.PersistenciaConfig;
+import com.api.agendamentos.models.Usuarios;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// usuarios em memória, persistidos em arquivo json (snapshot ou journal); é a implementação usada sem o profile "jdbc"
+@Repository
+@Profile("!jdbc")
+public class UsuariosRepositoryArquivo implements UsuariosRepository {
+
+    private final Armazenamento<Usuarios> armazenamento;
+
+    // os usuarios ficam em memória (fonte da verdade); a fila guarda a ordem em que foram cadastrados
+    private final Map<String, Usuarios> usuarios = new ConcurrentHashMap<>();
+    private final Queue<String> ordem = new ConcurrentLinkedQueue<>();
+    // ids em ordem crescente, usados como cursor na listagem paginada
+    private final NavigableSet<String> idsOrdenados = new ConcurrentSkipListSet<>();
+    // índice único de email normalizado -> id do usuário
+    private final Map<String, String> idsPorEmail = new ConcurrentHashMap<>();
+
+    // alterações individuais usam o lock de leitura e rodam em paralelo;
+    // só a substituição de todos os usuarios precisa do lock de escrita
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public UsuariosRepositoryArquivo(@Value("${usuarios.arquivo}") String caminhoArquivo, PersistenciaConfig config) {
+        this.armazenamento = new ArmazenamentoArquivo<>("usuarios", caminhoArquivo, Usuarios.class,
+                Usuarios::getId, UsuariosRepositoryArquivo::maisRecente, this::getUsuarios, config);
+    }
+
+    // carregar os usuarios do arquivo json uma única vez, na inicialização
+    @PostConstruct
+    public void carregar() {
+        substituir(armazenamento.carregar());
+    }
+
+    @Override
+    public List<Usuarios> getUsuarios() {
+        List<Usuarios> lista = new ArrayList<>(usuarios.size());
+        for (String id : ordem) {
+            Usuarios usuario = usuarios.get(id);
+            if (usuario != null) {
+                lista.add(usuario);
+            }
+        }
+        return lista;
+    }
+
+    @Override
+    public Iterator<Usuarios> iterarUsuarios() {
+        return ordem.stream()
+                .map(usuarios::get)
+                .filter(Objects::nonNull)
+                .iterator();
+    }
+
+    @Override
+    public List<Usuarios> buscarUsuarios(String depoisDe, int limite) {
+        NavigableSet<String> ids = depoisDe == null ? idsOrdenados : idsOrdenados.tailSet(depoisDe, false);
+        List<Usuarios> resultado = new ArrayList<>(Math.min(limite, 1024));
+        for (String id : ids) {
+            Usuarios usuario = usuarios.get(id);
+            if (usuario != null) {
+                resultado.add(usuario);
+                if (resultado.size() == limite) {
+                    break;
+                }
+            }
+        }
+        return resultado;
+    }
+
+    @Override
+    public Usuarios getUsuarioPorId(String id) {
+        return id == null ? null : usuarios.get(id);
+    }
+
+    @Override
+    public boolean existeEmail(String email) {
+        return idsPorEmail.containsKey(UsuariosRepository.normalizarEmail(email));
+    }
+
+    @Override
+    public boolean adicionarUsuario(Usuarios usuario) {
+        lock.readLock().lock();
+        try {
+            if (idsPorEmail.putIfAbsent(UsuariosRepository.normalizarEmail(usuario.getEmail()), usuario.getId()) != null) {
+                return false;
+            }
+            if (usuarios.put(usuario.getId(), usuario) == null) {
+                ordem.add(usuario.getId());
+                idsOrdenados.add(usuario.getId());
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        armazenamento.registrar(usuario);
+        return true;
+    }
+
+    @Override
+    public List<Integer> adicionarUsuarios(List<Usuarios> novos) {
+        List<Integer> recusados = new ArrayList<>();
+        List<Usuarios> incluidos = new ArrayList<>(novos.size());
+        lock.readLock().lock();
+        try {
+            for (int i = 0; i < novos.size(); i++) {
+                Usuarios usuario = novos.get(i);
+                if (idsPorEmail.putIfAbsent(UsuariosRepository.normalizarEmail(usuario.getEmail()), usuario.getId()) != null) {
+                    recusados.add(i);
+                    continue;
+                }
+                if (usuarios.put(usuario.getId(), usuario) == null) {
+                    ordem.add(usuario.getId());
+                    idsOrdenados.add(usuario.getId());
+                }
+                incluidos.add(usuario);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (!incluidos.isEmpty()) {
+            armazenamento.registrarLote(incluidos);
+        }
+        return recusados;
+    }
+
+    // a troca é feita dentro do compute do próprio id, que só bloqueia as outras atualizações desse usuário: a
+    // versão é conferida, o novo email (se mudou) é reservado e o antigo liberado antes de o atualizado aparecer.
+    // O journal é gravado depois, fora do compute, então duas atualizações seguidas podem chegar a ele em ordem
+    // invertida; na carga vale a maior versão (maisRecente), não a última linha
+    @Override
+    public ResultadoAtualizacao atualizarUsuario(Usuarios atualizado, long versaoEsperada) {
+        ResultadoAtualizacao[] resultado = {ResultadoAtualizacao.VERSAO_DIFERENTE};
+        lock.readLock().lock();
+        try {
+            usuarios.computeIfPresent(atualizado.getId(), (id, atual) -> {
+                if (atual.getVersao() != versaoEsperada) {
+                    return atual;
+                }
+                String emailAtual = atual.getEmail() == null ? null : UsuariosRepository.normalizarEmail(atual.getEmail());
+                String emailNovo = UsuariosRepository.normalizarEmail(atualizado.getEmail());
+                boolean trocouEmail = !emailNovo.equals(emailAtual);
+                if (trocouEmail && idsPorEmail.putIfAbsent(emailNovo, id) != null) {
+                    resultado[0] = ResultadoAtualizacao.EMAIL_EM_USO;
+                    return atual;
+                }
+                if (trocouEmail && emailAtual != null) {
+                    idsPorEmail.remove(emailAtual, id);
+                }
+                atualizado.setVersao(versaoEsperada + 1);
+                resultado[0] = ResultadoAtualizacao.ATUALIZADO;
+                return atualizado;
+            });
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (resultado[0] == ResultadoAtualizacao.ATUALIZADO) {
+            armazenamento.registrar(atualizado);
+        }
+        return resultado[0];
+    }
+
+    @Override
+    public void salvarUsuarios(List<Usuarios> novosUsuarios) {
+        substituir(novosUsuarios);
+        armazenamento.registrarTudo();
+    }
+
+    @Override
+    public void gravarPendentes() {
+        armazenamento.gravarPendentes();
+    }
+
+    @PreDestroy
+    public void encerrar() {
+        armazenamento.close();
+    }
+
+    // entre duas gravações do mesmo usuário, a de maior versão; com a mesma versão (registros sem versão), a posterior
+    private static Usuarios maisRecente(Usuarios anterior, Usuarios lido) {
+        return lido.getVersao() >= anterior.getVersao() ? lido : anterior;
+    }
+
+    private void substituir(List<Usuarios> novosUsuarios) {
+        lock.writeLock().lock();
+        try {
+            usuarios.clear();
+            ordem.clear();
+            idsOrdenados.clear();
+            idsPorEmail.clear();
+            for (Usuarios usuario : novosUsuarios) {
+                if (usuarios.put(usuario.getId(), usuario) == null) {
+                    ordem.add(usuario.getId());
+                    idsOrdenados.add(usuario.getId());
+                }
+                if (usuario.getEmail() != null) {
+                    idsPorEmail.putIfAbsent(UsuariosRepository.normalizarEmail(usuario.getEmail()), usuario.getId());
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
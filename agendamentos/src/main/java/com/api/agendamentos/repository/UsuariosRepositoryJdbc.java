@@ -0,0 +1,204 @@
+package com.api.agendamentos.repository;
+
+import com.api.agendamentos.models.Usuarios;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+// usuarios num banco relacional (PostgreSQL em produção), usado com o profile "jdbc".
+// A unicidade do email fica a cargo da restrição UNIQUE de email_normalizado.
+@Repository
+@Profile("jdbc")
+public class UsuariosRepositoryJdbc implements UsuariosRepository {
+
+    private static final int TAMANHO_PAGINA_ITERACAO = 500;
+
+    private static final String SELECT = "SELECT id, nome, email, data_nascimento, data_criacao, versao FROM usuarios";
+    private static final String INSERT = "INSERT INTO usuarios (id, nome, email, email_normalizado, data_nascimento, data_criacao, versao) "
+            + "VALUES (:id, :nome, :email, :emailNormalizado, :dataNascimento, :dataCriacao, :versao)";
+    // compare-and-set: só altera a linha que ainda está na versão esperada
+    private static final String UPDATE = "UPDATE usuarios SET nome = :nome, email = :email, email_normalizado = :emailNormalizado, "
+            + "data_nascimento = :dataNascimento, data_criacao = :dataCriacao, versao = :versaoEsperada + 1 "
+            + "WHERE id = :id AND versao = :versaoEsperada";
+
+    private static final RowMapper<Usuarios> MAPEADOR = (rs, linha) -> new Usuarios(
+            rs.getString("id"),
+            rs.getString("nome"),
+            rs.getString("email"),
+            rs.getString("data_nascimento"),
+            rs.getObject("data_criacao", LocalDateTime.class),
+            rs.getLong("versao"));
+
+    private final NamedParameterJdbcTemplate jdbc;
+    private final TransactionTemplate transacao;
+    private final int tamanhoLote;
+
+    public UsuariosRepositoryJdbc(NamedParameterJdbcTemplate jdbc, TransactionTemplate transacao,
+                                  @Value("${jdbc.tamanho-lote:500}") int tamanhoLote) {
+        this.jdbc = jdbc;
+        this.transacao = transacao;
+        this.tamanhoLote = tamanhoLote;
+    }
+
+    @Override
+    public List<Usuarios> getUsuarios() {
+        return jdbc.query(SELECT + " ORDER BY ordem", MAPEADOR);
+    }
+
+    // percorre em páginas pela ordem de cadastro, sem manter uma conexão aberta entre elas
+    @Override
+    public Iterator<Usuarios> iterarUsuarios() {
+        return new IteradorPaginado<>(ultimo -> {
+            MapSqlParameterSource parametros = new MapSqlParameterSource("limite", TAMANHO_PAGINA_ITERACAO);
+            if (ultimo == null) {
+                return jdbc.query(SELECT + " ORDER BY ordem LIMIT :limite", parametros, MAPEADOR);
+            }
+            parametros.addValue("id", ultimo.getId());
+            return jdbc.query(SELECT + " WHERE ordem > (SELECT ordem FROM usuarios WHERE id = :id)"
+                    + " ORDER BY ordem LIMIT :limite", parametros, MAPEADOR);
+        }, TAMANHO_PAGINA_ITERACAO);
+    }
+
+    @Override
+    public List<Usuarios> buscarUsuarios(String depoisDe, int limite) {
+        MapSqlParameterSource parametros = new MapSqlParameterSource("limite", limite);
+        if (depoisDe == null) {
+            return jdbc.query(SELECT + " ORDER BY id LIMIT :limite", parametros, MAPEADOR);
+        }
+        parametros.addValue("depoisDe", depoisDe);
+        return jdbc.query(SELECT + " WHERE id > :depoisDe ORDER BY id LIMIT :limite", parametros, MAPEADOR);
+    }
+
+    @Override
+    public Usuarios getUsuarioPorId(String id) {
+        if (id == null) {
+            return null;
+        }
+        return jdbc.query(SELECT + " WHERE id = :id", new MapSqlParameterSource("id", id), MAPEADOR)
+                .stream().findFirst().orElse(null);
+    }
+
+    @Override
+    public boolean existeEmail(String email) {
+        Integer total = jdbc.queryForObject("SELECT COUNT(*) FROM usuarios WHERE email_normalizado = :email",
+                new MapSqlParameterSource("email", UsuariosRepository.normalizarEmail(email)), Integer.class);
+        return total != null && total > 0;
+    }
+
+    @Override
+    public boolean adicionarUsuario(Usuarios usuario) {
+        try {
+            jdbc.update(INSERT, parametros(usuario, true));
+            return true;
+        } catch (DuplicateKeyException e) {
+            return false;
+        }
+    }
+
+    // uma consulta para os emails já cadastrados e os INSERTs em lotes numa transação. Se um cadastro em paralelo
+    // ocupar um dos emails entre a consulta e a inclusão, a transação é desfeita e os usuarios são incluídos um a um
+    @Override
+    public List<Integer> adicionarUsuarios(List<Usuarios> novos) {
+        if (novos.isEmpty()) {
+            return List.of();
+        }
+        List<String> emails = new ArrayList<>(novos.size());
+        for (Usuarios usuario : novos) {
+            emails.add(UsuariosRepository.normalizarEmail(usuario.getEmail()));
+        }
+        Set<String> ocupados = new HashSet<>(jdbc.queryForList(
+                "SELECT email_normalizado FROM usuarios WHERE email_normalizado IN (:emails)",
+                new MapSqlParameterSource("emails", emails), String.class));
+
+        List<Integer> recusados = new ArrayList<>();
+        List<Usuarios> incluidos = new ArrayList<>(novos.size());
+        for (int i = 0; i < novos.size(); i++) {
+            // add() também barra o email repetido dentro do próprio lote
+            if (!ocupados.add(emails.get(i))) {
+                recusados.add(i);
+            } else {
+                incluidos.add(novos.get(i));
+            }
+        }
+        try {
+            transacao.executeWithoutResult(status -> {
+                for (int inicio = 0; inicio < incluidos.size(); inicio += tamanhoLote) {
+                    jdbc.batchUpdate(INSERT, incluidos.subList(inicio, Math.min(inicio + tamanhoLote, incluidos.size())).stream()
+                            .map(usuario -> parametros(usuario, true))
+                            .toArray(MapSqlParameterSource[]::new));
+                }
+            });
+            return recusados;
+        } catch (DuplicateKeyException e) {
+            recusados.clear();
+            for (int i = 0; i < novos.size(); i++) {
+                if (!adicionarUsuario(novos.get(i))) {
+                    recusados.add(i);
+                }
+            }
+            return recusados;
+        }
+    }
+
+    // a restrição UNIQUE do email recusa a troca para um email de outro usuário; nenhuma linha alterada
+    // significa que o usuário não existe ou já mudou de versão
+    @Override
+    public ResultadoAtualizacao atualizarUsuario(Usuarios atualizado, long versaoEsperada) {
+        try {
+            if (jdbc.update(UPDATE, parametros(atualizado, true).addValue("versaoEsperada", versaoEsperada)) == 0) {
+                return ResultadoAtualizacao.VERSAO_DIFERENTE;
+            }
+        } catch (DuplicateKeyException e) {
+            return ResultadoAtualizacao.EMAIL_EM_USO;
+        }
+        atualizado.setVersao(versaoEsperada + 1);
+        return ResultadoAtualizacao.ATUALIZADO;
+    }
+
+    // apaga e reinclui tudo numa transação, com os INSERTs enviados em lotes. Assim como no arquivo,
+    // só o primeiro usuário de cada email fica no índice único
+    @Override
+    public void salvarUsuarios(List<Usuarios> novosUsuarios) {
+        List<MapSqlParameterSource> linhas = new ArrayList<>(novosUsuarios.size());
+        Set<String> emails = new HashSet<>();
+        for (Usuarios usuario : novosUsuarios) {
+            boolean primeiroComEmail = usuario.getEmail() != null
+                    && emails.add(UsuariosRepository.normalizarEmail(usuario.getEmail()));
+            linhas.add(parametros(usuario, primeiroComEmail));
+        }
+        transacao.executeWithoutResult(status -> {
+            jdbc.getJdbcOperations().update("DELETE FROM usuarios");
+            for (int inicio = 0; inicio < linhas.size(); inicio += tamanhoLote) {
+                jdbc.batchUpdate(INSERT, linhas.subList(inicio, Math.min(inicio + tamanhoLote, linhas.size()))
+                        .toArray(MapSqlParameterSource[]::new));
+            }
+        });
+    }
+
+    // cada alteração já é gravada no banco na própria operação
+    @Override
+    public void gravarPendentes() {
+    }
+
+    private static MapSqlParameterSource parametros(Usuarios usuario, boolean indexarEmail) {
+        return new MapSqlParameterSource("id", usuario.getId())
+                .addValue("nome", usuario.getNome())
+                .addValue("email", usuario.getEmail())
+                .addValue("emailNormalizado", indexarEmail ? UsuariosRepository.normalizarEmail(usuario.getEmail()) : null)
+                .addValue("dataNascimento", usuario.getDataNascimento())
+                .addValue("dataCriacao", usuario.getDataCriacao())
+                .addValue("versao", usuario.getVersao());
+    }
+}
@@ -0,0 +1,75 @@
+package com.api.agendamentos.repository;
+
+import com.api.agendamentos.models.Agendamentos;
+
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+// versão dos agendamentos de cada dia de cada filial e de cada usuário, usada como ETag das consultas. As versões
+// vêm de um único relógio compartilhado pelas partições, sempre crescente dentro da execução (parte do relógio do
+// sistema em microssegundos, mas nunca volta mesmo que ele volte), então uma versão nunca se repete entre
+// partições. Entre execuções o relógio do sistema pode ter voltado, por isso as versões levam o id da execução,
+// sorteado na inicialização. Cada alteração custa uma escrita no mapa por chave afetada; a consulta, uma leitura.
+final class VersoesAlteracoes {
+
+    private record Dia(String idFilial, LocalDate data) {
+    }
+
+    private record Usuario(String idUsuario) {
+    }
+
+    private final String execucao = Long.toUnsignedString(ThreadLocalRandom.current().nextLong(), 36);
+    private final AtomicLong relogio = new AtomicLong();
+    private final Map<Object, Long> versoes = new ConcurrentHashMap<>();
+    // versão de todas as chaves sem alteração registrada depois da última substituição completa
+    private volatile long base = proxima();
+
+    String getVersaoDia(String idFilial, LocalDate data) {
+        return versao(new Dia(idFilial, data));
+    }
+
+    String getVersaoUsuario(String idUsuario) {
+        return versao(new Usuario(idUsuario));
+    }
+
+    // chamado depois que a alteração já está visível nos índices, para que quem lê a versão nova leia também os
+    // dados novos. anterior: o agendamento substituído, se era outro objeto (pode ser de outro dia ou usuário)
+    void alterado(String idFilial, Agendamentos agendamento, Agendamentos anterior) {
+        long versao = proxima();
+        registrar(idFilial, agendamento, versao);
+        if (anterior != null && anterior != agendamento) {
+            registrar(idFilial, anterior, versao);
+        }
+    }
+
+    // todas as chaves mudam de versão (ex.: ao carregar ou substituir os agendamentos de uma filial); as entradas
+    // anteriores a essa versão deixam de ser necessárias
+    void tudoAlterado() {
+        long versao = proxima();
+        base = versao;
+        versoes.values().removeIf(anterior -> anterior < versao);
+    }
+
+    // merge com max: uma alteração que registra a versão com atraso não faz a chave voltar para uma versão menor
+    private void registrar(String idFilial, Agendamentos agendamento, long versao) {
+        if (agendamento.getDataHora() != null) {
+            versoes.merge(new Dia(idFilial, agendamento.getDataHora().toLocalDate()), versao, Math::max);
+        }
+        if (agendamento.getIdUsuario() != null) {
+            versoes.merge(new Usuario(agendamento.getIdUsuario()), versao, Math::max);
+        }
+    }
+
+    private String versao(Object chave) {
+        return execucao + "." + Math.max(versoes.getOrDefault(chave, 0L), base);
+    }
+
+    // só depende do relógio do sistema para começar num valor alto; depois disso nunca repete nem diminui
+    private long proxima() {
+        long agora = System.currentTimeMillis() * 1000;
+        return relogio.updateAndGet(ultima -> Math.max(ultima + 1, agora));
+    }
+}
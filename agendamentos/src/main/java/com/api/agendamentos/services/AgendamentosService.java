@@ -1,44 +1,158 @@
 package com.api.agendamentos.services;
 
+import com.api.agendamentos.config.AgendaConfig;
 import com.api.agendamentos.exceptions.BadRequestException;
 import com.api.agendamentos.exceptions.CustomNotFoundException;
 import com.api.agendamentos.exceptions.HttpMessageNotReadableException;
 import com.api.agendamentos.models.Agendamentos;
+import com.api.agendamentos.models.FiltroAgendamentos;
+import com.api.agendamentos.models.HorarioDisponivel;
+import com.api.agendamentos.models.HorariosDisponiveisDia;
+import com.api.agendamentos.models.Pagina;
+import com.api.agendamentos.models.ResultadoLote;
 import com.api.agendamentos.repository.AgendamentosRepository;
+import com.api.agendamentos.repository.IndiceAgendamentosOrdenados;
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.LocalTime;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.time.temporal.ChronoUnit;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.Set;
+import java.util.function.IntFunction;
+import java.util.stream.Stream;
 
 @Service
+@Timed(value = "servicos.operacoes", description = "Tempo de cada operação dos serviços")
 public class AgendamentosService {
+    // maior período aceito na consulta de disponibilidade por período
+    private static final int MAXIMO_DIAS_PERIODO = 366;
+    private static final int TAMANHO_MAXIMO_PAGINA = 100;
+    private static final int TAMANHO_MAXIMO_LOTE = 1000;
+    private static final String HORARIO_INDISPONIVEL = "O horário está indisponível. Selecione outro horário.";
+    private static final String AGENDAMENTO_INATIVO = "Só é possível cancelar um agendamento ativo.";
+    private static final String ITEM_NAO_APLICADO = "Não aplicado: outro item do lote falhou.";
+    private static final String FILIAL_INVALIDA = "Filial inválida. Use de 1 a 40 letras minúsculas, números, '-' ou '_'.";
+    private static final String FILIAL_NAO_ATENDIDA = "Filial não atendida. Informe uma filial configurada em agendamentos.filiais.";
+
     private final AgendamentosRepository agendamentosRepository;
     private final UsuariosService usuariosService;
+    private final AgendaConfig agenda;
+    // agenda e capacidades em uso, para que a versão da disponibilidade mude quando a configuração muda
+    private final String assinaturaAgenda;
+    // reservas recusadas por serviço: conflitos (horário já ocupado) e rejeitadas (falha de validação, inclusive
+    // as sem serviço, contadas em "nenhum")
+    private final Map<Agendamentos.TipoServico, Counter> conflitos;
+    private final Map<Agendamentos.TipoServico, Counter> rejeitadas;
+    private final Counter rejeitadasSemServico;
+    private final Timer tempoValidacao;
 
-    public AgendamentosService(AgendamentosRepository agendamentosRepository, UsuariosService usuariosService) {
+    @Autowired
+    public AgendamentosService(AgendamentosRepository agendamentosRepository, UsuariosService usuariosService,
+                               AgendaConfig agenda, MeterRegistry registry) {
         this.agendamentosRepository = agendamentosRepository;
         this.usuariosService = usuariosService;
+        this.agenda = agenda;
+        this.assinaturaAgenda = assinaturaAgenda(agenda, agendamentosRepository);
+        this.conflitos = Metricas.contadoresPorServico(registry, "agendamentos.reservas.conflitos");
+        this.rejeitadas = Metricas.contadoresPorServico(registry, "agendamentos.reservas.rejeitadas");
+        this.rejeitadasSemServico = Metricas.contador(registry, "agendamentos.reservas.rejeitadas", "nenhum");
+        this.tempoValidacao = Metricas.tempoValidacao(registry, "createAgendamento");
+    }
+
+    public AgendamentosService(AgendamentosRepository agendamentosRepository, UsuariosService usuariosService,
+                               MeterRegistry registry) {
+        this(agendamentosRepository, usuariosService, AgendaConfig.padrao(), registry);
+    }
+
+    public AgendamentosService(AgendamentosRepository agendamentosRepository, UsuariosService usuariosService) {
+        this(agendamentosRepository, usuariosService, Metrics.globalRegistry);
     }
     public List<Agendamentos> getAgendamentos(){
         return agendamentosRepository.getAgendamentos();
     }
 
+    // os mesmos agendamentos de getAgendamentos(), lidos do repositório à medida que são consumidos
+    public Iterator<Agendamentos> iterarAgendamentos() {
+        return agendamentosRepository.iterarAgendamentos();
+    }
+
+    // todos os agendamentos que atendem ao filtro, ordenados por dataHora, lidos do índice à medida que são consumidos
+    public Iterator<Agendamentos> exportarAgendamentos(FiltroAgendamentos filtro) {
+        validarFiltro(filtro);
+        return agendamentosRepository.iterarAgendamentos(filtro);
+    }
+
+    // uma página dos agendamentos que atendem ao filtro, ordenados por dataHora, a partir do cursor recebido
+    // na página anterior; o cursor da próxima página é nulo quando não há mais agendamentos
+    public Pagina<Agendamentos> buscarAgendamentos(FiltroAgendamentos filtro, String cursor, int limite) {
+        validarLimite(limite);
+        validarFiltro(filtro);
+        IndiceAgendamentosOrdenados.Chave depoisDe = null;
+        if (cursor != null) {
+            String[] partes = Cursores.decodificar(cursor, 2);
+            try {
+                depoisDe = new IndiceAgendamentosOrdenados.Chave(partes[0].isEmpty() ? null : LocalDateTime.parse(partes[0]), partes[1]);
+            } catch (DateTimeParseException e) {
+                throw new BadRequestException("Cursor inválido.");
+            }
+        }
+
+        // busca um item a mais só para saber se existe próxima página
+        List<Agendamentos> agendamentos = agendamentosRepository.buscarAgendamentos(filtro, depoisDe, limite + 1);
+        if (agendamentos.size() <= limite) {
+            return new Pagina<>(agendamentos, null);
+        }
+        List<Agendamentos> pagina = agendamentos.subList(0, limite);
+        Agendamentos ultimo = pagina.get(limite - 1);
+        String dataHora = ultimo.getDataHora() == null ? "" : ultimo.getDataHora().toString();
+        return new Pagina<>(pagina, Cursores.codificar(dataHora, ultimo.getIdAgendamento()));
+    }
+
     public  List<Agendamentos> getAgendamentosPorUsuario(String idUsuario){
+        return buscarAgendamentosPorUsuario(idUsuario, 0, Integer.MAX_VALUE);
+    }
+
+    // uma página dos agendamentos do usuário, ordenados por dataHora
+    public List<Agendamentos> getAgendamentosPorUsuario(String idUsuario, int pagina, int tamanho) {
+        validarPaginacao(pagina, tamanho);
+        return buscarAgendamentosPorUsuario(idUsuario, (long) pagina * tamanho, tamanho);
+    }
+
+    // versão dos agendamentos do usuário, usada como ETag de getAgendamentosPorUsuario; não busca os agendamentos,
+    // mas confere o usuário, para que um ETag antigo de um usuário removido receba 404 e não 304
+    public String getVersaoAgendamentosPorUsuario(String idUsuario) {
+        verificarUsuario(idUsuario);
+        return agendamentosRepository.getVersaoUsuario(idUsuario);
+    }
+
+    public int contarAgendamentosPorUsuario(String idUsuario) {
+        return agendamentosRepository.contarAgendamentosPorUsuario(idUsuario);
+    }
+
+    private void verificarUsuario(String idUsuario) {
         if (!usuariosService.usuarioExiste(idUsuario)) {
             throw new CustomNotFoundException("Usuário não encontrado. Certifique-se de que o ID do usuário está correto.");
         }
-        List<Agendamentos> agendamentosUsuario = agendamentosRepository.getAgendamentos().stream()
-                .filter(agendamento -> agendamento.getIdUsuario().equals(idUsuario))
-                .collect(Collectors.toList());
+    }
+
+    private List<Agendamentos> buscarAgendamentosPorUsuario(String idUsuario, long inicio, int quantidade) {
+        verificarUsuario(idUsuario);
+        List<Agendamentos> agendamentosUsuario = agendamentosRepository.getAgendamentosPorUsuario(idUsuario, inicio, quantidade);
 
         if (agendamentosUsuario.isEmpty()) {
             throw new CustomNotFoundException("Nenhum agendamento encontrado para este usuário.");
@@ -46,80 +160,265 @@ public class AgendamentosService {
 
         return agendamentosUsuario;
     }
-    public Agendamentos createAgendamento(String idUsuario, Agendamentos.TipoServico servico, String dataHora){
+    // a dataHora já chega convertida (DataHoraDeserializer), então não é lida de novo aqui
+    public Agendamentos createAgendamento(String idUsuario, Agendamentos.TipoServico servico, LocalDateTime dataHora){
+        return createAgendamento(null, idUsuario, servico, dataHora);
+    }
 
-        if (!usuariosService.usuarioExiste(idUsuario)) {
-            throw new CustomNotFoundException("Usuário não encontrado. Certifique-se de que o ID do usuário está correto.");
-        }
+    // sem filial, o agendamento fica na filial padrão
+    public Agendamentos createAgendamento(String idFilial, String idUsuario, Agendamentos.TipoServico servico, LocalDateTime dataHora) {
 
-        validarCamposObrigatorios(idUsuario, servico, dataHora);
-        validarServico(servico);
-        LocalDateTime dataHoraFormatada = validarFormatoDataHora(dataHora);
-        validarHorarioFuturo(dataHoraFormatada);
-        validarHorarioComercial(dataHoraFormatada);
-        validarHoraCheia(dataHoraFormatada);
-        validarHorarioDisponivel(dataHoraFormatada);
+        validarNovoAgendamento(idFilial, idUsuario, servico, dataHora);
 
-        Agendamentos novoAgendamento = new Agendamentos(idUsuario.trim(), servico, dataHoraFormatada.toString().trim());
-        agendamentosRepository.salvarAgendamentos(adicionarNovoAgendamento(novoAgendamento));
+        Agendamentos novoAgendamento = novoAgendamento(idFilial, idUsuario, servico, dataHora);
+        reservarHorario(novoAgendamento, dataHora);
 
         return novoAgendamento;
     }
-    public void cancelarAgendamento(String idAgendamento) {
-        List<Agendamentos> agendamentos = agendamentosRepository.getAgendamentos();
 
-        Optional<Agendamentos> agendamentoOptional = agendamentos.stream()
-                .filter(agendamento -> agendamento.getIdAgendamento().equals(idAgendamento))
-                .findFirst();
+    // valida cada agendamento do lote como em createAgendamento e reserva os válidos de uma vez no repositório,
+    // com uma única gravação. No modo TUDO_OU_NADA nada é reservado se algum item for inválido ou estiver ocupado.
+    public ResultadoLote criarAgendamentosEmLote(List<Agendamentos> novosAgendamentos, ResultadoLote.Modo modo) {
+        validarLote(novosAgendamentos);
+        boolean tudoOuNada = modo == ResultadoLote.Modo.TUDO_OU_NADA;
+        String[] erros = new String[novosAgendamentos.size()];
+        Agendamentos[] criados = new Agendamentos[novosAgendamentos.size()];
+        List<Agendamentos> validos = new ArrayList<>(novosAgendamentos.size());
+        List<Integer> posicoesValidos = new ArrayList<>(novosAgendamentos.size());
+        for (int i = 0; i < novosAgendamentos.size(); i++) {
+            Agendamentos item = novosAgendamentos.get(i);
+            try {
+                if (item == null) {
+                    throw new BadRequestException("Id do usuário, serviço e dataHora são campos obrigatórios.");
+                }
+                validarNovoAgendamento(item.getIdFilial(), item.getIdUsuario(), item.getServico(), item.getDataHora());
+                criados[i] = novoAgendamento(item.getIdFilial(), item.getIdUsuario(), item.getServico(), item.getDataHora());
+                validos.add(criados[i]);
+                posicoesValidos.add(i);
+            } catch (BadRequestException | CustomNotFoundException | HttpMessageNotReadableException e) {
+                erros[i] = e.getMessage();
+            }
+        }
+
+        boolean falhou = validos.size() < novosAgendamentos.size();
+        if (!validos.isEmpty() && !(tudoOuNada && falhou)) {
+            for (int posicao : agendamentosRepository.reservarHorarios(validos, tudoOuNada)) {
+                Agendamentos ocupado = validos.get(posicao);
+                conflitos.get(ocupado.getServico()).increment();
+                erros[posicoesValidos.get(posicao)] = HORARIO_INDISPONIVEL;
+                falhou = true;
+            }
+        }
+        return resultadoLote(modo, erros, falhou, i -> criados[i].getIdAgendamento());
+    }
+
+    // o status é trocado pelo repositório numa operação atômica: de dois cancelamentos simultâneos do mesmo
+    // agendamento, o que chegar depois recebe o mesmo erro de um agendamento já cancelado
+    public void cancelarAgendamento(String idAgendamento) {
+        Optional<Agendamentos> agendamentoOptional = agendamentosRepository.getAgendamentoPorId(idAgendamento);
 
         if (agendamentoOptional.isPresent()) {
-            Agendamentos agendamento = agendamentoOptional.get();
-            validarCancelarAgendamento(agendamento);
-            agendamentosRepository.salvarAgendamentos(agendamentos);
+            validarCancelarAgendamento(agendamentoOptional.get());
+            if (!agendamentosRepository.cancelarAgendamento(idAgendamento)) {
+                throw new BadRequestException(AGENDAMENTO_INATIVO);
+            }
         } else {
             throw new CustomNotFoundException("Agendamento não encontrado.");
         }
     }
-    public List<LocalDateTime> getHorariosDisponiveis(LocalDate data) {
+
+    // valida o cancelamento de cada agendamento do lote como em cancelarAgendamento e cancela os válidos de uma vez
+    // no repositório, com uma única gravação. No modo TUDO_OU_NADA nada é cancelado se algum item não puder ser
+    // cancelado, inclusive se outra requisição o cancelar entre a validação e o cancelamento do lote.
+    public ResultadoLote cancelarAgendamentosEmLote(List<String> idsAgendamentos, ResultadoLote.Modo modo) {
+        validarLote(idsAgendamentos);
+        boolean tudoOuNada = modo == ResultadoLote.Modo.TUDO_OU_NADA;
+        String[] erros = new String[idsAgendamentos.size()];
+        List<String> validos = new ArrayList<>(idsAgendamentos.size());
+        List<Integer> posicoesValidos = new ArrayList<>(idsAgendamentos.size());
+        Set<String> vistos = new HashSet<>();
+        for (int i = 0; i < idsAgendamentos.size(); i++) {
+            String idAgendamento = idsAgendamentos.get(i);
+            try {
+                if (idAgendamento == null) {
+                    throw new BadRequestException("O id do agendamento é obrigatório.");
+                }
+                if (!vistos.add(idAgendamento)) {
+                    throw new BadRequestException("Agendamento repetido no lote.");
+                }
+                Agendamentos agendamento = agendamentosRepository.getAgendamentoPorId(idAgendamento)
+                        .orElseThrow(() -> new CustomNotFoundException("Agendamento não encontrado."));
+                validarCancelarAgendamento(agendamento);
+                validos.add(idAgendamento);
+                posicoesValidos.add(i);
+            } catch (BadRequestException | CustomNotFoundException e) {
+                erros[i] = e.getMessage();
+            }
+        }
+
+        boolean falhou = validos.size() < idsAgendamentos.size();
+        if (!validos.isEmpty() && !(tudoOuNada && falhou)) {
+            for (int posicao : agendamentosRepository.cancelarAgendamentos(validos, tudoOuNada)) {
+                erros[posicoesValidos.get(posicao)] = AGENDAMENTO_INATIVO;
+                falhou = true;
+            }
+        }
+        return resultadoLote(modo, erros, falhou, idsAgendamentos::get);
+    }
+    // horários com vaga no dia, na filial (sem filial, na filial padrão), e quantas vagas restam em cada um: do
+    // serviço informado ou, sem serviço, de todos os serviços somadas. Responde a partir dos contadores de
+    // ocupação do dia, sem percorrer os agendamentos
+    public List<HorarioDisponivel> getHorariosDisponiveis(String idFilial, LocalDate data, Agendamentos.TipoServico servico) {
         validarData(data);
 
-        List<Agendamentos> agendamentos = agendamentosRepository.getAgendamentos();
-        List<LocalDateTime> horariosDia = obterHorariosDia(data);
+        return horariosDisponiveis(filial(idFilial), data, servico, LocalDateTime.now());
+    }
+
+    // versão da disponibilidade do dia na filial, usada como ETag de getHorariosDisponiveis: muda quando algum
+    // agendamento do dia muda, quando começa um dos horários do dia (que deixa de ser oferecido) e quando a agenda
+    // ou as capacidades mudam. Não calcula a disponibilidade, só lê a versão do dia no repositório
+    public String getVersaoHorariosDisponiveis(String idFilial, LocalDate data) {
+        validarData(data);
+        String filial = filial(idFilial);
+
+        return assinaturaAgenda + "-" + agendamentosRepository.getVersaoDia(filial, data)
+                + "-" + horariosIniciados(data, LocalDateTime.now());
+    }
+
+    public List<HorarioDisponivel> getHorariosDisponiveis(LocalDate data, Agendamentos.TipoServico servico) {
+        return getHorariosDisponiveis(null, data, servico);
+    }
+
+    public List<HorarioDisponivel> getHorariosDisponiveis(LocalDate data) {
+        return getHorariosDisponiveis(data, null);
+    }
+
+    // disponibilidade de cada dia do período (inclusive), calculada sob demanda à medida que o resultado é consumido
+    public Stream<HorariosDisponiveisDia> getHorariosDisponiveisPeriodo(String idFilial, LocalDate inicio, LocalDate fim,
+                                                                        Agendamentos.TipoServico servico) {
+        validarPeriodo(inicio, fim);
+        String filial = filial(idFilial);
+
         LocalDateTime agora = LocalDateTime.now();
+        return inicio.datesUntil(fim.plusDays(1))
+                .map(data -> new HorariosDisponiveisDia(data, horariosDisponiveis(filial, data, servico, agora)));
+    }
 
-        List<LocalDateTime> horariosDisponiveis = horariosDia.stream()
-                .filter(horario ->
-                        horario.isEqual(data.atStartOfDay()) || horario.isAfter(agora))
-                .filter(horario -> agendamentos.stream()
-                        .noneMatch(agendamento ->
-                                agendamento.getDataHora().equals(horario.toString())
-                                && agendamento.getStatus() == Agendamentos.statusAgendamento.AGENDADO))
-                .collect(Collectors.toList());
+    public Stream<HorariosDisponiveisDia> getHorariosDisponiveisPeriodo(LocalDate inicio, LocalDate fim, Agendamentos.TipoServico servico) {
+        return getHorariosDisponiveisPeriodo(null, inicio, fim, servico);
+    }
 
+    // os horários do dia vêm do cache do calendário; dias sem atendimento nem consultam o repositório
+    private List<HorarioDisponivel> horariosDisponiveis(String idFilial, LocalDate data, Agendamentos.TipoServico servico,
+                                                        LocalDateTime agora) {
+        List<LocalDateTime> horarios = agenda.getHorarios(data);
+        if (horarios.isEmpty() || !horarios.get(horarios.size() - 1).isAfter(agora)) {
+            return List.of();
+        }
+        int[] vagasRestantes = agendamentosRepository.getVagasRestantes(idFilial, horarios, servico);
+
+        List<HorarioDisponivel> horariosDisponiveis = new ArrayList<>(horarios.size());
+        for (int i = 0; i < horarios.size(); i++) {
+            LocalDateTime horario = horarios.get(i);
+            int vagas = vagasRestantes[i];
+            if (vagas > 0 && horario.isAfter(agora)) {
+                horariosDisponiveis.add(new HorarioDisponivel(horario, vagas));
+            }
+        }
         return horariosDisponiveis;
     }
-    private List<LocalDateTime> obterHorariosDia(LocalDate data) {
-        LocalDateTime inicioDia = data.atTime(9, 0);
-        LocalDateTime fimDia = data.atTime(17, 0);
 
-        List<LocalDateTime> horariosDia = new ArrayList<>();
-        LocalDateTime horarioAtual = inicioDia;
+    // quantos horários da data já começaram (não são mais oferecidos); os horários estão em ordem
+    private int horariosIniciados(LocalDate data, LocalDateTime agora) {
+        List<LocalDateTime> horarios = agenda.getHorarios(data);
+        int iniciados = 0;
+        while (iniciados < horarios.size() && !horarios.get(iniciados).isAfter(agora)) {
+            iniciados++;
+        }
+        return iniciados;
+    }
 
-        while (!horarioAtual.isAfter(fimDia)) {
-            horariosDia.add(horarioAtual);
-            horarioAtual = horarioAtual.plusMinutes(60);
+    private static String assinaturaAgenda(AgendaConfig agenda, AgendamentosRepository agendamentosRepository) {
+        int[] capacidades = new int[Agendamentos.TipoServico.values().length];
+        for (Agendamentos.TipoServico servico : Agendamentos.TipoServico.values()) {
+            capacidades[servico.ordinal()] = agendamentosRepository.getCapacidade(servico);
         }
-        return horariosDia;
+        return Integer.toHexString(31 * agenda.getAssinatura() + Arrays.hashCode(capacidades));
+    }
+
+    // itens sem erro foram aplicados, exceto no modo TUDO_OU_NADA quando algum item do lote falhou
+    private static ResultadoLote resultadoLote(ResultadoLote.Modo modo, String[] erros, boolean falhou,
+                                               IntFunction<String> idAgendamento) {
+        boolean aplicado = !(modo == ResultadoLote.Modo.TUDO_OU_NADA && falhou);
+        List<ResultadoLote.Item> itens = new ArrayList<>(erros.length);
+        for (int i = 0; i < erros.length; i++) {
+            if (erros[i] != null) {
+                itens.add(new ResultadoLote.Item(i, null, false, erros[i]));
+            } else if (!aplicado) {
+                itens.add(new ResultadoLote.Item(i, null, false, ITEM_NAO_APLICADO));
+            } else {
+                itens.add(new ResultadoLote.Item(i, idAgendamento.apply(i), true, null));
+            }
+        }
+        return new ResultadoLote(modo, itens);
+    }
+
+    // o agendamento já é conferido com o armazenamento, para ser recusado antes de ocupar a vaga
+    private Agendamentos novoAgendamento(String idFilial, String idUsuario, Agendamentos.TipoServico servico,
+                                         LocalDateTime dataHora) {
+        Agendamentos agendamento = new Agendamentos(idUsuario.trim(), servico, dataHora.truncatedTo(ChronoUnit.MINUTES));
+        agendamento.setIdFilial(filial(idFilial));
+        try {
+            agendamentosRepository.validarAgendamento(agendamento);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("O agendamento não pode ser gravado: " + e.getMessage());
+        }
+        return agendamento;
+    }
+
+    // sem filial, a filial padrão
+    private String filial(String idFilial) {
+        if (idFilial == null) {
+            return Agendamentos.FILIAL_PADRAO;
+        }
+        if (!Agendamentos.filialValida(idFilial)) {
+            throw new BadRequestException(FILIAL_INVALIDA);
+        }
+        if (!idFilial.equals(Agendamentos.FILIAL_PADRAO) && !agendamentosRepository.atendeFilial(idFilial)) {
+            throw new BadRequestException(FILIAL_NAO_ATENDIDA);
+        }
+        return idFilial;
+    }
+
+    private Counter rejeitadas(Agendamentos.TipoServico servico) {
+        return servico == null ? rejeitadasSemServico : rejeitadas.get(servico);
     }
 
     //validações:
 
-    private LocalDateTime validarFormatoDataHora(String dataHora) {
+    private void validarNovoAgendamento(String idFilial, String idUsuario, Agendamentos.TipoServico servico, LocalDateTime dataHora) {
+        Timer.Sample amostra = Timer.start();
         try {
-            return LocalDateTime.parse(dataHora, DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm"));
-        } catch (DateTimeParseException e) {
-            System.out.println("Erro ao formatar a dataHora: " + e.getMessage());
-            throw new BadRequestException("Formato inválido para a dataHora. Use o formato 'yyyy-MM-dd'T'HH:mm'.");
+            filial(idFilial);
+            if (!usuariosService.usuarioExiste(idUsuario)) {
+                throw new CustomNotFoundException("Usuário não encontrado. Certifique-se de que o ID do usuário está correto.");
+            }
+
+            validarCamposObrigatorios(idUsuario, servico, dataHora);
+            validarServico(servico);
+            validarHorarioFuturo(dataHora);
+            validarHorarioComercial(dataHora);
+            validarInicioDeAtendimento(dataHora);
+        } catch (BadRequestException | CustomNotFoundException | HttpMessageNotReadableException e) {
+            rejeitadas(servico).increment();
+            throw e;
+        } finally {
+            amostra.stop(tempoValidacao);
+        }
+    }
+    private void validarLote(List<?> itens) {
+        if (itens == null || itens.isEmpty() || itens.size() > TAMANHO_MAXIMO_LOTE) {
+            throw new BadRequestException("O lote deve ter entre 1 e " + TAMANHO_MAXIMO_LOTE + " itens.");
         }
     }
     private void validarData(LocalDate data) {
@@ -127,7 +426,39 @@ public class AgendamentosService {
             throw new BadRequestException("A data é obrigatória.");
         }
     }
-    private void validarCamposObrigatorios(String idUsuario, Agendamentos.TipoServico servico, String dataHora) {
+    private void validarPaginacao(int pagina, int tamanho) {
+        if (pagina < 0) {
+            throw new BadRequestException("A página deve ser maior ou igual a zero.");
+        }
+        if (tamanho < 1 || tamanho > TAMANHO_MAXIMO_PAGINA) {
+            throw new BadRequestException("O tamanho da página deve estar entre 1 e " + TAMANHO_MAXIMO_PAGINA + ".");
+        }
+    }
+    private void validarFiltro(FiltroAgendamentos filtro) {
+        if (filtro.getIdFilial() != null) {
+            filial(filtro.getIdFilial());
+        }
+        if (filtro.getInicio() != null && filtro.getFim() != null && filtro.getFim().isBefore(filtro.getInicio())) {
+            throw new BadRequestException("A data de fim deve ser igual ou posterior à data de início.");
+        }
+    }
+    private void validarLimite(int limite) {
+        if (limite < 1 || limite > TAMANHO_MAXIMO_PAGINA) {
+            throw new BadRequestException("O limite deve estar entre 1 e " + TAMANHO_MAXIMO_PAGINA + ".");
+        }
+    }
+    private void validarPeriodo(LocalDate inicio, LocalDate fim) {
+        if (inicio == null || fim == null) {
+            throw new BadRequestException("As datas de início e fim são obrigatórias.");
+        }
+        if (fim.isBefore(inicio)) {
+            throw new BadRequestException("A data de fim deve ser igual ou posterior à data de início.");
+        }
+        if (ChronoUnit.DAYS.between(inicio, fim) >= MAXIMO_DIAS_PERIODO) {
+            throw new BadRequestException("O período consultado pode ter no máximo " + MAXIMO_DIAS_PERIODO + " dias.");
+        }
+    }
+    private void validarCamposObrigatorios(String idUsuario, Agendamentos.TipoServico servico, LocalDateTime dataHora) {
         if (idUsuario == null || idUsuario.trim().isEmpty() ||
                 Objects.isNull(servico) ||
                 dataHora == null) {
@@ -139,36 +470,34 @@ public class AgendamentosService {
             throw new HttpMessageNotReadableException("Serviço inválido. Escolha um serviço válido.");
         }
     }
+    // expediente, intervalos e feriados vêm do AgendaConfig
     private void validarHorarioComercial(LocalDateTime dataHora) {
-        LocalTime horaAgendamento = dataHora.toLocalTime();
-        if (horaAgendamento.isBefore(LocalTime.of(9, 0)) || horaAgendamento.isAfter(LocalTime.of(17, 0))) {
-            throw new BadRequestException("Os agendamentos só podem ocorrer em horário comercial, das 9h às 17h.");
+        if (!agenda.atendeNaData(dataHora.toLocalDate())) {
+            throw new BadRequestException("Não há atendimento nesta data. Selecione outro dia.");
+        }
+        if (!agenda.dentroDoExpediente(dataHora)) {
+            throw new BadRequestException("Os agendamentos só podem ocorrer em horário comercial, "
+                    + agenda.descricaoExpediente(dataHora.toLocalDate()) + ".");
+        }
+        if (agenda.emIntervalo(dataHora)) {
+            throw new BadRequestException("Não há atendimento neste intervalo. Selecione outro horário.");
         }
     }
-    private void validarHoraCheia(LocalDateTime dataHora) {
-        if (dataHora.getMinute() != 0 || dataHora.getSecond() != 0) {
-            throw new BadRequestException("Cada atendimento tem duração de uma hora. Selecione um bloco de horário completo.");
+    private void validarInicioDeAtendimento(LocalDateTime dataHora) {
+        if (!agenda.inicioDeAtendimento(dataHora)) {
+            int duracao = agenda.getDuracaoMinutos();
+            throw new BadRequestException("Cada atendimento tem duração de " + (duracao == 60 ? "uma hora" : duracao + " minutos")
+                    + ". Selecione um bloco de horário completo.");
         }
     }
-        private void validarHorarioDisponivel(LocalDateTime dataHora) {
-        List<Agendamentos> agendamentos = agendamentosRepository.getAgendamentos();
-
-            for (int i = agendamentos.size() - 1; i >= 0; i--) {
-                Agendamentos agendamento = agendamentos.get(i);
-
-                LocalDateTime agendamentoDateTime = validarFormatoDataHora(agendamento.getDataHora());
-                LocalDateTime agendamentoTruncado = agendamentoDateTime.truncatedTo(ChronoUnit.MINUTES);
-                LocalDateTime dataHoraTruncado = dataHora.truncatedTo(ChronoUnit.MINUTES);
-
-                if (agendamentoTruncado.equals(dataHoraTruncado) && (agendamento.getStatus() == Agendamentos.statusAgendamento.AGENDADO || agendamento.getStatus() == Agendamentos.statusAgendamento.CANCELADO)) {
-                    if (agendamento.getStatus() == Agendamentos.statusAgendamento.AGENDADO) {
-                        throw new BadRequestException("O horário está indisponível. Selecione outro horário.");
-                    } else {
-                        return;
-                    }
-                }
-            }
+    // a verificação da vaga e a inclusão são uma única operação atômica no repositório, então requisições
+    // simultâneas para o mesmo horário e serviço nunca passam da capacidade do serviço
+    private void reservarHorario(Agendamentos novoAgendamento, LocalDateTime dataHora) {
+        if (!agendamentosRepository.reservarHorario(novoAgendamento, dataHora.truncatedTo(ChronoUnit.MINUTES))) {
+            conflitos.get(novoAgendamento.getServico()).increment();
+            throw new BadRequestException(HORARIO_INDISPONIVEL);
         }
+    }
     private void validarHorarioFuturo(LocalDateTime dataHora) {
         LocalDateTime now = LocalDateTime.now();
         if (dataHora.isBefore(now)) {
@@ -177,26 +506,14 @@ public class AgendamentosService {
     }
     private void validarCancelarAgendamento(Agendamentos agendamento) {
         LocalDateTime agora = LocalDateTime.now();
-        LocalDateTime agendamentoDateTime = validarFormatoDataHora(agendamento.getDataHora());
+        LocalDateTime agendamentoDateTime = agendamento.getDataHora();
 
-        if (agendamentoDateTime.isAfter(agora)) {
-            if (agendamento.getStatus() == Agendamentos.statusAgendamento.AGENDADO) {
-                agendamento.setStatus(Agendamentos.statusAgendamento.CANCELADO);
-            } else {
-                throw new BadRequestException("Só é possível cancelar um agendamento ativo.");
+        if (agendamentoDateTime != null && agendamentoDateTime.isAfter(agora)) {
+            if (agendamento.getStatus() != Agendamentos.statusAgendamento.AGENDADO) {
+                throw new BadRequestException(AGENDAMENTO_INATIVO);
             }
         } else {
             throw new BadRequestException("Só é possível cancelar agendamentos futuros.");
         }
     }
-    private List<Agendamentos> adicionarNovoAgendamento(Agendamentos novoAgendamento) {
-        List<Agendamentos> agendamentos = agendamentosRepository.getAgendamentos();
-        if (agendamentos != null) {
-            novoAgendamento.setStatus(Agendamentos.statusAgendamento.AGENDADO);
-            agendamentos.add(novoAgendamento);
-            return agendamentos;
-        } else {
-            return List.of(novoAgendamento);
-        }
-    }
 }
@@ -0,0 +1,31 @@
+package com.api.agendamentos.services;
+
+import com.api.agendamentos.exceptions.BadRequestException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+// cursores de paginação opacos: as partes da chave da última posição lida, em Base64 (URL-safe)
+final class Cursores {
+    private static final String SEPARADOR = "\n";
+
+    private Cursores() {}
+
+    static String codificar(String... partes) {
+        String texto = String.join(SEPARADOR, partes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(texto.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static String[] decodificar(String cursor, int quantidadePartes) {
+        try {
+            String texto = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] partes = texto.split(SEPARADOR, -1);
+            if (partes.length == quantidadePartes) {
+                return partes;
+            }
+        } catch (IllegalArgumentException e) {
+            // tratado abaixo
+        }
+        throw new BadRequestException("Cursor inválido.");
+    }
+}
@@ -0,0 +1,159 @@
+package com.api.agendamentos.services;
+
+import com.api.agendamentos.exceptions.BadRequestException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvParser;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+
+// lê os usuarios de uma importação um a um, à medida que o corpo da requisição chega, sem carregar o arquivo
+// inteiro: NDJSON (um objeto por linha) ou CSV com cabeçalho (colunas nome, email e dataNascimento, em qualquer
+// ordem). Um registro malformado vira um registro com erro e a leitura continua no próximo.
+final class LeitorUsuarios implements Iterator<LeitorUsuarios.Registro>, Closeable {
+
+    static final String FORMATO_CSV = "csv";
+    static final String FORMATO_NDJSON = "ndjson";
+
+    // linha: posição do registro no arquivo (no CSV, contando o cabeçalho como linha 1)
+    record Registro(long linha, String nome, String email, String dataNascimento, String erro) {
+    }
+
+    private record Campos(String nome, String email, String dataNascimento) {
+    }
+
+    private static final ObjectReader LEITOR_JSON = new ObjectMapper()
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+            .readerFor(Campos.class);
+    private static final ObjectReader LEITOR_CSV = new CsvMapper()
+            .readerFor(String[].class)
+            .with(CsvParser.Feature.WRAP_AS_ARRAY)
+            .with(CsvParser.Feature.SKIP_EMPTY_LINES)
+            .with(CsvParser.Feature.TRIM_SPACES);
+
+    private final BufferedReader entrada;
+    private final MappingIterator<String[]> linhasCsv;
+    private final int colunaNome;
+    private final int colunaEmail;
+    private final int colunaDataNascimento;
+    private long linha;
+    private Registro proximo;
+    private boolean terminou;
+
+    private LeitorUsuarios(BufferedReader entrada, MappingIterator<String[]> linhasCsv, String[] cabecalho) {
+        this.entrada = entrada;
+        this.linhasCsv = linhasCsv;
+        this.colunaNome = cabecalho == null ? -1 : coluna(cabecalho, "nome");
+        this.colunaEmail = cabecalho == null ? -1 : coluna(cabecalho, "email");
+        this.colunaDataNascimento = cabecalho == null ? -1 : coluna(cabecalho, "datanascimento");
+        this.linha = cabecalho == null ? 0 : 1;
+    }
+
+    static LeitorUsuarios abrir(InputStream corpo, String formato) throws IOException {
+        BufferedReader entrada = new BufferedReader(new InputStreamReader(corpo, StandardCharsets.UTF_8));
+        if (FORMATO_NDJSON.equalsIgnoreCase(formato)) {
+            return new LeitorUsuarios(entrada, null, null);
+        }
+        if (!FORMATO_CSV.equalsIgnoreCase(formato)) {
+            throw new BadRequestException("Formato inválido. Use csv ou ndjson.");
+        }
+        MappingIterator<String[]> linhasCsv = LEITOR_CSV.readValues(entrada);
+        if (!linhasCsv.hasNextValue()) {
+            throw new BadRequestException("O arquivo CSV precisa de um cabeçalho com as colunas nome, email e dataNascimento.");
+        }
+        return new LeitorUsuarios(entrada, linhasCsv, linhasCsv.nextValue());
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (proximo == null && !terminou) {
+            try {
+                proximo = linhasCsv == null ? lerJson() : lerCsv();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            terminou = proximo == null;
+        }
+        return proximo != null;
+    }
+
+    @Override
+    public Registro next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Registro registro = proximo;
+        proximo = null;
+        return registro;
+    }
+
+    // cada linha é analisada separadamente, então uma linha malformada não impede a leitura das seguintes
+    private Registro lerJson() throws IOException {
+        String texto;
+        do {
+            texto = entrada.readLine();
+            if (texto == null) {
+                return null;
+            }
+            linha++;
+        } while (texto.isBlank());
+        try {
+            Campos campos = LEITOR_JSON.readValue(texto);
+            return new Registro(linha, campos.nome(), campos.email(), campos.dataNascimento(), null);
+        } catch (JsonProcessingException e) {
+            return new Registro(linha, null, null, null, "JSON inválido.");
+        }
+    }
+
+    // um erro de sintaxe no CSV (ex.: aspas sem fechamento) é registrado e encerra a leitura, porque a
+    // posição das linhas seguintes não é mais confiável
+    private Registro lerCsv() throws IOException {
+        try {
+            if (!linhasCsv.hasNextValue()) {
+                return null;
+            }
+            String[] colunas = linhasCsv.nextValue();
+            linha++;
+            return new Registro(linha, valor(colunas, colunaNome), valor(colunas, colunaEmail),
+                    valor(colunas, colunaDataNascimento), null);
+        } catch (JsonProcessingException e) {
+            linha++;
+            terminou = true;
+            return new Registro(linha, null, null, null, "CSV inválido; a importação foi interrompida nesta linha.");
+        }
+    }
+
+    private static int coluna(String[] cabecalho, String nome) {
+        for (int i = 0; i < cabecalho.length; i++) {
+            if (cabecalho[i] != null && cabecalho[i].trim().toLowerCase(Locale.ROOT).equals(nome)) {
+                return i;
+            }
+        }
+        throw new BadRequestException("O arquivo CSV precisa de um cabeçalho com as colunas nome, email e dataNascimento.");
+    }
+
+    private static String valor(String[] colunas, int coluna) {
+        return coluna < colunas.length ? colunas[coluna] : null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (linhasCsv != null) {
+            linhasCsv.close();
+        }
+        entrada.close();
+    }
+}
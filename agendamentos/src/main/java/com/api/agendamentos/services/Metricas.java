@@ -0,0 +1,38 @@
+package com.api.agendamentos.services;
+
+import com.api.agendamentos.models.Agendamentos;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+// métricas registradas pelos próprios serviços, além do timer de cada operação (@Timed)
+final class Metricas {
+
+    private Metricas() {}
+
+    // tempo gasto só nas validações de entrada da operação, antes de acessar o repositório para gravar
+    static Timer tempoValidacao(MeterRegistry registry, String operacao) {
+        return Timer.builder("servicos.validacao")
+                .description("Tempo gasto nas validações de entrada")
+                .tag("operacao", operacao)
+                .register(registry);
+    }
+
+    // um contador por serviço, registrados de uma vez para não montar o contador a cada incremento
+    static Map<Agendamentos.TipoServico, Counter> contadoresPorServico(MeterRegistry registry, String nome) {
+        Map<Agendamentos.TipoServico, Counter> contadores = new EnumMap<>(Agendamentos.TipoServico.class);
+        for (Agendamentos.TipoServico servico : Agendamentos.TipoServico.values()) {
+            contadores.put(servico, contador(registry, nome, servico.name()));
+        }
+        return contadores;
+    }
+
+    static Counter contador(MeterRegistry registry, String nome, String servico) {
+        return Counter.builder(nome)
+                .tag("servico", servico)
+                .register(registry);
+    }
+}
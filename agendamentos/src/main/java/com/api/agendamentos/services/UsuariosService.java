@@ -2,30 +2,79 @@ package com.api.agendamentos.services;
 
 import com.api.agendamentos.exceptions.BadRequestException;
 import com.api.agendamentos.exceptions.CustomNotFoundException;
+import com.api.agendamentos.exceptions.PreconditionFailedException;
+import com.api.agendamentos.models.Pagina;
+import com.api.agendamentos.models.ResultadoImportacao;
 import com.api.agendamentos.models.Usuarios;
 import com.api.agendamentos.repository.AgendamentosRepository;
 import com.api.agendamentos.repository.UsuariosRepository;
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Optional;
 
 @Service
+@Timed(value = "servicos.operacoes", description = "Tempo de cada operação dos serviços")
 public class UsuariosService {
+    private static final int TAMANHO_MAXIMO_PAGINA = 100;
+    private static final int TAMANHO_LOTE_IMPORTACAO = 500;
+    private static final int MAXIMO_ERROS_LISTADOS = 100;
+    private static final String VERSAO_DIFERENTE = "O usuário foi alterado por outra requisição. Busque a versão atual e tente novamente.";
+
     private final UsuariosRepository usuariosRepository;
     private final AgendamentosRepository agendamentosRepository;
 
-    public UsuariosService(UsuariosRepository usuariosRepository, AgendamentosRepository agendamentosRepository) {
+    private final Timer tempoValidacaoCriacao;
+    private final Timer tempoValidacaoAtualizacao;
+
+    @Autowired
+    public UsuariosService(UsuariosRepository usuariosRepository, AgendamentosRepository agendamentosRepository,
+                           MeterRegistry registry) {
         this.usuariosRepository = usuariosRepository;
         this.agendamentosRepository = agendamentosRepository;
+        this.tempoValidacaoCriacao = Metricas.tempoValidacao(registry, "createUsuarios");
+        this.tempoValidacaoAtualizacao = Metricas.tempoValidacao(registry, "atualizarUsuarios");
+    }
+
+    public UsuariosService(UsuariosRepository usuariosRepository, AgendamentosRepository agendamentosRepository) {
+        this(usuariosRepository, agendamentosRepository, Metrics.globalRegistry);
     }
     public List<Usuarios> getUsuarios(){
 
         return usuariosRepository.getUsuarios();
     }
+
+    // os mesmos usuarios de getUsuarios(), lidos do repositório à medida que são consumidos
+    public Iterator<Usuarios> iterarUsuarios() {
+        return usuariosRepository.iterarUsuarios();
+    }
+    // uma página dos usuarios em ordem de id, a partir do cursor recebido na página anterior;
+    // o cursor da próxima página é nulo quando não há mais usuarios
+    public Pagina<Usuarios> buscarUsuarios(String cursor, int limite) {
+        if (limite < 1 || limite > TAMANHO_MAXIMO_PAGINA) {
+            throw new BadRequestException("O limite deve estar entre 1 e " + TAMANHO_MAXIMO_PAGINA + ".");
+        }
+        String depoisDe = cursor == null ? null : Cursores.decodificar(cursor, 1)[0];
+
+        // busca um item a mais só para saber se existe próxima página
+        List<Usuarios> usuarios = usuariosRepository.buscarUsuarios(depoisDe, limite + 1);
+        if (usuarios.size() <= limite) {
+            return new Pagina<>(usuarios, null);
+        }
+        List<Usuarios> pagina = usuarios.subList(0, limite);
+        return new Pagina<>(pagina, Cursores.codificar(pagina.get(limite - 1).getId()));
+    }
     public Usuarios getUsuarioPorId(String id) {
         Usuarios usuario = usuariosRepository.getUsuarioPorId(id);
         if (usuario == null) {
@@ -40,69 +89,131 @@ public class UsuariosService {
             throw new BadRequestException("Email já cadastrado.");
         }
 
-        validarCamposObrigatorios(nome, email, dataNascimento);
-        validarNomeRegex(nome);
-        validarEmailRegex(email);
+        Usuarios novoUsuario = validarNovoUsuario(nome, email, dataNascimento);
 
-        LocalDate dataNascimentoFormatada = (dataNascimento != null && !dataNascimento.trim().isEmpty()) ?
-                validarFormatoDataNascimento(dataNascimento) : null;
-
-        Usuarios novoUsuario = new Usuarios(nome.trim(), email.trim(), dataNascimentoFormatada.toString().trim());
-        novoUsuario.setDataCriacao(LocalDateTime.now());
-
-        usuariosRepository.salvarUsuarios(adicionarNovoUsuario(novoUsuario));
+        // o índice único de email do repositório barra um cadastro simultâneo com o mesmo email
+        if (!usuariosRepository.adicionarUsuario(novoUsuario)) {
+            throw new BadRequestException("Email já cadastrado.");
+        }
 
         return novoUsuario;
     }
-    public Usuarios atualizarUsuarios(String id, String nome, String email, String dataNascimento) {
 
-        List<Usuarios> usuarios = usuariosRepository.getUsuarios();
-        Optional<Usuarios> usuarioExistente = usuarios.stream().filter(u -> u.getId().equals(id)).findFirst();
+    // importa os usuarios de um arquivo CSV ou NDJSON lido à medida que chega, validados como em createUsuarios.
+    // Os válidos são incluídos em lotes de TAMANHO_LOTE_IMPORTACAO; emails já cadastrados ou repetidos no
+    // arquivo são recusados pelo índice único do repositório. A memória usada não depende do tamanho do arquivo.
+    public ResultadoImportacao importarUsuarios(InputStream corpo, String formato) {
+        ResultadoImportacao resultado = new ResultadoImportacao(MAXIMO_ERROS_LISTADOS);
+        List<Usuarios> lote = new ArrayList<>(TAMANHO_LOTE_IMPORTACAO);
+        List<Long> linhasDoLote = new ArrayList<>(TAMANHO_LOTE_IMPORTACAO);
+        try (LeitorUsuarios leitor = LeitorUsuarios.abrir(corpo, formato)) {
+            while (leitor.hasNext()) {
+                LeitorUsuarios.Registro registro = leitor.next();
+                if (registro.erro() != null) {
+                    resultado.registrarRecusado(registro.linha(), registro.erro());
+                    continue;
+                }
+                try {
+                    lote.add(validarNovoUsuario(registro.nome(), registro.email(), registro.dataNascimento()));
+                    linhasDoLote.add(registro.linha());
+                } catch (BadRequestException e) {
+                    resultado.registrarRecusado(registro.linha(), e.getMessage());
+                }
+                if (lote.size() == TAMANHO_LOTE_IMPORTACAO) {
+                    incluirLote(lote, linhasDoLote, resultado);
+                }
+            }
+            incluirLote(lote, linhasDoLote, resultado);
+        } catch (IOException | UncheckedIOException e) {
+            throw new BadRequestException("Não foi possível ler o arquivo de importação.");
+        }
+        return resultado;
+    }
+
+    public Usuarios atualizarUsuarios(String id, String nome, String email, String dataNascimento) {
+        return atualizarUsuarios(id, nome, email, dataNascimento, null);
+    }
 
-        if (usuarioExistente.isPresent()) {
-            Usuarios usuario = usuarioExistente.get();
+    // versaoEsperada: a versão (ETag) que o cliente leu; se o usuário já estiver em outra versão a atualização é
+    // recusada com PreconditionFailedException. Sem ela, a atualização vale sobre a versão mais recente: se outra
+    // atualização chegar entre a leitura e a gravação, o usuário é lido de novo em vez de a outra ser sobrescrita
+    public Usuarios atualizarUsuarios(String id, String nome, String email, String dataNascimento, Long versaoEsperada) {
+        Usuarios usuarioExistente = usuariosRepository.getUsuarioPorId(id);
+        if (usuarioExistente == null) {
+            throw new CustomNotFoundException("Usuário não encontrado.");
+        }
 
+        Timer.Sample amostra = Timer.start();
+        LocalDate dataNascimentoFormatada;
+        try {
             validarCamposObrigatorios(nome, email, dataNascimento);
-            validarNomeRegex(nome);
-            validarEmailRegex(email);
+            ValidacoesUsuario.validarNome(nome);
+            ValidacoesUsuario.validarEmail(email);
+            dataNascimentoFormatada = ValidacoesUsuario.validarDataNascimento(dataNascimento);
+        } finally {
+            amostra.stop(tempoValidacaoAtualizacao);
+        }
 
-            if (!usuario.getEmail().equals(email.trim()) && existeUsuarioComEmail(email.trim())) {
-                throw new BadRequestException("Email já cadastrado.");
+        while (true) {
+            if (versaoEsperada != null && usuarioExistente.getVersao() != versaoEsperada) {
+                throw new PreconditionFailedException(VERSAO_DIFERENTE);
             }
-            if (nome != null) {
-                usuario.setNome(nome.trim());
-            }
-            if (email != null) {
-                usuario.setEmail(email.trim());
+            boolean trocouEmail = !UsuariosRepository.normalizarEmail(usuarioExistente.getEmail()).equals(UsuariosRepository.normalizarEmail(email));
+            if (trocouEmail && existeUsuarioComEmail(email.trim())) {
+                throw new BadRequestException("Email já cadastrado.");
             }
-            if (dataNascimento != null && !dataNascimento.trim().isEmpty()) {
-                LocalDate dataNascimentoFormatada = validarFormatoDataNascimento(dataNascimento);
-                usuario.setDataNascimento(dataNascimentoFormatada.toString());
+            Usuarios usuario = new Usuarios(usuarioExistente);
+            usuario.setNome(nome.trim());
+            usuario.setEmail(email.trim());
+            usuario.setDataNascimento(dataNascimentoFormatada.toString());
+
+            switch (usuariosRepository.atualizarUsuario(usuario, usuarioExistente.getVersao())) {
+                case ATUALIZADO:
+                    return usuario;
+                case EMAIL_EM_USO:
+                    throw new BadRequestException("Email já cadastrado.");
+                case VERSAO_DIFERENTE:
+                    if (versaoEsperada != null) {
+                        throw new PreconditionFailedException(VERSAO_DIFERENTE);
+                    }
+                    usuarioExistente = usuariosRepository.getUsuarioPorId(id);
+                    if (usuarioExistente == null) {
+                        throw new CustomNotFoundException("Usuário não encontrado.");
+                    }
             }
-            usuariosRepository.salvarUsuarios(usuarios);
-            return usuario;
-        } else {
-            throw new CustomNotFoundException("Usuário não encontrado.");
         }
     }
 
-    //validações 
-    public List<Usuarios> adicionarNovoUsuario(Usuarios novoUsuario) {
-        List<Usuarios> usuarios = usuariosRepository.getUsuarios();
-        if (usuarios != null) {
-            novoUsuario.setDataCriacao(LocalDateTime.now());
-            usuarios.add(novoUsuario);
-            return usuarios;
-        } else {
-            return List.of(novoUsuario);
+    private void incluirLote(List<Usuarios> lote, List<Long> linhasDoLote, ResultadoImportacao resultado) {
+        if (lote.isEmpty()) {
+            return;
+        }
+        List<Integer> recusados = usuariosRepository.adicionarUsuarios(lote);
+        resultado.registrarImportados(lote.size() - recusados.size());
+        for (int indice : recusados) {
+            resultado.registrarRecusado(linhasDoLote.get(indice), "Email já cadastrado.");
         }
+        lote.clear();
+        linhasDoLote.clear();
     }
-    private LocalDate validarFormatoDataNascimento(String dataNascimento) {
+
+    //validações 
+    private Usuarios validarNovoUsuario(String nome, String email, String dataNascimento) {
+        LocalDate dataNascimentoFormatada;
+        Timer.Sample amostra = Timer.start();
         try {
-            return LocalDate.parse(dataNascimento);
-        } catch (DateTimeParseException e) {
-            throw new BadRequestException("Formato inválido para a data de nascimento. Use o formato 'yyyy-MM-dd'.");
+            validarCamposObrigatorios(nome, email, dataNascimento);
+            ValidacoesUsuario.validarNome(nome);
+            ValidacoesUsuario.validarEmail(email);
+
+            dataNascimentoFormatada = ValidacoesUsuario.validarDataNascimento(dataNascimento);
+        } finally {
+            amostra.stop(tempoValidacaoCriacao);
         }
+
+        Usuarios novoUsuario = new Usuarios(nome.trim(), email.trim(), dataNascimentoFormatada.toString().trim());
+        novoUsuario.setDataCriacao(LocalDateTime.now());
+        return novoUsuario;
     }
     private void validarCamposObrigatorios(String nome, String email, String dataNascimento) {
         if (nome == null || nome.trim().isEmpty() ||
@@ -111,26 +222,10 @@ public class UsuariosService {
             throw new BadRequestException("Nome, email e data de nascimento são campos obrigatórios.");
         }
     }
-    private void validarNomeRegex(String nome) {
-        if (nome.matches(".*\\s{2,}.*")) {
-            throw new BadRequestException("Nome não pode conter espaços duplos entre as palavras.");
-        }
-        if (!nome.matches("^[ A-Za-z]+$")) {
-            throw new BadRequestException("Nome deve conter apenas letras. Não é permitido utilizar acentos gráficos ou espaços duplos entre as palavras.");
-        }
-    }
-    private void validarEmailRegex(String email) {
-        if (email == null || !email.matches("^\\s*[a-zA-Z0-9._%+-]+@[a-zA-Z0-9.-]+\\.[a-zA-Z]{2,}\\s*$")) {
-            throw new BadRequestException("Formato de email inválido e/ou contém espaços. Utilize o formato 'exemplo@exemplo.com'.");
-        }
-    }
     private boolean existeUsuarioComEmail(String email) {
-        List<Usuarios> usuarios = usuariosRepository.getUsuarios();
-        return usuarios != null && usuarios.stream().anyMatch(usuario -> usuario.getEmail().trim().equalsIgnoreCase(email));
+        return usuariosRepository.existeEmail(email);
     }
     public boolean usuarioExiste(String idUsuario) {
-        List<Usuarios> usuarios = usuariosRepository.getUsuarios();
-        return usuarios.stream()
-                .anyMatch(usuario -> usuario.getId().equals(idUsuario));
+        return usuariosRepository.getUsuarioPorId(idUsuario) != null;
     }
 }
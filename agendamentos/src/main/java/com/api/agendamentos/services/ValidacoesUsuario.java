@@ -0,0 +1,92 @@
+package com.api.agendamentos.services;
+
+import com.api.agendamentos.exceptions.BadRequestException;
+
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.regex.Pattern;
+
+// validações dos campos do usuario, chamadas a cada cadastro e atualização. O padrão do email é compilado
+// uma única vez (String.matches compilaria a expressão a cada chamada); as regras do nome são só classes de
+// caracteres, então são verificadas percorrendo a string, sem alocar nada.
+final class ValidacoesUsuario {
+    private static final Pattern EMAIL = Pattern.compile("\\s*[a-zA-Z0-9._%+-]+@[a-zA-Z0-9.-]+\\.[a-zA-Z]{2,}\\s*");
+    private static final DateTimeFormatter FORMATO_DATA_NASCIMENTO = DateTimeFormatter.ISO_LOCAL_DATE;
+
+    private ValidacoesUsuario() {}
+
+    static void validarNome(String nome) {
+        if (temEspacosDuplos(nome)) {
+            throw new BadRequestException("Nome não pode conter espaços duplos entre as palavras.");
+        }
+        if (!somenteLetrasEEspacos(nome)) {
+            throw new BadRequestException("Nome deve conter apenas letras. Não é permitido utilizar acentos gráficos ou espaços duplos entre as palavras.");
+        }
+    }
+
+    static void validarEmail(String email) {
+        if (email == null || !EMAIL.matcher(email).matches()) {
+            throw new BadRequestException("Formato de email inválido e/ou contém espaços. Utilize o formato 'exemplo@exemplo.com'.");
+        }
+    }
+
+    static LocalDate validarDataNascimento(String dataNascimento) {
+        try {
+            // caminho rápido para o formato usual yyyy-MM-dd; os demais casos (ex.: ano com sinal) ficam com o formatter
+            if (dataNascimento.length() == 10 && dataNascimento.charAt(4) == '-' && dataNascimento.charAt(7) == '-') {
+                int ano = digitos(dataNascimento, 0, 4);
+                int mes = digitos(dataNascimento, 5, 7);
+                int dia = digitos(dataNascimento, 8, 10);
+                if (ano >= 0 && mes >= 0 && dia >= 0) {
+                    return LocalDate.of(ano, mes, dia);
+                }
+            }
+            return LocalDate.parse(dataNascimento, FORMATO_DATA_NASCIMENTO);
+        } catch (DateTimeException e) {
+            throw new BadRequestException("Formato inválido para a data de nascimento. Use o formato 'yyyy-MM-dd'.");
+        }
+    }
+
+    // equivalente a \s{2,} em qualquer posição
+    private static boolean temEspacosDuplos(String texto) {
+        for (int i = 1; i < texto.length(); i++) {
+            if (espaco(texto.charAt(i)) && espaco(texto.charAt(i - 1))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // equivalente a ^[ A-Za-z]+$
+    private static boolean somenteLetrasEEspacos(String texto) {
+        if (texto.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < texto.length(); i++) {
+            char c = texto.charAt(i);
+            if (c != ' ' && (c < 'A' || c > 'Z') && (c < 'a' || c > 'z')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // os caracteres de \s
+    private static boolean espaco(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    // valor dos dígitos em [inicio, fim), ou -1 se algum caractere não for dígito
+    private static int digitos(String texto, int inicio, int fim) {
+        int valor = 0;
+        for (int i = inicio; i < fim; i++) {
+            char c = texto.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            valor = valor * 10 + (c - '0');
+        }
+        return valor;
+    }
+}
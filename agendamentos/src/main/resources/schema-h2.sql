@@ -0,0 +1,35 @@
+-- mesmo esquema de schema-postgresql.sql para o H2 usado nos testes. O H2 não tem índice parcial, então a
+-- exclusividade das vagas usa uma coluna calculada que só tem valor para agendamentos ativos (NULLs não conflitam),
+-- e outra com o serviço canônico no lugar do índice por UPPER(servico)
+
+CREATE TABLE IF NOT EXISTS usuarios (
+    ordem BIGINT GENERATED BY DEFAULT AS IDENTITY UNIQUE,
+    id VARCHAR(64) PRIMARY KEY,
+    nome VARCHAR(255),
+    email VARCHAR(255),
+    email_normalizado VARCHAR(255) UNIQUE,
+    data_nascimento VARCHAR(10),
+    data_criacao TIMESTAMP,
+    versao BIGINT NOT NULL DEFAULT 0
+);
+
+CREATE SEQUENCE IF NOT EXISTS seq_versao_agendamentos;
+
+CREATE TABLE IF NOT EXISTS agendamentos (
+    ordem BIGINT GENERATED BY DEFAULT AS IDENTITY UNIQUE,
+    id_agendamento VARCHAR(64) PRIMARY KEY,
+    filial VARCHAR(40) DEFAULT 'matriz' NOT NULL,
+    id_usuario VARCHAR(64) NOT NULL,
+    servico VARCHAR(16) NOT NULL,
+    data_hora TIMESTAMP NOT NULL,
+    status VARCHAR(16) NOT NULL,
+    vaga INT DEFAULT 0 NOT NULL,
+    versao BIGINT DEFAULT NEXT VALUE FOR seq_versao_agendamentos NOT NULL,
+    horario_agendado TIMESTAMP GENERATED ALWAYS AS (CASE WHEN status = 'AGENDADO' THEN data_hora END),
+    servico_canonico VARCHAR(16) GENERATED ALWAYS AS (UPPER(servico))
+);
+
+CREATE UNIQUE INDEX IF NOT EXISTS ux_agendamentos_filial_servico_vaga_agendada ON agendamentos (filial, horario_agendado, servico_canonico, vaga);
+CREATE INDEX IF NOT EXISTS ix_agendamentos_filial_data_hora ON agendamentos (filial, data_hora, id_agendamento);
+CREATE INDEX IF NOT EXISTS ix_agendamentos_data_hora ON agendamentos (data_hora, id_agendamento);
+CREATE INDEX IF NOT EXISTS ix_agendamentos_usuario_data_hora ON agendamentos (id_usuario, data_hora, id_agendamento);
@@ -0,0 +1,48 @@
+-- esquema usado pelo profile "jdbc" (PostgreSQL); executado na inicialização, só cria o que ainda não existe
+
+CREATE TABLE IF NOT EXISTS usuarios (
+    ordem BIGINT GENERATED BY DEFAULT AS IDENTITY UNIQUE,
+    id VARCHAR(64) PRIMARY KEY,
+    nome VARCHAR(255),
+    email VARCHAR(255),
+    email_normalizado VARCHAR(255) UNIQUE,
+    data_nascimento VARCHAR(10),
+    data_criacao TIMESTAMP,
+    versao BIGINT NOT NULL DEFAULT 0
+);
+
+CREATE TABLE IF NOT EXISTS agendamentos (
+    ordem BIGINT GENERATED BY DEFAULT AS IDENTITY UNIQUE,
+    id_agendamento VARCHAR(64) PRIMARY KEY,
+    id_usuario VARCHAR(64) NOT NULL,
+    servico VARCHAR(16) NOT NULL,
+    data_hora TIMESTAMP NOT NULL,
+    status VARCHAR(16) NOT NULL
+);
+
+-- cada agendamento ativo ocupa uma vaga (0 até a capacidade do serviço - 1) do horário; a reserva é um INSERT
+-- que falha se a vaga já estiver ocupada. Bancos criados antes das vagas ganham a coluna e trocam o índice antigo,
+-- que permitia um único agendamento ativo por horário
+ALTER TABLE agendamentos ADD COLUMN IF NOT EXISTS vaga INT NOT NULL DEFAULT 0;
+DROP INDEX IF EXISTS ux_agendamentos_horario_agendado;
+-- as vagas são contadas por filial; os agendamentos de antes das filiais ficam na filial padrão
+ALTER TABLE agendamentos ADD COLUMN IF NOT EXISTS filial VARCHAR(40) NOT NULL DEFAULT 'matriz';
+DROP INDEX IF EXISTS ux_agendamentos_vaga_agendada;
+-- as vagas são do serviço canônico (UPPER(servico): servico1 e SERVICO1 dividem as mesmas vagas). Antes de trocar o
+-- índice, agendamentos ativos de grafias diferentes que ficaram com a mesma vaga vão para uma vaga negativa única,
+-- fora das numeradas (continuam contando como ocupadas); depois da troca não há mais o que mover
+UPDATE agendamentos SET vaga = -1 - ordem WHERE status = 'AGENDADO' AND vaga >= 0 AND EXISTS (
+    SELECT 1 FROM agendamentos outro WHERE outro.status = 'AGENDADO' AND outro.filial = agendamentos.filial
+        AND outro.data_hora = agendamentos.data_hora AND UPPER(outro.servico) = UPPER(agendamentos.servico)
+        AND outro.vaga = agendamentos.vaga AND outro.ordem < agendamentos.ordem);
+DROP INDEX IF EXISTS ux_agendamentos_filial_vaga_agendada;
+CREATE UNIQUE INDEX IF NOT EXISTS ux_agendamentos_filial_servico_vaga_agendada ON agendamentos (filial, data_hora, UPPER(servico), vaga) WHERE status = 'AGENDADO';
+CREATE INDEX IF NOT EXISTS ix_agendamentos_filial_data_hora ON agendamentos (filial, data_hora, id_agendamento);
+CREATE INDEX IF NOT EXISTS ix_agendamentos_data_hora ON agendamentos (data_hora, id_agendamento);
+CREATE INDEX IF NOT EXISTS ix_agendamentos_usuario_data_hora ON agendamentos (id_usuario, data_hora, id_agendamento);
+-- cada INSERT ou UPDATE de um agendamento tira uma versão nova da sequência; a contagem e a maior versão das
+-- linhas de um dia (ou de um usuário) formam o ETag das consultas. Bancos de antes da coluna numeram as linhas existentes
+CREATE SEQUENCE IF NOT EXISTS seq_versao_agendamentos;
+ALTER TABLE agendamentos ADD COLUMN IF NOT EXISTS versao BIGINT NOT NULL DEFAULT nextval('seq_versao_agendamentos');
+-- versão de cada usuário, conferida nas atualizações; os usuarios de antes dela começam na versão 0
+ALTER TABLE usuarios ADD COLUMN IF NOT EXISTS versao BIGINT NOT NULL DEFAULT 0;
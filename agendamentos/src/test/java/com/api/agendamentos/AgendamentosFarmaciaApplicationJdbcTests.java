@@ -0,0 +1,34 @@
+package com.api.agendamentos;
+
+import com.api.agendamentos.repository.AgendamentosRepository;
+import com.api.agendamentos.repository.AgendamentosRepositoryJdbc;
+import com.api.agendamentos.repository.UsuariosRepository;
+import com.api.agendamentos.repository.UsuariosRepositoryJdbc;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+
+// sobe a aplicação com o profile "jdbc" apontando para um H2 em memória no lugar do PostgreSQL
+@SpringBootTest(properties = {
+		"spring.datasource.url=jdbc:h2:mem:contexto;DB_CLOSE_DELAY=-1",
+		"spring.datasource.username=sa",
+		"spring.sql.init.platform=h2"
+})
+@ActiveProfiles("jdbc")
+class AgendamentosFarmaciaApplicationJdbcTests {
+
+	@Autowired
+	private AgendamentosRepository agendamentosRepository;
+	@Autowired
+	private UsuariosRepository usuariosRepository;
+
+	@Test
+	void contextLoadsComRepositoriosJdbc() {
+		assertInstanceOf(AgendamentosRepositoryJdbc.class, agendamentosRepository);
+		assertInstanceOf(UsuariosRepositoryJdbc.class, usuariosRepository);
+	}
+
+}
@@ -1,13 +1,36 @@
 package com.api.agendamentos;
 
+import com.api.agendamentos.services.UsuariosService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
 @SpringBootTest
 class AgendamentosFarmaciaApplicationTests {
 
+	@Autowired
+	private UsuariosService usuariosService;
+	@Autowired
+	private MeterRegistry registry;
+
 	@Test
 	void contextLoads() {
 	}
 
+	// nos testes o Spring Boot usa um registro em memória, sem exportar nada
+	@Test
+	void operacoesDosServicosMedidasComFaixasDeSlo() {
+		usuariosService.getUsuarios();
+
+		Timer timer = registry.get("servicos.operacoes")
+				.tags("class", UsuariosService.class.getName(), "method", "getUsuarios")
+				.timer();
+		assertEquals(1, timer.count());
+		assertEquals(5, timer.takeSnapshot().histogramCounts().length);
+	}
+
 }
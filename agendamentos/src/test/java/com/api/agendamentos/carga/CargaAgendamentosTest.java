@@ -0,0 +1,71 @@
+package com.api.agendamentos.carga;
+
+import com.api.agendamentos.AgendamentosFarmaciaApplication;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.http.HttpClient;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// sobe a aplicação numa porta livre, com arquivos vazios, e roda o GeradorCarga. Imprime vazão, latências e
+// taxas de erro/conflito por operação e grava o resultado em target/carga/ (ou em -Dcarga.saida) para comparar
+// entre versões; com -Dcarga.comparar=<resultado anterior> imprime também a variação. Fica fora do build padrão:
+//   mvn test -Dgroups=carga -DexcludedGroups=nenhum -Dtest=CargaAgendamentosTest [-Dcarga.concorrencia=200]
+//       [-Dcarga.segundos=20] [-Dcarga.mix=cadastro=5,disponibilidade=45,reserva=30,consulta=10,cancelamento=10]
+//       [-Dcarga.horariosQuentes=3] [-Dcarga.fracaoQuente=0.2] [-Dcarga.dias=3650] [-Dcarga.usuarios=500]
+// As propriedades da aplicação também podem ser passadas assim (ex.: -Dspring.threads.virtual.enabled=true,
+// -Dpersistencia.formato=BINARIO); só os caminhos dos arquivos são fixados pelo teste.
+@Tag("carga")
+class CargaAgendamentosTest {
+
+    @TempDir
+    Path diretorio;
+
+    @Test
+    void CargaMistaDeCadastroConsultaReservaECancelamento() throws Exception {
+        GeradorCarga.Configuracao configuracao = GeradorCarga.Configuracao.dasPropriedades();
+        ResultadoCarga resultado;
+        try (ConfigurableApplicationContext contexto = new SpringApplicationBuilder(AgendamentosFarmaciaApplication.class)
+                .properties("server.port=0")
+                // como argumentos, para valerem sobre o application.properties
+                .run("--agendamentos.arquivo=" + diretorio.resolve("agendamentos.json"),
+                        "--usuarios.arquivo=" + diretorio.resolve("usuarios.json"));
+             HttpClient cliente = HttpClient.newBuilder()
+                     .version(HttpClient.Version.HTTP_1_1)
+                     .executor(Executors.newVirtualThreadPerTaskExecutor())
+                     .build()) {
+            int porta = ((WebServerApplicationContext) contexto).getWebServer().getPort();
+            GeradorCarga gerador = new GeradorCarga(cliente, porta, configuracao);
+            gerador.preparar();
+            gerador.executar(Duration.ofSeconds(configuracao.segundosAquecimento()));
+
+            long inicio = System.nanoTime();
+            Map<GeradorCarga.Operacao, GeradorCarga.Amostras> amostras = gerador.executar(Duration.ofSeconds(configuracao.segundos()));
+            resultado = ResultadoCarga.de(configuracao, amostras, (System.nanoTime() - inicio) / 1e9);
+        }
+
+        Path saida = Path.of(System.getProperty("carga.saida", "target/carga/agendamentos-"
+                + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")) + ".json"));
+        resultado.gravar(saida);
+        System.out.printf("%n%s%nresultado gravado em %s%n", resultado.tabela(), saida.toAbsolutePath());
+        String anterior = System.getProperty("carga.comparar");
+        if (anterior != null) {
+            System.out.printf("%nvariação em relação a %s%n%s", anterior, resultado.comparacao(ResultadoCarga.ler(Path.of(anterior))));
+        }
+
+        assertTrue(resultado.total().requisicoes() > 0);
+        assertEquals(0, resultado.total().taxaErros());
+    }
+}
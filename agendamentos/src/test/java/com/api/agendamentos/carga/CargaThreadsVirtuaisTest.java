@@ -0,0 +1,147 @@
+package com.api.agendamentos.carga;
+
+import com.api.agendamentos.AgendamentosFarmaciaApplication;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// compara vazão e latência (p50/p99) da API com threads de plataforma e com threads virtuais
+// (spring.threads.virtual.enabled). Fica fora do build padrão; para rodar:
+//   mvn test -Dgroups=carga -DexcludedGroups=nenhum [-Dcarga.concorrencia=400] [-Dcarga.segundos=10]
+@Tag("carga")
+class CargaThreadsVirtuaisTest {
+
+    private static final int CONCORRENCIA = Integer.getInteger("carga.concorrencia", 400);
+    private static final Duration DURACAO = Duration.ofSeconds(Long.getLong("carga.segundos", 10));
+    private static final Duration AQUECIMENTO = Duration.ofSeconds(3);
+
+    @TempDir
+    Path diretorio;
+
+    private record Medicao(long[] latenciasNanos, long erros) {
+    }
+
+    private record Resultado(String modo, long requisicoes, long erros, double porSegundo, double p50Ms, double p99Ms) {
+    }
+
+    @Test
+    void ComparaThreadsDePlataformaEThreadsVirtuais() throws Exception {
+        Resultado plataforma = executar(false);
+        Resultado virtuais = executar(true);
+
+        System.out.printf("%n%-12s %12s %8s %12s %10s %10s%n", "modo", "requisicoes", "erros", "req/s", "p50 (ms)", "p99 (ms)");
+        for (Resultado resultado : List.of(plataforma, virtuais)) {
+            System.out.printf("%-12s %12d %8d %12.1f %10.2f %10.2f%n", resultado.modo(), resultado.requisicoes(),
+                    resultado.erros(), resultado.porSegundo(), resultado.p50Ms(), resultado.p99Ms());
+        }
+
+        assertTrue(plataforma.requisicoes() > 0 && virtuais.requisicoes() > 0);
+        assertEquals(0, plataforma.erros());
+        assertEquals(0, virtuais.erros());
+    }
+
+    // sobe a aplicação numa porta livre com o modo informado, aquece e mede a mesma carga mista de leituras
+    private Resultado executar(boolean threadsVirtuais) throws Exception {
+        String modo = threadsVirtuais ? "virtuais" : "plataforma";
+        try (ConfigurableApplicationContext contexto = new SpringApplicationBuilder(AgendamentosFarmaciaApplication.class)
+                .properties("server.port=0")
+                // como argumentos, para valerem sobre o application.properties
+                .run("--spring.threads.virtual.enabled=" + threadsVirtuais,
+                        "--agendamentos.arquivo=" + diretorio.resolve(modo + "-agendamentos.json"),
+                        "--usuarios.arquivo=" + diretorio.resolve(modo + "-usuarios.json"))) {
+            int porta = ((WebServerApplicationContext) contexto).getWebServer().getPort();
+            List<URI> uris = uris(porta);
+            try (HttpClient cliente = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .executor(Executors.newVirtualThreadPerTaskExecutor())
+                    .build()) {
+                medir(cliente, uris, AQUECIMENTO);
+                long inicio = System.nanoTime();
+                Medicao medicao = medir(cliente, uris, DURACAO);
+                double segundos = (System.nanoTime() - inicio) / 1e9;
+
+                long[] latencias = medicao.latenciasNanos();
+                Arrays.sort(latencias);
+                return new Resultado(modo, latencias.length, medicao.erros(), latencias.length / segundos,
+                        percentil(latencias, 0.50), percentil(latencias, 0.99));
+            }
+        }
+    }
+
+    private static List<URI> uris(int porta) {
+        String base = "http://localhost:" + porta;
+        LocalDate amanha = LocalDate.now().plusDays(1);
+        return List.of(
+                URI.create(base + "/agendamentos/disponiveis?data=" + amanha),
+                URI.create(base + "/agendamentos/disponiveis/periodo?inicio=" + amanha + "&fim=" + amanha.plusDays(6)),
+                URI.create(base + "/agendamentos?limite=20"),
+                URI.create(base + "/usuarios?limite=20"));
+    }
+
+    // cada cliente (uma thread virtual) envia requisições em sequência, alternando entre as uris, até o fim da duração
+    private static Medicao medir(HttpClient cliente, List<URI> uris, Duration duracao) throws Exception {
+        long fim = System.nanoTime() + duracao.toNanos();
+        List<Future<Medicao>> clientes = new ArrayList<>(CONCORRENCIA);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < CONCORRENCIA; i++) {
+                int deslocamento = i;
+                clientes.add(executor.submit(() -> {
+                    long[] latencias = new long[1024];
+                    int quantidade = 0;
+                    long erros = 0;
+                    for (int n = deslocamento; System.nanoTime() < fim; n++) {
+                        HttpRequest requisicao = HttpRequest.newBuilder(uris.get(n % uris.size())).GET().build();
+                        long inicio = System.nanoTime();
+                        HttpResponse<Void> resposta = cliente.send(requisicao, HttpResponse.BodyHandlers.discarding());
+                        if (quantidade == latencias.length) {
+                            latencias = Arrays.copyOf(latencias, quantidade * 2);
+                        }
+                        latencias[quantidade++] = System.nanoTime() - inicio;
+                        if (resposta.statusCode() >= 400) {
+                            erros++;
+                        }
+                    }
+                    return new Medicao(Arrays.copyOf(latencias, quantidade), erros);
+                }));
+            }
+        }
+        long[] todas = new long[0];
+        long erros = 0;
+        for (Future<Medicao> futuro : clientes) {
+            Medicao medicao = futuro.get();
+            int anterior = todas.length;
+            todas = Arrays.copyOf(todas, anterior + medicao.latenciasNanos().length);
+            System.arraycopy(medicao.latenciasNanos(), 0, todas, anterior, medicao.latenciasNanos().length);
+            erros += medicao.erros();
+        }
+        return new Medicao(todas, erros);
+    }
+
+    private static double percentil(long[] ordenadas, double percentil) {
+        if (ordenadas.length == 0) {
+            return 0;
+        }
+        int indice = (int) Math.ceil(percentil * ordenadas.length) - 1;
+        return ordenadas[Math.max(0, indice)] / 1e6;
+    }
+}
@@ -0,0 +1,338 @@
+package com.api.agendamentos.carga;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+// gera a carga de uma farmácia contra a API já no ar: cadastro de usuários, consulta de horários livres,
+// reservas (parte delas disputando poucos horários muito procurados), consulta dos agendamentos do usuário
+// e cancelamentos. Cada cliente é uma thread virtual que envia uma requisição depois da outra.
+final class GeradorCarga {
+
+    enum Operacao {
+        CADASTRO, DISPONIBILIDADE, RESERVA, CONSULTA, CANCELAMENTO
+    }
+
+    private enum Desfecho {
+        SUCESSO, CONFLITO, ERRO
+    }
+
+    // mix: peso de cada operação no sorteio. Uma fração (fracaoQuente) das reservas vai para um dos
+    // horariosQuentes primeiros horários de amanhã; as demais se espalham pelos próximos dias
+    record Configuracao(int concorrencia, long segundos, long segundosAquecimento, Map<Operacao, Integer> mix,
+                        int usuarios, int dias, int horariosQuentes, double fracaoQuente, long semente) {
+
+        static final String MIX_PADRAO = "cadastro=5,disponibilidade=45,reserva=30,consulta=10,cancelamento=10";
+
+        Configuracao {
+            // os horários quentes são horas cheias de amanhã dentro do horário comercial, das 9h às 17h
+            if (horariosQuentes < 1 || horariosQuentes > 9) {
+                throw new IllegalArgumentException("carga.horariosQuentes deve estar entre 1 e 9.");
+            }
+            if (concorrencia < 1 || usuarios < 1 || dias < 1) {
+                throw new IllegalArgumentException("Concorrência, usuários e dias da carga devem ser positivos.");
+            }
+        }
+
+        static Configuracao dasPropriedades() {
+            return new Configuracao(
+                    Integer.getInteger("carga.concorrencia", 200),
+                    Long.getLong("carga.segundos", 20),
+                    Long.getLong("carga.aquecimento", 5),
+                    lerMix(System.getProperty("carga.mix", MIX_PADRAO)),
+                    Integer.getInteger("carga.usuarios", 500),
+                    Integer.getInteger("carga.dias", 3650),
+                    Integer.getInteger("carga.horariosQuentes", 3),
+                    Double.parseDouble(System.getProperty("carga.fracaoQuente", "0.2")),
+                    Long.getLong("carga.semente", 42));
+        }
+
+        // "reserva=30,cancelamento=10": as operações não informadas ficam com peso zero
+        static Map<Operacao, Integer> lerMix(String mix) {
+            Map<Operacao, Integer> pesos = new EnumMap<>(Operacao.class);
+            for (String parte : mix.split(",")) {
+                String[] chaveValor = parte.trim().split("=");
+                if (chaveValor.length != 2) {
+                    throw new IllegalArgumentException("Mix de carga inválido: " + mix);
+                }
+                int peso = Integer.parseInt(chaveValor[1].trim());
+                if (peso < 0) {
+                    throw new IllegalArgumentException("Peso negativo no mix de carga: " + parte);
+                }
+                pesos.put(Operacao.valueOf(chaveValor[0].trim().toUpperCase()), peso);
+            }
+            if (pesos.values().stream().mapToInt(Integer::intValue).sum() == 0) {
+                throw new IllegalArgumentException("O mix de carga precisa de ao menos uma operação: " + mix);
+            }
+            return pesos;
+        }
+    }
+
+    // latências de uma operação, com o desfecho de cada requisição
+    static final class Amostras {
+        private long[] latenciasNanos = new long[256];
+        private int quantidade;
+        private long conflitos;
+        private long erros;
+
+        private void registrar(long nanos, Desfecho desfecho) {
+            if (quantidade == latenciasNanos.length) {
+                latenciasNanos = Arrays.copyOf(latenciasNanos, quantidade * 2);
+            }
+            latenciasNanos[quantidade++] = nanos;
+            if (desfecho == Desfecho.CONFLITO) {
+                conflitos++;
+            } else if (desfecho == Desfecho.ERRO) {
+                erros++;
+            }
+        }
+
+        void juntar(Amostras outras) {
+            int total = quantidade + outras.quantidade;
+            if (total > latenciasNanos.length) {
+                latenciasNanos = Arrays.copyOf(latenciasNanos, total);
+            }
+            System.arraycopy(outras.latenciasNanos, 0, latenciasNanos, quantidade, outras.quantidade);
+            quantidade = total;
+            conflitos += outras.conflitos;
+            erros += outras.erros;
+        }
+
+        long[] latenciasOrdenadas() {
+            long[] ordenadas = Arrays.copyOf(latenciasNanos, quantidade);
+            Arrays.sort(ordenadas);
+            return ordenadas;
+        }
+
+        long getConflitos() {
+            return conflitos;
+        }
+
+        long getErros() {
+            return erros;
+        }
+    }
+
+    private static final int MAXIMO_RESERVADOS_POR_CLIENTE = 256;
+
+    private final HttpClient cliente;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final String base;
+    private final Configuracao configuracao;
+    private final Operacao[] sorteio;
+    private final AtomicLong cadastros = new AtomicLong();
+    private final LocalDate primeiroDia = LocalDate.now().plusDays(1);
+    private List<String> idsUsuarios = List.of();
+
+    GeradorCarga(HttpClient cliente, int porta, Configuracao configuracao) {
+        this.cliente = cliente;
+        this.base = "http://localhost:" + porta;
+        this.configuracao = configuracao;
+        this.sorteio = montarSorteio(configuracao.mix());
+    }
+
+    // cadastra os usuários iniciais, que são os que fazem reservas, e guarda os ids atribuídos pela API
+    void preparar() throws IOException, InterruptedException {
+        for (int i = 0; i < configuracao.usuarios(); i++) {
+            HttpResponse<byte[]> resposta = cadastrar();
+            if (resposta.statusCode() != 201) {
+                throw new IllegalStateException("Não foi possível cadastrar os usuários iniciais da carga: "
+                        + resposta.statusCode() + " " + new String(resposta.body()));
+            }
+        }
+        HttpResponse<byte[]> resposta = enviar(HttpRequest.newBuilder(URI.create(base + "/usuarios")).GET());
+        List<String> ids = new ArrayList<>(configuracao.usuarios());
+        for (JsonNode usuario : objectMapper.readTree(resposta.body())) {
+            ids.add(usuario.get("id").asText());
+        }
+        idsUsuarios = List.copyOf(ids);
+    }
+
+    Map<Operacao, Amostras> executar(Duration duracao) throws Exception {
+        long fim = System.nanoTime() + duracao.toNanos();
+        List<Future<Map<Operacao, Amostras>>> clientes = new ArrayList<>(configuracao.concorrencia());
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < configuracao.concorrencia(); i++) {
+                SplittableRandom aleatorio = new SplittableRandom(configuracao.semente() + i);
+                clientes.add(executor.submit(() -> executarCliente(aleatorio, fim)));
+            }
+        }
+        Map<Operacao, Amostras> total = novasAmostras();
+        for (Future<Map<Operacao, Amostras>> futuro : clientes) {
+            futuro.get().forEach((operacao, amostras) -> total.get(operacao).juntar(amostras));
+        }
+        return total;
+    }
+
+    private Map<Operacao, Amostras> executarCliente(SplittableRandom aleatorio, long fim) throws InterruptedException {
+        Map<Operacao, Amostras> amostras = novasAmostras();
+        // usuários com reserva feita por este cliente, de onde saem os cancelamentos
+        ArrayDeque<String> reservados = new ArrayDeque<>();
+        while (System.nanoTime() < fim) {
+            Operacao operacao = sorteio[aleatorio.nextInt(sorteio.length)];
+            switch (operacao) {
+                case CADASTRO -> medir(amostras, operacao, () -> {
+                    HttpResponse<byte[]> resposta = cadastrar();
+                    return resposta.statusCode() == 201 ? Desfecho.SUCESSO : Desfecho.ERRO;
+                });
+                case DISPONIBILIDADE -> medir(amostras, operacao, () -> {
+                    LocalDate data = primeiroDia.plusDays(aleatorio.nextInt(configuracao.dias()));
+                    int status = enviar(HttpRequest.newBuilder(URI.create(base + "/agendamentos/disponiveis?data=" + data)).GET())
+                            .statusCode();
+                    // 404 é a resposta normal para um dia sem horários livres
+                    return status == 200 || status == 404 ? Desfecho.SUCESSO : Desfecho.ERRO;
+                });
+                case RESERVA -> {
+                    String idUsuario = idsUsuarios.get(aleatorio.nextInt(idsUsuarios.size()));
+                    Desfecho desfecho = medir(amostras, operacao, () -> reservar(idUsuario, aleatorio));
+                    if (desfecho == Desfecho.SUCESSO) {
+                        if (reservados.size() == MAXIMO_RESERVADOS_POR_CLIENTE) {
+                            reservados.removeFirst();
+                        }
+                        reservados.addLast(idUsuario);
+                    }
+                }
+                case CONSULTA -> {
+                    String idUsuario = idsUsuarios.get(aleatorio.nextInt(idsUsuarios.size()));
+                    medir(amostras, operacao, () -> consultarAtivos(idUsuario) == null ? Desfecho.ERRO : Desfecho.SUCESSO);
+                }
+                case CANCELAMENTO -> cancelar(amostras, reservados.pollFirst());
+            }
+        }
+        return amostras;
+    }
+
+    // o usuário consulta os próprios agendamentos ativos e cancela o primeiro; sem reserva feita por este
+    // cliente ainda, ou sem agendamento ativo, só a consulta é contada
+    private void cancelar(Map<Operacao, Amostras> amostras, String idUsuario) throws InterruptedException {
+        if (idUsuario == null) {
+            return;
+        }
+        String[] idAgendamento = new String[1];
+        Desfecho consulta = medir(amostras, Operacao.CONSULTA, () -> {
+            JsonNode ativos = consultarAtivos(idUsuario);
+            if (ativos == null) {
+                return Desfecho.ERRO;
+            }
+            if (!ativos.isEmpty()) {
+                idAgendamento[0] = ativos.get(0).get("idAgendamento").asText();
+            }
+            return Desfecho.SUCESSO;
+        });
+        if (consulta != Desfecho.SUCESSO || idAgendamento[0] == null) {
+            return;
+        }
+        medir(amostras, Operacao.CANCELAMENTO, () -> {
+            int status = enviar(HttpRequest.newBuilder(URI.create(base + "/agendamentos/" + idAgendamento[0])).DELETE())
+                    .statusCode();
+            // 400: outro cliente cancelou o mesmo agendamento entre a consulta e o cancelamento
+            return status == 200 ? Desfecho.SUCESSO : status == 400 ? Desfecho.CONFLITO : Desfecho.ERRO;
+        });
+    }
+
+    private Desfecho reservar(String idUsuario, SplittableRandom aleatorio) throws IOException, InterruptedException {
+        LocalDateTime dataHora;
+        if (aleatorio.nextDouble() < configuracao.fracaoQuente()) {
+            dataHora = primeiroDia.atTime(9 + aleatorio.nextInt(configuracao.horariosQuentes()), 0);
+        } else {
+            dataHora = primeiroDia.plusDays(aleatorio.nextInt(configuracao.dias())).atTime(9 + aleatorio.nextInt(9), 0);
+        }
+        String corpo = "{\"idUsuario\":\"" + idUsuario + "\",\"servico\":\"SERVICO" + (1 + aleatorio.nextInt(4))
+                + "\",\"dataHora\":\"" + dataHora + "\"}";
+        HttpResponse<byte[]> resposta = enviar(HttpRequest.newBuilder(URI.create(base + "/agendamentos"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(corpo)));
+        if (resposta.statusCode() == 201) {
+            return Desfecho.SUCESSO;
+        }
+        // a API recusa o horário já ocupado com 400 e esta mensagem
+        boolean ocupado = resposta.statusCode() == 400 && new String(resposta.body()).contains("indisponível");
+        return ocupado ? Desfecho.CONFLITO : Desfecho.ERRO;
+    }
+
+    private JsonNode consultarAtivos(String idUsuario) throws IOException, InterruptedException {
+        HttpResponse<byte[]> resposta = enviar(HttpRequest.newBuilder(URI.create(
+                base + "/agendamentos?idUsuario=" + idUsuario + "&status=AGENDADO&limite=1")).GET());
+        return resposta.statusCode() == 200 ? objectMapper.readTree(resposta.body()) : null;
+    }
+
+    private HttpResponse<byte[]> cadastrar() throws IOException, InterruptedException {
+        long numero = cadastros.incrementAndGet();
+        String corpo = "{\"nome\":\"Cliente " + letras(numero) + "\",\"email\":\"cliente" + numero
+                + "@carga.com\",\"dataNascimento\":\"1990-01-01\"}";
+        return enviar(HttpRequest.newBuilder(URI.create(base + "/usuarios"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(corpo)));
+    }
+
+    private HttpResponse<byte[]> enviar(HttpRequest.Builder requisicao) throws IOException, InterruptedException {
+        return cliente.send(requisicao.build(), HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    @FunctionalInterface
+    private interface Requisicao {
+        Desfecho enviar() throws IOException, InterruptedException;
+    }
+
+    // falhas de conexão contam como erro e não interrompem o cliente
+    private static Desfecho medir(Map<Operacao, Amostras> amostras, Operacao operacao, Requisicao requisicao)
+            throws InterruptedException {
+        long inicio = System.nanoTime();
+        Desfecho desfecho;
+        try {
+            desfecho = requisicao.enviar();
+        } catch (IOException e) {
+            desfecho = Desfecho.ERRO;
+        }
+        amostras.get(operacao).registrar(System.nanoTime() - inicio, desfecho);
+        return desfecho;
+    }
+
+    // o nome do usuário só aceita letras e espaços
+    private static String letras(long numero) {
+        StringBuilder nome = new StringBuilder();
+        do {
+            nome.append((char) ('A' + numero % 26));
+            numero /= 26;
+        } while (numero > 0);
+        return nome.toString();
+    }
+
+    private static Map<Operacao, Amostras> novasAmostras() {
+        Map<Operacao, Amostras> amostras = new EnumMap<>(Operacao.class);
+        for (Operacao operacao : Operacao.values()) {
+            amostras.put(operacao, new Amostras());
+        }
+        return amostras;
+    }
+
+    // cada operação aparece no vetor tantas vezes quanto o seu peso, para o sorteio ser um acesso por índice
+    private static Operacao[] montarSorteio(Map<Operacao, Integer> mix) {
+        List<Operacao> sorteio = new ArrayList<>();
+        mix.forEach((operacao, peso) -> {
+            for (int i = 0; i < peso; i++) {
+                sorteio.add(operacao);
+            }
+        });
+        return sorteio.toArray(Operacao[]::new);
+    }
+}
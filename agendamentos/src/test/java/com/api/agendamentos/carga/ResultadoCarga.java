@@ -0,0 +1,106 @@
+package com.api.agendamentos.carga;
+
+import com.api.agendamentos.carga.GeradorCarga.Amostras;
+import com.api.agendamentos.carga.GeradorCarga.Configuracao;
+import com.api.agendamentos.carga.GeradorCarga.Operacao;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.Map;
+
+// resultado de uma execução do GeradorCarga, gravado em json para comparar uma versão com a outra
+record ResultadoCarga(String data, Configuracao configuracao, Estatisticas total, Map<Operacao, Estatisticas> operacoes) {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    // taxas em relação ao total de requisições da operação
+    record Estatisticas(long requisicoes, double porSegundo, double p50Ms, double p90Ms, double p99Ms, double maximoMs,
+                        double taxaErros, double taxaConflitos) {
+
+        static Estatisticas de(Amostras amostras, double segundos) {
+            long[] latencias = amostras.latenciasOrdenadas();
+            long requisicoes = latencias.length;
+            return new Estatisticas(requisicoes, requisicoes / segundos,
+                    percentil(latencias, 0.50), percentil(latencias, 0.90), percentil(latencias, 0.99),
+                    latencias.length == 0 ? 0 : latencias[latencias.length - 1] / 1e6,
+                    taxa(amostras.getErros(), requisicoes), taxa(amostras.getConflitos(), requisicoes));
+        }
+    }
+
+    static ResultadoCarga de(Configuracao configuracao, Map<Operacao, Amostras> amostras, double segundos) {
+        Map<Operacao, Estatisticas> operacoes = new EnumMap<>(Operacao.class);
+        Amostras total = new Amostras();
+        amostras.forEach((operacao, daOperacao) -> {
+            operacoes.put(operacao, Estatisticas.de(daOperacao, segundos));
+            total.juntar(daOperacao);
+        });
+        return new ResultadoCarga(LocalDateTime.now().toString(), configuracao, Estatisticas.de(total, segundos), operacoes);
+    }
+
+    static ResultadoCarga ler(Path arquivo) throws IOException {
+        return OBJECT_MAPPER.readValue(arquivo.toFile(), ResultadoCarga.class);
+    }
+
+    void gravar(Path arquivo) throws IOException {
+        Files.createDirectories(arquivo.toAbsolutePath().getParent());
+        OBJECT_MAPPER.writeValue(arquivo.toFile(), this);
+    }
+
+    String tabela() {
+        StringBuilder tabela = new StringBuilder(String.format("%-16s %12s %10s %9s %9s %9s %9s %8s %9s%n",
+                "operacao", "requisicoes", "req/s", "p50 (ms)", "p90 (ms)", "p99 (ms)", "max (ms)", "erros", "conflitos"));
+        operacoes.forEach((operacao, estatisticas) -> linha(tabela, operacao.name().toLowerCase(), estatisticas));
+        linha(tabela, "total", total);
+        return tabela.toString();
+    }
+
+    // variação de vazão e latência de cada operação em relação a uma execução anterior
+    String comparacao(ResultadoCarga anterior) {
+        StringBuilder tabela = new StringBuilder(String.format("%-16s %14s %14s %14s %14s%n",
+                "operacao", "req/s", "p50 (ms)", "p99 (ms)", "erros"));
+        operacoes.forEach((operacao, estatisticas) -> {
+            Estatisticas antes = anterior.operacoes().get(operacao);
+            if (antes != null) {
+                variacao(tabela, operacao.name().toLowerCase(), antes, estatisticas);
+            }
+        });
+        variacao(tabela, "total", anterior.total(), total);
+        return tabela.toString();
+    }
+
+    private static void linha(StringBuilder tabela, String nome, Estatisticas estatisticas) {
+        tabela.append(String.format("%-16s %12d %10.1f %9.2f %9.2f %9.2f %9.2f %7.2f%% %8.2f%%%n", nome,
+                estatisticas.requisicoes(), estatisticas.porSegundo(), estatisticas.p50Ms(), estatisticas.p90Ms(),
+                estatisticas.p99Ms(), estatisticas.maximoMs(), estatisticas.taxaErros() * 100,
+                estatisticas.taxaConflitos() * 100));
+    }
+
+    private static void variacao(StringBuilder tabela, String nome, Estatisticas antes, Estatisticas depois) {
+        tabela.append(String.format("%-16s %14s %14s %14s %14s%n", nome,
+                percentual(antes.porSegundo(), depois.porSegundo()),
+                percentual(antes.p50Ms(), depois.p50Ms()),
+                percentual(antes.p99Ms(), depois.p99Ms()),
+                String.format("%.2f%% -> %.2f%%", antes.taxaErros() * 100, depois.taxaErros() * 100)));
+    }
+
+    private static String percentual(double antes, double depois) {
+        return antes == 0 ? "-" : String.format("%+.1f%%", (depois - antes) / antes * 100);
+    }
+
+    private static double percentil(long[] ordenadas, double percentil) {
+        if (ordenadas.length == 0) {
+            return 0;
+        }
+        int indice = (int) Math.ceil(percentil * ordenadas.length) - 1;
+        return ordenadas[Math.max(0, indice)] / 1e6;
+    }
+
+    private static double taxa(long quantidade, long requisicoes) {
+        return requisicoes == 0 ? 0 : (double) quantidade / requisicoes;
+    }
+}
@@ -0,0 +1,82 @@
+package com.api.agendamentos.config;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.TemporalAdjusters;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AgendaConfigTest {
+
+    private static final LocalDate SEGUNDA = LocalDate.of(2030, 1, 7);
+
+    @Test
+    void PadraoTemAtendimentosDeUmaHoraDas9hAs17h() {
+        AgendaConfig agenda = AgendaConfig.padrao();
+
+        List<LocalDateTime> horarios = agenda.getHorarios(SEGUNDA);
+
+        assertEquals(9, horarios.size());
+        assertEquals(SEGUNDA.atTime(9, 0), horarios.get(0));
+        assertEquals(SEGUNDA.atTime(17, 0), horarios.get(8));
+        assertEquals("das 9h às 17h", agenda.descricaoExpediente(SEGUNDA));
+        assertTrue(agenda.inicioDeAtendimento(SEGUNDA.atTime(17, 0)));
+        assertFalse(agenda.inicioDeAtendimento(SEGUNDA.atTime(9, 30)));
+        assertFalse(agenda.inicioDeAtendimento(SEGUNDA.atTime(9, 0, 1)));
+    }
+
+    @Test
+    void ExpedientePorDiaDaSemanaEAtendimentosDeVinteMinutos() {
+        AgendaConfig agenda = new AgendaConfig(20, "08:00-09:00", "sab=08:00-08:40, DOM=", "", "");
+        LocalDate sabado = SEGUNDA.with(TemporalAdjusters.next(DayOfWeek.SATURDAY));
+
+        assertEquals(List.of(SEGUNDA.atTime(8, 0), SEGUNDA.atTime(8, 20), SEGUNDA.atTime(8, 40)), agenda.getHorarios(SEGUNDA));
+        assertEquals(List.of(sabado.atTime(8, 0), sabado.atTime(8, 20)), agenda.getHorarios(sabado));
+        assertTrue(agenda.getHorarios(sabado.plusDays(1)).isEmpty());
+        assertFalse(agenda.atendeNaData(sabado.plusDays(1)));
+        assertFalse(agenda.dentroDoExpediente(sabado.atTime(8, 40)));
+    }
+
+    @Test
+    void IntervalosDividemOExpedienteEOsHorariosRecomecamDepoisDeles() {
+        AgendaConfig agenda = new AgendaConfig(45, "09:00-13:00", "", "10:00-10:15", "");
+
+        // 9:00-9:45 cabe antes do intervalo, 9:45-10:30 não; depois dele os horários contam a partir das 10:15
+        assertEquals(List.of(SEGUNDA.atTime(9, 0), SEGUNDA.atTime(10, 15), SEGUNDA.atTime(11, 0), SEGUNDA.atTime(11, 45)),
+                agenda.getHorarios(SEGUNDA));
+        assertTrue(agenda.emIntervalo(SEGUNDA.atTime(10, 10)));
+        assertFalse(agenda.emIntervalo(SEGUNDA.atTime(10, 15)));
+    }
+
+    @Test
+    void FeriadosComAnoEAnuais() {
+        AgendaConfig agenda = new AgendaConfig(60, "09:00-18:00", "", "", "12-25, 2030-01-07");
+
+        assertFalse(agenda.atendeNaData(SEGUNDA));
+        assertFalse(agenda.atendeNaData(LocalDate.of(2031, 12, 25)));
+        assertTrue(agenda.atendeNaData(SEGUNDA.plusDays(1)));
+        assertTrue(agenda.getHorarios(LocalDate.of(2035, 12, 25)).isEmpty());
+        assertFalse(agenda.inicioDeAtendimento(SEGUNDA.atTime(9, 0)));
+    }
+
+    @Test
+    void HorariosDaDataFicamEmCache() {
+        AgendaConfig agenda = AgendaConfig.padrao();
+
+        assertSame(agenda.getHorarios(SEGUNDA), agenda.getHorarios(LocalDate.of(2030, 1, 7)));
+        assertThrows(UnsupportedOperationException.class, () -> agenda.getHorarios(SEGUNDA).clear());
+    }
+
+    @Test
+    void ConfiguracaoInvalida() {
+        assertThrows(IllegalArgumentException.class, () -> new AgendaConfig(0, "09:00-18:00", "", "", ""));
+        assertThrows(IllegalArgumentException.class, () -> new AgendaConfig(60, "18:00-09:00", "", "", ""));
+        assertThrows(IllegalArgumentException.class, () -> new AgendaConfig(60, "09:00-18:00", "SABADO=09:00-12:00", "", ""));
+        assertThrows(IllegalArgumentException.class, () -> new AgendaConfig(60, "09:00-18:00", "", "12h-13h", ""));
+        assertThrows(IllegalArgumentException.class, () -> new AgendaConfig(60, "09:00-18:00", "", "", "25/12"));
+    }
+}
@@ -0,0 +1,34 @@
+package com.api.agendamentos.config;
+
+import com.api.agendamentos.exceptions.BadRequestException;
+import com.api.agendamentos.models.Agendamentos;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DataHoraDeserializerTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private Agendamentos ler(String dataHora) throws Exception {
+        return mapper.readValue("{\"idUsuario\":\"1\",\"dataHora\":" + dataHora + "}", Agendamentos.class);
+    }
+
+    @Test
+    void ConverteODataHoraNoFormatoDaApi() throws Exception {
+        assertEquals(LocalDateTime.of(2030, 1, 7, 9, 30), ler("\"2030-01-07T09:30\"").getDataHora());
+    }
+
+    @Test
+    void ValorVazioOuForaDoFormatoVira400() {
+        for (String dataHora : new String[]{"\"\"", "\"  \"", "\"07/01/2030 09:30\"", "\"2030-01-07T09:30:00\"", "{}"}) {
+            Exception e = assertThrows(Exception.class, () -> ler(dataHora));
+            Throwable causa = e instanceof BadRequestException ? e : e.getCause();
+            assertInstanceOf(BadRequestException.class, causa, dataHora);
+            assertEquals("Formato inválido para a dataHora. Use o formato 'yyyy-MM-dd'T'HH:mm'.", causa.getMessage());
+        }
+    }
+}
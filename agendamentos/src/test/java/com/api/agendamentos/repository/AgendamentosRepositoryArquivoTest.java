@@ -0,0 +1,514 @@
+package com.api.agendamentos.repository;
+
+import com.api.agendamentos.config.FiliaisConfig;
+import com.api.agendamentos.config.PersistenciaConfig;
+import com.api.agendamentos.models.Agendamentos;
+import com.api.agendamentos.models.FiltroAgendamentos;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AgendamentosRepositoryArquivoTest {
+    private static final FiliaisConfig FILIAIS = new FiliaisConfig("centro,sul");
+
+    @TempDir
+    Path diretorio;
+    private Path arquivo;
+    private AgendamentosRepositoryArquivo agendamentosRepository;
+
+    @BeforeEach
+    void setUp() {
+        arquivo = diretorio.resolve("agendamentos.json");
+        agendamentosRepository = novoRepositorio(PersistenciaConfig.Modo.SNAPSHOT, 1000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        agendamentosRepository.encerrar();
+    }
+
+    private AgendamentosRepositoryArquivo novoRepositorio(PersistenciaConfig.Modo modo, int limiteAlteracoes) {
+        PersistenciaConfig config = new PersistenciaConfig(modo, 60_000, limiteAlteracoes, 3);
+        AgendamentosRepositoryArquivo repositorio = new AgendamentosRepositoryArquivo(arquivo.toString(), config, FILIAIS);
+        repositorio.carregar();
+        return repositorio;
+    }
+
+    @Test
+    void VersoesDoDiaEDoUsuarioMudamSoComAsAlteracoesDeles() {
+        LocalDateTime horario = LocalDateTime.of(2030, 1, 1, 10, 0);
+        LocalDate dia = horario.toLocalDate();
+        String versaoDia = agendamentosRepository.getVersaoDia(Agendamentos.FILIAL_PADRAO, dia);
+        String versaoOutroDia = agendamentosRepository.getVersaoDia(Agendamentos.FILIAL_PADRAO, dia.plusDays(1));
+        String versaoOutraFilial = agendamentosRepository.getVersaoDia("centro", dia);
+        String versaoUsuario = agendamentosRepository.getVersaoUsuario("1");
+        String versaoOutroUsuario = agendamentosRepository.getVersaoUsuario("2");
+
+        Agendamentos agendamento = new Agendamentos("1", Agendamentos.TipoServico.SERVICO1, horario);
+        assertTrue(agendamentosRepository.reservarHorario(agendamento, horario));
+
+        String reservado = agendamentosRepository.getVersaoDia(Agendamentos.FILIAL_PADRAO, dia);
+        assertNotEquals(versaoDia, reservado);
+        assertNotEquals(versaoUsuario, agendamentosRepository.getVersaoUsuario("1"));
+        assertEquals(reservado, agendamentosRepository.getVersaoDia(Agendamentos.FILIAL_PADRAO, dia));
+        assertEquals(versaoOutroDia, agendamentosRepository.getVersaoDia(Agendamentos.FILIAL_PADRAO, dia.plusDays(1)));
+        assertEquals(versaoOutraFilial, agendamentosRepository.getVersaoDia("centro", dia));
+        assertEquals(versaoOutroUsuario, agendamentosRepository.getVersaoUsuario("2"));
+
+        agendamento.setStatus(Agendamentos.statusAgendamento.CANCELADO);
+        agendamentosRepository.atualizarAgendamento(agendamento);
+        assertNotEquals(reservado, agendamentosRepository.getVersaoDia(Agendamentos.FILIAL_PADRAO, dia));
+    }
+
+    @Test
+    void CarregarSemArquivoIniciaVazio() {
+        assertTrue(agendamentosRepository.getAgendamentos().isEmpty());
+    }
+
+    @Test
+    void AdicionarAgendamentoFicaDisponivelSemGravarNoArquivo() {
+        Agendamentos agendamento = new Agendamentos("1", Agendamentos.TipoServico.SERVICO1, LocalDateTime.parse("2030-01-01T10:00"));
+
+        agendamentosRepository.adicionarAgendamento(agendamento);
+
+        assertEquals(agendamento, agendamentosRepository.getAgendamentoPorId(agendamento.getIdAgendamento()).orElseThrow());
+        assertFalse(Files.exists(arquivo));
+    }
+
+    @Test
+    void IndiceDeHorariosAcompanhaCriacaoECancelamento() {
+        LocalDateTime horario = LocalDateTime.of(2030, 1, 1, 10, 0);
+        Agendamentos agendamento = new Agendamentos("1", Agendamentos.TipoServico.SERVICO1, horario);
+
+        agendamentosRepository.adicionarAgendamento(agendamento);
+        // indexar de novo o mesmo agendamento não ocupa outra vaga
+        agendamentosRepository.adicionarAgendamento(agendamento);
+        assertEquals(List.of(agendamento), agendamentosRepository.getAgendamentosNoHorario(Agendamentos.FILIAL_PADRAO, horario));
+        assertTrue(agendamentosRepository.getAgendamentosNoHorario(Agendamentos.FILIAL_PADRAO, horario.plusHours(1)).isEmpty());
+
+        assertEquals(Map.of(horario, 0), agendamentosRepository.getVagasRestantes(Agendamentos.FILIAL_PADRAO, horario.toLocalDate(), Agendamentos.TipoServico.SERVICO1));
+        assertEquals(Map.of(horario, 3), agendamentosRepository.getVagasRestantes(Agendamentos.FILIAL_PADRAO, horario.toLocalDate(), null));
+        assertArrayEquals(new int[]{3, 4}, agendamentosRepository.getVagasRestantes(Agendamentos.FILIAL_PADRAO,
+                List.of(horario, horario.plusHours(1)), null));
+
+        agendamento.setStatus(Agendamentos.statusAgendamento.CANCELADO);
+        agendamentosRepository.atualizarAgendamento(agendamento);
+        assertTrue(agendamentosRepository.getAgendamentosNoHorario(Agendamentos.FILIAL_PADRAO, horario).isEmpty());
+        assertEquals(Map.of(), agendamentosRepository.getVagasRestantes(Agendamentos.FILIAL_PADRAO, horario.toLocalDate(), Agendamentos.TipoServico.SERVICO1));
+        assertArrayEquals(new int[]{1, 1}, agendamentosRepository.getVagasRestantes(Agendamentos.FILIAL_PADRAO,
+                List.of(horario, horario.plusHours(1)), Agendamentos.TipoServico.SERVICO1));
+    }
+
+    @Test
+    void AgendamentosPorUsuarioOrdenadosPorDataHoraEPaginados() {
+        Agendamentos terceiro = new Agendamentos("1", Agendamentos.TipoServico.SERVICO1, LocalDateTime.parse("2030-01-03T10:00"));
+        Agendamentos primeiro = new Agendamentos("1", Agendamentos.TipoServico.SERVICO1, LocalDateTime.parse("2030-01-01T10:00"));
+        Agendamentos segundo = new Agendamentos("1", Agendamentos.TipoServico.SERVICO1, LocalDateTime.parse("2030-01-02T10:00"));
+        agendamentosRepository.adicionarAgendamento(terceiro);
+        agendamentosRepository.adicionarAgendamento(primeiro);
+        agendamentosRepository.adicionarAgendamento(new Agendamentos("2", Agendamentos.TipoServico.SERVICO1, LocalDateTime.parse("2030-01-01T11:00")));
+        agendamentosRepository.adicionarAgendamento(segundo);
+
+        assertEquals(List.of(primeiro, segundo, terceiro), agendamentosRepository.getAgendamentosPorUsuario("1", 0, 10));
+        assertEquals(List.of(segundo), agendamentosRepository.getAgendamentosPorUsuario("1", 1, 1));
+        assertEquals(3, agendamentosRepository.contarAgendamentosPorUsuario("1"));
+        assertTrue(agendamentosRepository.getAgendamentosPorUsuario("3", 0, 10).isEmpty());
+    }
+
+    @Test
+    void BuscarAgendamentosFiltraEContinuaAPartirDoCursor() {
+        Agendamentos primeiro = new Agendamentos("1", Agendamentos.TipoServico.SERVICO1, LocalDateTime.parse("2030-01-01T10:00"));
+        Agendamentos outroServico = new Agendamentos("1", Agendamentos.TipoServico.SERVICO2, LocalDateTime.parse("2030-01-01T11:00"));
+        Agendamentos outroUsuario = new Agendamentos("2", Agendamentos.TipoServico.SERVICO1, LocalDateTime.parse("2030-01-02T10:00"));
+        Agendamentos cancelado = new Agendamentos("1", Agendamentos.TipoServico.SERVICO1, LocalDateTime.parse("2030-01-02T11:00"));
+        cancelado.setStatus(Agendamentos.statusAgendamento.CANCELADO);
+        Agendamentos segundo = new Agendamentos("1", Agendamentos.TipoServico.SERVICO1, LocalDateTime.parse("2030-01-03T10:00"));
+        Agendamentos foraDoPeriodo = new Agendamentos("1", Agendamentos.TipoServico.SERVICO1, LocalDateTime.parse("2030-01-04T10:00"));
+        for (Agendamentos agendamento : List.of(foraDoPeriodo, segundo, cancelado, outroUsuario, outroServico, primeiro)) {
+            agendamentosRepository.adicionarAgendamento(agendamento);
+        }
+
+        FiltroAgendamentos filtro = new FiltroAgendamentos("1", Agendamentos.statusAgendamento.AGENDADO,
+                Agendamentos.TipoServico.SERVICO1, LocalDate.of(2030, 1, 1), LocalDate.of(2030, 1, 3));
+        assertEquals(List.of(primeiro, segundo), agendamentosRepository.buscarAgendamentos(filtro, null, 10));
+        assertEquals(List.of(primeiro), agendamentosRepository.buscarAgendamentos(filtro, null, 1));
+        assertEquals(List.of(segundo), agendamentosRepository.buscarAgendamentos(filtro,
+                IndiceAgendamentosOrdenados.Chave.de(primeiro), 10));
+
+        FiltroAgendamentos semFiltro = new FiltroAgendamentos();
+        assertEquals(List.of(primeiro, outroServico, outroUsuario, cancelado, segundo, foraDoPeriodo),
+                agendamentosRepository.buscarAgendamentos(semFiltro, null, 10));
+        assertEquals(List.of(foraDoPeriodo), agendamentosRepository.buscarAgendamentos(semFiltro,
+                IndiceAgendamentosOrdenados.Chave.de(segundo), 10));
+    }
+
+    @Test
+    void IterarAgendamentosEmOrdemDeCriacaoOuFiltradosPorDataHora() {
+        Agendamentos depois = new Agendamentos("1", Agendamentos.TipoServico.SERVICO1, LocalDateTime.parse("2030-01-02T10:00"));
+        Agendamentos antes = new Agendamentos("2", Agendamentos.TipoServico.SERVICO1, LocalDateTime.parse("2030-01-01T10:00"));
+        agendamentosRepository.adicionarAgendamento(depois);
+        agendamentosRepository.adicionarAgendamento(antes);
+
+        List<Agendamentos> emOrdemDeCriacao = new ArrayList<>();
+        agendamentosRepository.iterarAgendamentos().forEachRemaining(emOrdemDeCriacao::add);
+        assertEquals(List.of(depois, antes), emOrdemDeCriacao);
+
+        List<Agendamentos> filtrados = new ArrayList<>();
+        agendamentosRepository.iterarAgendamentos(new FiltroAgendamentos()).forEachRemaining(filtrados::add);
+        assertEquals(List.of(antes, depois), filtrados);
+    }
+
+    @Test
+    void MetricasDeCargaEGravacaoNoRegistroGlobal() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        Metrics.addRegistry(registry);
+        try {
+            agendamentosRepository.encerrar();
+            agendamentosRepository = novoRepositorio(PersistenciaConfig.Modo.JOURNAL, 1000);
+            agendamentosRepository.adicionarAgendamento(new Agendamentos("1", Agendamentos.TipoServico.SERVICO1, LocalDateTime.parse("2030-01-01T10:00")));
+            agendamentosRepository.gravarPendentes();
+
+            assertEquals(1, registry.get("persistencia.carga").tag("repositorio", "agendamentos").timer().count());
+            assertEquals(1, registry.get("persistencia.gravacao").tags("repositorio", "agendamentos", "tipo", "journal").timer().count());
+            assertTrue(registry.get("persistencia.bytes.gravados").tags("repositorio", "agendamentos", "tipo", "journal").counter().count() > 0);
+        } finally {
+            Metrics.removeRegistry(registry);
+        }
+    }
+
+    @Test
+    void ReservarHorariosTudoOuNadaComHorarioOcupadoOuRepetidoNaoIncluiNada() {
+        LocalDateTime horario = LocalDateTime.of(2030, 1, 1, 10, 0);
+        agendamentosRepository.adicionarAgendamento(new Agendamentos("1", Agendamentos.TipoServico.SERVICO1, horario));
+        List<Agendamentos> lote = List.of(
+                new Agendamentos("2", Agendamentos.TipoServico.SERVICO1, horario.plusHours(1)),
+                new Agendamentos("2", Agendamentos.TipoServico.SERVICO1, horario),
+                new Agendamentos("3", Agendamentos.TipoServico.SERVICO1, horario.plusHours(1)),
+                new Agendamentos("3", Agendamentos.TipoServico.SERVICO2, horario.plusHours(1)));
+
+        assertEquals(List.of(1, 2), agendamentosRepository.reservarHorarios(lote, true));
+
+        assertEquals(1, agendamentosRepository.getAgendamentos().size());
+        assertEquals(Map.of(horario, 3), agendamentosRepository.getVagasRestantes(Agendamentos.FILIAL_PADRAO, horario.toLocalDate(), null));
+    }
+
+    @Test
+    void ReservarHorariosMelhorEsforcoIncluiOsLivresNumaUnicaGravacaoDoJournal() throws Exception {
+        // sem compactação, para o journal guardar todas as linhas
+        PersistenciaConfig config = new PersistenciaConfig(PersistenciaConfig.Modo.JOURNAL, 60_000, 1000, 1000);
+        agendamentosRepository.encerrar();
+        agendamentosRepository = new AgendamentosRepositoryArquivo(arquivo.toString(), config);
+        agendamentosRepository.carregar();
+        LocalDateTime horario = LocalDateTime.of(2030, 1, 1, 10, 0);
+        agendamentosRepository.adicionarAgendamento(new Agendamentos("1", Agendamentos.TipoServico.SERVICO1, horario));
+        agendamentosRepository.gravarPendentes();
+        List<Agendamentos> lote = List.of(
+                new Agendamentos("2", Agendamentos.TipoServico.SERVICO1, horario.plusHours(1)),
+                new Agendamentos("2", Agendamentos.TipoServico.servico1, horario),
+                new Agendamentos("3", Agendamentos.TipoServico.SERVICO3, horario.plusHours(2)));
+
+        assertEquals(List.of(1), agendamentosRepository.reservarHorarios(lote, false));
+        lote.get(0).setStatus(Agendamentos.statusAgendamento.CANCELADO);
+        agendamentosRepository.atualizarAgendamentos(List.of(lote.get(0)));
+        agendamentosRepository.gravarPendentes();
+
+        assertEquals(4, Files.readAllLines(ArmazenamentoArquivo.caminhoJournal(arquivo)).size());
+        agendamentosRepository.encerrar();
+        AgendamentosRepositoryArquivo recarregado = new AgendamentosRepositoryArquivo(arquivo.toString(), config);
+        recarregado.carregar();
+        assertEquals(3, recarregado.getAgendamentos().size());
+        assertEquals(Map.of(horario, 3, horario.plusHours(2), 3), recarregado.getVagasRestantes(Agendamentos.FILIAL_PADRAO, horario.toLocalDate(), null));
+        recarregado.encerrar();
+    }
+
+    @Test
+    void CadaFilialTemAsSuasVagasESeuArquivoECarregaEmSeparado() {
+        LocalDateTime horario = LocalDateTime.of(2030, 1, 1, 10, 0);
+        Agendamentos naMatriz = new Agendamentos("1", Agendamentos.TipoServico.SERVICO1, horario);
+        Agendamentos noCentro = naFilial("centro", new Agendamentos("1", Agendamentos.TipoServico.SERVICO1, horario.plusHours(1)));
+        Agendamentos noCentroMesmoHorario = naFilial("centro", new Agendamentos("2", Agendamentos.TipoServico.SERVICO1, horario));
+
+        assertTrue(agendamentosRepository.reservarHorario(naMatriz, horario));
+        assertTrue(agendamentosRepository.reservarHorario(noCentro, noCentro.getDataHora()));
+        assertTrue(agendamentosRepository.reservarHorario(noCentroMesmoHorario, horario));
+        assertFalse(agendamentosRepository.reservarHorario(
+                naFilial("centro", new Agendamentos("3", Agendamentos.TipoServico.SERVICO1, horario)), horario));
+        assertEquals(List.of(naMatriz), agendamentosRepository.getAgendamentosNoHorario(Agendamentos.FILIAL_PADRAO, horario));
+        assertEquals(List.of(noCentroMesmoHorario), agendamentosRepository.getAgendamentosNoHorario("centro", horario));
+        assertTrue(agendamentosRepository.getVagasRestantes("norte", horario.toLocalDate(), null).isEmpty());
+        assertFalse(agendamentosRepository.atendeFilial("norte"));
+        assertThrows(IllegalArgumentException.class, () -> agendamentosRepository.reservarHorario(
+                naFilial("norte", new Agendamentos("1", Agendamentos.TipoServico.SERVICO1, horario)), horario));
+        assertFalse(Files.exists(diretorio.resolve("agendamentos.norte.json")));
+
+        // sem filial no filtro as filiais são intercaladas por dataHora
+        assertEquals(List.of(naMatriz, noCentro), agendamentosRepository.getAgendamentosPorUsuario("1", 0, 10));
+        assertEquals(List.of(noCentro), agendamentosRepository.getAgendamentosPorUsuario("1", 1, 10));
+        assertEquals(2, agendamentosRepository.contarAgendamentosPorUsuario("1"));
+        assertEquals(List.of(noCentroMesmoHorario, noCentro), agendamentosRepository.buscarAgendamentos(
+                new FiltroAgendamentos("centro", null, null, null, null, null), null, 10));
+        assertEquals(3, agendamentosRepository.buscarAgendamentos(new FiltroAgendamentos(), null, 10).size());
+        assertEquals(noCentro, agendamentosRepository.getAgendamentoPorId(noCentro.getIdAgendamento()).orElseThrow());
+
+        agendamentosRepository.gravarPendentes();
+        assertTrue(Files.exists(diretorio.resolve("agendamentos.centro.json")));
+        AgendamentosRepositoryArquivo recarregado = novoRepositorio(PersistenciaConfig.Modo.SNAPSHOT, 1000);
+        assertEquals(List.of(naMatriz.getIdAgendamento(), noCentro.getIdAgendamento(), noCentroMesmoHorario.getIdAgendamento()),
+                recarregado.getAgendamentos().stream().map(Agendamentos::getIdAgendamento).toList());
+        assertEquals("centro", recarregado.getAgendamentoPorId(noCentro.getIdAgendamento()).orElseThrow().getIdFilial());
+        assertEquals(Map.of(horario, 3, horario.plusHours(1), 3), recarregado.getVagasRestantes("centro", horario.toLocalDate(), null));
+        recarregado.encerrar();
+    }
+
+    @Test
+    void LoteTudoOuNadaComVariasFiliaisNaoIncluiNadaSeUmaFilialRecusar() {
+        LocalDateTime horario = LocalDateTime.of(2030, 1, 1, 10, 0);
+        agendamentosRepository.adicionarAgendamento(naFilial("sul", new Agendamentos("1", Agendamentos.TipoServico.SERVICO2, horario)));
+        List<Agendamentos> lote = List.of(
+                new Agendamentos("2", Agendamentos.TipoServico.SERVICO2, horario),
+                naFilial("sul", new Agendamentos("2", Agendamentos.TipoServico.SERVICO2, horario.plusHours(1))),
+                naFilial("sul", new Agendamentos("2", Agendamentos.TipoServico.SERVICO2, horario)));
+
+        assertEquals(List.of(2), agendamentosRepository.reservarHorarios(lote, true));
+        assertEquals(1, agendamentosRepository.getAgendamentos().size());
+
+        assertEquals(List.of(2), agendamentosRepository.reservarHorarios(lote, false));
+        assertEquals(List.of(lote.get(0)), agendamentosRepository.getAgendamentosNoHorario(Agendamentos.FILIAL_PADRAO, horario));
+        assertEquals(List.of(lote.get(1)), agendamentosRepository.getAgendamentosNoHorario("sul", horario.plusHours(1)));
+    }
+
+    @Test
+    void CancelarLoteTudoOuNadaComVariasFiliaisNaoCancelaNadaSeUmItemNaoEstiverAtivo() {
+        LocalDateTime horario = LocalDateTime.of(2030, 1, 1, 10, 0);
+        Agendamentos naMatriz = new Agendamentos("1", Agendamentos.TipoServico.SERVICO1, horario);
+        Agendamentos noSul = naFilial("sul", new Agendamentos("1", Agendamentos.TipoServico.SERVICO1, horario));
+        Agendamentos noCentro = naFilial("centro", new Agendamentos("1", Agendamentos.TipoServico.SERVICO1, horario));
+        assertEquals(List.of(), agendamentosRepository.reservarHorarios(List.of(naMatriz, noSul, noCentro), true));
+        assertTrue(agendamentosRepository.cancelarAgendamento(noCentro.getIdAgendamento()));
+        List<String> ids = List.of(naMatriz.getIdAgendamento(), noSul.getIdAgendamento(), noCentro.getIdAgendamento(), "inexistente");
+
+        assertEquals(List.of(3), agendamentosRepository.cancelarAgendamentos(ids, true));
+        assertEquals(List.of(2), agendamentosRepository.cancelarAgendamentos(ids.subList(0, 3), true));
+        assertEquals(Agendamentos.statusAgendamento.AGENDADO,
+                agendamentosRepository.getAgendamentoPorId(naMatriz.getIdAgendamento()).orElseThrow().getStatus());
+        assertEquals(Agendamentos.statusAgendamento.AGENDADO,
+                agendamentosRepository.getAgendamentoPorId(noSul.getIdAgendamento()).orElseThrow().getStatus());
+
+        assertEquals(List.of(2, 3), agendamentosRepository.cancelarAgendamentos(ids, false));
+        assertEquals(Agendamentos.statusAgendamento.CANCELADO,
+                agendamentosRepository.getAgendamentoPorId(naMatriz.getIdAgendamento()).orElseThrow().getStatus());
+        assertArrayEquals(new int[]{1}, agendamentosRepository.getVagasRestantes("sul", List.of(horario), Agendamentos.TipoServico.SERVICO1));
+    }
+
+    @Test
+    void VersaoDoDiaMudaAoReiniciarMesmoSemAlteracoes() {
+        LocalDate dia = LocalDate.of(2030, 1, 1);
+        String antes = agendamentosRepository.getVersaoDia(Agendamentos.FILIAL_PADRAO, dia);
+        agendamentosRepository.encerrar();
+
+        // não depende do relógio do sistema: a versão leva o id da execução
+        agendamentosRepository = novoRepositorio(PersistenciaConfig.Modo.SNAPSHOT, 1000);
+        assertNotEquals(antes, agendamentosRepository.getVersaoDia(Agendamentos.FILIAL_PADRAO, dia));
+    }
+
+    private static Agendamentos naFilial(String idFilial, Agendamentos agendamento) {
+        agendamento.setIdFilial(idFilial);
+        return agendamento;
+    }
+
+    @Test
+    void GravarPendentesPersisteAgendamentos() {
+        Agendamentos agendamento = new Agendamentos("1", Agendamentos.TipoServico.SERVICO1, LocalDateTime.parse("2030-01-01T10:00"));
+        agendamentosRepository.adicionarAgendamento(agendamento);
+        agendamento.setStatus(Agendamentos.statusAgendamento.CANCELADO);
+        agendamentosRepository.atualizarAgendamento(agendamento);
+
+        agendamentosRepository.gravarPendentes();
+
+        AgendamentosRepositoryArquivo recarregado = novoRepositorio(PersistenciaConfig.Modo.SNAPSHOT, 1000);
+        List<Agendamentos> agendamentos = recarregado.getAgendamentos();
+        recarregado.encerrar();
+        assertEquals(1, agendamentos.size());
+        assertEquals(agendamento.getIdAgendamento(), agendamentos.get(0).getIdAgendamento());
+        assertEquals(Agendamentos.statusAgendamento.CANCELADO, agendamentos.get(0).getStatus());
+    }
+
+    @Test
+    void DataHoraGravadaNoFormatoDoJson() throws Exception {
+        Agendamentos agendamento = new Agendamentos("1", Agendamentos.TipoServico.SERVICO1, LocalDateTime.parse("2030-01-01T10:00"));
+        agendamentosRepository.adicionarAgendamento(agendamento);
+
+        agendamentosRepository.gravarPendentes();
+
+        assertTrue(Files.readString(arquivo).matches("(?s).*\"dataHora\"\\s*:\\s*\"2030-01-01T10:00\".*"));
+        AgendamentosRepositoryArquivo recarregado = novoRepositorio(PersistenciaConfig.Modo.SNAPSHOT, 1000);
+        LocalDateTime lida = recarregado.getAgendamentos().get(0).getDataHora();
+        recarregado.encerrar();
+        assertEquals(LocalDateTime.of(2030, 1, 1, 10, 0), lida);
+    }
+
+    @Test
+    void LimiteDeAlteracoesDisparaGravacao() throws InterruptedException {
+        agendamentosRepository.encerrar();
+        agendamentosRepository = novoRepositorio(PersistenciaConfig.Modo.SNAPSHOT, 2);
+
+        agendamentosRepository.adicionarAgendamento(new Agendamentos("1", Agendamentos.TipoServico.SERVICO1, LocalDateTime.parse("2030-01-01T10:00")));
+        agendamentosRepository.adicionarAgendamento(new Agendamentos("1", Agendamentos.TipoServico.SERVICO2, LocalDateTime.parse("2030-01-01T11:00")));
+
+        long limite = System.currentTimeMillis() + 5000;
+        while (!Files.exists(arquivo) && System.currentTimeMillis() < limite) {
+            Thread.sleep(10);
+        }
+        assertTrue(Files.exists(arquivo));
+    }
+
+    @Test
+    void JournalComCancelamentoAntesDaReservaCarregaOCancelado() throws Exception {
+        agendamentosRepository.encerrar();
+        agendamentosRepository = novoRepositorio(PersistenciaConfig.Modo.JOURNAL, 1000);
+        LocalDateTime horario = LocalDateTime.parse("2030-01-01T10:00");
+        Agendamentos agendamento = new Agendamentos("1", Agendamentos.TipoServico.SERVICO1, horario);
+        assertTrue(agendamentosRepository.reservarHorario(agendamento, horario));
+        assertTrue(agendamentosRepository.cancelarAgendamento(agendamento.getIdAgendamento()));
+        agendamentosRepository.encerrar();
+        // a gravação da reserva chega ao journal depois da do cancelamento
+        Path journal = ArmazenamentoArquivo.caminhoJournal(arquivo);
+        List<String> linhas = Files.readAllLines(journal);
+        Files.write(journal, List.of(linhas.get(1), linhas.get(0)));
+
+        agendamentosRepository = novoRepositorio(PersistenciaConfig.Modo.JOURNAL, 1000);
+        Agendamentos carregado = agendamentosRepository.getAgendamentoPorId(agendamento.getIdAgendamento()).orElseThrow();
+        assertEquals(Agendamentos.statusAgendamento.CANCELADO, carregado.getStatus());
+        assertEquals(2, carregado.getVersao());
+        assertArrayEquals(new int[]{1}, agendamentosRepository.getVagasRestantes(Agendamentos.FILIAL_PADRAO,
+                List.of(horario), Agendamentos.TipoServico.SERVICO1));
+    }
+
+    @Test
+    void ReservasCanceladasLogoDepoisContinuamCanceladasAoRecarregar() throws Exception {
+        agendamentosRepository.encerrar();
+        agendamentosRepository = novoRepositorio(PersistenciaConfig.Modo.JOURNAL, 1000);
+        LocalDateTime inicio = LocalDateTime.parse("2030-01-01T00:00");
+        List<Agendamentos> agendamentos = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            agendamentos.add(new Agendamentos("1", Agendamentos.TipoServico.SERVICO1, inicio.plusMinutes(i)));
+        }
+        // cada agendamento é cancelado por outra thread assim que aparece em memória, enquanto a reserva ainda grava
+        Thread cancelamentos = new Thread(() -> {
+            for (Agendamentos agendamento : agendamentos) {
+                while (!agendamentosRepository.cancelarAgendamento(agendamento.getIdAgendamento())) {
+                    Thread.onSpinWait();
+                }
+            }
+        });
+        cancelamentos.start();
+        for (Agendamentos agendamento : agendamentos) {
+            assertTrue(agendamentosRepository.reservarHorario(agendamento, agendamento.getDataHora()));
+        }
+        cancelamentos.join();
+        agendamentosRepository.encerrar();
+
+        agendamentosRepository = novoRepositorio(PersistenciaConfig.Modo.JOURNAL, 1000);
+        for (Agendamentos agendamento : agendamentos) {
+            assertEquals(Agendamentos.statusAgendamento.CANCELADO,
+                    agendamentosRepository.getAgendamentoPorId(agendamento.getIdAgendamento()).orElseThrow().getStatus());
+        }
+        assertEquals(Map.of(), agendamentosRepository.getVagasRestantes(Agendamentos.FILIAL_PADRAO, inicio.toLocalDate(), null));
+    }
+
+    @Test
+    void FalhaAoAnexarAoJournalNaoRecusaAReservaEOEstadoEGravadoNaCompactacao() throws Exception {
+        agendamentosRepository.encerrar();
+        agendamentosRepository = novoRepositorio(PersistenciaConfig.Modo.JOURNAL, 1000);
+        // um diretório no lugar do journal faz a escrita falhar
+        Path journal = ArmazenamentoArquivo.caminhoJournal(arquivo);
+        Files.createDirectories(journal);
+        Agendamentos agendamento = new Agendamentos("1", Agendamentos.TipoServico.SERVICO1, LocalDateTime.parse("2030-01-01T10:00"));
+
+        assertTrue(agendamentosRepository.reservarHorario(agendamento, agendamento.getDataHora()));
+        Files.delete(journal);
+        agendamentosRepository.gravarPendentes();
+        agendamentosRepository.encerrar();
+
+        agendamentosRepository = novoRepositorio(PersistenciaConfig.Modo.JOURNAL, 1000);
+        assertTrue(agendamentosRepository.getAgendamentoPorId(agendamento.getIdAgendamento()).isPresent());
+    }
+
+    @Test
+    void ModoJournalAnexaAlteracoesSemReescreverArquivo() {
+        agendamentosRepository.encerrar();
+        agendamentosRepository = novoRepositorio(PersistenciaConfig.Modo.JOURNAL, 1000);
+        Agendamentos agendamento = new Agendamentos("1", Agendamentos.TipoServico.SERVICO1, LocalDateTime.parse("2030-01-01T10:00"));
+
+        agendamentosRepository.adicionarAgendamento(agendamento);
+        agendamento.setStatus(Agendamentos.statusAgendamento.CANCELADO);
+        agendamentosRepository.atualizarAgendamento(agendamento);
+        agendamentosRepository.gravarPendentes();
+
+        assertFalse(Files.exists(arquivo));
+        assertTrue(Files.exists(diretorio.resolve("agendamentos.json.journal")));
+
+        AgendamentosRepositoryArquivo recarregado = novoRepositorio(PersistenciaConfig.Modo.JOURNAL, 1000);
+        List<Agendamentos> agendamentos = recarregado.getAgendamentos();
+        recarregado.encerrar();
+        assertEquals(1, agendamentos.size());
+        assertEquals(Agendamentos.statusAgendamento.CANCELADO, agendamentos.get(0).getStatus());
+    }
+
+    @Test
+    void ModoJournalCompactaNoArquivoAoAtingirLimite() {
+        agendamentosRepository.encerrar();
+        agendamentosRepository = novoRepositorio(PersistenciaConfig.Modo.JOURNAL, 1000);
+
+        for (int hora = 9; hora <= 11; hora++) {
+            agendamentosRepository.adicionarAgendamento(new Agendamentos("1", Agendamentos.TipoServico.SERVICO1, LocalDateTime.of(2030, 1, 1, hora, 0)));
+        }
+        agendamentosRepository.gravarPendentes();
+
+        assertTrue(Files.exists(arquivo));
+        assertFalse(Files.exists(diretorio.resolve("agendamentos.json.journal")));
+        agendamentosRepository.adicionarAgendamento(new Agendamentos("1", Agendamentos.TipoServico.SERVICO1, LocalDateTime.parse("2030-01-01T12:00")));
+        agendamentosRepository.gravarPendentes();
+
+        AgendamentosRepositoryArquivo recarregado = novoRepositorio(PersistenciaConfig.Modo.JOURNAL, 1000);
+        int total = recarregado.getAgendamentos().size();
+        recarregado.encerrar();
+        assertEquals(4, total);
+    }
+
+    @Test
+    void ModoJournalDescartaGravacaoInterrompidaEContinuaLegivelAposDoisReinicios() throws Exception {
+        agendamentosRepository.encerrar();
+        AgendamentosRepositoryArquivo antesDaFalha = novoRepositorio(PersistenciaConfig.Modo.JOURNAL, 1000);
+        antesDaFalha.adicionarAgendamento(new Agendamentos("1", Agendamentos.TipoServico.SERVICO1, LocalDateTime.parse("2030-01-01T10:00")));
+        antesDaFalha.gravarPendentes();
+        antesDaFalha.encerrar();
+        // a aplicação parou no meio da escrita de uma linha
+        Path journal = diretorio.resolve("agendamentos.json.journal");
+        Files.writeString(journal, "{\"idAgendamento\":\"interrompido\",\"idUsu", StandardOpenOption.APPEND);
+
+        AgendamentosRepositoryArquivo primeiroReinicio = novoRepositorio(PersistenciaConfig.Modo.JOURNAL, 1000);
+        assertEquals(1, primeiroReinicio.getAgendamentos().size());
+        primeiroReinicio.adicionarAgendamento(new Agendamentos("2", Agendamentos.TipoServico.SERVICO1, LocalDateTime.parse("2030-01-01T11:00")));
+        primeiroReinicio.gravarPendentes();
+        primeiroReinicio.encerrar();
+
+        agendamentosRepository = novoRepositorio(PersistenciaConfig.Modo.JOURNAL, 1000);
+        assertEquals(List.of("1", "2"), agendamentosRepository.getAgendamentos().stream().map(Agendamentos::getIdUsuario).toList());
+        assertEquals(2, Files.readAllLines(journal).size());
+    }
+}
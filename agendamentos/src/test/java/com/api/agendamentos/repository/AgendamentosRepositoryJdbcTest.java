@@ -0,0 +1,316 @@
+package com.api.agendamentos.repository;
+
+import com.api.agendamentos.config.CapacidadeConfig;
+import com.api.agendamentos.models.Agendamentos;
+import com.api.agendamentos.models.FiltroAgendamentos;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// roda contra um H2 em memória criado com schema-h2.sql
+public class AgendamentosRepositoryJdbcTest {
+    private NamedParameterJdbcTemplate jdbc;
+    private AgendamentosRepositoryJdbc agendamentosRepository;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        new ResourceDatabasePopulator(new ClassPathResource("schema-h2.sql")).execute(dataSource);
+        jdbc = new NamedParameterJdbcTemplate(dataSource);
+        agendamentosRepository = new AgendamentosRepositoryJdbc(jdbc,
+                new TransactionTemplate(new DataSourceTransactionManager(dataSource)), 2);
+    }
+
+    @Test
+    void ReservarHorarioOcupadoFalhaAteOCancelamento() {
+        LocalDateTime horario = LocalDateTime.of(2030, 1, 1, 10, 0);
+        Agendamentos primeiro = new Agendamentos("1", Agendamentos.TipoServico.SERVICO1, horario);
+        assertTrue(agendamentosRepository.reservarHorario(primeiro, horario));
+        assertFalse(agendamentosRepository.reservarHorario(
+                new Agendamentos("2", Agendamentos.TipoServico.SERVICO1, horario), horario));
+        assertEquals(Map.of(horario, 0), agendamentosRepository.getVagasRestantes(Agendamentos.FILIAL_PADRAO, horario.toLocalDate(), Agendamentos.TipoServico.SERVICO1));
+        assertEquals(List.of(primeiro.getIdAgendamento()), agendamentosRepository.getAgendamentosNoHorario(Agendamentos.FILIAL_PADRAO, horario).stream()
+                .map(Agendamentos::getIdAgendamento).toList());
+
+        assertTrue(agendamentosRepository.cancelarAgendamento(primeiro.getIdAgendamento()));
+        // já cancelado: o segundo cancelamento não altera nada
+        assertFalse(agendamentosRepository.cancelarAgendamento(primeiro.getIdAgendamento()));
+        assertFalse(agendamentosRepository.cancelarAgendamento("inexistente"));
+
+        assertEquals(Map.of(), agendamentosRepository.getVagasRestantes(Agendamentos.FILIAL_PADRAO, horario.toLocalDate(), null));
+        assertTrue(agendamentosRepository.reservarHorario(
+                new Agendamentos("2", Agendamentos.TipoServico.SERVICO1, horario), horario));
+        assertEquals(Agendamentos.statusAgendamento.CANCELADO,
+                agendamentosRepository.getAgendamentoPorId(primeiro.getIdAgendamento()).orElseThrow().getStatus());
+    }
+
+    @Test
+    void ReservasSimultaneasNoMesmoHorarioAceitamApenasUma() throws Exception {
+        LocalDateTime horario = LocalDateTime.of(2030, 1, 1, 10, 0);
+        int threads = 16;
+        CountDownLatch largada = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<Boolean>> tentativas = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            Agendamentos agendamento = new Agendamentos(String.valueOf(i), Agendamentos.TipoServico.SERVICO1, horario);
+            tentativas.add(executor.submit(() -> {
+                largada.await();
+                return agendamentosRepository.reservarHorario(agendamento, horario);
+            }));
+        }
+        largada.countDown();
+
+        int aceitas = 0;
+        for (Future<Boolean> tentativa : tentativas) {
+            if (tentativa.get(10, TimeUnit.SECONDS)) {
+                aceitas++;
+            }
+        }
+        executor.shutdown();
+
+        assertEquals(1, aceitas);
+        assertEquals(1, agendamentosRepository.getAgendamentos().size());
+    }
+
+    @Test
+    void CapacidadePorServicoNasReservasSimultaneasENoLote() throws Exception {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        new ResourceDatabasePopulator(new ClassPathResource("schema-h2.sql")).execute(dataSource);
+        agendamentosRepository = new AgendamentosRepositoryJdbc(new NamedParameterJdbcTemplate(dataSource),
+                new TransactionTemplate(new DataSourceTransactionManager(dataSource)), 2,
+                new CapacidadeConfig(1, Map.of(Agendamentos.TipoServico.SERVICO1, 3)));
+        LocalDateTime horario = LocalDateTime.of(2030, 1, 1, 10, 0);
+        int threads = 8;
+        CountDownLatch largada = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<Boolean>> tentativas = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            Agendamentos agendamento = new Agendamentos(String.valueOf(i), Agendamentos.TipoServico.SERVICO1, horario);
+            tentativas.add(executor.submit(() -> {
+                largada.await();
+                return agendamentosRepository.reservarHorario(agendamento, horario);
+            }));
+        }
+        largada.countDown();
+        int aceitas = 0;
+        for (Future<Boolean> tentativa : tentativas) {
+            if (tentativa.get(10, TimeUnit.SECONDS)) {
+                aceitas++;
+            }
+        }
+        executor.shutdown();
+        assertEquals(3, aceitas);
+
+        // no lote, as vagas tomadas pelos itens anteriores também contam
+        List<Agendamentos> lote = List.of(
+                new Agendamentos("9", Agendamentos.TipoServico.SERVICO1, horario),
+                new Agendamentos("9", Agendamentos.TipoServico.SERVICO2, horario),
+                new Agendamentos("9", Agendamentos.TipoServico.SERVICO1, horario.plusHours(1)),
+                new Agendamentos("9", Agendamentos.TipoServico.SERVICO1, horario.plusHours(1)),
+                new Agendamentos("9", Agendamentos.TipoServico.SERVICO1, horario.plusHours(1)),
+                new Agendamentos("9", Agendamentos.TipoServico.SERVICO1, horario.plusHours(1)));
+        assertEquals(List.of(0, 5), agendamentosRepository.reservarHorarios(lote, false));
+        assertEquals(Map.of(horario, 2, horario.plusHours(1), 3),
+                agendamentosRepository.getVagasRestantes(Agendamentos.FILIAL_PADRAO, horario.toLocalDate(), null));
+        assertEquals(Map.of(horario, 0, horario.plusHours(1), 0),
+                agendamentosRepository.getVagasRestantes(Agendamentos.FILIAL_PADRAO, horario.toLocalDate(), Agendamentos.TipoServico.SERVICO1));
+    }
+
+    @Test
+    void ServicosComOMesmoCanonicoDividemAsVagasComoNoArmazenamentoEmArquivo() {
+        LocalDateTime horario = LocalDateTime.of(2030, 1, 1, 10, 0);
+        assertTrue(agendamentosRepository.reservarHorario(new Agendamentos("1", Agendamentos.TipoServico.SERVICO1, horario), horario));
+        assertFalse(agendamentosRepository.reservarHorario(new Agendamentos("2", Agendamentos.TipoServico.servico1, horario), horario));
+        assertEquals(Map.of(horario, 0), agendamentosRepository.getVagasRestantes(Agendamentos.FILIAL_PADRAO, horario.toLocalDate(), Agendamentos.TipoServico.servico1));
+        assertEquals(Map.of(horario, 3), agendamentosRepository.getVagasRestantes(Agendamentos.FILIAL_PADRAO, horario.toLocalDate(), null));
+
+        List<Agendamentos> lote = List.of(
+                new Agendamentos("3", Agendamentos.TipoServico.servico1, horario),
+                new Agendamentos("3", Agendamentos.TipoServico.servico2, horario.plusHours(1)),
+                new Agendamentos("3", Agendamentos.TipoServico.SERVICO2, horario.plusHours(1)));
+        assertEquals(List.of(0, 2), agendamentosRepository.reservarHorarios(lote, false));
+        assertEquals(Map.of(horario.plusHours(1), 0), agendamentosRepository.getVagasRestantes(Agendamentos.FILIAL_PADRAO,
+                horario.toLocalDate(), Agendamentos.TipoServico.SERVICO2));
+
+        // agendamentos já gravados com as duas grafias recebem vagas diferentes do mesmo serviço
+        agendamentosRepository.salvarAgendamentos(List.of(
+                new Agendamentos("4", Agendamentos.TipoServico.SERVICO3, horario),
+                new Agendamentos("5", Agendamentos.TipoServico.servico3, horario)));
+        assertEquals(2, agendamentosRepository.getAgendamentosNoHorario(Agendamentos.FILIAL_PADRAO, horario).size());
+        assertEquals(Map.of(horario, 0), agendamentosRepository.getVagasRestantes(Agendamentos.FILIAL_PADRAO,
+                horario.toLocalDate(), Agendamentos.TipoServico.SERVICO3));
+    }
+
+    @Test
+    void VersoesDoDiaEDoUsuarioMudamSoComAsAlteracoesDeles() {
+        LocalDateTime horario = LocalDateTime.of(2030, 1, 1, 10, 0);
+        LocalDate dia = horario.toLocalDate();
+        String versaoDia = agendamentosRepository.getVersaoDia(Agendamentos.FILIAL_PADRAO, dia);
+        String versaoOutroDia = agendamentosRepository.getVersaoDia(Agendamentos.FILIAL_PADRAO, dia.plusDays(1));
+        String versaoOutraFilial = agendamentosRepository.getVersaoDia("centro", dia);
+        String versaoUsuario = agendamentosRepository.getVersaoUsuario("1");
+        String versaoOutroUsuario = agendamentosRepository.getVersaoUsuario("2");
+
+        Agendamentos agendamento = new Agendamentos("1", Agendamentos.TipoServico.SERVICO1, horario);
+        assertTrue(agendamentosRepository.reservarHorario(agendamento, horario));
+
+        String reservado = agendamentosRepository.getVersaoDia(Agendamentos.FILIAL_PADRAO, dia);
+        assertNotEquals(versaoDia, reservado);
+        assertNotEquals(versaoUsuario, agendamentosRepository.getVersaoUsuario("1"));
+        assertEquals(reservado, agendamentosRepository.getVersaoDia(Agendamentos.FILIAL_PADRAO, dia));
+        assertEquals(versaoOutroDia, agendamentosRepository.getVersaoDia(Agendamentos.FILIAL_PADRAO, dia.plusDays(1)));
+        assertEquals(versaoOutraFilial, agendamentosRepository.getVersaoDia("centro", dia));
+        assertEquals(versaoOutroUsuario, agendamentosRepository.getVersaoUsuario("2"));
+
+        agendamento.setStatus(Agendamentos.statusAgendamento.CANCELADO);
+        agendamentosRepository.atualizarAgendamento(agendamento);
+        assertNotEquals(reservado, agendamentosRepository.getVersaoDia(Agendamentos.FILIAL_PADRAO, dia));
+    }
+
+    @Test
+    void VersaoDoDiaMudaComAlteracaoConfirmadaForaDaOrdemDaSequencia() {
+        LocalDateTime horario = LocalDateTime.of(2030, 1, 1, 10, 0);
+        Agendamentos primeiro = new Agendamentos("1", Agendamentos.TipoServico.SERVICO1, horario);
+        assertTrue(agendamentosRepository.reservarHorario(primeiro, horario));
+        // o UPDATE do primeiro tira um valor da sequência, mas só é confirmado depois de uma reserva com valor maior
+        long versaoDoUpdate = jdbc.queryForObject("SELECT NEXT VALUE FOR seq_versao_agendamentos", Map.of(), Long.class);
+        assertTrue(agendamentosRepository.reservarHorario(
+                new Agendamentos("2", Agendamentos.TipoServico.SERVICO1, horario.plusHours(1)), horario.plusHours(1)));
+        String antes = agendamentosRepository.getVersaoDia(Agendamentos.FILIAL_PADRAO, horario.toLocalDate());
+
+        jdbc.update("UPDATE agendamentos SET status = 'CANCELADO', versao = :versao WHERE id_agendamento = :idAgendamento",
+                Map.of("versao", versaoDoUpdate, "idAgendamento", primeiro.getIdAgendamento()));
+
+        assertNotEquals(antes, agendamentosRepository.getVersaoDia(Agendamentos.FILIAL_PADRAO, horario.toLocalDate()));
+    }
+
+    @Test
+    void FiliaisDiferentesNaoDisputamOMesmoHorario() {
+        LocalDateTime horario = LocalDateTime.of(2030, 1, 1, 10, 0);
+        Agendamentos noCentro = new Agendamentos("2", Agendamentos.TipoServico.SERVICO1, horario);
+        noCentro.setIdFilial("centro");
+
+        assertTrue(agendamentosRepository.reservarHorario(new Agendamentos("1", Agendamentos.TipoServico.SERVICO1, horario), horario));
+        assertTrue(agendamentosRepository.reservarHorario(noCentro, horario));
+        assertEquals(List.of(1), agendamentosRepository.reservarHorarios(
+                List.of(new Agendamentos("3", Agendamentos.TipoServico.SERVICO2, horario), noCentro), false));
+
+        assertEquals(Map.of(horario, 0), agendamentosRepository.getVagasRestantes("centro", horario.toLocalDate(), Agendamentos.TipoServico.SERVICO1));
+        assertEquals(Map.of(horario, 2), agendamentosRepository.getVagasRestantes(Agendamentos.FILIAL_PADRAO, horario.toLocalDate(), null));
+        assertEquals("centro", agendamentosRepository.getAgendamentoPorId(noCentro.getIdAgendamento()).orElseThrow().getIdFilial());
+        assertEquals(List.of(noCentro.getIdAgendamento()), agendamentosRepository.buscarAgendamentos(
+                new FiltroAgendamentos("centro", null, null, null, null, null), null, 10).stream()
+                .map(Agendamentos::getIdAgendamento).toList());
+    }
+
+    @Test
+    void ReservarHorariosEmLoteNosDoisModos() {
+        LocalDateTime horario = LocalDateTime.of(2030, 1, 1, 10, 0);
+        assertTrue(agendamentosRepository.reservarHorario(new Agendamentos("1", Agendamentos.TipoServico.SERVICO1, horario), horario));
+        List<Agendamentos> lote = List.of(
+                new Agendamentos("2", Agendamentos.TipoServico.SERVICO1, horario.plusHours(1)),
+                new Agendamentos("2", Agendamentos.TipoServico.SERVICO1, horario),
+                new Agendamentos("3", Agendamentos.TipoServico.SERVICO3, horario.plusHours(2)),
+                new Agendamentos("4", Agendamentos.TipoServico.SERVICO3, horario.plusHours(2)));
+
+        assertEquals(List.of(1, 3), agendamentosRepository.reservarHorarios(lote, true));
+        assertEquals(1, agendamentosRepository.getAgendamentos().size());
+
+        assertEquals(List.of(1, 3), agendamentosRepository.reservarHorarios(lote, false));
+        assertEquals(3, agendamentosRepository.getAgendamentos().size());
+        assertEquals(Map.of(horario, 3, horario.plusHours(1), 3, horario.plusHours(2), 3),
+                agendamentosRepository.getVagasRestantes(Agendamentos.FILIAL_PADRAO, horario.toLocalDate(), null));
+    }
+
+    @Test
+    void AtualizarAgendamentosEmLoteLiberaOsHorarios() {
+        LocalDateTime horario = LocalDateTime.of(2030, 1, 1, 10, 0);
+        List<Agendamentos> lote = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            lote.add(new Agendamentos(String.valueOf(i), Agendamentos.TipoServico.SERVICO1, horario.plusHours(i)));
+        }
+        assertEquals(List.of(), agendamentosRepository.reservarHorarios(lote, true));
+
+        for (Agendamentos agendamento : lote) {
+            agendamento.setStatus(Agendamentos.statusAgendamento.CANCELADO);
+        }
+        agendamentosRepository.atualizarAgendamentos(lote);
+
+        assertEquals(Map.of(), agendamentosRepository.getVagasRestantes(Agendamentos.FILIAL_PADRAO, horario.toLocalDate(), null));
+        assertEquals(Agendamentos.statusAgendamento.CANCELADO,
+                agendamentosRepository.getAgendamentoPorId(lote.get(2).getIdAgendamento()).orElseThrow().getStatus());
+    }
+
+    @Test
+    void CancelarAgendamentosEmLoteTudoOuNadaDesfazOsJaCancelados() {
+        LocalDateTime horario = LocalDateTime.of(2030, 1, 1, 10, 0);
+        List<Agendamentos> lote = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            lote.add(new Agendamentos(String.valueOf(i), Agendamentos.TipoServico.SERVICO1, horario.plusHours(i)));
+        }
+        assertEquals(List.of(), agendamentosRepository.reservarHorarios(lote, true));
+        assertTrue(agendamentosRepository.cancelarAgendamento(lote.get(2).getIdAgendamento()));
+        List<String> ids = lote.stream().map(Agendamentos::getIdAgendamento).toList();
+
+        // os dois primeiros são cancelados na transação antes de o terceiro falhar, e voltam a ficar ativos
+        assertEquals(List.of(2), agendamentosRepository.cancelarAgendamentos(ids, true));
+        assertEquals(Agendamentos.statusAgendamento.AGENDADO,
+                agendamentosRepository.getAgendamentoPorId(ids.get(0)).orElseThrow().getStatus());
+
+        assertEquals(List.of(2), agendamentosRepository.cancelarAgendamentos(ids, false));
+        assertEquals(Map.of(), agendamentosRepository.getVagasRestantes(Agendamentos.FILIAL_PADRAO, horario.toLocalDate(), null));
+    }
+
+    @Test
+    void BuscarAgendamentosFiltraEContinuaAPartirDoCursor() {
+        Agendamentos primeiro = new Agendamentos("1", Agendamentos.TipoServico.SERVICO1, LocalDateTime.parse("2030-01-01T10:00"));
+        Agendamentos outroServico = new Agendamentos("1", Agendamentos.TipoServico.SERVICO2, LocalDateTime.parse("2030-01-01T11:00"));
+        Agendamentos outroUsuario = new Agendamentos("2", Agendamentos.TipoServico.SERVICO1, LocalDateTime.parse("2030-01-02T10:00"));
+        Agendamentos segundo = new Agendamentos("1", Agendamentos.TipoServico.SERVICO1, LocalDateTime.parse("2030-01-03T10:00"));
+        Agendamentos foraDoPeriodo = new Agendamentos("1", Agendamentos.TipoServico.SERVICO1, LocalDateTime.parse("2030-01-04T10:00"));
+        agendamentosRepository.salvarAgendamentos(List.of(foraDoPeriodo, segundo, outroUsuario, outroServico, primeiro));
+
+        FiltroAgendamentos filtro = new FiltroAgendamentos("1", Agendamentos.statusAgendamento.AGENDADO,
+                Agendamentos.TipoServico.SERVICO1, LocalDate.of(2030, 1, 1), LocalDate.of(2030, 1, 3));
+        assertEquals(ids(primeiro, segundo), ids(agendamentosRepository.buscarAgendamentos(filtro, null, 10)));
+        assertEquals(ids(segundo), ids(agendamentosRepository.buscarAgendamentos(filtro,
+                IndiceAgendamentosOrdenados.Chave.de(primeiro), 10)));
+        assertEquals(ids(outroServico, segundo), ids(agendamentosRepository.getAgendamentosPorUsuario("1", 1, 2)));
+        assertEquals(4, agendamentosRepository.contarAgendamentosPorUsuario("1"));
+
+        List<Agendamentos> todos = new ArrayList<>();
+        agendamentosRepository.iterarAgendamentos(new FiltroAgendamentos()).forEachRemaining(todos::add);
+        assertEquals(ids(primeiro, outroServico, outroUsuario, segundo, foraDoPeriodo), ids(todos));
+
+        List<Agendamentos> emOrdemDeInclusao = new ArrayList<>();
+        agendamentosRepository.iterarAgendamentos().forEachRemaining(emOrdemDeInclusao::add);
+        assertEquals(ids(foraDoPeriodo, segundo, outroUsuario, outroServico, primeiro), ids(emOrdemDeInclusao));
+    }
+
+    private static List<String> ids(Agendamentos... agendamentos) {
+        return ids(List.of(agendamentos));
+    }
+
+    private static List<String> ids(List<Agendamentos> agendamentos) {
+        return agendamentos.stream().map(Agendamentos::getIdAgendamento).toList();
+    }
+}
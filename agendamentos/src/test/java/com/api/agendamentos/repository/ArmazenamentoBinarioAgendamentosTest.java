@@ -0,0 +1,181 @@
+package com.api.agendamentos.repository;
+
+import com.api.agendamentos.config.PersistenciaConfig;
+import com.api.agendamentos.ferramentas.ConversorAgendamentos;
+import com.api.agendamentos.models.Agendamentos;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ArmazenamentoBinarioAgendamentosTest {
+    @TempDir
+    Path diretorio;
+
+    private AgendamentosRepositoryArquivo novoRepositorio() {
+        PersistenciaConfig config = new PersistenciaConfig(PersistenciaConfig.Modo.JOURNAL, 60_000, 1000, 1000,
+                PersistenciaConfig.Formato.BINARIO);
+        AgendamentosRepositoryArquivo repositorio = new AgendamentosRepositoryArquivo(
+                diretorio.resolve("agendamentos.json").toString(), config);
+        repositorio.carregar();
+        return repositorio;
+    }
+
+    @Test
+    void IdForaDoFormatoBinarioERecusadoAntesDeReservar() {
+        AgendamentosRepositoryArquivo repositorio = novoRepositorio();
+        Agendamentos valido = new Agendamentos(UUID.randomUUID().toString(), Agendamentos.TipoServico.SERVICO1, LocalDateTime.parse("2030-01-01T10:00"));
+        Agendamentos invalido = new Agendamentos("usuario-1", Agendamentos.TipoServico.SERVICO1, LocalDateTime.parse("2030-01-01T10:00"));
+
+        assertThrows(IllegalArgumentException.class, () -> repositorio.validarAgendamento(invalido));
+        assertThrows(IllegalArgumentException.class, () -> repositorio.reservarHorario(invalido, invalido.getDataHora()));
+        assertThrows(IllegalArgumentException.class, () -> repositorio.reservarHorarios(List.of(valido, invalido), true));
+        assertTrue(repositorio.getAgendamentos().isEmpty());
+        assertTrue(repositorio.getAgendamentosNoHorario(Agendamentos.FILIAL_PADRAO, valido.getDataHora()).isEmpty());
+
+        assertTrue(repositorio.reservarHorario(valido, valido.getDataHora()));
+        repositorio.encerrar();
+        AgendamentosRepositoryArquivo recarregado = novoRepositorio();
+        assertEquals(List.of(valido.getIdAgendamento()), recarregado.getAgendamentos().stream()
+                .map(Agendamentos::getIdAgendamento).toList());
+        recarregado.encerrar();
+    }
+
+    @Test
+    void CancelamentoAlteraORegistroNoLugar() throws Exception {
+        AgendamentosRepositoryArquivo repositorio = novoRepositorio();
+        String idUsuario = UUID.randomUUID().toString();
+        Agendamentos primeiro = new Agendamentos(idUsuario, Agendamentos.TipoServico.SERVICO1, LocalDateTime.parse("2030-01-01T10:00"));
+        Agendamentos segundo = new Agendamentos(idUsuario, Agendamentos.TipoServico.servico3, LocalDateTime.parse("2030-01-01T11:00"));
+        assertTrue(repositorio.reservarHorario(primeiro, primeiro.getDataHora()));
+        assertTrue(repositorio.reservarHorario(segundo, segundo.getDataHora()));
+        repositorio.gravarPendentes();
+        Path binario = diretorio.resolve("agendamentos.bin");
+        long tamanho = Files.size(binario);
+
+        primeiro.setStatus(Agendamentos.statusAgendamento.CANCELADO);
+        repositorio.atualizarAgendamento(primeiro);
+        repositorio.encerrar();
+
+        assertEquals(tamanho, Files.size(binario));
+        assertFalse(Files.exists(diretorio.resolve("agendamentos.json")));
+        AgendamentosRepositoryArquivo recarregado = novoRepositorio();
+        List<Agendamentos> agendamentos = recarregado.getAgendamentos();
+        assertEquals(2, agendamentos.size());
+        assertIguais(primeiro, agendamentos.get(0));
+        assertIguais(segundo, agendamentos.get(1));
+        assertTrue(recarregado.getAgendamentosNoHorario(Agendamentos.FILIAL_PADRAO, primeiro.getDataHora()).isEmpty());
+        assertEquals(List.of(segundo.getIdAgendamento()), recarregado.getAgendamentosNoHorario(Agendamentos.FILIAL_PADRAO, segundo.getDataHora()).stream()
+                .map(Agendamentos::getIdAgendamento).toList());
+        recarregado.encerrar();
+    }
+
+    @Test
+    void ArquivoCresceAlemDaCapacidadeInicial() {
+        AgendamentosRepositoryArquivo repositorio = novoRepositorio();
+        List<Agendamentos> incluidos = new ArrayList<>();
+        LocalDateTime inicio = LocalDateTime.of(2030, 1, 1, 0, 0);
+        for (int i = 0; i < 1500; i++) {
+            Agendamentos agendamento = new Agendamentos(UUID.randomUUID().toString(), Agendamentos.TipoServico.SERVICO2,
+                    inicio.plusHours(i));
+            repositorio.adicionarAgendamento(agendamento);
+            incluidos.add(agendamento);
+        }
+        repositorio.encerrar();
+
+        AgendamentosRepositoryArquivo recarregado = novoRepositorio();
+        List<Agendamentos> lidos = recarregado.getAgendamentos();
+        assertEquals(incluidos.size(), lidos.size());
+        for (int i = 0; i < incluidos.size(); i++) {
+            assertIguais(incluidos.get(i), lidos.get(i));
+        }
+        recarregado.encerrar();
+    }
+
+    @Test
+    void ConversorImportaEExportaOArquivoJson() throws Exception {
+        Path json = diretorio.resolve("origem.json");
+        List<Agendamentos> agendamentos = List.of(
+                new Agendamentos(UUID.randomUUID().toString(), Agendamentos.TipoServico.SERVICO1, LocalDateTime.parse("2030-01-01T10:00")),
+                new Agendamentos(UUID.randomUUID().toString(), Agendamentos.TipoServico.SERVICO4, LocalDateTime.parse("2030-02-01T17:00")));
+        agendamentos.get(1).setStatus(Agendamentos.statusAgendamento.CANCELADO);
+        ArmazenamentoArquivo.gravarArquivo(json, agendamentos);
+
+        Path binario = diretorio.resolve("agendamentos.bin");
+        assertEquals(2, ConversorAgendamentos.importar(json, binario));
+        Path exportado = diretorio.resolve("exportado.json");
+        assertEquals(2, ConversorAgendamentos.exportar(binario, exportado));
+
+        List<Agendamentos> lidos = ArmazenamentoArquivo.lerArquivo(exportado, Agendamentos.class, Agendamentos::getIdAgendamento);
+        assertEquals(2, lidos.size());
+        for (int i = 0; i < agendamentos.size(); i++) {
+            assertIguais(agendamentos.get(i), lidos.get(i));
+        }
+    }
+
+    @Test
+    void GravacaoAtrasadaDeUmaVersaoAnteriorNaoSobrescreveORegistro() {
+        PersistenciaConfig config = new PersistenciaConfig(PersistenciaConfig.Modo.JOURNAL, 60_000, 1000, 1000,
+                PersistenciaConfig.Formato.BINARIO);
+        Path binario = diretorio.resolve("agendamentos.bin");
+        Agendamentos reservado = new Agendamentos(UUID.randomUUID().toString(), Agendamentos.TipoServico.SERVICO1, LocalDateTime.parse("2030-01-01T10:00"));
+        Agendamentos cancelado = new Agendamentos(reservado.getIdAgendamento(), reservado.getIdUsuario(), reservado.getServico(),
+                reservado.getDataHora(), Agendamentos.statusAgendamento.CANCELADO);
+        cancelado.setVersao(2);
+        ArmazenamentoBinarioAgendamentos armazenamento = new ArmazenamentoBinarioAgendamentos("teste", binario, List::of, config);
+        armazenamento.carregar();
+
+        // o cancelamento chega antes da reserva que ele cancela
+        armazenamento.registrar(cancelado);
+        armazenamento.registrar(reservado);
+        armazenamento.close();
+
+        ArmazenamentoBinarioAgendamentos recarregado = new ArmazenamentoBinarioAgendamentos("teste", binario, List::of, config);
+        List<Agendamentos> lidos = recarregado.carregar();
+        recarregado.close();
+        assertEquals(1, lidos.size());
+        assertIguais(cancelado, lidos.get(0));
+        assertEquals(2, lidos.get(0).getVersao());
+    }
+
+    @Test
+    void FalhaAoGravarNaoRecusaAReservaEOArquivoERegravadoNaProximaGravacao() throws Exception {
+        AgendamentosRepositoryArquivo repositorio = novoRepositorio();
+        // um diretório no lugar do arquivo binário faz a escrita falhar
+        Path binario = diretorio.resolve("agendamentos.bin");
+        Files.createDirectories(binario);
+        Agendamentos agendamento = new Agendamentos(UUID.randomUUID().toString(), Agendamentos.TipoServico.SERVICO1, LocalDateTime.parse("2030-01-01T10:00"));
+
+        assertTrue(repositorio.reservarHorario(agendamento, agendamento.getDataHora()));
+        Files.delete(binario);
+        repositorio.gravarPendentes();
+        repositorio.encerrar();
+
+        AgendamentosRepositoryArquivo recarregado = novoRepositorio();
+        assertEquals(List.of(agendamento.getIdAgendamento()), recarregado.getAgendamentos().stream()
+                .map(Agendamentos::getIdAgendamento).toList());
+        recarregado.encerrar();
+    }
+
+    @Test
+    void CaminhoBinarioFicaAoLadoDoJson() {
+        assertEquals(Path.of("dados", "agendamentos.bin"),
+                ArmazenamentoBinarioAgendamentos.caminhoBinario(Path.of("dados", "agendamentos.json").toString()));
+    }
+
+    private static void assertIguais(Agendamentos esperado, Agendamentos lido) {
+        assertEquals(esperado.getIdAgendamento(), lido.getIdAgendamento());
+        assertEquals(esperado.getIdUsuario(), lido.getIdUsuario());
+        assertEquals(esperado.getServico(), lido.getServico());
+        assertEquals(esperado.getDataHora(), lido.getDataHora());
+        assertEquals(esperado.getStatus(), lido.getStatus());
+        assertEquals(esperado.getVersao(), lido.getVersao());
+    }
+}
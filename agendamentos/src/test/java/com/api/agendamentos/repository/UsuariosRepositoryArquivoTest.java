@@ -0,0 +1,213 @@
+package com.api.agendamentos.repository;
+
+import com.api.agendamentos.config.PersistenciaConfig;
+import com.api.agendamentos.models.Usuarios;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UsuariosRepositoryArquivoTest {
+    @TempDir
+    Path diretorio;
+    private UsuariosRepositoryArquivo usuariosRepository;
+
+    @BeforeEach
+    void setUp() {
+        PersistenciaConfig config = new PersistenciaConfig(PersistenciaConfig.Modo.SNAPSHOT, 60_000, 1000, 1000);
+        usuariosRepository = new UsuariosRepositoryArquivo(diretorio.resolve("usuarios.json").toString(), config);
+        usuariosRepository.carregar();
+    }
+
+    @AfterEach
+    void tearDown() {
+        usuariosRepository.encerrar();
+    }
+
+    @Test
+    void EmailUnicoIgnorandoMaiusculasEEspacos() {
+        Usuarios usuario = new Usuarios("Usuario", "usuario@example.com", "2000-01-01");
+        assertTrue(usuariosRepository.adicionarUsuario(usuario));
+
+        assertTrue(usuariosRepository.existeEmail(" USUARIO@example.com "));
+        assertFalse(usuariosRepository.adicionarUsuario(new Usuarios("Outro", "Usuario@Example.com", "2000-01-01")));
+        assertEquals(usuario, usuariosRepository.getUsuarioPorId(usuario.getId()));
+        assertEquals(1, usuariosRepository.getUsuarios().size());
+    }
+
+    @Test
+    void AdicionarUsuariosRecusaEmailsJaCadastradosERepetidosNoLote() {
+        usuariosRepository.adicionarUsuario(new Usuarios("Existente", "existente@example.com", "2000-01-01"));
+        List<Usuarios> lote = List.of(
+                new Usuarios("A", "a@example.com", "2000-01-01"),
+                new Usuarios("Existente", "EXISTENTE@example.com", "2000-01-01"),
+                new Usuarios("B", "b@example.com", "2000-01-01"),
+                new Usuarios("A de novo", "a@example.com ", "2000-01-01"));
+
+        assertEquals(List.of(1, 3), usuariosRepository.adicionarUsuarios(lote));
+        usuariosRepository.gravarPendentes();
+
+        UsuariosRepositoryArquivo recarregado = new UsuariosRepositoryArquivo(diretorio.resolve("usuarios.json").toString(),
+                new PersistenciaConfig(PersistenciaConfig.Modo.SNAPSHOT, 60_000, 1000, 1000));
+        recarregado.carregar();
+        assertEquals(List.of("Existente", "A", "B"), recarregado.getUsuarios().stream().map(Usuarios::getNome).toList());
+        recarregado.encerrar();
+    }
+
+    @Test
+    void AtualizarEmailLiberaOAnterior() {
+        Usuarios usuario = new Usuarios("Usuario", "antigo@example.com", "2000-01-01");
+        usuariosRepository.adicionarUsuario(usuario);
+        Usuarios outro = new Usuarios("Outro", "outro@example.com", "2000-01-01");
+        usuariosRepository.adicionarUsuario(outro);
+
+        Usuarios comEmailDoOutro = new Usuarios(usuario);
+        comEmailDoOutro.setEmail("outro@example.com");
+        assertEquals(UsuariosRepository.ResultadoAtualizacao.EMAIL_EM_USO, usuariosRepository.atualizarUsuario(comEmailDoOutro, usuario.getVersao()));
+
+        Usuarios atualizado = new Usuarios(usuario);
+        atualizado.setEmail("novo@example.com");
+        assertEquals(UsuariosRepository.ResultadoAtualizacao.ATUALIZADO, usuariosRepository.atualizarUsuario(atualizado, usuario.getVersao()));
+
+        assertFalse(usuariosRepository.existeEmail("antigo@example.com"));
+        assertTrue(usuariosRepository.existeEmail("novo@example.com"));
+        assertEquals("novo@example.com", usuariosRepository.getUsuarioPorId(usuario.getId()).getEmail());
+    }
+
+    @Test
+    void BuscarUsuariosEmOrdemDeIdAPartirDoCursor() {
+        List<Usuarios> cadastrados = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Usuarios usuario = new Usuarios("Usuario" + i, "usuario" + i + "@example.com", "2000-01-01");
+            usuariosRepository.adicionarUsuario(usuario);
+            cadastrados.add(usuario);
+        }
+        cadastrados.sort(Comparator.comparing(Usuarios::getId));
+
+        assertEquals(cadastrados.subList(0, 2), usuariosRepository.buscarUsuarios(null, 2));
+        assertEquals(cadastrados.subList(2, 5), usuariosRepository.buscarUsuarios(cadastrados.get(1).getId(), 10));
+        assertTrue(usuariosRepository.buscarUsuarios(cadastrados.get(4).getId(), 10).isEmpty());
+    }
+
+    @Test
+    void CadastrosSimultaneosComMesmoEmailAceitamApenasUm() throws Exception {
+        int threads = 16;
+        CountDownLatch largada = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<Boolean>> tentativas = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            Usuarios usuario = new Usuarios("Usuario", "mesmo@example.com", "2000-01-01");
+            tentativas.add(executor.submit(() -> {
+                largada.await();
+                return usuariosRepository.adicionarUsuario(usuario);
+            }));
+        }
+        largada.countDown();
+
+        int aceitos = 0;
+        for (Future<Boolean> tentativa : tentativas) {
+            if (tentativa.get(10, TimeUnit.SECONDS)) {
+                aceitos++;
+            }
+        }
+        executor.shutdown();
+
+        assertEquals(1, aceitos);
+        assertEquals(1, usuariosRepository.getUsuarios().size());
+    }
+
+    @Test
+    void AtualizacoesSimultaneasDaMesmaVersaoAceitamApenasUma() throws Exception {
+        Usuarios usuario = new Usuarios("Usuario", "usuario@example.com", "2000-01-01");
+        usuariosRepository.adicionarUsuario(usuario);
+        Usuarios outro = new Usuarios("Outro", "outro@example.com", "2000-01-01");
+        usuariosRepository.adicionarUsuario(outro);
+
+        int threads = 16;
+        CountDownLatch largada = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<UsuariosRepository.ResultadoAtualizacao>> tentativas = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            Usuarios atualizado = new Usuarios(usuario);
+            atualizado.setNome("Nome" + i);
+            atualizado.setEmail("email" + i + "@example.com");
+            tentativas.add(executor.submit(() -> {
+                largada.await();
+                return usuariosRepository.atualizarUsuario(atualizado, 1);
+            }));
+        }
+        largada.countDown();
+
+        int aceitas = 0;
+        for (Future<UsuariosRepository.ResultadoAtualizacao> tentativa : tentativas) {
+            if (tentativa.get(10, TimeUnit.SECONDS) == UsuariosRepository.ResultadoAtualizacao.ATUALIZADO) {
+                aceitas++;
+            }
+        }
+        executor.shutdown();
+
+        assertEquals(1, aceitas);
+        Usuarios atual = usuariosRepository.getUsuarioPorId(usuario.getId());
+        assertEquals(2, atual.getVersao());
+        // só o email da atualização aceita fica reservado
+        for (int i = 0; i < threads; i++) {
+            String email = "email" + i + "@example.com";
+            assertEquals(email.equals(atual.getEmail()), usuariosRepository.existeEmail(email));
+        }
+        assertFalse(usuariosRepository.existeEmail("usuario@example.com"));
+
+        // a versão de outro usuário não muda e a dele continua aceitando a própria versão
+        Usuarios outroAtualizado = new Usuarios(outro);
+        outroAtualizado.setNome("Outro Atualizado");
+        assertEquals(UsuariosRepository.ResultadoAtualizacao.ATUALIZADO, usuariosRepository.atualizarUsuario(outroAtualizado, 1));
+        assertEquals(UsuariosRepository.ResultadoAtualizacao.VERSAO_DIFERENTE,
+                usuariosRepository.atualizarUsuario(new Usuarios(usuario), 1));
+        usuariosRepository.gravarPendentes();
+
+        UsuariosRepositoryArquivo recarregado = new UsuariosRepositoryArquivo(diretorio.resolve("usuarios.json").toString(),
+                new PersistenciaConfig(PersistenciaConfig.Modo.SNAPSHOT, 60_000, 1000, 1000));
+        recarregado.carregar();
+        assertEquals(2, recarregado.getUsuarioPorId(usuario.getId()).getVersao());
+        assertEquals(2, recarregado.getUsuarioPorId(outro.getId()).getVersao());
+        recarregado.encerrar();
+    }
+
+    @Test
+    void JournalComAtualizacoesForaDeOrdemCarregaAMaiorVersao() throws Exception {
+        usuariosRepository.encerrar();
+        Path arquivo = diretorio.resolve("usuarios.json");
+        PersistenciaConfig config = new PersistenciaConfig(PersistenciaConfig.Modo.JOURNAL, 60_000, 1000, 1000);
+        usuariosRepository = new UsuariosRepositoryArquivo(arquivo.toString(), config);
+        usuariosRepository.carregar();
+        Usuarios usuario = new Usuarios("Usuario", "usuario@example.com", "2000-01-01");
+        usuariosRepository.adicionarUsuario(usuario);
+        Usuarios atualizado = new Usuarios(usuario);
+        atualizado.setNome("Atualizado");
+        assertEquals(UsuariosRepository.ResultadoAtualizacao.ATUALIZADO, usuariosRepository.atualizarUsuario(atualizado, 1));
+        usuariosRepository.gravarPendentes();
+        usuariosRepository.encerrar();
+        // a gravação da versão 1 chega ao journal depois da versão 2
+        Path journal = ArmazenamentoArquivo.caminhoJournal(arquivo);
+        List<String> linhas = Files.readAllLines(journal);
+        Files.write(journal, List.of(linhas.get(1), linhas.get(0)));
+
+        usuariosRepository = new UsuariosRepositoryArquivo(arquivo.toString(), config);
+        usuariosRepository.carregar();
+        Usuarios carregado = usuariosRepository.getUsuarioPorId(usuario.getId());
+        assertEquals(2, carregado.getVersao());
+        assertEquals("Atualizado", carregado.getNome());
+    }
+}
@@ -0,0 +1,110 @@
+package com.api.agendamentos.repository;
+
+import com.api.agendamentos.models.Usuarios;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// roda contra um H2 em memória criado com schema-h2.sql
+public class UsuariosRepositoryJdbcTest {
+    private UsuariosRepositoryJdbc usuariosRepository;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        new ResourceDatabasePopulator(new ClassPathResource("schema-h2.sql")).execute(dataSource);
+        usuariosRepository = new UsuariosRepositoryJdbc(new NamedParameterJdbcTemplate(dataSource),
+                new TransactionTemplate(new DataSourceTransactionManager(dataSource)), 2);
+    }
+
+    @Test
+    void EmailUnicoIgnorandoMaiusculasEEspacos() {
+        Usuarios usuario = new Usuarios("Usuario", "usuario@example.com", "2000-01-01");
+        assertTrue(usuariosRepository.adicionarUsuario(usuario));
+
+        assertTrue(usuariosRepository.existeEmail(" USUARIO@example.com "));
+        assertFalse(usuariosRepository.adicionarUsuario(new Usuarios("Outro", "Usuario@Example.com", "2000-01-01")));
+        assertEquals("usuario@example.com", usuariosRepository.getUsuarioPorId(usuario.getId()).getEmail());
+        assertEquals(1, usuariosRepository.getUsuarios().size());
+    }
+
+    @Test
+    void AdicionarUsuariosRecusaEmailsJaCadastradosERepetidosNoLote() {
+        usuariosRepository.adicionarUsuario(new Usuarios("Existente", "existente@example.com", "2000-01-01"));
+        List<Usuarios> lote = List.of(
+                new Usuarios("A", "a@example.com", "2000-01-01"),
+                new Usuarios("Existente", "EXISTENTE@example.com", "2000-01-01"),
+                new Usuarios("B", "b@example.com", "2000-01-01"),
+                new Usuarios("A de novo", "a@example.com ", "2000-01-01"),
+                new Usuarios("C", "c@example.com", "2000-01-01"));
+
+        assertEquals(List.of(1, 3), usuariosRepository.adicionarUsuarios(lote));
+        assertEquals(List.of("Existente", "A", "B", "C"), usuariosRepository.getUsuarios().stream().map(Usuarios::getNome).toList());
+    }
+
+    @Test
+    void AtualizarEmailLiberaOAnterior() {
+        Usuarios usuario = new Usuarios("Usuario", "antigo@example.com", "2000-01-01");
+        usuariosRepository.adicionarUsuario(usuario);
+        usuariosRepository.adicionarUsuario(new Usuarios("Outro", "outro@example.com", "2000-01-01"));
+
+        Usuarios comEmailDoOutro = new Usuarios(usuario);
+        comEmailDoOutro.setEmail("outro@example.com");
+        assertEquals(UsuariosRepository.ResultadoAtualizacao.EMAIL_EM_USO, usuariosRepository.atualizarUsuario(comEmailDoOutro, usuario.getVersao()));
+
+        Usuarios atualizado = new Usuarios(usuario);
+        atualizado.setEmail("novo@example.com");
+        assertEquals(UsuariosRepository.ResultadoAtualizacao.ATUALIZADO, usuariosRepository.atualizarUsuario(atualizado, usuario.getVersao()));
+
+        assertFalse(usuariosRepository.existeEmail("antigo@example.com"));
+        assertTrue(usuariosRepository.existeEmail("novo@example.com"));
+        assertEquals("novo@example.com", usuariosRepository.getUsuarioPorId(usuario.getId()).getEmail());
+    }
+
+    @Test
+    void AtualizacaoComVersaoAntigaNaoAlteraNada() {
+        Usuarios usuario = new Usuarios("Usuario", "usuario@example.com", "2000-01-01");
+        usuariosRepository.adicionarUsuario(usuario);
+
+        Usuarios primeira = new Usuarios(usuario);
+        primeira.setNome("Primeira");
+        assertEquals(UsuariosRepository.ResultadoAtualizacao.ATUALIZADO, usuariosRepository.atualizarUsuario(primeira, 1));
+        assertEquals(2, primeira.getVersao());
+
+        Usuarios segunda = new Usuarios(usuario);
+        segunda.setNome("Segunda");
+        assertEquals(UsuariosRepository.ResultadoAtualizacao.VERSAO_DIFERENTE, usuariosRepository.atualizarUsuario(segunda, 1));
+        assertEquals(UsuariosRepository.ResultadoAtualizacao.VERSAO_DIFERENTE,
+                usuariosRepository.atualizarUsuario(new Usuarios("Inexistente", "inexistente@example.com", "2000-01-01"), 1));
+
+        Usuarios gravado = usuariosRepository.getUsuarioPorId(usuario.getId());
+        assertEquals("Primeira", gravado.getNome());
+        assertEquals(2, gravado.getVersao());
+    }
+
+    @Test
+    void SalvarUsuariosEmLotesMantemOrdemEPaginaPorId() {
+        List<Usuarios> usuarios = List.of(
+                new Usuarios("C", "c@example.com", "2000-01-01"),
+                new Usuarios("A", "a@example.com", "2000-01-01"),
+                new Usuarios("B", "b@example.com", "2000-01-01"));
+        usuariosRepository.salvarUsuarios(usuarios);
+
+        assertEquals(usuarios.stream().map(Usuarios::getId).toList(),
+                usuariosRepository.getUsuarios().stream().map(Usuarios::getId).toList());
+        List<String> idsOrdenados = usuarios.stream().map(Usuarios::getId).sorted().toList();
+        assertEquals(idsOrdenados.subList(1, 3), usuariosRepository.buscarUsuarios(idsOrdenados.get(0), 10)
+                .stream().map(Usuarios::getId).toList());
+        assertNull(usuariosRepository.getUsuarioPorId(null));
+    }
+}
@@ -0,0 +1,214 @@
+package com.api.agendamentos.services;
+
+import com.api.agendamentos.config.CapacidadeConfig;
+import com.api.agendamentos.config.PersistenciaConfig;
+import com.api.agendamentos.exceptions.BadRequestException;
+import com.api.agendamentos.models.Agendamentos;
+import com.api.agendamentos.repository.AgendamentosRepositoryArquivo;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+public class AgendamentosServiceConcorrenciaTest {
+    private static final int THREADS = 16;
+    private static final int DIAS = 5;
+
+    @TempDir
+    Path diretorio;
+    @Mock
+    private UsuariosService usuariosService;
+    private PersistenciaConfig config;
+    private AgendamentosRepositoryArquivo agendamentosRepository;
+    private AgendamentosService agendamentosService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(usuariosService.usuarioExiste(Mockito.anyString())).thenReturn(true);
+        config = new PersistenciaConfig(PersistenciaConfig.Modo.JOURNAL, 50, 10, 1000);
+        agendamentosRepository = novoRepositorio();
+        agendamentosService = new AgendamentosService(agendamentosRepository, usuariosService);
+    }
+
+    @AfterEach
+    void tearDown() {
+        agendamentosRepository.encerrar();
+    }
+
+    private AgendamentosRepositoryArquivo novoRepositorio() {
+        AgendamentosRepositoryArquivo repositorio = new AgendamentosRepositoryArquivo(diretorio.resolve("agendamentos.json").toString(), config);
+        repositorio.carregar();
+        return repositorio;
+    }
+
+    private List<LocalDateTime> horarios() {
+        List<LocalDateTime> horarios = new ArrayList<>();
+        for (int dia = 1; dia <= DIAS; dia++) {
+            for (int hora = 9; hora <= 17; hora++) {
+                horarios.add(LocalDate.now().plusDays(dia).atTime(hora, 0));
+            }
+        }
+        return horarios;
+    }
+
+    @Test
+    void AgendamentosSimultaneosNaoPerdemRegistrosNemDuplicamHorarios() throws Exception {
+        List<LocalDateTime> horarios = horarios();
+        Map<LocalDateTime, AtomicInteger> sucessosPorHorario = new ConcurrentHashMap<>();
+        AtomicInteger rejeitados = new AtomicInteger();
+        CountDownLatch largada = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+
+        List<Future<?>> tarefas = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            String idUsuario = "usuario" + t;
+            List<LocalDateTime> ordem = new ArrayList<>(horarios);
+            Collections.shuffle(ordem);
+            tarefas.add(executor.submit(() -> {
+                largada.await();
+                for (LocalDateTime horario : ordem) {
+                    try {
+                        agendamentosService.createAgendamento(idUsuario, Agendamentos.TipoServico.SERVICO1, horario);
+                        sucessosPorHorario.computeIfAbsent(horario, h -> new AtomicInteger()).incrementAndGet();
+                    } catch (BadRequestException e) {
+                        rejeitados.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+        largada.countDown();
+        for (Future<?> tarefa : tarefas) {
+            tarefa.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertEquals(horarios.size(), sucessosPorHorario.size());
+        sucessosPorHorario.forEach((horario, sucessos) -> assertEquals(1, sucessos.get(), "Horário duplicado: " + horario));
+        assertEquals(THREADS * horarios.size() - horarios.size(), rejeitados.get());
+
+        agendamentosRepository.encerrar();
+        agendamentosRepository = novoRepositorio();
+        List<Agendamentos> gravados = agendamentosRepository.getAgendamentos();
+        assertEquals(horarios.size(), gravados.size());
+        assertEquals(Set.copyOf(horarios),
+                gravados.stream().map(Agendamentos::getDataHora).collect(Collectors.toSet()));
+    }
+
+    @Test
+    void HorarioCanceladoPodeSerReservadoNovamente() {
+        LocalDateTime horario = LocalDate.now().plusDays(1).atTime(10, 0);
+        Agendamentos primeiro = agendamentosService.createAgendamento("1", Agendamentos.TipoServico.SERVICO1, horario);
+
+        assertThrows(BadRequestException.class, () ->
+                agendamentosService.createAgendamento("2", Agendamentos.TipoServico.SERVICO1, horario));
+
+        agendamentosService.cancelarAgendamento(primeiro.getIdAgendamento());
+        Agendamentos segundo = agendamentosService.createAgendamento("2", Agendamentos.TipoServico.SERVICO1, horario);
+
+        assertEquals(List.of(segundo), agendamentosRepository.getAgendamentosNoHorario(Agendamentos.FILIAL_PADRAO, horario));
+    }
+
+    @Test
+    void CancelamentosSimultaneosDoMesmoAgendamentoSoUmVence() throws Exception {
+        LocalDateTime horario = LocalDate.now().plusDays(1).atTime(10, 0);
+        Agendamentos agendamento = agendamentosService.createAgendamento("1", Agendamentos.TipoServico.SERVICO1, horario);
+        AtomicInteger cancelados = new AtomicInteger();
+        AtomicInteger recusados = new AtomicInteger();
+        CountDownLatch largada = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+
+        List<Future<?>> tarefas = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            tarefas.add(executor.submit(() -> {
+                largada.await();
+                try {
+                    agendamentosService.cancelarAgendamento(agendamento.getIdAgendamento());
+                    cancelados.incrementAndGet();
+                } catch (BadRequestException e) {
+                    recusados.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+        largada.countDown();
+        for (Future<?> tarefa : tarefas) {
+            tarefa.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertEquals(1, cancelados.get());
+        assertEquals(THREADS - 1, recusados.get());
+        assertEquals(Agendamentos.statusAgendamento.CANCELADO,
+                agendamentosRepository.getAgendamentoPorId(agendamento.getIdAgendamento()).orElseThrow().getStatus());
+        assertArrayEquals(new int[]{1}, agendamentosRepository.getVagasRestantes(
+                Agendamentos.FILIAL_PADRAO, List.of(horario), Agendamentos.TipoServico.SERVICO1));
+    }
+
+    @Test
+    void ReservasSimultaneasRespeitamACapacidadeDeCadaServico() throws Exception {
+        agendamentosRepository.encerrar();
+        agendamentosRepository = new AgendamentosRepositoryArquivo(diretorio.resolve("agendamentos.json").toString(), config,
+                new CapacidadeConfig(1, Map.of(Agendamentos.TipoServico.SERVICO1, 3)));
+        agendamentosRepository.carregar();
+        agendamentosService = new AgendamentosService(agendamentosRepository, usuariosService);
+        LocalDateTime horario = LocalDate.now().plusDays(1).atTime(10, 0);
+        CountDownLatch largada = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+
+        List<Future<Agendamentos.TipoServico>> tentativas = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            Agendamentos.TipoServico servico = t % 2 == 0 ? Agendamentos.TipoServico.SERVICO1 : Agendamentos.TipoServico.SERVICO2;
+            String idUsuario = "usuario" + t;
+            tentativas.add(executor.submit(() -> {
+                largada.await();
+                try {
+                    agendamentosService.createAgendamento(idUsuario, servico, horario);
+                    return servico;
+                } catch (BadRequestException e) {
+                    return null;
+                }
+            }));
+        }
+        largada.countDown();
+        Map<Agendamentos.TipoServico, Integer> aceitas = new ConcurrentHashMap<>();
+        for (Future<Agendamentos.TipoServico> tentativa : tentativas) {
+            Agendamentos.TipoServico servico = tentativa.get(30, TimeUnit.SECONDS);
+            if (servico != null) {
+                aceitas.merge(servico, 1, Integer::sum);
+            }
+        }
+        executor.shutdown();
+
+        assertEquals(Map.of(Agendamentos.TipoServico.SERVICO1, 3, Agendamentos.TipoServico.SERVICO2, 1), aceitas);
+        assertEquals(4, agendamentosRepository.getAgendamentosNoHorario(Agendamentos.FILIAL_PADRAO, horario).size());
+        // SERVICO3 e SERVICO4 continuam com uma vaga cada
+        assertEquals(Map.of(horario, 2), agendamentosRepository.getVagasRestantes(Agendamentos.FILIAL_PADRAO, horario.toLocalDate(), null));
+        assertFalse(agendamentosService.getHorariosDisponiveis(horario.toLocalDate(), Agendamentos.TipoServico.SERVICO1).stream()
+                .anyMatch(disponivel -> disponivel.getDataHora().equals(horario)));
+    }
+}
@@ -1,19 +1,29 @@
 package com.api.agendamentos.services;
 
+import com.api.agendamentos.config.AgendaConfig;
 import com.api.agendamentos.exceptions.BadRequestException;
 import com.api.agendamentos.exceptions.CustomNotFoundException;
 import com.api.agendamentos.models.Agendamentos;
+import com.api.agendamentos.models.FiltroAgendamentos;
+import com.api.agendamentos.models.HorarioDisponivel;
+import com.api.agendamentos.models.HorariosDisponiveisDia;
+import com.api.agendamentos.models.Pagina;
+import com.api.agendamentos.models.ResultadoLote;
 import com.api.agendamentos.repository.AgendamentosRepository;
+import com.api.agendamentos.repository.IndiceAgendamentosOrdenados;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.*;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.when;;
@@ -24,17 +34,22 @@ public class AgendamentosServiceTest {
     @Mock
     private UsuariosService usuariosService;
     private AgendamentosService agendamentosService;
+    private SimpleMeterRegistry registry;
 
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
-        agendamentosService = new AgendamentosService(agendamentosRepository,usuariosService);
+        // a disponibilidade por horário vem do mapa de vagas do dia, que os testes configuram
+        Mockito.doCallRealMethod().when(agendamentosRepository)
+                .getVagasRestantes(Mockito.any(), Mockito.anyList(), Mockito.any());
+        registry = new SimpleMeterRegistry();
+        agendamentosService = new AgendamentosService(agendamentosRepository,usuariosService, registry);
     }
     @Test
     void GetAgendamentosComSucesso() {
         List<Agendamentos> mockAgendamentos = Arrays.asList(
-                new Agendamentos("1", Agendamentos.TipoServico.SERVICO1, "2022-01-01T10:00"),
-                new Agendamentos("2", Agendamentos.TipoServico.SERVICO2, "2022-01-02T14:00")
+                new Agendamentos("1", Agendamentos.TipoServico.SERVICO1, LocalDateTime.parse("2022-01-01T10:00")),
+                new Agendamentos("2", Agendamentos.TipoServico.SERVICO2, LocalDateTime.parse("2022-01-02T14:00"))
         );
         when(agendamentosRepository.getAgendamentos()).thenReturn(mockAgendamentos);
 
@@ -49,31 +64,81 @@ public class AgendamentosServiceTest {
         when(usuariosService.usuarioExiste(Mockito.anyString())).thenReturn(true);
 
         List<Agendamentos> agendamentos = Arrays.asList(
-                new Agendamentos("1", Agendamentos.TipoServico.SERVICO1, "2022-01-01T10:00"),
-                new Agendamentos("1", Agendamentos.TipoServico.SERVICO2, "2022-01-01T14:00")
+                new Agendamentos("1", Agendamentos.TipoServico.SERVICO1, LocalDateTime.parse("2022-01-01T10:00")),
+                new Agendamentos("1", Agendamentos.TipoServico.SERVICO2, LocalDateTime.parse("2022-01-01T14:00"))
         );
 
-        when(agendamentosRepository.getAgendamentos()).thenReturn(agendamentos);
+        when(agendamentosRepository.getAgendamentosPorUsuario("1", 0, Integer.MAX_VALUE)).thenReturn(agendamentos);
 
         List<Agendamentos> result = agendamentosService.getAgendamentosPorUsuario("1");
 
         assertEquals(agendamentos, result);
     }
+    @Test
+    void GetAgendamentosPorUsuarioPaginado() {
+        when(usuariosService.usuarioExiste(Mockito.anyString())).thenReturn(true);
+
+        List<Agendamentos> pagina = List.of(new Agendamentos("1", Agendamentos.TipoServico.SERVICO1, LocalDateTime.parse("2022-01-03T10:00")));
+        when(agendamentosRepository.getAgendamentosPorUsuario("1", 20, 10)).thenReturn(pagina);
+
+        assertEquals(pagina, agendamentosService.getAgendamentosPorUsuario("1", 2, 10));
+        assertThrows(BadRequestException.class, () -> agendamentosService.getAgendamentosPorUsuario("1", -1, 10));
+        assertThrows(BadRequestException.class, () -> agendamentosService.getAgendamentosPorUsuario("1", 0, 1000));
+    }
+    @Test
+    void BuscarAgendamentosDevolveCursorDaProximaPagina() {
+        Agendamentos primeiro = new Agendamentos("1", Agendamentos.TipoServico.SERVICO1, LocalDateTime.parse("2030-01-01T10:00"));
+        Agendamentos segundo = new Agendamentos("1", Agendamentos.TipoServico.SERVICO1, LocalDateTime.parse("2030-01-02T10:00"));
+        Agendamentos terceiro = new Agendamentos("1", Agendamentos.TipoServico.SERVICO1, LocalDateTime.parse("2030-01-03T10:00"));
+        FiltroAgendamentos filtro = new FiltroAgendamentos();
+        when(agendamentosRepository.buscarAgendamentos(filtro, null, 3)).thenReturn(List.of(primeiro, segundo, terceiro));
+        when(agendamentosRepository.buscarAgendamentos(filtro, IndiceAgendamentosOrdenados.Chave.de(segundo), 3))
+                .thenReturn(List.of(terceiro));
+
+        Pagina<Agendamentos> pagina = agendamentosService.buscarAgendamentos(filtro, null, 2);
+        assertEquals(List.of(primeiro, segundo), pagina.getItens());
+        assertNotNull(pagina.getProximoCursor());
+
+        Pagina<Agendamentos> ultima = agendamentosService.buscarAgendamentos(filtro, pagina.getProximoCursor(), 2);
+        assertEquals(List.of(terceiro), ultima.getItens());
+        assertNull(ultima.getProximoCursor());
+    }
+
+    @Test
+    void BuscarAgendamentosComCursorOuLimiteInvalido() {
+        FiltroAgendamentos filtro = new FiltroAgendamentos();
+        assertThrows(BadRequestException.class, () -> agendamentosService.buscarAgendamentos(filtro, "nao-e-um-cursor", 10));
+        assertThrows(BadRequestException.class, () -> agendamentosService.buscarAgendamentos(filtro, null, 0));
+        assertThrows(BadRequestException.class, () -> agendamentosService.buscarAgendamentos(filtro, null, 1000));
+        assertThrows(BadRequestException.class, () -> agendamentosService.buscarAgendamentos(new FiltroAgendamentos(
+                null, null, null, LocalDate.of(2030, 1, 2), LocalDate.of(2030, 1, 1)), null, 10));
+    }
+
     @Test
     void GetAgendamentosPorUsuarioComUsuarioInexistente() {
         List<Agendamentos> mockAgendamentos = Arrays.asList(
-                new Agendamentos("1", Agendamentos.TipoServico.SERVICO1, "2022-01-01T10:00"),
-                new Agendamentos("2", Agendamentos.TipoServico.SERVICO2, "2022-01-02T14:00")
+                new Agendamentos("1", Agendamentos.TipoServico.SERVICO1, LocalDateTime.parse("2022-01-01T10:00")),
+                new Agendamentos("2", Agendamentos.TipoServico.SERVICO2, LocalDateTime.parse("2022-01-02T14:00"))
         );
         when(agendamentosRepository.getAgendamentos()).thenReturn(mockAgendamentos);
 
         assertThrows(CustomNotFoundException.class, () -> agendamentosService.getAgendamentosPorUsuario("3"));
     }
 
+    @Test
+    void VersaoDosAgendamentosDeUsuarioInexistenteDa404AntesDoEtag() {
+        when(agendamentosRepository.getVersaoUsuario("3")).thenReturn("7");
+
+        assertThrows(CustomNotFoundException.class, () -> agendamentosService.getVersaoAgendamentosPorUsuario("3"));
+
+        when(usuariosService.usuarioExiste("3")).thenReturn(true);
+        assertEquals("7", agendamentosService.getVersaoAgendamentosPorUsuario("3"));
+    }
+
     @Test
     void GetAgendamentosPorUsuarioPossuindoNenhumAgendamento() {
         when(usuariosService.usuarioExiste(Mockito.anyString())).thenReturn(true);
-        when(agendamentosRepository.getAgendamentos()).thenReturn(new ArrayList<>());
+        when(agendamentosRepository.getAgendamentosPorUsuario("usuarioSemAgendamentos", 0, Integer.MAX_VALUE)).thenReturn(new ArrayList<>());
 
         assertThrows(CustomNotFoundException.class, () -> agendamentosService.getAgendamentosPorUsuario("usuarioSemAgendamentos"));
     }
@@ -82,20 +147,149 @@ public class AgendamentosServiceTest {
     void CriarAgendamentoComSucesso() {
         when(usuariosService.usuarioExiste(Mockito.anyString())).thenReturn(true);
 
-        LocalDateTime dataHoraValida = LocalDateTime.of(2024,1,20,9,0);
-
-        when(agendamentosRepository.getAgendamentos()).thenReturn(new ArrayList<>());
+        LocalDateTime dataHoraValida = LocalDate.now().plusDays(1).atTime(9, 0);
 
-        ArgumentCaptor<List<Agendamentos>> argumentCaptor = ArgumentCaptor.forClass(List.class);
-        Mockito.doNothing().when(agendamentosRepository).salvarAgendamentos(argumentCaptor.capture());
+        when(agendamentosRepository.reservarHorario(Mockito.any(), Mockito.eq(dataHoraValida))).thenReturn(true);
 
-        Agendamentos agendamentoValido = agendamentosService.createAgendamento("1", Agendamentos.TipoServico.SERVICO1, dataHoraValida.format(DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm")));
+        Agendamentos agendamentoValido = agendamentosService.createAgendamento("1", Agendamentos.TipoServico.SERVICO1, dataHoraValida);
 
-        Mockito.verify(agendamentosRepository, Mockito.times(1)).salvarAgendamentos(Mockito.anyList());
+        Mockito.verify(agendamentosRepository, Mockito.times(1)).reservarHorario(agendamentoValido, dataHoraValida);
 
         assertEquals(Agendamentos.statusAgendamento.AGENDADO, agendamentoValido.getStatus());
     }
     @Test
+    void CriarAgendamentoEmHorarioOcupado() {
+        when(usuariosService.usuarioExiste(Mockito.anyString())).thenReturn(true);
+
+        LocalDateTime dataHoraOcupada = LocalDate.now().plusDays(1).atTime(10, 0);
+        when(agendamentosRepository.reservarHorario(Mockito.any(), Mockito.eq(dataHoraOcupada))).thenReturn(false);
+
+        BadRequestException exception = assertThrows(BadRequestException.class, () ->
+                agendamentosService.createAgendamento("1", Agendamentos.TipoServico.SERVICO1, dataHoraOcupada));
+        assertEquals("O horário está indisponível. Selecione outro horário.", exception.getMessage());
+    }
+    @Test
+    void MetricasDeConflitoRejeicaoEValidacaoPorServico() {
+        when(usuariosService.usuarioExiste(Mockito.anyString())).thenReturn(true);
+        LocalDateTime dataHoraOcupada = LocalDate.now().plusDays(1).atTime(10, 0);
+        when(agendamentosRepository.reservarHorario(Mockito.any(), Mockito.eq(dataHoraOcupada))).thenReturn(false);
+
+        assertThrows(BadRequestException.class, () ->
+                agendamentosService.createAgendamento("1", Agendamentos.TipoServico.SERVICO2, dataHoraOcupada));
+        assertThrows(BadRequestException.class, () ->
+                agendamentosService.createAgendamento("1", Agendamentos.TipoServico.SERVICO3, dataHoraOcupada.withHour(6)));
+        assertThrows(BadRequestException.class, () ->
+                agendamentosService.createAgendamento("1", null, dataHoraOcupada));
+
+        assertEquals(1.0, registry.get("agendamentos.reservas.conflitos").tag("servico", "SERVICO2").counter().count());
+        assertEquals(1.0, registry.get("agendamentos.reservas.rejeitadas").tag("servico", "SERVICO3").counter().count());
+        assertEquals(1.0, registry.get("agendamentos.reservas.rejeitadas").tag("servico", "nenhum").counter().count());
+        assertEquals(0.0, registry.get("agendamentos.reservas.conflitos").tag("servico", "SERVICO3").counter().count());
+        // os contadores são registrados todos na criação do serviço, e não a cada recusa
+        assertEquals(Agendamentos.TipoServico.values().length,
+                registry.find("agendamentos.reservas.conflitos").counters().size());
+        assertEquals(3, registry.get("servicos.validacao").tag("operacao", "createAgendamento").timer().count());
+    }
+    @Test
+    void CriarAgendamentosEmLoteTudoOuNadaComItemInvalidoNaoReservaNada() {
+        when(usuariosService.usuarioExiste(Mockito.anyString())).thenReturn(true);
+        LocalDate amanha = LocalDate.now().plusDays(1);
+        List<Agendamentos> lote = List.of(
+                new Agendamentos("1", Agendamentos.TipoServico.SERVICO1, amanha.atTime(9, 0)),
+                new Agendamentos("1", Agendamentos.TipoServico.SERVICO1, amanha.atTime(6, 0)));
+
+        ResultadoLote resultado = agendamentosService.criarAgendamentosEmLote(lote, ResultadoLote.Modo.TUDO_OU_NADA);
+
+        assertEquals(0, resultado.getSucessos());
+        assertEquals(2, resultado.getFalhas());
+        assertEquals("Não aplicado: outro item do lote falhou.", resultado.getItens().get(0).getErro());
+        assertEquals("Os agendamentos só podem ocorrer em horário comercial, das 9h às 17h.", resultado.getItens().get(1).getErro());
+        Mockito.verify(agendamentosRepository, Mockito.never()).reservarHorarios(Mockito.any(), Mockito.anyBoolean());
+    }
+    @Test
+    void CriarAgendamentosEmLoteMelhorEsforcoReservaOsValidosDeUmaVez() {
+        when(usuariosService.usuarioExiste(Mockito.anyString())).thenReturn(true);
+        LocalDate amanha = LocalDate.now().plusDays(1);
+        List<Agendamentos> lote = List.of(
+                new Agendamentos("1", Agendamentos.TipoServico.SERVICO1, amanha.atTime(9, 0)),
+                new Agendamentos("1", Agendamentos.TipoServico.SERVICO2, amanha.atTime(9, 30)),
+                new Agendamentos("2", Agendamentos.TipoServico.SERVICO3, amanha.atTime(10, 0)),
+                new Agendamentos("3", Agendamentos.TipoServico.SERVICO4, amanha.atTime(11, 0)));
+        // das três reservas válidas, a segunda (10h) encontra o horário ocupado
+        when(agendamentosRepository.reservarHorarios(Mockito.anyList(), Mockito.eq(false))).thenReturn(List.of(1));
+
+        ResultadoLote resultado = agendamentosService.criarAgendamentosEmLote(lote, ResultadoLote.Modo.MELHOR_ESFORCO);
+
+        ArgumentCaptor<List<Agendamentos>> reservados = ArgumentCaptor.forClass(List.class);
+        Mockito.verify(agendamentosRepository).reservarHorarios(reservados.capture(), Mockito.eq(false));
+        assertEquals(3, reservados.getValue().size());
+        assertEquals(2, resultado.getSucessos());
+        assertEquals(reservados.getValue().get(0).getIdAgendamento(), resultado.getItens().get(0).getIdAgendamento());
+        assertEquals("Cada atendimento tem duração de uma hora. Selecione um bloco de horário completo.", resultado.getItens().get(1).getErro());
+        assertEquals("O horário está indisponível. Selecione outro horário.", resultado.getItens().get(2).getErro());
+        assertTrue(resultado.getItens().get(3).isSucesso());
+        assertEquals(1.0, registry.get("agendamentos.reservas.conflitos").tag("servico", "SERVICO3").counter().count());
+    }
+    @Test
+    void CancelarAgendamentosEmLoteGravaTodosDeUmaVez() {
+        Agendamentos primeiro = new Agendamentos("1", Agendamentos.TipoServico.SERVICO1, LocalDateTime.now().plusDays(1));
+        Agendamentos segundo = new Agendamentos("2", Agendamentos.TipoServico.SERVICO2, LocalDateTime.now().plusDays(2));
+        when(agendamentosRepository.getAgendamentoPorId(primeiro.getIdAgendamento())).thenReturn(Optional.of(primeiro));
+        when(agendamentosRepository.getAgendamentoPorId(segundo.getIdAgendamento())).thenReturn(Optional.of(segundo));
+        List<String> ids = List.of(primeiro.getIdAgendamento(), segundo.getIdAgendamento());
+        when(agendamentosRepository.cancelarAgendamentos(ids, true)).thenReturn(List.of());
+
+        ResultadoLote resultado = agendamentosService.cancelarAgendamentosEmLote(ids, ResultadoLote.Modo.TUDO_OU_NADA);
+
+        assertEquals(2, resultado.getSucessos());
+        Mockito.verify(agendamentosRepository).cancelarAgendamentos(ids, true);
+        Mockito.verify(agendamentosRepository, Mockito.never()).cancelarAgendamento(Mockito.any());
+    }
+    @Test
+    void CancelarAgendamentosEmLoteTudoOuNadaComItemCanceladoEmParalelo() {
+        Agendamentos primeiro = new Agendamentos("1", Agendamentos.TipoServico.SERVICO1, LocalDateTime.now().plusDays(1));
+        Agendamentos segundo = new Agendamentos("2", Agendamentos.TipoServico.SERVICO2, LocalDateTime.now().plusDays(2));
+        when(agendamentosRepository.getAgendamentoPorId(primeiro.getIdAgendamento())).thenReturn(Optional.of(primeiro));
+        when(agendamentosRepository.getAgendamentoPorId(segundo.getIdAgendamento())).thenReturn(Optional.of(segundo));
+        List<String> ids = List.of(primeiro.getIdAgendamento(), segundo.getIdAgendamento());
+        // os dois eram ativos na validação, mas o segundo foi cancelado por outra requisição antes do lote
+        when(agendamentosRepository.cancelarAgendamentos(ids, true)).thenReturn(List.of(1));
+
+        ResultadoLote resultado = agendamentosService.cancelarAgendamentosEmLote(ids, ResultadoLote.Modo.TUDO_OU_NADA);
+
+        assertEquals(0, resultado.getSucessos());
+        assertEquals("Não aplicado: outro item do lote falhou.", resultado.getItens().get(0).getErro());
+        assertEquals("Só é possível cancelar um agendamento ativo.", resultado.getItens().get(1).getErro());
+    }
+    @Test
+    void CancelarAgendamentosEmLoteTudoOuNadaComItemInexistenteOuRepetido() {
+        Agendamentos agendamento = new Agendamentos("1", Agendamentos.TipoServico.SERVICO1, LocalDateTime.now().plusDays(1));
+        when(agendamentosRepository.getAgendamentoPorId(agendamento.getIdAgendamento())).thenReturn(Optional.of(agendamento));
+        when(agendamentosRepository.getAgendamentoPorId("inexistente")).thenReturn(Optional.empty());
+        List<String> ids = List.of(agendamento.getIdAgendamento(), "inexistente", agendamento.getIdAgendamento());
+
+        ResultadoLote tudoOuNada = agendamentosService.cancelarAgendamentosEmLote(ids, ResultadoLote.Modo.TUDO_OU_NADA);
+
+        assertEquals(0, tudoOuNada.getSucessos());
+        assertEquals("Agendamento não encontrado.", tudoOuNada.getItens().get(1).getErro());
+        assertEquals("Agendamento repetido no lote.", tudoOuNada.getItens().get(2).getErro());
+        Mockito.verify(agendamentosRepository, Mockito.never()).cancelarAgendamentos(Mockito.any(), Mockito.anyBoolean());
+
+        when(agendamentosRepository.cancelarAgendamentos(List.of(agendamento.getIdAgendamento()), false)).thenReturn(List.of());
+        ResultadoLote melhorEsforco = agendamentosService.cancelarAgendamentosEmLote(ids, ResultadoLote.Modo.MELHOR_ESFORCO);
+
+        assertEquals(1, melhorEsforco.getSucessos());
+        Mockito.verify(agendamentosRepository).cancelarAgendamentos(List.of(agendamento.getIdAgendamento()), false);
+    }
+    @Test
+    void LoteVazioOuGrandeDemaisLancaException() {
+        assertThrows(BadRequestException.class, () ->
+                agendamentosService.cancelarAgendamentosEmLote(List.of(), ResultadoLote.Modo.TUDO_OU_NADA));
+        assertThrows(BadRequestException.class, () ->
+                agendamentosService.criarAgendamentosEmLote(new ArrayList<>(Collections.nCopies(1001, null)),
+                        ResultadoLote.Modo.MELHOR_ESFORCO));
+    }
+    @Test
     void CriarAgendamentoComHorarioPassadoLancaException() {
         when(usuariosService.usuarioExiste(Mockito.anyString())).thenReturn(true);
 
@@ -103,56 +297,199 @@ public class AgendamentosServiceTest {
 
         when(agendamentosRepository.getAgendamentos()).thenReturn(new ArrayList<>());
         BadRequestException exception = assertThrows(BadRequestException.class, () ->
-                agendamentosService.createAgendamento("1", Agendamentos.TipoServico.SERVICO1, dataHoraPassada.toString()));
+                agendamentosService.createAgendamento("1", Agendamentos.TipoServico.SERVICO1, dataHoraPassada));
         assertEquals("O agendamento só pode ser feito para horários futuros.", exception.getMessage());
     }
     @Test
+    void CriarAgendamentoNaFilialInformada() {
+        when(usuariosService.usuarioExiste(Mockito.anyString())).thenReturn(true);
+        when(agendamentosRepository.reservarHorario(Mockito.any(), Mockito.any())).thenReturn(true);
+        when(agendamentosRepository.atendeFilial("centro")).thenReturn(true);
+        LocalDateTime dataHora = LocalDate.now().plusDays(1).atTime(9, 0);
+
+        assertEquals("centro", agendamentosService.createAgendamento("centro", "1", Agendamentos.TipoServico.SERVICO1, dataHora).getIdFilial());
+        assertEquals(Agendamentos.FILIAL_PADRAO, agendamentosService.createAgendamento("1", Agendamentos.TipoServico.SERVICO1, dataHora).getIdFilial());
+        assertThrows(BadRequestException.class, () ->
+                agendamentosService.createAgendamento("../centro", "1", Agendamentos.TipoServico.SERVICO1, dataHora));
+        assertThrows(BadRequestException.class, () ->
+                agendamentosService.getHorariosDisponiveis("Centro", dataHora.toLocalDate(), null));
+        // filial com nome válido, mas fora das filiais atendidas
+        assertThrows(BadRequestException.class, () ->
+                agendamentosService.createAgendamento("norte", "1", Agendamentos.TipoServico.SERVICO1, dataHora));
+        Mockito.verify(agendamentosRepository, Mockito.never()).reservarHorario(
+                Mockito.argThat(agendamento -> "norte".equals(agendamento.getIdFilial())), Mockito.any());
+    }
+    @Test
     void CriarAgendamentoForaDoHorarioComercial() {
         when(usuariosService.usuarioExiste(Mockito.anyString())).thenReturn(true);
 
-        LocalDateTime dataHoraForaExpediente = LocalDateTime.of(2024,1,20,6,0);
+        LocalDateTime dataHoraForaExpediente = LocalDate.now().plusDays(1).atTime(6, 0);
 
         when(agendamentosRepository.getAgendamentos()).thenReturn(new ArrayList<>());
         BadRequestException exception = assertThrows(BadRequestException.class, () ->
-                agendamentosService.createAgendamento("1", Agendamentos.TipoServico.SERVICO1, dataHoraForaExpediente.toString()));
+                agendamentosService.createAgendamento("1", Agendamentos.TipoServico.SERVICO1, dataHoraForaExpediente));
         assertEquals("Os agendamentos só podem ocorrer em horário comercial, das 9h às 17h.", exception.getMessage());
     }
     @Test
     void CancelarAgendamentoComSucesso() {
         List<Agendamentos> agendamentos = new ArrayList<>();
         LocalDateTime dataHoraValida = LocalDateTime.now().plusDays(1);
-        Agendamentos agendamentoAgendado = new Agendamentos("1", Agendamentos.TipoServico.SERVICO1, dataHoraValida.format(DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm")));
+        Agendamentos agendamentoAgendado = new Agendamentos("1", Agendamentos.TipoServico.SERVICO1, dataHoraValida);
         agendamentos.add(agendamentoAgendado);
-        when(agendamentosRepository.getAgendamentos()).thenReturn(agendamentos);
+        when(agendamentosRepository.getAgendamentoPorId(agendamentoAgendado.getIdAgendamento())).thenReturn(Optional.of(agendamentoAgendado));
+        when(agendamentosRepository.cancelarAgendamento(agendamentoAgendado.getIdAgendamento())).thenReturn(true);
 
         agendamentosService.cancelarAgendamento(agendamentoAgendado.getIdAgendamento());
 
-        assertEquals(Agendamentos.statusAgendamento.CANCELADO, agendamentoAgendado.getStatus());
+        Mockito.verify(agendamentosRepository).cancelarAgendamento(agendamentoAgendado.getIdAgendamento());
+    }
+    @Test
+    void CancelarAgendamentoCanceladoEmParalelo() {
+        Agendamentos agendamento = new Agendamentos("1", Agendamentos.TipoServico.SERVICO1, LocalDateTime.now().plusDays(1));
+        when(agendamentosRepository.getAgendamentoPorId(agendamento.getIdAgendamento())).thenReturn(Optional.of(agendamento));
+        // ainda ativo na leitura, mas outra requisição cancelou antes da troca de status
+        when(agendamentosRepository.cancelarAgendamento(agendamento.getIdAgendamento())).thenReturn(false);
+
+        BadRequestException exception = assertThrows(BadRequestException.class, () ->
+                agendamentosService.cancelarAgendamento(agendamento.getIdAgendamento()));
+        assertEquals("Só é possível cancelar um agendamento ativo.", exception.getMessage());
     }
     @Test
     void CancelarAgendamentoInexistente() {
-        when(agendamentosRepository.getAgendamentos()).thenReturn(new ArrayList<>());
+        when(agendamentosRepository.getAgendamentoPorId("idAgendamentoInexistente")).thenReturn(Optional.empty());
 
         assertThrows(CustomNotFoundException.class, () -> agendamentosService.cancelarAgendamento("idAgendamentoInexistente"));
     }
     @Test
     void CancelarAgendamentoJaCancelado() {
         List<Agendamentos> agendamentosCancelados = new ArrayList<>();
-        Agendamentos agendamentoCancelado = new Agendamentos("1", Agendamentos.TipoServico.SERVICO1, LocalDateTime.now().plusDays(1).toString());
+        Agendamentos agendamentoCancelado = new Agendamentos("1", Agendamentos.TipoServico.SERVICO1, LocalDateTime.now().plusDays(1));
         agendamentoCancelado.setStatus(Agendamentos.statusAgendamento.CANCELADO);
         agendamentosCancelados.add(agendamentoCancelado);
-        when(agendamentosRepository.getAgendamentos()).thenReturn(agendamentosCancelados);
+        when(agendamentosRepository.getAgendamentoPorId(agendamentoCancelado.getIdAgendamento())).thenReturn(Optional.of(agendamentoCancelado));
 
         assertThrows(BadRequestException.class, () -> agendamentosService.cancelarAgendamento(agendamentoCancelado.getIdAgendamento()));
     }
     @Test
     void GetHorariosDisponiveisComSucesso() {
-        when(agendamentosRepository.getAgendamentos()).thenReturn(new ArrayList<>());
+        when(agendamentosRepository.getCapacidade(null)).thenReturn(4);
+        LocalDate data = LocalDate.now().plusDays(1);
+
+        List<HorarioDisponivel> horariosDisponiveis = agendamentosService.getHorariosDisponiveis(data);
+
+        assertEquals(9, horariosDisponiveis.size());
+        assertEquals(4, horariosDisponiveis.get(0).getVagas());
+    }
+    @Test
+    void GetHorariosDisponiveisIgnoraHorariosSemVagaEInformaAsRestantes() {
+        LocalDate data = LocalDate.now().plusDays(1);
+        when(agendamentosRepository.getCapacidade(null)).thenReturn(4);
+        when(agendamentosRepository.getVagasRestantes(Agendamentos.FILIAL_PADRAO, data, null))
+                .thenReturn(Map.of(data.atTime(9, 0), 2, data.atTime(10, 0), 0, data.atTime(17, 0), 0));
+
+        List<HorarioDisponivel> horariosDisponiveis = agendamentosService.getHorariosDisponiveis(data);
+
+        List<LocalDateTime> horarios = horariosDisponiveis.stream().map(HorarioDisponivel::getDataHora).toList();
+        assertEquals(7, horarios.size());
+        assertFalse(horarios.contains(data.atTime(10, 0)));
+        assertFalse(horarios.contains(data.atTime(17, 0)));
+        assertEquals(2, horariosDisponiveis.get(0).getVagas());
+        assertEquals(4, horariosDisponiveis.get(1).getVagas());
+    }
+    @Test
+    void GetHorariosDisponiveisPorServicoConsideraSoAsVagasDoServico() {
+        LocalDate data = LocalDate.now().plusDays(1);
+        when(agendamentosRepository.getCapacidade(Agendamentos.TipoServico.SERVICO2)).thenReturn(3);
+        when(agendamentosRepository.getVagasRestantes(Agendamentos.FILIAL_PADRAO, data, Agendamentos.TipoServico.SERVICO2)).thenReturn(Map.of(data.atTime(11, 0), 1));
+
+        List<HorarioDisponivel> horariosDisponiveis = agendamentosService.getHorariosDisponiveis(data, Agendamentos.TipoServico.SERVICO2);
+
+        assertEquals(9, horariosDisponiveis.size());
+        assertEquals(3, horariosDisponiveis.get(0).getVagas());
+        assertEquals(1, horariosDisponiveis.get(2).getVagas());
+    }
+    @Test
+    void GetHorariosDisponiveisPeriodoRetornaCadaDia() {
+        LocalDate inicio = LocalDate.now().plusDays(1);
+        LocalDate fim = inicio.plusDays(6);
+        when(agendamentosRepository.getCapacidade(null)).thenReturn(1);
+        when(agendamentosRepository.getVagasRestantes(Agendamentos.FILIAL_PADRAO, inicio.plusDays(2), null)).thenReturn(Map.of(inicio.plusDays(2).atTime(9, 0), 0));
+
+        List<HorariosDisponiveisDia> dias = agendamentosService.getHorariosDisponiveisPeriodo(inicio, fim, null).toList();
+
+        assertEquals(7, dias.size());
+        assertEquals(inicio, dias.get(0).getData());
+        assertEquals(fim, dias.get(6).getData());
+        assertEquals(9, dias.get(0).getHorarios().size());
+        assertEquals(8, dias.get(2).getHorarios().size());
+    }
+
+    @Test
+    void AgendaComAtendimentosDeTrintaMinutosIntervaloEFeriado() {
         LocalDate data = LocalDate.now().plusDays(1);
+        LocalDate feriado = data.plusDays(1);
+        agendamentosService = new AgendamentosService(agendamentosRepository, usuariosService,
+                new AgendaConfig(30, "09:00-12:00", "", "10:00-10:30", feriado.toString()), registry);
+        when(usuariosService.usuarioExiste(Mockito.anyString())).thenReturn(true);
+        when(agendamentosRepository.getCapacidade(null)).thenReturn(1);
+        when(agendamentosRepository.reservarHorario(Mockito.any(), Mockito.any())).thenReturn(true);
+
+        assertEquals(List.of(data.atTime(9, 0), data.atTime(9, 30), data.atTime(10, 30), data.atTime(11, 0), data.atTime(11, 30)),
+                agendamentosService.getHorariosDisponiveis(data).stream().map(HorarioDisponivel::getDataHora).toList());
+        assertTrue(agendamentosService.getHorariosDisponiveis(feriado).isEmpty());
+        Mockito.verify(agendamentosRepository, Mockito.never()).getVagasRestantes(Mockito.any(), Mockito.eq(feriado), Mockito.any());
+
+        assertNotNull(agendamentosService.createAgendamento("1", Agendamentos.TipoServico.SERVICO1, data.atTime(11, 30)));
+        assertEquals("Cada atendimento tem duração de 30 minutos. Selecione um bloco de horário completo.",
+                assertThrows(BadRequestException.class, () ->
+                        agendamentosService.createAgendamento("1", Agendamentos.TipoServico.SERVICO1, data.atTime(9, 15))).getMessage());
+        assertEquals("Não há atendimento neste intervalo. Selecione outro horário.",
+                assertThrows(BadRequestException.class, () ->
+                        agendamentosService.createAgendamento("1", Agendamentos.TipoServico.SERVICO1, data.atTime(10, 0))).getMessage());
+        assertEquals("Os agendamentos só podem ocorrer em horário comercial, das 9h às 11h30.",
+                assertThrows(BadRequestException.class, () ->
+                        agendamentosService.createAgendamento("1", Agendamentos.TipoServico.SERVICO1, data.atTime(12, 0))).getMessage());
+        assertEquals("Não há atendimento nesta data. Selecione outro dia.",
+                assertThrows(BadRequestException.class, () ->
+                        agendamentosService.createAgendamento("1", Agendamentos.TipoServico.SERVICO1, feriado.atTime(9, 0))).getMessage());
+    }
+
+    @Test
+    void VersaoDosHorariosDisponiveisNaoCalculaADisponibilidade() {
+        LocalDate amanha = LocalDate.now().plusDays(1);
+        LocalDate ontem = LocalDate.now().minusDays(1);
+        when(agendamentosRepository.getVersaoDia(Agendamentos.FILIAL_PADRAO, amanha)).thenReturn("7");
+        when(agendamentosRepository.getVersaoDia(Agendamentos.FILIAL_PADRAO, ontem)).thenReturn("7");
+        when(agendamentosRepository.getVersaoDia("centro", amanha)).thenReturn("8");
+        when(agendamentosRepository.atendeFilial("centro")).thenReturn(true);
+
+        String versao = agendamentosService.getVersaoHorariosDisponiveis(null, amanha);
+        assertEquals(versao, agendamentosService.getVersaoHorariosDisponiveis(Agendamentos.FILIAL_PADRAO, amanha));
+        assertNotEquals(versao, agendamentosService.getVersaoHorariosDisponiveis("centro", amanha));
+        // mesma versão dos agendamentos, mas os horários de ontem já começaram todos
+        assertNotEquals(versao, agendamentosService.getVersaoHorariosDisponiveis(null, ontem));
+        AgendamentosService outraAgenda = new AgendamentosService(agendamentosRepository, usuariosService,
+                new AgendaConfig(30, "09:00-18:00", "", "", ""), registry);
+        assertNotEquals(versao, outraAgenda.getVersaoHorariosDisponiveis(null, amanha));
+        assertThrows(BadRequestException.class, () -> agendamentosService.getVersaoHorariosDisponiveis("Centro!", amanha));
+
+        Mockito.verify(agendamentosRepository, Mockito.never()).getVagasRestantes(Mockito.any(), Mockito.anyList(), Mockito.any());
+    }
 
-        List<LocalDateTime> horariosDisponiveis = agendamentosService.getHorariosDisponiveis(data);
+    @Test
+    void GetHorariosDisponiveisPeriodoComFimAntesDoInicio() {
+        LocalDate inicio = LocalDate.now().plusDays(5);
+
+        assertThrows(BadRequestException.class, () ->
+                agendamentosService.getHorariosDisponiveisPeriodo(inicio, inicio.minusDays(1), Agendamentos.TipoServico.SERVICO1));
+    }
+
+    @Test
+    void GetHorariosDisponiveisPeriodoMuitoLongo() {
+        LocalDate inicio = LocalDate.now();
 
-        assertFalse(horariosDisponiveis.isEmpty());
+        assertThrows(BadRequestException.class, () ->
+                agendamentosService.getHorariosDisponiveisPeriodo(inicio, inicio.plusYears(2), null));
     }
 
 }
@@ -2,6 +2,8 @@ package com.api.agendamentos.services;
 
 import com.api.agendamentos.exceptions.BadRequestException;
 import com.api.agendamentos.exceptions.CustomNotFoundException;
+import com.api.agendamentos.exceptions.PreconditionFailedException;
+import com.api.agendamentos.models.ResultadoImportacao;
 import com.api.agendamentos.models.Usuarios;
 import com.api.agendamentos.repository.UsuariosRepository;
 import com.api.agendamentos.repository.AgendamentosRepository;
@@ -10,6 +12,8 @@ import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 import org.springframework.boot.test.context.SpringBootTest;
 
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -62,7 +66,7 @@ public class UsuariosServiceTest {
     }
     @Test
     public void CriarUsuarioComSucesso() {
-        when(usuariosRepository.getUsuarios()).thenReturn(new ArrayList<>(List.of()));
+        when(usuariosRepository.adicionarUsuario(any())).thenReturn(true);
 
         Usuarios novoUsuario = usuariosService.createUsuarios("NovoUsuario", "novo_usuario@example.com", "1990-01-01");
 
@@ -76,17 +80,24 @@ public class UsuariosServiceTest {
     public void CriarUsuarioComEmailJaExistente() {
         Usuarios usuarioExistente = new Usuarios("UsuarioExistente", "usuario_existente@example.com", "1980-01-01");
 
-        when(usuariosRepository.getUsuarios()).thenReturn(Arrays.asList(usuarioExistente));
+        when(usuariosRepository.existeEmail("usuario_existente@example.com")).thenReturn(true);
 
         assertThrows(BadRequestException.class, () ->
                 usuariosService.createUsuarios("NovoUsuario", "usuario_existente@example.com", "1990-01-01"));
+        verify(usuariosRepository, never()).adicionarUsuario(any());
+    }
+    @Test
+    public void CriarUsuarioComEmailCadastradoEmParalelo() {
+        when(usuariosRepository.adicionarUsuario(any())).thenReturn(false);
+
+        assertThrows(BadRequestException.class, () ->
+                usuariosService.createUsuarios("NovoUsuario", "novo_usuario@example.com", "1990-01-01"));
     }
     @Test
     public void AtualizarUsuarioComSucesso() {
         Usuarios usuarioExistente = new Usuarios("UsuarioExistente", "usuario_existente@example.com", "1980-01-01");
-        List<Usuarios> usuariosMock = Arrays.asList(usuarioExistente);
-
-        when(usuariosRepository.getUsuarios()).thenReturn(usuariosMock);
+        when(usuariosRepository.getUsuarioPorId(usuarioExistente.getId())).thenReturn(usuarioExistente);
+        when(usuariosRepository.atualizarUsuario(any(), anyLong())).thenReturn(UsuariosRepository.ResultadoAtualizacao.ATUALIZADO);
 
         Usuarios usuarioAtualizado = usuariosService.atualizarUsuarios(
                 usuarioExistente.getId(),
@@ -101,6 +112,38 @@ public class UsuariosServiceTest {
         assertNotNull(usuarioAtualizado.getDataCriacao());
     }
     @Test
+    public void AtualizarUsuarioComVersaoDiferenteDaInformada() {
+        Usuarios usuarioExistente = new Usuarios("UsuarioExistente", "usuario_existente@example.com", "1980-01-01");
+        when(usuariosRepository.getUsuarioPorId(usuarioExistente.getId())).thenReturn(usuarioExistente);
+
+        assertThrows(PreconditionFailedException.class, () ->
+                usuariosService.atualizarUsuarios(usuarioExistente.getId(), "NovoNome", "novo_email@example.com", "1990-01-01", 7L));
+        verify(usuariosRepository, never()).atualizarUsuario(any(), anyLong());
+    }
+    @Test
+    public void AtualizarUsuarioAlteradoEmParaleloComVersaoInformada() {
+        Usuarios usuarioExistente = new Usuarios("UsuarioExistente", "usuario_existente@example.com", "1980-01-01");
+        when(usuariosRepository.getUsuarioPorId(usuarioExistente.getId())).thenReturn(usuarioExistente);
+        when(usuariosRepository.atualizarUsuario(any(), eq(1L))).thenReturn(UsuariosRepository.ResultadoAtualizacao.VERSAO_DIFERENTE);
+
+        assertThrows(PreconditionFailedException.class, () ->
+                usuariosService.atualizarUsuarios(usuarioExistente.getId(), "NovoNome", "novo_email@example.com", "1990-01-01", 1L));
+    }
+    @Test
+    public void AtualizarUsuarioSemVersaoReleOUsuarioAlteradoEmParalelo() {
+        Usuarios lido = new Usuarios("UsuarioExistente", "usuario_existente@example.com", "1980-01-01");
+        Usuarios alteradoEmParalelo = new Usuarios(lido);
+        alteradoEmParalelo.setVersao(2);
+        when(usuariosRepository.getUsuarioPorId(lido.getId())).thenReturn(lido, alteradoEmParalelo);
+        when(usuariosRepository.atualizarUsuario(any(), eq(1L))).thenReturn(UsuariosRepository.ResultadoAtualizacao.VERSAO_DIFERENTE);
+        when(usuariosRepository.atualizarUsuario(any(), eq(2L))).thenReturn(UsuariosRepository.ResultadoAtualizacao.ATUALIZADO);
+
+        Usuarios usuarioAtualizado = usuariosService.atualizarUsuarios(lido.getId(), "NovoNome", "usuario_existente@example.com", "1990-01-01");
+
+        assertEquals("NovoNome", usuarioAtualizado.getNome());
+        verify(usuariosRepository, times(2)).atualizarUsuario(any(), anyLong());
+    }
+    @Test
     public void AtualizarUsuarioComIdInexistente() {
         when(usuariosRepository.getUsuarios()).thenReturn(Arrays.asList());
 
@@ -126,9 +169,7 @@ public class UsuariosServiceTest {
     @Test
     public void AtualizarUsuarioComCampoObrigatorioAusente() {
         Usuarios usuarioExistente = new Usuarios("UsuarioExistente", "usuario_existente@example.com", "1980-01-01");
-        List<Usuarios> usuariosMock = Arrays.asList(usuarioExistente);
-
-        when(usuariosRepository.getUsuarios()).thenReturn(new ArrayList<>(usuariosMock));
+        when(usuariosRepository.getUsuarioPorId(usuarioExistente.getId())).thenReturn(usuarioExistente);
 
         assertThrows(BadRequestException.class, () ->
                 usuariosService.atualizarUsuarios(usuarioExistente.getId(), null, "novo_email@example.com", "1990-01-01"));
@@ -138,14 +179,86 @@ public class UsuariosServiceTest {
     public void AtualizarUsuarioComEmailDuplicado() {
         Usuarios usuarioExistente1 = new Usuarios("UsuarioExistente1", "usuario_existente1@example.com", "1980-01-01");
         Usuarios usuarioExistente2 = new Usuarios("UsuarioExistente2", "usuario_existente2@example.com", "1985-01-01");
-        List<Usuarios> usuariosMock = Arrays.asList(usuarioExistente1, usuarioExistente2);
-
-        when(usuariosRepository.getUsuarios()).thenReturn(new ArrayList<>(usuariosMock));
+        when(usuariosRepository.getUsuarioPorId(usuarioExistente1.getId())).thenReturn(usuarioExistente1);
+        when(usuariosRepository.existeEmail(usuarioExistente2.getEmail())).thenReturn(true);
 
         assertThrows(BadRequestException.class, () ->
                 usuariosService.atualizarUsuarios(usuarioExistente1.getId(), "NovoNome", "usuario_existente2@example.com", "1990-01-01"));
     }
 
-}
+    @Test
+    public void ImportarUsuariosCsvRecusaInvalidosEEmailsRepetidos() {
+        // o repositório recusa o segundo item do lote (email repetido)
+        List<String> nomesDoLote = new ArrayList<>();
+        when(usuariosRepository.adicionarUsuarios(anyList())).thenAnswer(invocacao -> {
+            List<Usuarios> lote = invocacao.getArgument(0);
+            lote.forEach(usuario -> nomesDoLote.add(usuario.getNome()));
+            return List.of(1);
+        });
+        String csv = """
+                email,nome,dataNascimento
+                ana@example.com,Ana,1990-01-01
+                ANA@example.com,Ana Maria,1991-01-01
+                sem_arroba,Bruno,1992-01-01
+                carla@example.com,Carla,01/01/1993
+                "davi@example.com"," Davi Filho",1994-01-01
+                """;
+
+        ResultadoImportacao resultado = usuariosService.importarUsuarios(
+                new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), "csv");
+
+        assertEquals(5, resultado.getRegistros());
+        assertEquals(2, resultado.getImportados());
+        assertEquals(3, resultado.getRecusados());
+        assertEquals(List.of(4L, 5L, 3L), resultado.getErros().stream().map(ResultadoImportacao.Erro::getLinha).toList());
+        assertEquals("Email já cadastrado.", resultado.getErros().get(2).getMensagem());
+        assertEquals(List.of("Ana", "Ana Maria", "Davi Filho"), nomesDoLote);
+        verify(usuariosRepository, times(1)).adicionarUsuarios(anyList());
+    }
+
+    @Test
+    public void ImportarUsuariosNdjsonContinuaDepoisDeLinhaMalformada() {
+        when(usuariosRepository.adicionarUsuarios(anyList())).thenReturn(List.of());
+        String ndjson = """
+                {"nome":"Ana","email":"ana@example.com","dataNascimento":"1990-01-01"}
+                {"nome":"Bruno",
+
+                {"nome":"Carla","email":"carla@example.com","dataNascimento":"1993-01-01","extra":1}
+                """;
+
+        ResultadoImportacao resultado = usuariosService.importarUsuarios(
+                new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8)), "ndjson");
 
+        assertEquals(2, resultado.getImportados());
+        assertEquals(1, resultado.getRecusados());
+        assertEquals(2, resultado.getErros().get(0).getLinha());
+    }
+
+    @Test
+    public void ImportarUsuariosGravaEmLotesELimitaErrosListados() {
+        when(usuariosRepository.adicionarUsuarios(anyList())).thenReturn(List.of());
+        StringBuilder ndjson = new StringBuilder();
+        for (int i = 0; i < 1200; i++) {
+            ndjson.append("{\"nome\":\"Usuario\",\"email\":\"usuario").append(i).append("@example.com\",\"dataNascimento\":\"2000-01-01\"}\n");
+        }
+        for (int i = 0; i < 150; i++) {
+            ndjson.append("{\"nome\":\"Usuario\"}\n");
+        }
+
+        ResultadoImportacao resultado = usuariosService.importarUsuarios(
+                new ByteArrayInputStream(ndjson.toString().getBytes(StandardCharsets.UTF_8)), "ndjson");
+
+        assertEquals(1200, resultado.getImportados());
+        assertEquals(150, resultado.getRecusados());
+        assertEquals(100, resultado.getErros().size());
+        assertEquals(50, resultado.getErrosNaoListados());
+        verify(usuariosRepository, times(3)).adicionarUsuarios(anyList());
+    }
 
+    @Test
+    public void ImportarUsuariosCsvSemColunaObrigatoria() {
+        assertThrows(BadRequestException.class, () -> usuariosService.importarUsuarios(
+                new ByteArrayInputStream("nome,email\nAna,ana@example.com\n".getBytes(StandardCharsets.UTF_8)), "csv"));
+    }
+
+}
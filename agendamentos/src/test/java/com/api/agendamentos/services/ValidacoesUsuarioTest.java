@@ -0,0 +1,57 @@
+package com.api.agendamentos.services;
+
+import com.api.agendamentos.exceptions.BadRequestException;
+import com.api.agendamentos.models.Agendamentos;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ValidacoesUsuarioTest {
+
+    // as verificações sem regex devem aceitar e recusar exatamente o que as expressões antigas aceitavam
+    @Test
+    void NomeValidadoComoAsExpressoesAnteriores() {
+        List<String> nomes = List.of("Maria da Silva", "Ana", " Ana", "Ana  Maria", "Ana\t Maria", "Ana\nMaria",
+                "José", "Ana1", "Ana-Maria", "", " ");
+        for (String nome : nomes) {
+            boolean esperado = !nome.matches(".*\\s{2,}.*") && nome.matches("^[ A-Za-z]+$");
+            boolean valido = true;
+            try {
+                ValidacoesUsuario.validarNome(nome);
+            } catch (BadRequestException e) {
+                valido = false;
+            }
+            assertEquals(esperado, valido, "nome: [" + nome + "]");
+        }
+    }
+
+    @Test
+    void DataNascimentoComCaminhoRapidoEFormatter() {
+        assertEquals(LocalDate.of(1990, 5, 17), ValidacoesUsuario.validarDataNascimento("1990-05-17"));
+        assertEquals(LocalDate.of(2000, 2, 29), ValidacoesUsuario.validarDataNascimento("2000-02-29"));
+        assertEquals(LocalDate.of(10000, 1, 1), ValidacoesUsuario.validarDataNascimento("+10000-01-01"));
+
+        for (String invalida : List.of("2023-02-29", "1990-13-01", "1990-5-17", "1990/05/17", "199a-05-17", "17-05-1990")) {
+            assertThrows(BadRequestException.class, () -> ValidacoesUsuario.validarDataNascimento(invalida), invalida);
+        }
+    }
+
+    @Test
+    void EmailComPadraoPrecompilado() {
+        ValidacoesUsuario.validarEmail(" maria.silva@exemplo.com.br ");
+        assertThrows(BadRequestException.class, () -> ValidacoesUsuario.validarEmail("maria silva@exemplo.com"));
+        assertThrows(BadRequestException.class, () -> ValidacoesUsuario.validarEmail("maria@exemplo.c"));
+        assertThrows(BadRequestException.class, () -> ValidacoesUsuario.validarEmail(null));
+    }
+
+    @Test
+    void BuscarServicoIgnorandoCaixa() {
+        assertEquals(Agendamentos.TipoServico.SERVICO2, Agendamentos.TipoServico.buscarIgnorandoCaixa("servico2"));
+        assertEquals(Agendamentos.TipoServico.SERVICO2, Agendamentos.TipoServico.buscarIgnorandoCaixa("SERVICO2"));
+        assertNull(Agendamentos.TipoServico.buscarIgnorandoCaixa("SERVICO9"));
+        assertNull(Agendamentos.TipoServico.buscarIgnorandoCaixa(null));
+    }
+}